@@ -0,0 +1,78 @@
+package com.demo.bpm.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Async;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies schema-postgresql-engine.sql, the application's own indexes on Flowable tables.
+ *
+ * spring.sql.init runs before the engine has created its tables on a fresh database, so these
+ * statements are run here instead, once the application is ready. The indexes are built
+ * concurrently, in autocommit and off the startup thread, so a long build on a large history
+ * table does not block engine writes or startup. Other databases are skipped.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class EngineIndexConfig {
+
+    private static final String SCRIPT = "schema-postgresql-engine.sql";
+
+    // An interrupted concurrent build leaves an invalid index that IF NOT EXISTS would keep skipping
+    private static final String INVALID_INDEXES =
+            "SELECT C.relname FROM pg_index I JOIN pg_class C ON C.oid = I.indexrelid" +
+                    " WHERE NOT I.indisvalid AND (C.relname LIKE 'idx\\_hi\\_%' OR C.relname LIKE 'idx\\_ru\\_%')";
+
+    private final DataSource dataSource;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void createEngineIndexes() {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if (!"PostgreSQL".equalsIgnoreCase(product)) {
+                log.debug("Skipping engine indexes on {}", product);
+                return;
+            }
+            // CREATE INDEX CONCURRENTLY cannot run inside a transaction block
+            connection.setAutoCommit(true);
+            dropInvalidIndexes(connection);
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource(SCRIPT));
+            // One missing index must not keep the others from being built
+            populator.setContinueOnError(true);
+            populator.populate(connection);
+            log.info("Applied engine indexes from {}", SCRIPT);
+        } catch (Exception e) {
+            log.warn("Could not apply engine indexes: {}", e.getMessage());
+        }
+    }
+
+    private void dropInvalidIndexes(Connection connection) throws Exception {
+        List<String> invalid = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(INVALID_INDEXES)) {
+            while (rs.next()) {
+                invalid.add(rs.getString(1));
+            }
+        }
+        for (String index : invalid) {
+            log.warn("Dropping invalid engine index {} left by an interrupted build", index);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+            }
+        }
+    }
+}
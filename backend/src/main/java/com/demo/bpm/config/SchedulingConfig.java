@@ -0,0 +1,212 @@
+package com.demo.bpm.config;
+
+import com.demo.bpm.service.AnalyticsRollupService;
+import com.demo.bpm.service.AuditEventMigrationService;
+import com.demo.bpm.service.ColumnMappingCompactionService;
+import com.demo.bpm.service.DashboardCounterService;
+import com.demo.bpm.service.HistoryRetentionService;
+import com.demo.bpm.service.InitiatorBackfillService;
+import com.demo.bpm.service.LiveAnalyticsService;
+import com.demo.bpm.service.ProcessMiningService;
+import com.demo.bpm.service.ProcessStartQueueService;
+import com.demo.bpm.service.SLAService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Background maintenance jobs.
+ *
+ * The application starts with lazy initialization, so scheduled methods on ordinary services would
+ * never fire. This configuration is created eagerly and only resolves the services it drives when
+ * a job actually runs. Every maintenance job is disabled by default (cron "-"); the process start
+ * queue is polled whenever asynchronous start is enabled, the analytics rollups and process
+ * variants are refreshed whenever they are enabled, and due SLA deadlines are fired, and those of
+ * long-ended targets purged, whenever SLA deadline tracking is enabled.
+ */
+@Slf4j
+@Configuration
+@EnableScheduling
+@Lazy(false)
+@RequiredArgsConstructor
+public class SchedulingConfig {
+
+    private final ObjectProvider<ColumnMappingCompactionService> columnMappingCompactionService;
+    private final ObjectProvider<DashboardCounterService> dashboardCounterService;
+    private final ObjectProvider<InitiatorBackfillService> initiatorBackfillService;
+    private final ObjectProvider<AuditEventMigrationService> auditEventMigrationService;
+    private final ObjectProvider<ProcessStartQueueService> processStartQueueService;
+    private final ObjectProvider<HistoryRetentionService> historyRetentionService;
+    private final ObjectProvider<AnalyticsRollupService> analyticsRollupService;
+    private final ObjectProvider<LiveAnalyticsService> liveAnalyticsService;
+    private final ObjectProvider<ProcessMiningService> processMiningService;
+    private final ObjectProvider<SLAService> slaService;
+
+    @Value("${bpm.async-start.enabled:true}")
+    private boolean asyncStartEnabled = true;
+
+    @Value("${bpm.analytics.rollup.enabled:true}")
+    private boolean analyticsRollupEnabled = true;
+
+    @Value("${bpm.analytics.mining.enabled:true}")
+    private boolean processMiningEnabled = true;
+
+    @Value("${bpm.sla.deadlines.enabled:true}")
+    private boolean slaDeadlinesEnabled = true;
+
+    @Value("${bpm.column-mapping.compaction.relocate:false}")
+    private boolean compactionRelocate;
+
+    @Value("${bpm.column-mapping.compaction.max-steps:100}")
+    private int compactionMaxSteps;
+
+    @Scheduled(cron = "${bpm.column-mapping.compaction.cron:-}")
+    public void compactColumnMappings() {
+        try {
+            columnMappingCompactionService.getObject().compact(null, compactionRelocate, false, compactionMaxSteps);
+        } catch (Exception e) {
+            log.error("Scheduled column mapping compaction failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${bpm.dashboard.counters.rebuild-cron:-}")
+    public void rebuildDashboardCounters() {
+        try {
+            dashboardCounterService.getObject().rebuild();
+        } catch (Exception e) {
+            log.error("Scheduled dashboard counter rebuild failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${bpm.analytics.live.resync-cron:-}")
+    public void resyncLiveAnalytics() {
+        try {
+            liveAnalyticsService.getObject().resync();
+        } catch (Exception e) {
+            log.error("Scheduled live analytics resync failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${bpm.initiator-backfill.cron:-}")
+    public void backfillInitiators() {
+        try {
+            initiatorBackfillService.getObject().backfill(InitiatorBackfillService.DEFAULT_BATCH_SIZE,
+                    InitiatorBackfillService.DEFAULT_MAX_BATCHES);
+        } catch (Exception e) {
+            log.error("Scheduled initiator backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${bpm.audit.legacy-import.cron:-}")
+    public void importLegacyAuditHistory() {
+        try {
+            auditEventMigrationService.getObject().importLegacyHistory(AuditEventMigrationService.DEFAULT_BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("Scheduled legacy audit import failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${bpm.history-retention.cron:-}")
+    public void purgeExpiredHistory() {
+        try {
+            historyRetentionService.getObject().purge(null, HistoryRetentionService.DEFAULT_BATCH_SIZE,
+                    HistoryRetentionService.DEFAULT_MAX_BATCHES, false);
+        } catch (Exception e) {
+            log.error("Scheduled history retention failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Picks up queued process starts left by a restart or queued on another node; requests
+     * accepted on this node are started without waiting for it.
+     */
+    @Scheduled(fixedDelayString = "${bpm.async-start.poll-interval-ms:5000}")
+    public void pollProcessStartQueue() {
+        if (!asyncStartEnabled) {
+            return;
+        }
+        try {
+            processStartQueueService.getObject().poll();
+        } catch (Exception e) {
+            log.error("Polling the process start queue failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${bpm.async-start.purge-cron:0 15 * * * *}")
+    public void purgeProcessStartRequests() {
+        if (!asyncStartEnabled) {
+            return;
+        }
+        try {
+            processStartQueueService.getObject().purgeFinished();
+        } catch (Exception e) {
+            log.error("Scheduled process start request purge failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds newly finished tasks and processes to the analytics rollups. Analytics stay exact while
+     * the job is behind; they only read more raw history.
+     */
+    @Scheduled(fixedDelayString = "${bpm.analytics.rollup.interval-ms:300000}",
+            initialDelayString = "${bpm.analytics.rollup.initial-delay-ms:60000}")
+    public void refreshAnalyticsRollups() {
+        if (!analyticsRollupEnabled) {
+            return;
+        }
+        try {
+            analyticsRollupService.getObject().refresh(AnalyticsRollupService.DEFAULT_MAX_CHUNKS);
+        } catch (Exception e) {
+            log.error("Scheduled analytics rollup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds newly finished instances to the process variants and directly-follows graphs.
+     */
+    @Scheduled(fixedDelayString = "${bpm.analytics.mining.interval-ms:900000}",
+            initialDelayString = "${bpm.analytics.mining.initial-delay-ms:120000}")
+    public void mineProcessVariants() {
+        if (!processMiningEnabled) {
+            return;
+        }
+        try {
+            processMiningService.getObject().mine(ProcessMiningService.DEFAULT_MAX_BATCHES);
+        } catch (Exception e) {
+            log.error("Scheduled process mining failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sends the SLA warnings and breaches that have fallen due. Only due deadline rows are read.
+     */
+    @Scheduled(fixedDelayString = "${bpm.sla.deadlines.interval-ms:60000}",
+            initialDelayString = "${bpm.sla.deadlines.initial-delay-ms:30000}")
+    public void fireSlaDeadlines() {
+        if (!slaDeadlinesEnabled) {
+            return;
+        }
+        try {
+            slaService.getObject().checkSLABreaches();
+        } catch (Exception e) {
+            log.error("Scheduled SLA deadline check failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${bpm.sla.deadlines.purge-cron:0 45 * * * *}")
+    public void purgeSlaDeadlines() {
+        if (!slaDeadlinesEnabled) {
+            return;
+        }
+        try {
+            slaService.getObject().purgeEndedDeadlines();
+        } catch (Exception e) {
+            log.error("Scheduled SLA deadline purge failed: {}", e.getMessage(), e);
+        }
+    }
+}
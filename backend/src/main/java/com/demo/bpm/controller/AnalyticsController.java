@@ -1,8 +1,18 @@
 package com.demo.bpm.controller;
 
+import com.demo.bpm.dto.AnalyticsFilter;
+import com.demo.bpm.dto.AnalyticsRollupReportDTO;
+import com.demo.bpm.dto.LiveAnalyticsDTO;
+import com.demo.bpm.dto.ProcessMiningReportDTO;
+import com.demo.bpm.dto.ProcessVariantsDTO;
+import com.demo.bpm.entity.AnalyticsRollup;
+import com.demo.bpm.service.AnalyticsRollupService;
 import com.demo.bpm.service.AnalyticsService;
+import com.demo.bpm.service.LiveAnalyticsService;
+import com.demo.bpm.service.ProcessMiningService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -13,26 +23,93 @@ import java.util.List;
 public class AnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final LiveAnalyticsService liveAnalyticsService;
+    private final ProcessMiningService processMiningService;
 
     @GetMapping("/process-duration")
-    public ResponseEntity<List<AnalyticsService.DurationBin>> getProcessDuration(
-            @RequestParam(required = false) String processDefinitionKey) {
-        return ResponseEntity.ok(analyticsService.getProcessDurationDistribution(processDefinitionKey));
+    public ResponseEntity<List<AnalyticsService.DurationBin>> getProcessDuration(AnalyticsFilter filter) {
+        return ResponseEntity.ok(analyticsService.getProcessDurationDistribution(filter));
     }
 
     @GetMapping("/user-performance")
-    public ResponseEntity<List<AnalyticsService.UserPerformanceMetric>> getUserPerformance() {
-        return ResponseEntity.ok(analyticsService.getUserPerformanceStats());
+    public ResponseEntity<List<AnalyticsService.UserPerformanceMetric>> getUserPerformance(AnalyticsFilter filter) {
+        return ResponseEntity.ok(analyticsService.getUserPerformanceStats(filter));
     }
 
     @GetMapping("/bottlenecks")
-    public ResponseEntity<List<AnalyticsService.BottleneckMetric>> getBottlenecks() {
-        return ResponseEntity.ok(analyticsService.getBottlenecks());
+    public ResponseEntity<List<AnalyticsService.BottleneckMetric>> getBottlenecks(AnalyticsFilter filter) {
+        return ResponseEntity.ok(analyticsService.getBottlenecks(filter));
+    }
+
+    @GetMapping("/percentiles")
+    public ResponseEntity<List<AnalyticsService.LatencyPercentiles>> getLatencyPercentiles(
+            @RequestParam(defaultValue = "TASK") AnalyticsRollup.Kind kind,
+            AnalyticsFilter filter) {
+        return ResponseEntity.ok(analyticsService.getLatencyPercentiles(kind, filter));
     }
 
     @GetMapping("/completion-trend")
     public ResponseEntity<List<AnalyticsService.TrendMetric>> getProcessCompletionTrend(
-            @RequestParam(defaultValue = "7") int days) {
-        return ResponseEntity.ok(analyticsService.getProcessCompletionTrend(days));
+            @RequestParam(defaultValue = "7") int days,
+            @RequestParam(defaultValue = "DAY") String granularity,
+            @RequestParam(required = false) String zone) {
+        return ResponseEntity.ok(analyticsService.getProcessCompletionTrend(days, granularity, zone));
+    }
+
+    /**
+     * Live throughput and work in progress from in-memory counters; nothing is queried.
+     */
+    @GetMapping("/live")
+    public ResponseEntity<LiveAnalyticsDTO> getLive() {
+        return ResponseEntity.ok(liveAnalyticsService.getLive());
+    }
+
+    /**
+     * Recount the live figures from the runtime tables, e.g. after engine work done by another node.
+     */
+    @PostMapping("/live/resync")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<LiveAnalyticsDTO> resyncLive() {
+        return ResponseEntity.ok(liveAnalyticsService.resync());
+    }
+
+    /**
+     * Roll up history the incremental job has not reached yet; with rebuild the rollups are first
+     * cleared and rebuilt from the start of history. Call again while the report is not complete.
+     */
+    @PostMapping("/rollups/backfill")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<AnalyticsRollupReportDTO> backfillRollups(
+            @RequestParam(defaultValue = "false") boolean rebuild,
+            @RequestParam(defaultValue = "" + AnalyticsRollupService.DEFAULT_MAX_CHUNKS) int maxChunks) {
+        return ResponseEntity.ok(rebuild
+                ? analyticsRollupService.rebuild(maxChunks)
+                : analyticsRollupService.refresh(maxChunks));
+    }
+
+    /**
+     * Paths finished instances of a definition took: the most frequent trace variants and the
+     * directly-follows graph, as far as the mining job has got.
+     */
+    @GetMapping("/variants")
+    public ResponseEntity<ProcessVariantsDTO> getVariants(
+            @RequestParam String processDefinitionKey,
+            @RequestParam(defaultValue = "" + ProcessMiningService.DEFAULT_VARIANT_LIMIT) int limit) {
+        return ResponseEntity.ok(processMiningService.getVariants(processDefinitionKey, limit));
+    }
+
+    /**
+     * Mine instances the incremental job has not reached yet; with rebuild the variants are first
+     * cleared and mined again from the start of history. Call again while the report is not complete.
+     */
+    @PostMapping("/variants/mine")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<ProcessMiningReportDTO> mineVariants(
+            @RequestParam(defaultValue = "false") boolean rebuild,
+            @RequestParam(defaultValue = "" + ProcessMiningService.DEFAULT_MAX_BATCHES) int maxBatches) {
+        return ResponseEntity.ok(rebuild
+                ? processMiningService.rebuild(maxBatches)
+                : processMiningService.mine(maxBatches));
     }
 }
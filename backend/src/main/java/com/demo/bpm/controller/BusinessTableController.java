@@ -1,12 +1,23 @@
 package com.demo.bpm.controller;
 
+import com.demo.bpm.dto.BulkImportReportDTO;
+import com.demo.bpm.dto.ColumnMappingCompactionReportDTO;
+import com.demo.bpm.dto.DocumentChangeDTO;
 import com.demo.bpm.dto.DocumentDTO;
+import com.demo.bpm.dto.GridAggregateDTO;
 import com.demo.bpm.dto.GridRowDTO;
 import com.demo.bpm.dto.ProcessConfigDTO;
 import com.demo.bpm.dto.ProcessInstanceDTO;
 import com.demo.bpm.entity.ProcessConfig;
+import com.demo.bpm.service.BulkImportService;
+import com.demo.bpm.service.BulkImportService.ImportFormat;
 import com.demo.bpm.service.BusinessTableService;
+import com.demo.bpm.service.ChangeFeedService;
+import com.demo.bpm.service.ColumnMappingCompactionService;
+import com.demo.bpm.service.GridQueryService;
 import com.demo.bpm.service.ProcessService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -14,10 +25,17 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -34,6 +52,11 @@ public class BusinessTableController {
 
     private final BusinessTableService businessTableService;
     private final ProcessService processService;
+    private final BulkImportService bulkImportService;
+    private final ChangeFeedService changeFeedService;
+    private final GridQueryService gridQueryService;
+    private final ColumnMappingCompactionService columnMappingCompactionService;
+    private final ObjectMapper objectMapper;
 
     // ==================== Document Endpoints ====================
 
@@ -200,6 +223,8 @@ public class BusinessTableController {
 
     /**
      * Get grid rows for a process instance, document type, and grid name.
+     * Optional {@code filter=field:op[:value]} and {@code sort=field[,asc|desc]} parameters
+     * (repeatable) filter and order rows by logical field name.
      */
     @GetMapping("/processes/{processInstanceId}/document-types/{type}/grids/{gridName}")
     public ResponseEntity<Page<GridRowDTO>> getGridRowsWithType(
@@ -207,10 +232,26 @@ public class BusinessTableController {
             @PathVariable String type,
             @PathVariable String gridName,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) List<String> filter,
+            @RequestParam(required = false) List<String> sort) {
 
-        Page<GridRowDTO> rows = businessTableService.getGridRows(processInstanceId, type, gridName, PageRequest.of(page, size));
-        return ResponseEntity.ok(rows);
+        return ResponseEntity.ok(findGridRows(processInstanceId, type, gridName, page, size, filter, sort));
+    }
+
+    /**
+     * Aggregate grid rows, e.g. {@code agg=sum:amount&agg=max:date&agg=count}.
+     * Accepts the same filters as the grid rows endpoint.
+     */
+    @GetMapping("/processes/{processInstanceId}/document-types/{type}/grids/{gridName}/aggregate")
+    public ResponseEntity<GridAggregateDTO> aggregateGridRows(
+            @PathVariable String processInstanceId,
+            @PathVariable String type,
+            @PathVariable String gridName,
+            @RequestParam(name = "agg", required = false) List<String> aggregates,
+            @RequestParam(required = false) List<String> filter) {
+
+        return ResponseEntity.ok(gridQueryService.aggregateGridRows(processInstanceId, type, gridName, aggregates, filter));
     }
 
     /**
@@ -235,6 +276,20 @@ public class BusinessTableController {
         return ResponseEntity.ok(rows);
     }
 
+    /**
+     * Delete a document with all of its grids.
+     */
+    @DeleteMapping("/processes/{processInstanceId}/document-types/{type}")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<Void> deleteDocument(
+            @PathVariable String processInstanceId,
+            @PathVariable String type) {
+
+        return businessTableService.deleteDocument(processInstanceId, type)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
     /**
      * Delete grid rows with document type.
      */
@@ -256,10 +311,11 @@ public class BusinessTableController {
             @PathVariable String processInstanceId,
             @PathVariable String gridName,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) List<String> filter,
+            @RequestParam(required = false) List<String> sort) {
 
-        Page<GridRowDTO> rows = businessTableService.getGridRows(processInstanceId, "main", gridName, PageRequest.of(page, size));
-        return ResponseEntity.ok(rows);
+        return ResponseEntity.ok(findGridRows(processInstanceId, "main", gridName, page, size, filter, sort));
     }
 
     /**
@@ -298,6 +354,124 @@ public class BusinessTableController {
         return ResponseEntity.ok().build();
     }
 
+    // ==================== Bulk Import Endpoints ====================
+
+    /**
+     * Stream an NDJSON or CSV upload into new process instances with their document and grid data.
+     * The body is read incrementally; send it as application/x-ndjson or text/csv.
+     * Mappings are given as repeated {@code map=source:target[:type]} parameters.
+     */
+    @PostMapping("/import/{processDefinitionKey}")
+    public ResponseEntity<BulkImportReportDTO> importRecords(
+            @PathVariable String processDefinitionKey,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String importId,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(defaultValue = "0") int batchSize,
+            @RequestParam(defaultValue = ",") char delimiter,
+            @RequestParam(defaultValue = "businessKey") String businessKeyField,
+            @RequestParam(name = "map", required = false) List<String> fieldMappings,
+            @RequestParam(defaultValue = "false") boolean mappedOnly,
+            HttpServletRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) throws IOException {
+
+        ImportFormat importFormat = resolveImportFormat(format, request.getContentType());
+
+        BulkImportService.ImportOptions options = BulkImportService.ImportOptions.builder()
+                .format(importFormat)
+                .importId(importId)
+                .documentType(documentType)
+                .batchSize(batchSize)
+                .delimiter(delimiter)
+                .businessKeyField(businessKeyField)
+                .fieldMappings(fieldMappings)
+                .mappedOnly(mappedOnly)
+                .build();
+
+        BulkImportReportDTO report = bulkImportService.importRecords(
+                processDefinitionKey, request.getInputStream(), options, userDetails.getUsername());
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Get progress of a running import, or the report of a recently finished one.
+     */
+    @GetMapping("/import/status/{importId}")
+    public ResponseEntity<BulkImportReportDTO> getImportStatus(@PathVariable String importId) {
+        return bulkImportService.getImport(importId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // ==================== Change Feed Endpoints ====================
+
+    /**
+     * Get documents changed after the given token, decoded to logical field names.
+     * Omit the token to start from the beginning; resume with the returned nextToken.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<DocumentChangeDTO.Page> getChanges(
+            @RequestParam(required = false) String token,
+            @RequestParam(required = false) String processDefinitionKey,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        return ResponseEntity.ok(changeFeedService.getChanges(token, processDefinitionKey, documentType, limit));
+    }
+
+    /**
+     * Stream changed documents as NDJSON, one change per line, until the feed is caught up
+     * or maxRecords is reached. Every line carries its own resume token.
+     */
+    @GetMapping(value = "/changes/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamChanges(
+            @RequestParam(required = false) String token,
+            @RequestParam(required = false) String processDefinitionKey,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(defaultValue = "10000") long maxRecords) {
+
+        StreamingResponseBody body = (OutputStream out) -> {
+            String cursor = token;
+            long written = 0;
+            while (written < maxRecords) {
+                int pageSize = (int) Math.min(ChangeFeedService.MAX_PAGE_SIZE, maxRecords - written);
+                DocumentChangeDTO.Page page = changeFeedService.getChanges(
+                        cursor, processDefinitionKey, documentType, pageSize);
+                for (DocumentChangeDTO change : page.getChanges()) {
+                    out.write(objectMapper.writeValueAsBytes(change));
+                    out.write('\n');
+                }
+                out.flush();
+                written += page.getChanges().size();
+                cursor = page.getNextToken();
+                if (!page.isHasMore()) {
+                    break;
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    // ==================== Column Mapping Maintenance ====================
+
+    /**
+     * Remove column mappings no form references any more and, optionally, pack the remaining
+     * fields into the lowest free slots. Defaults to a dry run.
+     */
+    @PostMapping("/column-mappings/compact")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<ColumnMappingCompactionReportDTO> compactColumnMappings(
+            @RequestParam(required = false) String processDefinitionKey,
+            @RequestParam(defaultValue = "false") boolean relocate,
+            @RequestParam(defaultValue = "true") boolean dryRun,
+            @RequestParam(defaultValue = "" + ColumnMappingCompactionService.DEFAULT_MAX_STEPS) int maxSteps) {
+
+        return ResponseEntity.ok(columnMappingCompactionService.compact(processDefinitionKey, relocate, dryRun, maxSteps));
+    }
+
     // ==================== Process Config Endpoints ====================
 
     /**
@@ -322,19 +496,40 @@ public class BusinessTableController {
         ProcessConfig config = businessTableService.updateProcessConfig(
                 processDefinitionKey,
                 request.getPersistOnTaskComplete(),
-                request.getPersistOnProcessComplete()
+                request.getPersistOnProcessComplete(),
+                request.getHistoryRetentionDays()
         );
         return ResponseEntity.ok(convertToDTO(config));
     }
 
     // ==================== Helper Methods ====================
 
+    private Page<GridRowDTO> findGridRows(String processInstanceId, String type, String gridName,
+                                          int page, int size, List<String> filter, List<String> sort) {
+        if ((filter == null || filter.isEmpty()) && (sort == null || sort.isEmpty())) {
+            return businessTableService.getGridRows(processInstanceId, type, gridName, PageRequest.of(page, size));
+        }
+        return gridQueryService.queryGridRows(processInstanceId, type, gridName, filter, sort, PageRequest.of(page, size));
+    }
+
+    private ImportFormat resolveImportFormat(String format, String contentType) {
+        if (format != null) {
+            try {
+                return ImportFormat.valueOf(format.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported import format: " + format);
+            }
+        }
+        return contentType != null && contentType.contains("csv") ? ImportFormat.CSV : ImportFormat.NDJSON;
+    }
+
     private ProcessConfigDTO convertToDTO(ProcessConfig config) {
         return ProcessConfigDTO.builder()
                 .id(config.getId())
                 .processDefinitionKey(config.getProcessDefinitionKey())
                 .persistOnTaskComplete(config.getPersistOnTaskComplete())
                 .persistOnProcessComplete(config.getPersistOnProcessComplete())
+                .historyRetentionDays(config.getHistoryRetentionDays())
                 .build();
     }
 
@@ -365,6 +560,7 @@ public class BusinessTableController {
     public static class UpdateProcessConfigRequest {
         private Boolean persistOnTaskComplete;
         private Boolean persistOnProcessComplete;
+        private Integer historyRetentionDays;
     }
 
     @lombok.Data
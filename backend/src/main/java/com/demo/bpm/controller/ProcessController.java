@@ -1,15 +1,28 @@
 package com.demo.bpm.controller;
 
+import com.demo.bpm.dto.ActivityHeatmapDTO;
+import com.demo.bpm.dto.BulkStartResultDTO;
 import com.demo.bpm.dto.FormDefinitionDTO;
+import com.demo.bpm.dto.HistoryRetentionReportDTO;
+import com.demo.bpm.dto.InitiatorBackfillReportDTO;
 import com.demo.bpm.dto.ProcessDTO;
 import com.demo.bpm.dto.ProcessInstanceDTO;
+import com.demo.bpm.dto.ProcessStartQueueStatsDTO;
+import com.demo.bpm.dto.ProcessStartStatusDTO;
 import com.demo.bpm.dto.StartProcessRequest;
 import com.demo.bpm.dto.WorkflowHistoryDTO;
 import com.demo.bpm.exception.ResourceNotFoundException;
+import com.demo.bpm.service.ActivityHeatmapService;
+import com.demo.bpm.service.BulkImportService;
+import com.demo.bpm.service.BulkImportService.ImportFormat;
 import com.demo.bpm.service.ExportService;
 import com.demo.bpm.service.FormDefinitionService;
+import com.demo.bpm.service.HistoryRetentionService;
+import com.demo.bpm.service.InitiatorBackfillService;
 import com.demo.bpm.service.ProcessService;
+import com.demo.bpm.service.ProcessStartQueueService;
 import com.demo.bpm.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import io.swagger.v3.oas.annotations.Operation;
@@ -24,12 +37,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +60,11 @@ public class ProcessController {
     private final UserService userService;
     private final FormDefinitionService formDefinitionService;
     private final ExportService exportService;
+    private final InitiatorBackfillService initiatorBackfillService;
+    private final BulkImportService bulkImportService;
+    private final ProcessStartQueueService processStartQueueService;
+    private final HistoryRetentionService historyRetentionService;
+    private final ActivityHeatmapService activityHeatmapService;
 
     @Operation(summary = "Get available processes for starting")
     @ApiResponses(value = {
@@ -122,6 +143,108 @@ public class ProcessController {
         }
     }
 
+    @Operation(summary = "Queue a process start",
+            description = "Stores the start request and returns at once with a tracking id; the instance is "
+                    + "started by a background worker. Poll the status endpoint for the outcome.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Start request queued",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ProcessStartStatusDTO.class)) }),
+            @ApiResponse(responseCode = "404", description = "No process definition has this key",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Queue is full, retry after the Retry-After delay",
+                    content = @Content) })
+    @PostMapping("/{processKey}/start-async")
+    public ResponseEntity<ProcessStartStatusDTO> startProcessAsync(
+            @Parameter(description = "Key of the process to start") @PathVariable String processKey,
+            @RequestBody(required = false) StartProcessRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String businessKey = request != null ? request.getBusinessKey() : null;
+        Map<String, Object> variables = new java.util.HashMap<>();
+        if (request != null && request.getVariables() != null) {
+            variables.putAll(request.getVariables());
+        }
+        var userInfo = userService.getUserInfo(userDetails);
+        variables.put("employeeId", userDetails.getUsername());
+        variables.put("employeeName", userInfo.getDisplayName());
+
+        ProcessStartStatusDTO status = processStartQueueService.enqueue(
+                processKey, businessKey, variables, userDetails.getUsername());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(java.net.URI.create("/api/processes/async-starts/" + status.getTrackingId()))
+                .body(status);
+    }
+
+    @Operation(summary = "Get the status of a queued process start",
+            description = "Only the user who queued the start and admins can read its status.")
+    @GetMapping("/async-starts/{trackingId}")
+    public ResponseEntity<ProcessStartStatusDTO> getAsyncStartStatus(
+            @PathVariable String trackingId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        boolean isAdmin = userDetails.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        return ResponseEntity.ok(processStartQueueService.getStatus(trackingId, userDetails.getUsername(), isAdmin));
+    }
+
+    @Operation(summary = "Get queue depth and worker statistics of the asynchronous start queue")
+    @GetMapping("/async-starts/stats")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<ProcessStartQueueStatsDTO> getAsyncStartStats() {
+        return ResponseEntity.ok(processStartQueueService.getStats());
+    }
+
+    @Operation(summary = "Remove expired history of finished process instances",
+            description = "Deletes, oldest first and in small batches, the history of instances that finished "
+                    + "longer ago than the retention period of their process definition. Runs for a single "
+                    + "definition when processDefinitionKey is given.")
+    @PostMapping("/instances/history/purge")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<HistoryRetentionReportDTO> purgeHistory(
+            @RequestParam(required = false) String processDefinitionKey,
+            @RequestParam(defaultValue = "" + HistoryRetentionService.DEFAULT_BATCH_SIZE) int batchSize,
+            @RequestParam(defaultValue = "" + HistoryRetentionService.DEFAULT_MAX_BATCHES) int maxBatches,
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        return ResponseEntity.ok(historyRetentionService.purge(processDefinitionKey, batchSize, maxBatches, dryRun));
+    }
+
+    @Operation(summary = "Start many process instances at once",
+            description = "Takes a JSON array or NDJSON stream of {businessKey, variables} records. Instances are "
+                    + "started in chunked transactions; only their ids and business keys are returned.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Bulk start finished",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BulkStartResultDTO.class)) }),
+            @ApiResponse(responseCode = "404", description = "Process definition not found",
+                    content = @Content) })
+    @PostMapping(value = "/{processKey}/start/bulk",
+            consumes = { "application/json", "application/x-ndjson", "text/plain" })
+    public ResponseEntity<BulkStartResultDTO> startProcesses(
+            @Parameter(description = "Key of the process to start") @PathVariable String processKey,
+            @RequestParam(required = false) String importId,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(defaultValue = "0") int batchSize,
+            HttpServletRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) throws IOException {
+
+        // Same user info the single start adds to its variables
+        var userInfo = userService.getUserInfo(userDetails);
+        Map<String, Object> userVariables = new java.util.HashMap<>();
+        userVariables.put("employeeId", userDetails.getUsername());
+        userVariables.put("employeeName", userInfo.getDisplayName());
+
+        BulkImportService.ImportOptions options = BulkImportService.ImportOptions.builder()
+                .format(request.getContentType() != null && request.getContentType().startsWith("application/json")
+                        ? ImportFormat.JSON : ImportFormat.NDJSON)
+                .importId(importId)
+                .documentType(documentType)
+                .batchSize(batchSize)
+                .extraVariables(userVariables)
+                .build();
+
+        return ResponseEntity.ok(bulkImportService.startInstances(
+                processKey, request.getInputStream(), options, userDetails.getUsername()));
+    }
+
     @Operation(summary = "Get a process instance by ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found the process instance",
@@ -187,6 +310,19 @@ public class ProcessController {
         return ResponseEntity.ok(processes);
     }
 
+    @Operation(summary = "Fill the engine start user of older process instances from their _startedBy variable")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Backfill run finished",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = InitiatorBackfillReportDTO.class)) }) })
+    @PostMapping("/instances/backfill-initiators")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<InitiatorBackfillReportDTO> backfillInitiators(
+            @RequestParam(defaultValue = "500") int batchSize,
+            @RequestParam(defaultValue = "100") int maxBatches) {
+        return ResponseEntity.ok(initiatorBackfillService.backfill(batchSize, maxBatches));
+    }
+
     @Operation(summary = "Get all users")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found the users",
@@ -243,6 +379,15 @@ public class ProcessController {
         }
     }
 
+    @Operation(summary = "Get waiting tokens per activity of a process definition",
+            description = "Number of tokens, oldest arrival and average age per BPMN activity id, for "
+                    + "overlaying on the diagram. Figures are cached for a few seconds.")
+    @GetMapping("/{processDefinitionId}/heatmap")
+    public ResponseEntity<ActivityHeatmapDTO> getActivityHeatmap(
+            @Parameter(description = "ID of the process definition") @PathVariable String processDefinitionId) {
+        return ResponseEntity.ok(activityHeatmapService.getHeatmap(processDefinitionId));
+    }
+
     @Operation(summary = "Delete a process definition")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Process definition deleted successfully",
@@ -1,9 +1,12 @@
 package com.demo.bpm.controller;
 
 import com.demo.bpm.dto.*;
+import com.demo.bpm.service.AuditEventMigrationService;
 import com.demo.bpm.service.DashboardService;
+import com.demo.bpm.service.ProcessSearchService;
 import com.demo.bpm.service.WorkflowHistoryService;
 import com.demo.bpm.service.WorkflowService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import jakarta.validation.Valid;
@@ -11,11 +14,15 @@ import jakarta.validation.constraints.NotBlank;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +36,9 @@ public class WorkflowController {
     private final WorkflowService workflowService;
     private final WorkflowHistoryService workflowHistoryService;
     private final DashboardService dashboardService;
+    private final ProcessSearchService processSearchService;
+    private final AuditEventMigrationService auditEventMigrationService;
+    private final ObjectMapper objectMapper;
 
     // ==================== Dashboard ====================
 
@@ -44,18 +54,83 @@ public class WorkflowController {
         return ResponseEntity.ok(dashboard);
     }
 
+    /**
+     * Recompute the dashboard counters from the engine tables, e.g. after engine work done by
+     * another node.
+     */
+    @PostMapping("/dashboard/counters/rebuild")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<DashboardCountersDTO> rebuildDashboardCounters() {
+        return ResponseEntity.ok(dashboardService.rebuildCounters());
+    }
+
+    /**
+     * Copy the approval, escalation and handoff history still held in process variables into the
+     * audit event store. Records imported earlier are skipped, so this can be re-run.
+     */
+    @PostMapping("/audit/import-legacy")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<AuditImportReportDTO> importLegacyAuditHistory(
+            @RequestParam(defaultValue = "" + AuditEventMigrationService.DEFAULT_BATCH_SIZE) int batchSize) {
+        return ResponseEntity.ok(auditEventMigrationService.importLegacyHistory(batchSize));
+    }
+
     // ==================== Process History ====================
 
     @GetMapping("/processes")
-    public ResponseEntity<List<WorkflowHistoryDTO>> getAllProcesses(
+    public ResponseEntity<List<WorkflowSummaryDTO>> getAllProcesses(
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String processType,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
-        List<WorkflowHistoryDTO> processes = workflowHistoryService.getAllProcesses(status, processType, page, size);
+        List<WorkflowSummaryDTO> processes = workflowHistoryService.getAllProcesses(status, processType, page, size);
         return ResponseEntity.ok(processes);
     }
 
+    /**
+     * Search running and finished processes, newest first. Filters are bound from the query
+     * string (status, processDefinitionKey, initiator, businessKeyPrefix, startedFrom/To,
+     * endedFrom/To). Omit the token for the first page; pass the returned nextToken to continue.
+     */
+    @GetMapping("/processes/search")
+    public ResponseEntity<ProcessSearchPageDTO> searchProcesses(
+            ProcessSearchCriteria criteria,
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(processSearchService.search(criteria, token, limit));
+    }
+
+    /**
+     * Stream every process matching the search as NDJSON, one summary per line, up to maxRecords.
+     */
+    @GetMapping(value = "/processes/search/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamProcesses(
+            ProcessSearchCriteria criteria,
+            @RequestParam(defaultValue = "10000") long maxRecords) {
+        StreamingResponseBody body = (OutputStream out) -> {
+            String cursor = null;
+            long written = 0;
+            while (written < maxRecords) {
+                int pageSize = (int) Math.min(ProcessSearchService.MAX_PAGE_SIZE, maxRecords - written);
+                ProcessSearchPageDTO page = processSearchService.search(criteria, cursor, pageSize);
+                for (WorkflowSummaryDTO process : page.getProcesses()) {
+                    out.write(objectMapper.writeValueAsBytes(process));
+                    out.write('\n');
+                }
+                out.flush();
+                written += page.getProcesses().size();
+                cursor = page.getNextToken();
+                if (!page.isHasMore()) {
+                    break;
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     @GetMapping("/processes/{processInstanceId}")
     public ResponseEntity<WorkflowHistoryDTO> getProcessHistory(@PathVariable String processInstanceId) {
         WorkflowHistoryDTO history = workflowHistoryService.getWorkflowHistory(processInstanceId);
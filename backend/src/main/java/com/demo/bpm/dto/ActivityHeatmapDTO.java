@@ -0,0 +1,39 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityHeatmapDTO {
+
+    private String processDefinitionId;
+    private String processDefinitionKey;
+    private long totalTokens;
+    // Activities with at least one waiting token, most tokens first
+    private List<ActivityHeat> activities;
+    // When the figures were read; cached figures can be up to the cache TTL old
+    private LocalDateTime asOf;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ActivityHeat {
+        // BPMN element id, matching the diagram
+        private String activityId;
+        private String activityName;
+        private long tokens;
+        private long unassignedTasks;
+        private LocalDateTime oldestSince;
+        private long oldestAgeSeconds;
+        private long avgAgeSeconds;
+    }
+}
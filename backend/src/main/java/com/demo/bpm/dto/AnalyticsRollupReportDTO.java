@@ -0,0 +1,25 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsRollupReportDTO {
+    // The rollups were cleared and rebuilt from the start of history
+    private boolean rebuilt;
+    private long historyRowsRead;
+    private long bucketsWritten;
+    private int chunks;
+    // Tasks and processes that ended at or before this are in the rollups
+    private LocalDateTime watermark;
+    // False when the chunk budget ran out before the rollups caught up
+    private boolean complete;
+    private long elapsedMs;
+}
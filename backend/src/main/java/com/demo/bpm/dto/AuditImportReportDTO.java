@@ -0,0 +1,19 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditImportReportDTO {
+
+    private int variablesScanned;
+    private int eventsImported;
+    // Records already present in the audit store, e.g. from an earlier run
+    private int eventsSkipped;
+    private long elapsedMs;
+}
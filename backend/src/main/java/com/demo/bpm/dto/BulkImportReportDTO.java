@@ -0,0 +1,50 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportReportDTO {
+
+    private String importId;
+    private String processDefinitionKey;
+    private String documentType;
+    private String format;
+    private String status;
+    private long recordsRead;
+    private long recordsImported;
+    private long recordsFailed;
+    private long batchesCommitted;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long elapsedMs;
+    private double recordsPerSecond;
+    private String failureReason;
+
+    @Builder.Default
+    private List<RecordError> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+
+    // The first instances started; all of them are only in the bulk start response
+    @Builder.Default
+    private List<BulkStartResultDTO.StartedInstance> sampleInstances = new ArrayList<>();
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecordError {
+        private long lineNumber;
+        private String businessKey;
+        private String message;
+    }
+}
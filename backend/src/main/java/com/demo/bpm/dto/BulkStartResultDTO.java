@@ -0,0 +1,42 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStartResultDTO {
+
+    private String importId;
+    private String processDefinitionKey;
+    private String status;
+    private long requested;
+    private long started;
+    private long failed;
+    private long elapsedMs;
+    private double instancesPerSecond;
+    private String failureReason;
+
+    @Builder.Default
+    private List<StartedInstance> instances = new ArrayList<>();
+
+    @Builder.Default
+    private List<BulkImportReportDTO.RecordError> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StartedInstance {
+        private String processInstanceId;
+        private String businessKey;
+    }
+}
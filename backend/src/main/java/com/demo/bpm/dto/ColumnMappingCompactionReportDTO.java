@@ -0,0 +1,31 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnMappingCompactionReportDTO {
+
+    private boolean dryRun;
+    private boolean relocate;
+    private int processDefinitionsScanned;
+    private int mappingsScanned;
+    private int mappingsRemoved;
+    private int fieldsRelocated;
+    // Relocations left over because the step budget ran out; run again to continue
+    private int relocationsPending;
+    private long elapsedMs;
+
+    @Builder.Default
+    private List<String> removed = new ArrayList<>();
+    @Builder.Default
+    private List<String> relocated = new ArrayList<>();
+}
@@ -0,0 +1,24 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardCountersDTO {
+
+    private long totalActive;
+    private long totalCompleted;
+    private long totalPending;
+    private long pendingEscalations;
+    // Number of users with at least one running process they started
+    private int activeInitiators;
+    private LocalDateTime rebuiltAt;
+    private long rebuildMs;
+}
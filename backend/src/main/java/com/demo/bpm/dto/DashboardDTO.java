@@ -6,6 +6,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.domain.Page;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -23,13 +25,17 @@ public class DashboardDTO {
     private Map<String, Long> byStatus;
 
     // Recent Activity
-    private Page<WorkflowHistoryDTO> recentCompleted;
-    private Page<WorkflowHistoryDTO> activeProcesses;
-    private Page<WorkflowHistoryDTO> myPendingApprovals;
+    private Page<WorkflowSummaryDTO> recentCompleted;
+    private Page<WorkflowSummaryDTO> activeProcesses;
+    private Page<WorkflowSummaryDTO> myPendingApprovals;
 
     // Escalation Metrics
     private EscalationMetrics escalationMetrics;
 
+    // Sections that timed out or failed and hold placeholder data
+    @Builder.Default
+    private List<String> degradedSections = new ArrayList<>();
+
     @Data
     @Builder
     @NoArgsConstructor
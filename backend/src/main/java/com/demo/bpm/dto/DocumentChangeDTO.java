@@ -0,0 +1,40 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One entry of the business data change feed: the current state of a changed document,
+ * including all of its grids, or a tombstone for a deleted one, and the token to resume from
+ * after it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentChangeDTO {
+
+    private String token;
+    private Long documentId;
+    private String processInstanceId;
+    private String documentType;
+    // Tombstone: the document was deleted and document is null
+    private boolean deleted;
+    private DocumentDTO document;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Page {
+        @Builder.Default
+        private List<DocumentChangeDTO> changes = new ArrayList<>();
+        private String nextToken;
+        private boolean hasMore;
+    }
+}
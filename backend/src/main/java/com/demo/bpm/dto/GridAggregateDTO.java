@@ -0,0 +1,23 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GridAggregateDTO {
+
+    private String gridName;
+    private long rowCount;
+
+    // Aggregate results keyed by expression, e.g. "sum(amount)"
+    @Builder.Default
+    private Map<String, Object> values = new LinkedHashMap<>();
+}
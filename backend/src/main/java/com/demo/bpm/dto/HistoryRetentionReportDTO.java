@@ -0,0 +1,47 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryRetentionReportDTO {
+
+    private boolean dryRun;
+    private long instancesDeleted;
+    // Deleted along with the instances above, which started them through call activities
+    private long subProcessInstancesDeleted;
+    // ACT_HI_* rows belonging to the deleted instances, counted just before deletion
+    private long rowsRemoved;
+    private int batches;
+    // False when the batch budget ran out before all expired history was removed
+    private boolean complete;
+    private long elapsedMs;
+
+    @Builder.Default
+    private List<DefinitionResult> definitions = new ArrayList<>();
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DefinitionResult {
+        private String processDefinitionKey;
+        private int retentionDays;
+        private LocalDateTime cutoff;
+        // Expired instances found, not counting their sub-process instances; in a dry run nothing is deleted
+        private long instancesEligible;
+        private long instancesDeleted;
+        private long subProcessInstancesDeleted;
+        private long rowsRemoved;
+        private String exportFile;
+    }
+}
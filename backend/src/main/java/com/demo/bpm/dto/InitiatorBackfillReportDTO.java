@@ -0,0 +1,20 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InitiatorBackfillReportDTO {
+
+    private int runtimeUpdated;
+    private int historyUpdated;
+    private int batches;
+    // False when the batch budget ran out before every instance was filled; run again to continue
+    private boolean complete;
+    private long elapsedMs;
+}
@@ -0,0 +1,65 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveAnalyticsDTO {
+
+    // Rates are averaged over this window
+    private long windowSeconds;
+    private double startsPerMinute;
+    private double completionsPerMinute;
+    private long processesInProgress;
+    private long openTasks;
+    private WaitingTask oldestTask;
+    private List<DefinitionLive> definitions;
+    private LocalDateTime resyncedAt;
+    private LocalDateTime asOf;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DefinitionLive {
+        private String processDefinitionKey;
+        private long inProgress;
+        // Since this node started
+        private long started;
+        private long completed;
+        private double startsPerMinute;
+        private double completionsPerMinute;
+        private List<ActivityLive> activities;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ActivityLive {
+        private String taskDefinitionKey;
+        private String taskName;
+        private long openTasks;
+        private WaitingTask oldestTask;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class WaitingTask {
+        private String taskId;
+        private String processDefinitionKey;
+        private String taskDefinitionKey;
+        private LocalDateTime createdAt;
+        private long ageSeconds;
+    }
+}
@@ -15,4 +15,5 @@ public class ProcessConfigDTO {
     private String processDefinitionKey;
     private Boolean persistOnTaskComplete;
     private Boolean persistOnProcessComplete;
+    private Integer historyRetentionDays;
 }
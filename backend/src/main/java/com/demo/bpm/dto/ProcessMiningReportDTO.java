@@ -0,0 +1,25 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessMiningReportDTO {
+    // The variants and transitions were cleared and mined again from the start of history
+    private boolean rebuilt;
+    private long instancesMined;
+    private long activitiesRead;
+    private int batches;
+    // Instances that ended at or before this are in the summary
+    private LocalDateTime watermark;
+    // False when the batch budget ran out before the job caught up
+    private boolean complete;
+    private long elapsedMs;
+}
@@ -0,0 +1,23 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a process search, newest first. Pass nextToken back to get the following page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessSearchPageDTO {
+    @Builder.Default
+    private List<WorkflowSummaryDTO> processes = new ArrayList<>();
+    private String nextToken;
+    private boolean hasMore;
+}
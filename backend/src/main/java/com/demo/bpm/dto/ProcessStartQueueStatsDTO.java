@@ -0,0 +1,25 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessStartQueueStatsDTO {
+
+    private boolean enabled;
+    private int concurrency;
+    private long capacity;
+    private long queued;
+    private int inFlight;
+    // Counted since this node started
+    private long accepted;
+    private long rejected;
+    private long started;
+    private long failed;
+    private long requeued;
+}
@@ -0,0 +1,26 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessStartStatusDTO {
+
+    private String trackingId;
+    private String processDefinitionKey;
+    private String businessKey;
+    private String status;
+    private String processInstanceId;
+    private String errorMessage;
+    private int attempts;
+    private String requestedBy;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,58 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessVariantsDTO {
+
+    private String processDefinitionKey;
+    // Finished instances mined so far, in every variant
+    private long instances;
+    private long variantCount;
+    // Most frequent variants first, up to the requested limit
+    private List<Variant> variants;
+    // Every edge of the directly-follows graph
+    private List<Transition> transitions;
+    // Activity id to name, from the latest version of the definition
+    private Map<String, String> activityNames;
+    // Instances that ended at or before this are included
+    private LocalDateTime minedUpTo;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Variant {
+        private String variantHash;
+        // Activity ids in order of completion
+        private List<String> activities;
+        private long instances;
+        // Fraction of all mined instances of the definition
+        private double share;
+        private double avgDurationHours;
+        private LocalDateTime firstSeen;
+        private LocalDateTime lastSeen;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Transition {
+        private String sourceActivity;
+        private String targetActivity;
+        private long count;
+        // Average time from completing the source to completing the target
+        private double avgTransitionHours;
+    }
+}
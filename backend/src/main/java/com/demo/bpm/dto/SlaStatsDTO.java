@@ -7,6 +7,7 @@ import java.util.List;
 @Data
 @Builder
 public class SlaStatsDTO {
+    // Running tasks with an SLA; kept at the top level for existing clients, same as tasks below
     private long totalProcesses;
     private long onTrack;
     private long atRisk;
@@ -14,10 +15,33 @@ public class SlaStatsDTO {
     private double avgCompletionPercentage;
     private List<StatusCount> processesByStatus;
 
+    private TargetStats tasks;
+    private TargetStats processes;
+
     @Data
     @Builder
     public static class StatusCount {
         private String status;
         private long count;
     }
+
+    /**
+     * SLAs of one target type: running targets by status, and the outcomes of those that ended
+     * within the outcome window.
+     */
+    @Data
+    @Builder
+    public static class TargetStats {
+        private long active;
+        private long onTrack;
+        private long atRisk;
+        private long breached;
+        // Average share of the SLA used so far by running targets
+        private double avgCompletionPercentage;
+        private long met;
+        private long missed;
+        // Average time to spare at the end, negative when late; null without outcomes
+        private Double avgMarginMinutes;
+        private int outcomeWindowDays;
+    }
 }
@@ -0,0 +1,34 @@
+package com.demo.bpm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * List-row view of a process instance. The full history lives in {@link WorkflowHistoryDTO}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowSummaryDTO {
+    private String processInstanceId;
+    private String processDefinitionId;
+    private String processDefinitionKey;
+    private String processDefinitionName;
+    private String businessKey;
+    private String status; // ACTIVE, COMPLETED, SUSPENDED
+    private String initiatorId;
+    private String initiatorName;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Long durationInMillis;
+    private String currentTaskId;
+    private String currentTaskName;
+    private String currentAssignee;
+    private String currentLevel;
+    private Integer escalationCount;
+}
@@ -0,0 +1,117 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Finished tasks, activities or processes of one definition (and for tasks one task definition
+ * and assignee, for activities one activity) whose end time falls in one bucket. Maintained by AnalyticsRollupService, which
+ * replaces a row with one computed again from history whenever it reads the bucket's hours.
+ */
+@MappedSuperclass
+@Data
+@NoArgsConstructor
+public abstract class AnalyticsRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 10)
+    @Enumerated(EnumType.STRING)
+    private Kind kind;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "process_definition_key", nullable = false)
+    private String processDefinitionKey;
+
+    // Task definition or activity id; empty for process rows
+    @Column(name = "task_definition_key", nullable = false)
+    private String taskDefinitionKey;
+
+    // Empty for process and activity rows and unassigned tasks
+    @Column(nullable = false)
+    private String assignee;
+
+    @Column(name = "task_name")
+    private String taskName;
+
+    @Column(name = "item_count", nullable = false)
+    private long itemCount;
+
+    @Column(name = "duration_sum_ms", nullable = false)
+    private long durationSumMs;
+
+    @Column(name = "duration_min_ms", nullable = false)
+    private long durationMinMs;
+
+    @Column(name = "duration_max_ms", nullable = false)
+    private long durationMaxMs;
+
+    // Items that took longer than the SLA of their task or process definition
+    @Column(name = "breach_count", nullable = false)
+    private long breachCount;
+
+    // Duration distribution: < 1h, 1h - 4h, 4h - 24h, 1d - 3d, > 3d
+    @Column(name = "bin_under_1h", nullable = false)
+    private long binUnder1h;
+
+    @Column(name = "bin_under_4h", nullable = false)
+    private long binUnder4h;
+
+    @Column(name = "bin_under_24h", nullable = false)
+    private long binUnder24h;
+
+    @Column(name = "bin_under_3d", nullable = false)
+    private long binUnder3d;
+
+    @Column(name = "bin_over_3d", nullable = false)
+    private long binOver3d;
+
+    // Shortest and longest duration in each bin; null while the bin is empty
+    @Column(name = "bin_under_1h_min_ms")
+    private Long binUnder1hMinMs;
+
+    @Column(name = "bin_under_1h_max_ms")
+    private Long binUnder1hMaxMs;
+
+    @Column(name = "bin_under_4h_min_ms")
+    private Long binUnder4hMinMs;
+
+    @Column(name = "bin_under_4h_max_ms")
+    private Long binUnder4hMaxMs;
+
+    @Column(name = "bin_under_24h_min_ms")
+    private Long binUnder24hMinMs;
+
+    @Column(name = "bin_under_24h_max_ms")
+    private Long binUnder24hMaxMs;
+
+    @Column(name = "bin_under_3d_min_ms")
+    private Long binUnder3dMinMs;
+
+    @Column(name = "bin_under_3d_max_ms")
+    private Long binUnder3dMaxMs;
+
+    @Column(name = "bin_over_3d_min_ms")
+    private Long binOver3dMinMs;
+
+    @Column(name = "bin_over_3d_max_ms")
+    private Long binOver3dMaxMs;
+
+    // LatencyHistogram of the durations, merged across buckets for percentiles
+    @Column(name = "duration_histogram", columnDefinition = "TEXT")
+    private String durationHistogram;
+
+    public enum Kind {
+        TASK,
+        // Every activity of ACT_HI_ACTINST except sequence flows, user tasks included
+        ACTIVITY,
+        PROCESS
+    }
+}
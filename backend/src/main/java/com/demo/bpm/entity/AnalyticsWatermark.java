@@ -0,0 +1,36 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of an incremental analytics job: everything that ended at or before the watermark has
+ * been processed.
+ */
+@Entity
+@Table(name = "analytics_watermark")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AnalyticsWatermark {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDateTime watermark;
+
+    // Id of the last item processed at the watermark, for jobs that page through ties in end time
+    @Column(name = "cursor_id", length = 64)
+    private String cursorId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,27 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last sequence number handed out for a change log. Writers increment it just before commit, so
+ * the row lock orders their commits.
+ */
+@Entity
+@Table(name = "change_feed_sequence")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChangeFeedSequence {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+}
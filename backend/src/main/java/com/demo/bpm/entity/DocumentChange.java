@@ -0,0 +1,45 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the business document change log behind the change feed. seq is handed out in
+ * commit order (see DocumentChangeRecorder), so a reader that has seen seq N has seen every change
+ * that committed before it.
+ */
+@Entity
+@Table(name = "document_change")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentChange {
+
+    @Id
+    private Long seq;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "process_instance_id", nullable = false, length = 64)
+    private String processInstanceId;
+
+    @Column(name = "process_definition_key")
+    private String processDefinitionKey;
+
+    @Column(name = "document_type", nullable = false, length = 100)
+    private String documentType;
+
+    // The document was deleted; the feed emits a tombstone
+    @Column(nullable = false)
+    private boolean deleted;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
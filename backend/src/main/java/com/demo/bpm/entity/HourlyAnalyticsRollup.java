@@ -0,0 +1,20 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Entity
+@Table(name = "analytics_rollup_hourly",
+       uniqueConstraints = @UniqueConstraint(name = "uk_analytics_rollup_hourly",
+               columnNames = {"kind", "bucket_start", "process_definition_key", "task_definition_key", "assignee"}),
+       indexes = {
+           @Index(name = "idx_analytics_rollup_hourly_bucket", columnList = "kind, bucket_start"),
+           @Index(name = "idx_analytics_rollup_hourly_definition", columnList = "process_definition_key, kind, bucket_start")
+       })
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class HourlyAnalyticsRollup extends AnalyticsRollup {
+}
@@ -34,6 +34,10 @@ public class ProcessConfig {
     @Column(name = "document_type", length = 100)
     private String documentType;
 
+    // Days the history of finished instances is kept; null falls back to bpm.history-retention.default-days
+    @Column(name = "history_retention_days")
+    private Integer historyRetentionDays;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -0,0 +1,31 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A finished process instance already folded into the process variants and transitions. Kept by
+ * ProcessMiningService only while the instance ended inside the overlap window it re-reads, so
+ * that re-read does not count the instance twice.
+ */
+@Entity
+@Table(name = "process_mining_instance",
+       indexes = @Index(name = "idx_process_mining_instance_end", columnList = "end_time"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProcessMiningInstance {
+
+    @Id
+    @Column(name = "process_instance_id", length = 64)
+    private String processInstanceId;
+
+    @Column(name = "end_time", nullable = false)
+    private LocalDateTime endTime;
+}
@@ -0,0 +1,73 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A process start accepted for asynchronous execution (see ProcessStartQueueService). The id is
+ * the tracking id handed back to the caller.
+ */
+@Entity
+@Table(name = "process_start_request",
+       indexes = {
+           @Index(name = "idx_start_request_status", columnList = "status, created_at"),
+           @Index(name = "idx_start_request_user", columnList = "requested_by, created_at")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProcessStartRequest {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Column(name = "process_definition_key", nullable = false, length = 255)
+    private String processDefinitionKey;
+
+    @Column(name = "business_key", length = 255)
+    private String businessKey;
+
+    // Start variables as JSON
+    @Column(name = "variables", columnDefinition = "TEXT")
+    private String variables;
+
+    @Column(name = "requested_by", nullable = false, length = 255)
+    private String requestedBy;
+
+    @Column(name = "status", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "process_instance_id", length = 64)
+    private String processInstanceId;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Set when a worker takes the request; a RUNNING request claimed long ago belongs to a dead worker
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        STARTED,
+        FAILED
+    }
+}
@@ -0,0 +1,43 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One edge of the directly-follows graph of a process definition: how often the target activity
+ * completed right after the source activity in a finished instance, and the time between the two.
+ * Maintained by ProcessMiningService.
+ */
+@Entity
+@Table(name = "process_transition",
+       uniqueConstraints = @UniqueConstraint(name = "uk_process_transition",
+               columnNames = {"process_definition_key", "source_activity", "target_activity"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProcessTransition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "process_definition_key", nullable = false)
+    private String processDefinitionKey;
+
+    @Column(name = "source_activity", nullable = false)
+    private String sourceActivity;
+
+    @Column(name = "target_activity", nullable = false)
+    private String targetActivity;
+
+    @Column(name = "transition_count", nullable = false)
+    private long transitionCount;
+
+    // Sum of the times between completing the source and completing the target
+    @Column(name = "duration_sum_ms", nullable = false)
+    private long durationSumMs;
+}
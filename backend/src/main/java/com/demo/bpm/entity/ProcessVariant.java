@@ -0,0 +1,57 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One trace variant of a process definition: the sequence of activities a finished instance went
+ * through, and how many instances did. Maintained by ProcessMiningService; rows are only ever
+ * added to, never rewritten.
+ */
+@Entity
+@Table(name = "process_variant",
+       uniqueConstraints = @UniqueConstraint(name = "uk_process_variant",
+               columnNames = {"process_definition_key", "variant_hash"}),
+       indexes = @Index(name = "idx_process_variant_definition", columnList = "process_definition_key, instance_count"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProcessVariant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "process_definition_key", nullable = false)
+    private String processDefinitionKey;
+
+    // SHA-256 of the trace, so long traces can be looked up by a short key
+    @Column(name = "variant_hash", nullable = false, length = 64)
+    private String variantHash;
+
+    // Activity ids in order of completion, comma separated
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String trace;
+
+    @Column(name = "activity_count", nullable = false)
+    private int activityCount;
+
+    @Column(name = "instance_count", nullable = false)
+    private long instanceCount;
+
+    // Sum of the instance durations, for the average
+    @Column(name = "duration_sum_ms", nullable = false)
+    private long durationSumMs;
+
+    @Column(name = "first_seen", nullable = false)
+    private LocalDateTime firstSeen;
+
+    @Column(name = "last_seen", nullable = false)
+    private LocalDateTime lastSeen;
+}
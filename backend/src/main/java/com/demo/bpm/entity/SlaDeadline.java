@@ -0,0 +1,88 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * When one SLA of one task or process instance falls due: the warning and breach instants are
+ * computed once, when the task is created or the process started, and due_at holds the next one
+ * that has not fired yet. Maintained by SlaDeadlineService; due_at is cleared once everything has
+ * fired or the target is done, and the row then keeps the outcome. One row per SLA and target.
+ */
+@Entity
+@Table(name = "sla_deadline",
+       uniqueConstraints = @UniqueConstraint(name = "uk_sla_deadline_target",
+               columnNames = {"target_type", "target_id", "sla_id"}),
+       indexes = {
+           @Index(name = "idx_sla_deadline_due", columnList = "due_at"),
+           @Index(name = "idx_sla_deadline_target", columnList = "target_type, target_id"),
+           @Index(name = "idx_sla_deadline_outcome", columnList = "target_type, completed_at")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SlaDeadline {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sla_id", nullable = false, length = 64)
+    private String slaId;
+
+    @Column(name = "target_type", nullable = false, length = 10)
+    @Enumerated(EnumType.STRING)
+    private SLA.SLATargetType targetType;
+
+    // Task definition or process definition key the SLA applies to
+    @Column(name = "target_key", nullable = false)
+    private String targetKey;
+
+    // Task or process instance id
+    @Column(name = "target_id", nullable = false, length = 64)
+    private String targetId;
+
+    @Column(name = "target_name")
+    private String targetName;
+
+    @Column(name = "process_instance_id", length = 64)
+    private String processInstanceId;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    // Null when the SLA has no warning threshold
+    @Column(name = "warn_at")
+    private LocalDateTime warnAt;
+
+    @Column(name = "breach_at", nullable = false)
+    private LocalDateTime breachAt;
+
+    // Next instant to act on; null once nothing is left to fire
+    @Column(name = "due_at")
+    private LocalDateTime dueAt;
+
+    @Column(name = "warning_sent_at")
+    private LocalDateTime warningSentAt;
+
+    @Column(name = "breach_sent_at")
+    private LocalDateTime breachSentAt;
+
+    // When the task completed or was cancelled, or the process instance ended
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Whether the target ended by its breach instant; null while running and for cancelled processes
+    @Column(name = "met")
+    private Boolean met;
+
+    // Breach instant minus end, in milliseconds: negative when the SLA was missed
+    @Column(name = "margin_ms")
+    private Long marginMs;
+}
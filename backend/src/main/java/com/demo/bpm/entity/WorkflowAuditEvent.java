@@ -0,0 +1,81 @@
+package com.demo.bpm.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One approval, escalation or handoff. Rows are only ever inserted (see AuditEventService).
+ */
+@Entity
+@Table(name = "workflow_audit_event",
+       uniqueConstraints = @UniqueConstraint(name = "uk_workflow_audit_event_id", columnNames = "event_id"),
+       indexes = {
+           @Index(name = "idx_audit_event_process", columnList = "process_instance_id, event_type, created_at"),
+           @Index(name = "idx_audit_event_actor", columnList = "actor_id, created_at"),
+           @Index(name = "idx_audit_event_type_time", columnList = "event_type, created_at")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WorkflowAuditEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Public id handed out to API callers, also used to de-duplicate imported records
+    @Column(name = "event_id", nullable = false, length = 36)
+    private String eventId;
+
+    @Column(name = "event_type", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private EventType eventType;
+
+    @Column(name = "process_instance_id", nullable = false, length = 64)
+    private String processInstanceId;
+
+    @Column(name = "task_id", length = 64)
+    private String taskId;
+
+    @Column(name = "task_name", length = 255)
+    private String taskName;
+
+    @Column(name = "actor_id", length = 255)
+    private String actorId;
+
+    // Receiving user of a handoff
+    @Column(name = "target_user_id", length = 255)
+    private String targetUserId;
+
+    @Column(name = "from_level", length = 50)
+    private String fromLevel;
+
+    @Column(name = "to_level", length = 50)
+    private String toLevel;
+
+    @Column(name = "decision", length = 50)
+    private String decision;
+
+    // Approval comments, or the reason of an escalation or handoff
+    @Column(name = "comments", columnDefinition = "TEXT")
+    private String comments;
+
+    @Column(name = "step_order")
+    private Integer stepOrder;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum EventType {
+        APPROVAL,
+        ESCALATE,
+        DE_ESCALATE,
+        HANDOFF
+    }
+}
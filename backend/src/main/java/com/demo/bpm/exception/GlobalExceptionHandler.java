@@ -46,6 +46,16 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.NOT_FOUND, "Not Found", ex.getMessage(), null, request, null);
     }
 
+    @ExceptionHandler(QueueCapacityExceededException.class)
+    public ResponseEntity<ErrorResponseDTO> handleQueueCapacityExceededException(QueueCapacityExceededException ex, WebRequest request) {
+        log.warn("Request rejected: {}", ex.getMessage());
+        ResponseEntity<ErrorResponseDTO> response =
+                buildResponse(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", ex.getMessage(), null, request, null);
+        return ResponseEntity.status(response.getStatusCode())
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+
     @ExceptionHandler(InvalidOperationException.class)
     public ResponseEntity<ErrorResponseDTO> handleInvalidOperationException(InvalidOperationException ex, WebRequest request) {
         String traceId = UUID.randomUUID().toString();
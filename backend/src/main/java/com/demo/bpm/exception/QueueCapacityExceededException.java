@@ -0,0 +1,18 @@
+package com.demo.bpm.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Getter
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class QueueCapacityExceededException extends RuntimeException {
+
+    // Hint for the Retry-After header
+    private final long retryAfterSeconds;
+
+    public QueueCapacityExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
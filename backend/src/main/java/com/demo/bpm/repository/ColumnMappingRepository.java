@@ -15,6 +15,17 @@ import java.util.Set;
 @Repository
 public interface ColumnMappingRepository extends JpaRepository<ColumnMapping, Long> {
 
+    /**
+     * All process definition keys that own at least one mapping.
+     */
+    @Query("SELECT DISTINCT cm.processDefinitionKey FROM ColumnMapping cm")
+    List<String> findDistinctProcessDefinitionKeys();
+
+    /**
+     * All mappings of a process definition, across scopes and document types.
+     */
+    List<ColumnMapping> findByProcessDefinitionKey(String processDefinitionKey);
+
     /**
      * Find mapping for a document field (with document type).
      */
@@ -0,0 +1,26 @@
+package com.demo.bpm.repository;
+
+import com.demo.bpm.entity.DocumentChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DocumentChangeRepository extends JpaRepository<DocumentChange, Long> {
+
+    // Change feed: changes after the sequence number of the last one delivered
+    @Query("SELECT c FROM DocumentChange c " +
+           "WHERE c.seq > :afterSeq " +
+           "AND (:processDefKey IS NULL OR c.processDefinitionKey = :processDefKey) " +
+           "AND (:type IS NULL OR c.documentType = :type) " +
+           "ORDER BY c.seq ASC")
+    List<DocumentChange> findAfter(
+            @Param("afterSeq") long afterSeq,
+            @Param("processDefKey") String processDefinitionKey,
+            @Param("type") String type,
+            Pageable pageable);
+}
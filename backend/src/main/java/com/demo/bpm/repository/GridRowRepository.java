@@ -1,6 +1,5 @@
 package com.demo.bpm.repository;
 
-import com.demo.bpm.entity.GridRow;
 import com.demo.bpm.entity.GridRow;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -23,6 +23,8 @@ public interface GridRowRepository extends JpaRepository<GridRow, Long> {
 
     List<GridRow> findByProcessInstanceIdOrderByGridNameAscRowIndexAsc(String processInstanceId);
 
+    List<GridRow> findByDocumentIdInOrderByDocumentIdAscGridNameAscRowIndexAsc(Collection<Long> documentIds);
+
     @Modifying
     @Query("DELETE FROM GridRow gr WHERE gr.document.id = :documentId AND gr.gridName = :gridName")
     void deleteByDocumentIdAndGridName(@Param("documentId") Long documentId, @Param("gridName") String gridName);
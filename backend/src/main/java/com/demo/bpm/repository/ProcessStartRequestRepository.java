@@ -0,0 +1,79 @@
+package com.demo.bpm.repository;
+
+import com.demo.bpm.entity.ProcessStartRequest;
+import com.demo.bpm.entity.ProcessStartRequest.Status;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProcessStartRequestRepository extends JpaRepository<ProcessStartRequest, String> {
+
+    long countByStatus(Status status);
+
+    /**
+     * Ids of the oldest requests in the given status.
+     */
+    @Query("SELECT r.id FROM ProcessStartRequest r WHERE r.status = :status ORDER BY r.createdAt, r.id")
+    List<String> findIdsByStatus(@Param("status") Status status, Pageable pageable);
+
+    /**
+     * Move a request from QUEUED to RUNNING. Returns 0 when another worker claimed it first.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProcessStartRequest r SET r.status = :running, r.claimedAt = :now, r.attempts = r.attempts + 1" +
+            " WHERE r.id = :id AND r.status = :queued")
+    int claim(@Param("id") String id, @Param("now") LocalDateTime now,
+              @Param("queued") Status queued, @Param("running") Status running);
+
+    /**
+     * Put requests whose worker went away before finishing back in the queue.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProcessStartRequest r SET r.status = :queued, r.claimedAt = NULL" +
+            " WHERE r.status = :running AND r.claimedAt < :claimedBefore")
+    int requeueStale(@Param("claimedBefore") LocalDateTime claimedBefore,
+                     @Param("running") Status running, @Param("queued") Status queued);
+
+    /**
+     * Fail stale requests that were already claimed {@code maxAttempts} times instead of queueing
+     * them again.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProcessStartRequest r SET r.status = :failed, r.errorMessage = :errorMessage," +
+            " r.completedAt = :now WHERE r.status = :running AND r.claimedAt < :claimedBefore" +
+            " AND r.attempts >= :maxAttempts")
+    int failExhausted(@Param("claimedBefore") LocalDateTime claimedBefore, @Param("maxAttempts") int maxAttempts,
+                      @Param("running") Status running, @Param("failed") Status failed,
+                      @Param("errorMessage") String errorMessage, @Param("now") LocalDateTime now);
+
+    /**
+     * Record the outcome of a claim. Returns 0 when the claim was lost in the meantime: the
+     * request was requeued as stale, and possibly claimed again.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProcessStartRequest r SET r.status = :status, r.processInstanceId = :processInstanceId," +
+            " r.errorMessage = :errorMessage, r.completedAt = :now" +
+            " WHERE r.id = :id AND r.status = :running AND r.attempts = :attempt")
+    int complete(@Param("id") String id, @Param("attempt") int attempt, @Param("running") Status running,
+                 @Param("status") Status status, @Param("processInstanceId") String processInstanceId,
+                 @Param("errorMessage") String errorMessage, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProcessStartRequest r WHERE r.status IN :statuses AND r.createdAt < :createdBefore")
+    int deleteFinished(@Param("statuses") Collection<Status> statuses,
+                       @Param("createdBefore") LocalDateTime createdBefore);
+}
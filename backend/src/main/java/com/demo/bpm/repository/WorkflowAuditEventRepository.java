@@ -0,0 +1,33 @@
+package com.demo.bpm.repository;
+
+import com.demo.bpm.entity.WorkflowAuditEvent;
+import com.demo.bpm.entity.WorkflowAuditEvent.EventType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface WorkflowAuditEventRepository extends JpaRepository<WorkflowAuditEvent, Long> {
+
+    /**
+     * Events of one process instance, oldest first.
+     */
+    List<WorkflowAuditEvent> findByProcessInstanceIdAndEventTypeInOrderByCreatedAtAscIdAsc(
+            String processInstanceId, Collection<EventType> eventTypes);
+
+    boolean existsByProcessInstanceId(String processInstanceId);
+
+    @Query("SELECT COALESCE(MAX(e.stepOrder), 0) FROM WorkflowAuditEvent e" +
+            " WHERE e.processInstanceId = :processInstanceId AND e.eventType = :eventType")
+    int findMaxStepOrder(@Param("processInstanceId") String processInstanceId, @Param("eventType") EventType eventType);
+
+    /**
+     * Which of the given event ids are already stored.
+     */
+    @Query("SELECT e.eventId FROM WorkflowAuditEvent e WHERE e.eventId IN :eventIds")
+    List<String> findExistingEventIds(@Param("eventIds") Collection<String> eventIds);
+}
@@ -0,0 +1,120 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ActivityHeatmapDTO;
+import com.demo.bpm.exception.ResourceNotFoundException;
+import com.demo.bpm.service.helpers.SingleFlightRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.bpmn.model.BpmnModel;
+import org.flowable.bpmn.model.FlowElement;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Where the tokens of a process definition are waiting right now, per BPMN activity.
+ *
+ * One grouped query over the active executions of the definition gives the number of tokens,
+ * the oldest arrival and the average age per activity id. A token arrived when its user task was
+ * created (ACT_RU_TASK) or, for other wait states, when its runtime activity instance started.
+ * The result is cached per definition for {@code ttl-ms}, so any number of screens polling the
+ * same diagram cost one query per TTL.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityHeatmapService {
+
+    private static final String HEATMAP_QUERY =
+            "SELECT W.ACT_ID_, COUNT(*) AS tokens,"
+                    + " SUM(CASE WHEN W.TASK_ID_ IS NOT NULL AND W.ASSIGNEE_ IS NULL THEN 1 ELSE 0 END) AS unassigned,"
+                    + " MIN(W.SINCE_) AS oldest, AVG(EXTRACT(EPOCH FROM W.SINCE_)) AS avg_since"
+                    + " FROM (SELECT E.ACT_ID_, T.ID_ AS TASK_ID_, T.ASSIGNEE_,"
+                    + " COALESCE(T.CREATE_TIME_, (SELECT MAX(A.START_TIME_) FROM ACT_RU_ACTINST A"
+                    + " WHERE A.EXECUTION_ID_ = E.ID_ AND A.ACT_ID_ = E.ACT_ID_ AND A.END_TIME_ IS NULL),"
+                    + " E.START_TIME_) AS SINCE_"
+                    + " FROM ACT_RU_EXECUTION E LEFT JOIN ACT_RU_TASK T ON T.EXECUTION_ID_ = E.ID_"
+                    + " WHERE E.PROC_DEF_ID_ = :definitionId AND E.IS_ACTIVE_ = TRUE AND E.ACT_ID_ IS NOT NULL) W"
+                    + " GROUP BY W.ACT_ID_";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final RepositoryService repositoryService;
+    private final SingleFlightRegistry singleFlights;
+
+    @Value("${bpm.analytics.heatmap.ttl-ms:5000}")
+    private long ttlMs = 5000;
+
+    private final Map<String, CachedHeatmap> cache = new ConcurrentHashMap<>();
+
+    public ActivityHeatmapDTO getHeatmap(String processDefinitionId) {
+        long now = System.currentTimeMillis();
+        CachedHeatmap cached = cache.get(processDefinitionId);
+        if (cached != null && now - cached.loadedAt() < ttlMs) {
+            return cached.heatmap();
+        }
+        // Screens polling the same diagram all miss when the entry expires; only one of them loads it
+        ActivityHeatmapDTO heatmap = singleFlights.execute("heatmap", processDefinitionId, () -> load(processDefinitionId));
+        // Drop entries of definitions nobody polls any more
+        cache.values().removeIf(entry -> now - entry.loadedAt() >= ttlMs);
+        cache.put(processDefinitionId, new CachedHeatmap(heatmap, now));
+        return heatmap;
+    }
+
+    private ActivityHeatmapDTO load(String processDefinitionId) {
+        ProcessDefinition definition = repositoryService.createProcessDefinitionQuery()
+                .processDefinitionId(processDefinitionId)
+                .singleResult();
+        if (definition == null) {
+            throw new ResourceNotFoundException("Process definition not found: " + processDefinitionId);
+        }
+        BpmnModel model = repositoryService.getBpmnModel(processDefinitionId);
+
+        // EXTRACT(EPOCH) reads the stored wall time as UTC; compare ages on the same scale
+        LocalDateTime now = LocalDateTime.now();
+        long nowEpochSeconds = now.toEpochSecond(ZoneOffset.UTC);
+        List<ActivityHeatmapDTO.ActivityHeat> activities = new ArrayList<>();
+        jdbcTemplate.query(HEATMAP_QUERY, new MapSqlParameterSource("definitionId", processDefinitionId), rs -> {
+            String activityId = rs.getString("ACT_ID_");
+            Timestamp oldest = rs.getTimestamp("oldest");
+            LocalDateTime oldestSince = oldest != null ? oldest.toLocalDateTime() : null;
+            double avgSince = rs.getDouble("avg_since");
+            boolean noAverage = rs.wasNull();
+            FlowElement element = model != null ? model.getFlowElement(activityId) : null;
+            activities.add(ActivityHeatmapDTO.ActivityHeat.builder()
+                    .activityId(activityId)
+                    .activityName(element != null ? element.getName() : null)
+                    .tokens(rs.getLong("tokens"))
+                    .unassignedTasks(rs.getLong("unassigned"))
+                    .oldestSince(oldestSince)
+                    .oldestAgeSeconds(oldestSince != null
+                            ? Math.max(0, nowEpochSeconds - oldestSince.toEpochSecond(ZoneOffset.UTC)) : 0)
+                    .avgAgeSeconds(noAverage ? 0 : Math.max(0, Math.round(nowEpochSeconds - avgSince)))
+                    .build());
+        });
+        activities.sort(Comparator.comparing(ActivityHeatmapDTO.ActivityHeat::getTokens).reversed()
+                .thenComparing(ActivityHeatmapDTO.ActivityHeat::getActivityId));
+
+        log.debug("Loaded heatmap of {}: {} activities with waiting tokens", processDefinitionId, activities.size());
+        return ActivityHeatmapDTO.builder()
+                .processDefinitionId(processDefinitionId)
+                .processDefinitionKey(definition.getKey())
+                .totalTokens(activities.stream().mapToLong(ActivityHeatmapDTO.ActivityHeat::getTokens).sum())
+                .activities(activities)
+                .asOf(now)
+                .build();
+    }
+
+    private record CachedHeatmap(ActivityHeatmapDTO heatmap, long loadedAt) {}
+}
@@ -0,0 +1,637 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.AnalyticsFilter;
+import com.demo.bpm.dto.AnalyticsRollupReportDTO;
+import com.demo.bpm.entity.AnalyticsRollup.Kind;
+import com.demo.bpm.entity.SLA;
+import com.demo.bpm.repository.SLARepository;
+import com.demo.bpm.service.helpers.HistoryWatermarks;
+import com.demo.bpm.util.LatencyHistogram;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Hourly and daily rollups of finished tasks, activities and processes.
+ *
+ * An incremental job reads the history rows that ended after the stored watermark, one chunk of
+ * time per transaction, and moves the watermark in the same transaction. Buckets are never added
+ * to: every hour a chunk touches is computed again from all of its history up to the new
+ * watermark and replaces the stored row, and the days around it are summed again from their
+ * hours. Reading a row twice therefore changes nothing.
+ *
+ * END_TIME_ is assigned before commit, so a row can become visible after the watermark passed it.
+ * The most recent settle-lag is left for the next run, and each run first recomputes the hours of
+ * the overlap window below the watermark, which picks up rows whose transaction took up to that
+ * long to commit.
+ *
+ * Queries merge the rollups up to the watermark with the raw history after it, so results are
+ * exact however far the job is behind; it only decides how much raw history is read.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalyticsRollupService {
+
+    public static final int DEFAULT_MAX_CHUNKS = 100;
+    // Upper bounds of the duration bins; longer durations fall into the last bin
+    public static final long[] DURATION_BIN_BOUNDS_MS = {3_600_000L, 14_400_000L, 86_400_000L, 259_200_000L};
+
+    static final String WATERMARK = "analytics_rollup";
+    private static final LocalDateTime BEGINNING = HistoryWatermarks.BEGINNING;
+    private static final String[] BIN_COLUMNS =
+            {"bin_under_1h", "bin_under_4h", "bin_under_24h", "bin_under_3d", "bin_over_3d"};
+    private static final String[] BIN_MIN_COLUMNS =
+            Arrays.stream(BIN_COLUMNS).map(column -> column + "_min_ms").toArray(String[]::new);
+    private static final String[] BIN_MAX_COLUMNS =
+            Arrays.stream(BIN_COLUMNS).map(column -> column + "_max_ms").toArray(String[]::new);
+
+    private static final String TASK_ROWS =
+            "SELECT D.KEY_ AS DEF_KEY, T.TASK_DEF_KEY_ AS TASK_KEY, T.NAME_ AS TASK_NAME, T.ASSIGNEE_ AS ASSIGNEE," +
+                    " T.END_TIME_ AS END_TIME, T.DURATION_ AS DURATION FROM ACT_HI_TASKINST T" +
+                    " JOIN ACT_RE_PROCDEF D ON D.ID_ = T.PROC_DEF_ID_";
+    private static final String ACTIVITY_ROWS =
+            "SELECT D.KEY_ AS DEF_KEY, A.ACT_ID_ AS TASK_KEY, A.ACT_NAME_ AS TASK_NAME," +
+                    " A.END_TIME_ AS END_TIME, A.DURATION_ AS DURATION FROM ACT_HI_ACTINST A" +
+                    " JOIN ACT_RE_PROCDEF D ON D.ID_ = A.PROC_DEF_ID_";
+    private static final String PROCESS_ROWS =
+            "SELECT D.KEY_ AS DEF_KEY, P.END_TIME_ AS END_TIME, P.DURATION_ AS DURATION FROM ACT_HI_PROCINST P" +
+                    " JOIN ACT_RE_PROCDEF D ON D.ID_ = P.PROC_DEF_ID_";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final SLARepository slaRepository;
+    private final HistoryWatermarks watermarks;
+
+    @Value("${bpm.analytics.rollup.chunk-hours:24}")
+    private long chunkHours = 24;
+
+    @Value("${bpm.analytics.rollup.settle-lag-ms:5000}")
+    private long settleLagMs = 5000;
+
+    // Hours below the watermark recomputed on every run, for rows that committed late
+    @Value("${bpm.analytics.rollup.overlap-ms:1800000}")
+    private long overlapMs = 1_800_000;
+
+    /**
+     * Roll up the history that ended since the last run.
+     *
+     * @param maxChunks chunks of {@code chunk-hours} to process; the rest is left for the next run
+     */
+    public AnalyticsRollupReportDTO refresh(int maxChunks) {
+        return run(false, maxChunks);
+    }
+
+    /**
+     * Clear the rollups and build them again from the start of history, e.g. after SLAs changed
+     * or to fill the histograms of rows rolled up before they were kept.
+     */
+    public AnalyticsRollupReportDTO rebuild(int maxChunks) {
+        return run(true, maxChunks);
+    }
+
+    private AnalyticsRollupReportDTO run(boolean rebuild, int maxChunks) {
+        return watermarks.runExclusively(WATERMARK, "An analytics rollup run", () -> {
+            long started = System.currentTimeMillis();
+            if (rebuild) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    watermarks.lock(WATERMARK);
+                    MapSqlParameterSource params = new MapSqlParameterSource();
+                    jdbcTemplate.update("DELETE FROM analytics_rollup_hourly", params);
+                    jdbcTemplate.update("DELETE FROM analytics_rollup_daily", params);
+                    watermarks.reset(WATERMARK);
+                });
+            }
+
+            AnalyticsRollupReportDTO report = AnalyticsRollupReportDTO.builder().rebuilt(rebuild).build();
+            LocalDateTime upTo = HistoryWatermarks.settledUpTo(settleLagMs);
+            Map<Kind, Map<String, Duration>> slas = slaThresholds();
+            Chunk overlap = transactionTemplate.execute(status -> recomputeOverlap(slas));
+            if (overlap != null) {
+                report.setHistoryRowsRead(overlap.rowsRead());
+                report.setBucketsWritten(overlap.bucketsWritten());
+            }
+            int budget = maxChunks > 0 ? maxChunks : DEFAULT_MAX_CHUNKS;
+            while (report.getChunks() < budget) {
+                Chunk chunk = transactionTemplate.execute(status -> rollUpNextChunk(upTo, slas));
+                if (chunk == null) {
+                    report.setComplete(true);
+                    break;
+                }
+                report.setChunks(report.getChunks() + 1);
+                report.setHistoryRowsRead(report.getHistoryRowsRead() + chunk.rowsRead());
+                report.setBucketsWritten(report.getBucketsWritten() + chunk.bucketsWritten());
+            }
+            report.setWatermark(currentWatermark());
+            report.setElapsedMs(System.currentTimeMillis() - started);
+            log.info("Analytics rollup read {} history rows into {} buckets in {} chunks ({} ms, watermark {}, complete={})",
+                    report.getHistoryRowsRead(), report.getBucketsWritten(), report.getChunks(),
+                    report.getElapsedMs(), report.getWatermark(), report.isComplete());
+            return report;
+        });
+    }
+
+    /**
+     * Recompute the hours of the overlap window below the watermark, which stays where it is.
+     * Returns null before the first chunk was rolled up.
+     */
+    private Chunk recomputeOverlap(Map<Kind, Map<String, Duration>> slas) {
+        LocalDateTime watermark = watermarks.lock(WATERMARK).watermark();
+        if (!watermark.isAfter(BEGINNING)) {
+            return null;
+        }
+        return recompute(HistoryWatermarks.overlapStart(watermark, overlapMs), watermark, slas);
+    }
+
+    /**
+     * Roll up the next chunk of history after the watermark and advance the watermark. Returns
+     * null when there is nothing left up to {@code upTo}.
+     */
+    private Chunk rollUpNextChunk(LocalDateTime upTo, Map<Kind, Map<String, Duration>> slas) {
+        LocalDateTime after = watermarks.lock(WATERMARK).watermark();
+        // Skip straight to the next history row so gaps in history cost nothing
+        LocalDateTime next = nextEndTime(after);
+        if (next == null || next.isAfter(upTo)) {
+            return null;
+        }
+        LocalDateTime chunkEnd = next.plusHours(chunkHours);
+        if (chunkEnd.isAfter(upTo)) {
+            chunkEnd = upTo;
+        }
+        // From the start of the hour: when that is the hour of the old watermark it is computed again in full
+        Chunk chunk = recompute(next, chunkEnd, slas);
+        watermarks.advance(WATERMARK, chunkEnd, "");
+        return chunk;
+    }
+
+    /**
+     * Replace the hourly buckets from the hour of {@code from} to the hour of {@code upTo} with
+     * the history that ended in them up to {@code upTo}, then the daily buckets of those days with
+     * the sum of their hours.
+     */
+    private Chunk recompute(LocalDateTime from, LocalDateTime upTo, Map<Kind, Map<String, Duration>> slas) {
+        LocalDateTime firstHour = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime lastHour = upTo.truncatedTo(ChronoUnit.HOURS);
+        Map<BucketKey, Stats> hourly = new HashMap<>();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(firstHour))
+                .addValue("upTo", Timestamp.valueOf(upTo));
+        long[] rows = new long[1];
+        for (Kind kind : Kind.values()) {
+            String alias = alias(kind);
+            String sql = rowsQuery(kind) + " WHERE " + alias + ".END_TIME_ >= :from AND " + alias + ".END_TIME_ <= :upTo"
+                    + rowsCondition(kind);
+            jdbcTemplate.query(sql, params, rs -> {
+                Row row = readRow(kind, rs);
+                hourly.computeIfAbsent(new BucketKey(row.key(), row.endTime().truncatedTo(ChronoUnit.HOURS)),
+                        k -> new Stats()).add(row, isBreached(slas, row));
+                rows[0]++;
+            });
+        }
+        replace("analytics_rollup_hourly", firstHour, lastHour, hourly);
+
+        LocalDateTime firstDay = firstHour.toLocalDate().atStartOfDay();
+        LocalDateTime lastDay = lastHour.toLocalDate().atStartOfDay();
+        Map<BucketKey, Stats> daily = new HashMap<>();
+        jdbcTemplate.query("SELECT kind, bucket_start, process_definition_key, task_definition_key, assignee, task_name," +
+                        " item_count, duration_sum_ms, duration_min_ms, duration_max_ms, breach_count, " +
+                        String.join(", ", BIN_COLUMNS) + ", " + String.join(", ", BIN_MIN_COLUMNS) + ", " +
+                        String.join(", ", BIN_MAX_COLUMNS) + ", duration_histogram FROM analytics_rollup_hourly" +
+                        " WHERE bucket_start >= :first AND bucket_start < :end",
+                new MapSqlParameterSource()
+                        .addValue("first", Timestamp.valueOf(firstDay))
+                        .addValue("end", Timestamp.valueOf(lastDay.plusDays(1))),
+                rs -> {
+                    GroupKey key = new GroupKey(Kind.valueOf(rs.getString("kind")), rs.getString("process_definition_key"),
+                            rs.getString("task_definition_key"), rs.getString("assignee"));
+                    LocalDateTime day = rs.getTimestamp("bucket_start").toLocalDateTime().toLocalDate().atStartOfDay();
+                    daily.computeIfAbsent(new BucketKey(key, day), k -> new Stats()).merge(readStats(rs, true));
+                });
+        replace("analytics_rollup_daily", firstDay, lastDay, daily);
+        return new Chunk(rows[0], hourly.size() + daily.size());
+    }
+
+    private LocalDateTime nextEndTime(LocalDateTime after) {
+        MapSqlParameterSource params = new MapSqlParameterSource("after", Timestamp.valueOf(after));
+        LocalDateTime next = null;
+        for (String table : List.of("ACT_HI_TASKINST", "ACT_HI_ACTINST", "ACT_HI_PROCINST")) {
+            Timestamp min = jdbcTemplate.queryForObject(
+                    "SELECT MIN(END_TIME_) FROM " + table + " WHERE END_TIME_ > :after", params, Timestamp.class);
+            if (min != null && (next == null || min.toLocalDateTime().isBefore(next))) {
+                next = min.toLocalDateTime();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Delete the buckets starting from {@code first} to {@code last} and write the given ones instead.
+     */
+    private void replace(String table, LocalDateTime first, LocalDateTime last, Map<BucketKey, Stats> buckets) {
+        jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket_start >= :first AND bucket_start <= :last",
+                new MapSqlParameterSource()
+                        .addValue("first", Timestamp.valueOf(first))
+                        .addValue("last", Timestamp.valueOf(last)));
+        if (buckets.isEmpty()) {
+            return;
+        }
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (kind, bucket_start, process_definition_key, task_definition_key, assignee, task_name,")
+                .append(" item_count, duration_sum_ms, duration_min_ms, duration_max_ms, breach_count, duration_histogram");
+        StringBuilder values = new StringBuilder(" VALUES (:kind, :bucket, :definitionKey, :taskKey, :assignee, :taskName,")
+                .append(" :count, :sum, :min, :max, :breaches, :histogram");
+        for (int i = 0; i < BIN_COLUMNS.length; i++) {
+            insert.append(", ").append(BIN_COLUMNS[i]).append(", ").append(BIN_MIN_COLUMNS[i])
+                    .append(", ").append(BIN_MAX_COLUMNS[i]);
+            values.append(", :bin").append(i).append(", :binMin").append(i).append(", :binMax").append(i);
+        }
+        insert.append(")").append(values).append(")");
+        jdbcTemplate.batchUpdate(insert.toString(), buckets.entrySet().stream()
+                .map(bucket -> bucketParams(bucket.getKey(), bucket.getValue()))
+                .toArray(MapSqlParameterSource[]::new));
+    }
+
+    private static MapSqlParameterSource bucketParams(BucketKey bucket, Stats stats) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("kind", bucket.key().kind().name())
+                .addValue("bucket", Timestamp.valueOf(bucket.start()))
+                .addValue("definitionKey", bucket.key().processDefinitionKey())
+                .addValue("taskKey", bucket.key().taskDefinitionKey())
+                .addValue("assignee", bucket.key().assignee())
+                .addValue("taskName", stats.taskName)
+                .addValue("count", stats.count)
+                .addValue("sum", stats.sumMs)
+                .addValue("min", stats.getMinMs())
+                .addValue("max", stats.maxMs)
+                .addValue("breaches", stats.breaches)
+                .addValue("histogram", stats.histogram.serialize());
+        for (int i = 0; i < stats.bins.length; i++) {
+            boolean empty = stats.bins[i] == 0;
+            params.addValue("bin" + i, stats.bins[i])
+                    .addValue("binMin" + i, empty ? null : stats.binMinMs[i], Types.BIGINT)
+                    .addValue("binMax" + i, empty ? null : stats.binMaxMs[i], Types.BIGINT);
+        }
+        return params;
+    }
+
+    /**
+     * Statistics of the tasks, activities or processes that ended in the filter range, per
+     * definition, task definition or activity, and assignee. The range is resolved to whole hours.
+     */
+    public Map<GroupKey, Stats> aggregate(Kind kind, AnalyticsFilter filter) {
+        return aggregate(kind, filter, false);
+    }
+
+    /**
+     * As {@link #aggregate(Kind, AnalyticsFilter)}, optionally with the duration histograms. Those
+     * are merged here rather than summed by the database, so every rollup row in the range is read.
+     */
+    public Map<GroupKey, Stats> aggregate(Kind kind, AnalyticsFilter filter, boolean withHistograms) {
+        // Watermark, rollups and raw tail from one snapshot: a rollup chunk committing between the
+        // reads would otherwise be counted twice or not at all
+        TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshot.setReadOnly(true);
+        return snapshot.execute(status -> read(kind, filter, withHistograms));
+    }
+
+    private Map<GroupKey, Stats> read(Kind kind, AnalyticsFilter filter, boolean withHistograms) {
+        LocalDateTime from = filter.getFrom() != null ? filter.getFrom().truncatedTo(ChronoUnit.HOURS) : null;
+        LocalDateTime to = filter.getTo() != null ? filter.getTo().truncatedTo(ChronoUnit.HOURS) : null;
+        String definitionKey = filter.getProcessDefinitionKey();
+        boolean hasDefinition = definitionKey != null && !definitionKey.isBlank();
+        LocalDateTime watermark = currentWatermark();
+
+        Map<GroupKey, Stats> groups = new HashMap<>();
+        if (watermark.isAfter(BEGINNING) && (from == null || from.isBefore(watermark))) {
+            // Whole days can be answered from the daily table
+            String table = isMidnight(from) && isMidnight(to) ? "analytics_rollup_daily" : "analytics_rollup_hourly";
+            MapSqlParameterSource params = new MapSqlParameterSource("kind", kind.name());
+            StringBuilder sql = new StringBuilder("SELECT process_definition_key, task_definition_key, assignee, ");
+            if (withHistograms) {
+                sql.append("task_name, item_count, duration_sum_ms, duration_min_ms, duration_max_ms, breach_count, ")
+                        .append(String.join(", ", BIN_COLUMNS)).append(", ").append(String.join(", ", BIN_MIN_COLUMNS))
+                        .append(", ").append(String.join(", ", BIN_MAX_COLUMNS)).append(", duration_histogram");
+            } else {
+                sql.append("MAX(task_name) AS task_name, SUM(item_count) AS item_count,")
+                        .append(" SUM(duration_sum_ms) AS duration_sum_ms, MIN(duration_min_ms) AS duration_min_ms,")
+                        .append(" MAX(duration_max_ms) AS duration_max_ms, SUM(breach_count) AS breach_count");
+                for (int i = 0; i < BIN_COLUMNS.length; i++) {
+                    sql.append(", SUM(").append(BIN_COLUMNS[i]).append(") AS ").append(BIN_COLUMNS[i])
+                            .append(", MIN(").append(BIN_MIN_COLUMNS[i]).append(") AS ").append(BIN_MIN_COLUMNS[i])
+                            .append(", MAX(").append(BIN_MAX_COLUMNS[i]).append(") AS ").append(BIN_MAX_COLUMNS[i]);
+                }
+            }
+            sql.append(" FROM ").append(table).append(" WHERE kind = :kind");
+            if (from != null) {
+                sql.append(" AND bucket_start >= :from");
+                params.addValue("from", Timestamp.valueOf(from));
+            }
+            if (to != null) {
+                sql.append(" AND bucket_start < :to");
+                params.addValue("to", Timestamp.valueOf(to));
+            }
+            if (hasDefinition) {
+                sql.append(" AND process_definition_key = :definitionKey");
+                params.addValue("definitionKey", definitionKey);
+            }
+            if (!withHistograms) {
+                sql.append(" GROUP BY process_definition_key, task_definition_key, assignee");
+            }
+            jdbcTemplate.query(sql.toString(), params, rs -> {
+                GroupKey key = new GroupKey(kind, rs.getString("process_definition_key"),
+                        rs.getString("task_definition_key"), rs.getString("assignee"));
+                groups.computeIfAbsent(key, k -> new Stats()).merge(readStats(rs, withHistograms));
+            });
+        }
+
+        if (to == null || to.isAfter(watermark)) {
+            // History the job has not reached yet
+            Map<Kind, Map<String, Duration>> slas = slaThresholds();
+            String alias = alias(kind);
+            MapSqlParameterSource params = new MapSqlParameterSource("after", Timestamp.valueOf(watermark));
+            StringBuilder sql = new StringBuilder(rowsQuery(kind));
+            if (hasDefinition) {
+                sql.append(" AND D.KEY_ = :definitionKey");
+                params.addValue("definitionKey", definitionKey);
+            }
+            sql.append(" WHERE ").append(alias).append(".END_TIME_ > :after").append(rowsCondition(kind));
+            if (from != null) {
+                sql.append(" AND ").append(alias).append(".END_TIME_ >= :from");
+                params.addValue("from", Timestamp.valueOf(from));
+            }
+            if (to != null) {
+                sql.append(" AND ").append(alias).append(".END_TIME_ < :to");
+                params.addValue("to", Timestamp.valueOf(to));
+            }
+            jdbcTemplate.query(sql.toString(), params, rs -> {
+                Row row = readRow(kind, rs);
+                groups.computeIfAbsent(row.key(), k -> new Stats()).add(row, isBreached(slas, row));
+            });
+        }
+        return groups;
+    }
+
+    private static String rowsQuery(Kind kind) {
+        return switch (kind) {
+            case TASK -> TASK_ROWS;
+            case ACTIVITY -> ACTIVITY_ROWS;
+            case PROCESS -> PROCESS_ROWS;
+        };
+    }
+
+    private static String alias(Kind kind) {
+        return switch (kind) {
+            case TASK -> "T";
+            case ACTIVITY -> "A";
+            case PROCESS -> "P";
+        };
+    }
+
+    /**
+     * Conditions after the END_TIME_ range: finished rows with a duration, and for activities no
+     * sequence flows, which take no time.
+     */
+    private static String rowsCondition(Kind kind) {
+        String alias = alias(kind);
+        String condition = " AND " + alias + ".DURATION_ IS NOT NULL";
+        return kind == Kind.ACTIVITY ? condition + " AND A.ACT_TYPE_ <> 'sequenceFlow'" : condition;
+    }
+
+    private LocalDateTime currentWatermark() {
+        return Objects.requireNonNullElse(watermarks.current(WATERMARK), BEGINNING);
+    }
+
+    private Map<Kind, Map<String, Duration>> slaThresholds() {
+        Map<Kind, Map<String, Duration>> thresholds = new EnumMap<>(Kind.class);
+        thresholds.put(Kind.TASK, new HashMap<>());
+        thresholds.put(Kind.PROCESS, new HashMap<>());
+        for (SLA sla : slaRepository.findAll()) {
+            if (sla.isEnabled() && sla.getTargetType() != null && sla.getDuration() != null) {
+                Kind kind = sla.getTargetType() == SLA.SLATargetType.TASK ? Kind.TASK : Kind.PROCESS;
+                thresholds.get(kind).putIfAbsent(sla.getTargetKey(), sla.getDuration());
+            }
+        }
+        return thresholds;
+    }
+
+    private static boolean isBreached(Map<Kind, Map<String, Duration>> slas, Row row) {
+        GroupKey key = row.key();
+        Map<String, Duration> limits = slas.get(key.kind());
+        if (limits == null) {
+            // SLAs are defined for tasks and processes only
+            return false;
+        }
+        Duration limit = limits.get(key.kind() == Kind.TASK ? key.taskDefinitionKey() : key.processDefinitionKey());
+        return limit != null && row.durationMs() > limit.toMillis();
+    }
+
+    private static Row readRow(Kind kind, ResultSet rs) throws SQLException {
+        GroupKey key = switch (kind) {
+            case TASK -> new GroupKey(kind, rs.getString("DEF_KEY"), nullToEmpty(rs.getString("TASK_KEY")),
+                    nullToEmpty(rs.getString("ASSIGNEE")));
+            case ACTIVITY -> new GroupKey(kind, rs.getString("DEF_KEY"), nullToEmpty(rs.getString("TASK_KEY")), "");
+            case PROCESS -> new GroupKey(kind, rs.getString("DEF_KEY"), "", "");
+        };
+        return new Row(key, kind != Kind.PROCESS ? rs.getString("TASK_NAME") : null,
+                rs.getTimestamp("END_TIME").toLocalDateTime(), rs.getLong("DURATION"));
+    }
+
+    private static Stats readStats(ResultSet rs, boolean withHistogram) throws SQLException {
+        long[] bins = new long[BIN_COLUMNS.length];
+        for (int i = 0; i < BIN_COLUMNS.length; i++) {
+            bins[i] = rs.getLong(BIN_COLUMNS[i]);
+        }
+        Stats stats = new Stats(rs.getString("task_name"), rs.getLong("item_count"), rs.getLong("duration_sum_ms"),
+                rs.getLong("duration_min_ms"), rs.getLong("duration_max_ms"), rs.getLong("breach_count"), bins);
+        for (int i = 0; i < BIN_COLUMNS.length; i++) {
+            // Null for empty bins, and for buckets rolled up before the bin extremes were kept
+            long min = rs.getLong(BIN_MIN_COLUMNS[i]);
+            if (!rs.wasNull()) {
+                stats.binMinMs[i] = min;
+            }
+            long max = rs.getLong(BIN_MAX_COLUMNS[i]);
+            if (!rs.wasNull()) {
+                stats.binMaxMs[i] = max;
+            }
+        }
+        if (withHistogram) {
+            stats.histogram.merge(LatencyHistogram.parse(rs.getString("duration_histogram")));
+        }
+        return stats;
+    }
+
+    private static boolean isMidnight(LocalDateTime time) {
+        return time == null || time.toLocalTime().equals(LocalTime.MIDNIGHT);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * Rollup dimensions: the task definition and assignee are empty for processes and the assignee
+     * is empty for unassigned tasks.
+     */
+    public record GroupKey(Kind kind, String processDefinitionKey, String taskDefinitionKey, String assignee) {
+    }
+
+    private record BucketKey(GroupKey key, LocalDateTime start) {
+    }
+
+    private record Row(GroupKey key, String taskName, LocalDateTime endTime, long durationMs) {
+    }
+
+    private record Chunk(long rowsRead, long bucketsWritten) {
+    }
+
+    /**
+     * Mergeable statistics of a group of tasks or processes.
+     */
+    public static class Stats {
+        private String taskName;
+        private long count;
+        private long sumMs;
+        private long minMs = Long.MAX_VALUE;
+        private long maxMs;
+        private long breaches;
+        private final long[] bins;
+        private final long[] binMinMs = new long[DURATION_BIN_BOUNDS_MS.length + 1];
+        private final long[] binMaxMs = new long[DURATION_BIN_BOUNDS_MS.length + 1];
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        public Stats() {
+            this.bins = new long[DURATION_BIN_BOUNDS_MS.length + 1];
+            Arrays.fill(binMinMs, Long.MAX_VALUE);
+        }
+
+        Stats(String taskName, long count, long sumMs, long minMs, long maxMs, long breaches, long[] bins) {
+            this.taskName = taskName;
+            this.count = count;
+            this.sumMs = sumMs;
+            this.minMs = minMs;
+            this.maxMs = maxMs;
+            this.breaches = breaches;
+            this.bins = bins;
+            Arrays.fill(binMinMs, Long.MAX_VALUE);
+        }
+
+        void add(Row row, boolean breached) {
+            long duration = row.durationMs();
+            if (row.taskName() != null) {
+                taskName = row.taskName();
+            }
+            count++;
+            sumMs += duration;
+            minMs = Math.min(minMs, duration);
+            maxMs = Math.max(maxMs, duration);
+            if (breached) {
+                breaches++;
+            }
+            int bin = bin(duration);
+            bins[bin]++;
+            binMinMs[bin] = Math.min(binMinMs[bin], duration);
+            binMaxMs[bin] = Math.max(binMaxMs[bin], duration);
+            histogram.record(duration);
+        }
+
+        public void merge(Stats other) {
+            if (other.count == 0) {
+                return;
+            }
+            if (other.taskName != null) {
+                taskName = other.taskName;
+            }
+            count += other.count;
+            sumMs += other.sumMs;
+            minMs = Math.min(minMs, other.minMs);
+            maxMs = Math.max(maxMs, other.maxMs);
+            breaches += other.breaches;
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] += other.bins[i];
+                binMinMs[i] = Math.min(binMinMs[i], other.binMinMs[i]);
+                binMaxMs[i] = Math.max(binMaxMs[i], other.binMaxMs[i]);
+            }
+            histogram.merge(other.histogram);
+        }
+
+        private static int bin(long durationMs) {
+            for (int i = 0; i < DURATION_BIN_BOUNDS_MS.length; i++) {
+                if (durationMs < DURATION_BIN_BOUNDS_MS[i]) {
+                    return i;
+                }
+            }
+            return DURATION_BIN_BOUNDS_MS.length;
+        }
+
+        public String getTaskName() {
+            return taskName;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumMs() {
+            return sumMs;
+        }
+
+        public long getMinMs() {
+            return count > 0 ? minMs : 0;
+        }
+
+        public long getMaxMs() {
+            return maxMs;
+        }
+
+        public long getBreaches() {
+            return breaches;
+        }
+
+        public long getBin(int index) {
+            return bins[index];
+        }
+
+        /**
+         * Shortest duration in the bin; 0 when it is empty or was rolled up without its extremes.
+         */
+        public long getBinMinMs(int index) {
+            return binMinMs[index] != Long.MAX_VALUE ? binMinMs[index] : 0;
+        }
+
+        /**
+         * Longest duration in the bin; 0 when it is empty or was rolled up without its extremes.
+         */
+        public long getBinMaxMs(int index) {
+            return binMaxMs[index];
+        }
+
+        /**
+         * Duration histogram; only filled when aggregated with histograms.
+         */
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        public double getAvgMs() {
+            return count > 0 ? (double) sumMs / count : 0;
+        }
+    }
+}
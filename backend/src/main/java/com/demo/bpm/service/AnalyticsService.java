@@ -1,23 +1,53 @@
 package com.demo.bpm.service;
 
+import com.demo.bpm.dto.AnalyticsFilter;
+import com.demo.bpm.entity.AnalyticsRollup.Kind;
+import com.demo.bpm.service.helpers.DatabaseDialect;
+import com.demo.bpm.service.helpers.SingleFlightRegistry;
+import com.demo.bpm.util.LatencyHistogram;
 import lombok.Builder;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.flowable.engine.HistoryService;
-import org.flowable.engine.history.HistoricProcessInstance;
-import org.flowable.task.api.history.HistoricTaskInstance;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Process and task metrics over the engine history.
+ *
+ * Duration, user and bottleneck metrics come from the hourly and daily rollups (see
+ * AnalyticsRollupService), so they are exact for the whole requested range without rescanning
+ * the engine history. The completion trend is counted per bucket in the database.
+ *
+ * Every read is a single flight: identical concurrent requests, e.g. a team opening the analytics
+ * page at the same time, share one computation.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AnalyticsService {
 
-    private final HistoryService historyService;
+    private static final double MS_PER_HOUR = 1000.0 * 60 * 60;
+    // Labels of AnalyticsRollupService.DURATION_BIN_BOUNDS_MS
+    private static final String[] DURATION_BIN_LABELS = {"< 1h", "1h - 4h", "4h - 24h", "1d - 3d", "> 3d"};
+    private static final int BOTTLENECK_MIN_SAMPLES = 5;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final AnalyticsRollupService rollupService;
+    private final SingleFlightRegistry singleFlights;
+    private final DatabaseDialect databaseDialect;
 
     @Data
     @Builder
@@ -43,193 +73,299 @@ public class AnalyticsService {
         private String taskName;
         private String taskDefinitionKey;
         private double avgDurationHours;
-        private long slowInstanceCount; // Count of instances taking > 2x average
+        private double p90DurationHours;
+        private double p99DurationHours;
+        private long slowInstanceCount; // Tasks that ran past the SLA of their task definition
         private long totalInstances;
     }
 
+    @Data
+    @Builder
+    public static class LatencyPercentiles {
+        private String kind; // TASK, ACTIVITY or PROCESS
+        private String processDefinitionKey;
+        private String activityId; // Task definition or activity id; null for processes
+        private String name;
+        private long count;
+        private long minMs;
+        private long p50Ms;
+        private long p90Ms;
+        private long p99Ms;
+        private long maxMs;
+        private double avgMs;
+    }
+
     @Data
     @Builder
     public static class TrendMetric {
-        private String date;
+        private String date; // Bucket start: ISO date for days and weeks, ISO date-time with offset for hours
         private long count;
     }
 
     /**
-     * Get process duration distribution for finished processes
+     * Get process duration distribution for processes finished in the filter range
      */
-    public List<DurationBin> getProcessDurationDistribution(String processDefinitionKey) {
-        var query = historyService.createHistoricProcessInstanceQuery()
-                .finished()
-                .orderByProcessInstanceEndTime().desc();
-        
-        if (processDefinitionKey != null && !processDefinitionKey.isEmpty()) {
-            query.processDefinitionKey(processDefinitionKey);
-        }
-
-        // Limit to last 1000 instances for performance in this demo
-        List<HistoricProcessInstance> instances = query.listPage(0, 1000);
-
-        // Define Bins: <1h, 1h-4h, 4h-24h, 1d-3d, >3d
-        Map<String, Long> counts = new LinkedHashMap<>();
-        counts.put("< 1h", 0L);
-        counts.put("1h - 4h", 0L);
-        counts.put("4h - 24h", 0L);
-        counts.put("1d - 3d", 0L);
-        counts.put("> 3d", 0L);
+    public List<DurationBin> getProcessDurationDistribution(AnalyticsFilter filter) {
+        return singleFlights.execute("analytics-duration", filter, () -> loadProcessDurationDistribution(filter));
+    }
 
-        for (HistoricProcessInstance instance : instances) {
-            Long duration = instance.getDurationInMillis();
-            if (duration == null) continue;
+    private List<DurationBin> loadProcessDurationDistribution(AnalyticsFilter filter) {
+        AnalyticsRollupService.Stats total = new AnalyticsRollupService.Stats();
+        rollupService.aggregate(Kind.PROCESS, filter).values().forEach(total::merge);
+
+        List<DurationBin> bins = new ArrayList<>(DURATION_BIN_LABELS.length);
+        for (int i = 0; i < DURATION_BIN_LABELS.length; i++) {
+            bins.add(DurationBin.builder()
+                    .label(DURATION_BIN_LABELS[i])
+                    .count(total.getBin(i))
+                    .minDurationMs(total.getBinMinMs(i))
+                    .maxDurationMs(total.getBinMaxMs(i))
+                    .build());
+        }
+        return bins;
+    }
 
-            double hours = duration / (1000.0 * 60 * 60);
+    /**
+     * Get user performance metrics (tasks completed in the filter range per assignee)
+     */
+    public List<UserPerformanceMetric> getUserPerformanceStats(AnalyticsFilter filter) {
+        return singleFlights.execute("analytics-user-performance", filter, () -> loadUserPerformanceStats(filter));
+    }
 
-            if (hours < 1) counts.put("< 1h", counts.get("< 1h") + 1);
-            else if (hours < 4) counts.put("1h - 4h", counts.get("1h - 4h") + 1);
-            else if (hours < 24) counts.put("4h - 24h", counts.get("4h - 24h") + 1);
-            else if (hours < 72) counts.put("1d - 3d", counts.get("1d - 3d") + 1);
-            else counts.put("> 3d", counts.get("> 3d") + 1);
-        }
+    private List<UserPerformanceMetric> loadUserPerformanceStats(AnalyticsFilter filter) {
+        Map<String, AnalyticsRollupService.Stats> byUser = new HashMap<>();
+        rollupService.aggregate(Kind.TASK, filter).forEach((key, stats) -> {
+            if (!key.assignee().isEmpty()) {
+                byUser.computeIfAbsent(key.assignee(), k -> new AnalyticsRollupService.Stats()).merge(stats);
+            }
+        });
 
-        return counts.entrySet().stream()
-                .map(e -> DurationBin.builder()
-                        .label(e.getKey())
-                        .count(e.getValue())
+        return byUser.entrySet().stream()
+                .map(entry -> UserPerformanceMetric.builder()
+                        .userId(entry.getKey())
+                        .tasksCompleted(entry.getValue().getCount())
+                        .avgDurationHours(entry.getValue().getAvgMs() / MS_PER_HOUR)
                         .build())
+                .sorted(Comparator.comparing(UserPerformanceMetric::getTasksCompleted).reversed()
+                        .thenComparing(UserPerformanceMetric::getUserId))
                 .collect(Collectors.toList());
     }
 
     /**
-     * Get user performance metrics (completed tasks)
+     * Identify potential bottlenecks: task definitions with the longest average duration among
+     * tasks finished in the filter range
      */
-    public List<UserPerformanceMetric> getUserPerformanceStats() {
-        // Fetch last 1000 completed tasks
-        List<HistoricTaskInstance> tasks = historyService.createHistoricTaskInstanceQuery()
-                .finished()
-                .taskAssigneeLike("%") // Only tasks with assignees
-                .orderByHistoricTaskInstanceEndTime().desc()
-                .listPage(0, 1000);
+    public List<BottleneckMetric> getBottlenecks(AnalyticsFilter filter) {
+        return singleFlights.execute("analytics-bottlenecks", filter, () -> loadBottlenecks(filter));
+    }
 
-        Map<String, List<Long>> userDurations = new HashMap<>();
+    private List<BottleneckMetric> loadBottlenecks(AnalyticsFilter filter) {
+        List<BottleneckMetric> bottlenecks = new ArrayList<>();
+        mergePerActivity(rollupService.aggregate(Kind.TASK, filter, true)).forEach((key, stats) -> {
+            // Needs a minimum sample size
+            if (stats.getCount() > BOTTLENECK_MIN_SAMPLES) {
+                bottlenecks.add(BottleneckMetric.builder()
+                        .processDefinitionKey(key.processDefinitionKey())
+                        .taskDefinitionKey(key.taskDefinitionKey())
+                        .taskName(stats.getTaskName())
+                        .avgDurationHours(stats.getAvgMs() / MS_PER_HOUR)
+                        .p90DurationHours(clamp(stats.getHistogram().valueAt(0.90), stats) / MS_PER_HOUR)
+                        .p99DurationHours(clamp(stats.getHistogram().valueAt(0.99), stats) / MS_PER_HOUR)
+                        .totalInstances(stats.getCount())
+                        .slowInstanceCount(stats.getBreaches())
+                        .build());
+            }
+        });
 
-        for (HistoricTaskInstance task : tasks) {
-            String assignee = task.getAssignee();
-            if (assignee == null) continue;
+        // Sort by Average Duration Descending
+        bottlenecks.sort(Comparator.comparing(BottleneckMetric::getAvgDurationHours).reversed());
+        return bottlenecks;
+    }
 
-            Long duration = task.getDurationInMillis();
-            if (duration == null) continue;
+    /**
+     * Duration percentiles of the tasks, activities or processes finished in the filter range, per
+     * definition and, for tasks and activities, per task definition or activity. Percentiles come
+     * from merged rollup histograms and are accurate to within about 6%; slowest p90 first.
+     */
+    public List<LatencyPercentiles> getLatencyPercentiles(Kind kind, AnalyticsFilter filter) {
+        return singleFlights.execute("analytics-percentiles", Arrays.asList(kind, filter),
+                () -> loadLatencyPercentiles(kind, filter));
+    }
 
-            userDurations.computeIfAbsent(assignee, k -> new ArrayList<>()).add(duration);
-        }
+    private List<LatencyPercentiles> loadLatencyPercentiles(Kind kind, AnalyticsFilter filter) {
+        List<LatencyPercentiles> percentiles = new ArrayList<>();
+        mergePerActivity(rollupService.aggregate(kind, filter, true)).forEach((key, stats) -> {
+            LatencyHistogram histogram = stats.getHistogram();
+            percentiles.add(LatencyPercentiles.builder()
+                    .kind(kind.name())
+                    .processDefinitionKey(key.processDefinitionKey())
+                    .activityId(kind == Kind.PROCESS ? null : key.taskDefinitionKey())
+                    .name(stats.getTaskName())
+                    .count(stats.getCount())
+                    .minMs(stats.getMinMs())
+                    // Bucket midpoints are clamped to the exact extremes
+                    .p50Ms(clamp(histogram.valueAt(0.50), stats))
+                    .p90Ms(clamp(histogram.valueAt(0.90), stats))
+                    .p99Ms(clamp(histogram.valueAt(0.99), stats))
+                    .maxMs(stats.getMaxMs())
+                    .avgMs(stats.getAvgMs())
+                    .build());
+        });
+        percentiles.sort(Comparator.comparing(LatencyPercentiles::getP90Ms).reversed()
+                .thenComparing(LatencyPercentiles::getProcessDefinitionKey));
+        return percentiles;
+    }
 
-        return userDurations.entrySet().stream()
-                .map(entry -> {
-                    String user = entry.getKey();
-                    List<Long> durations = entry.getValue();
-                    double avgMs = durations.stream().mapToLong(Long::longValue).average().orElse(0);
-                    return UserPerformanceMetric.builder()
-                            .userId(user)
-                            .tasksCompleted(durations.size())
-                            .avgDurationHours(avgMs / (1000.0 * 60 * 60))
-                            .build();
-                })
-                .sorted(Comparator.comparing(UserPerformanceMetric::getTasksCompleted).reversed())
-                .collect(Collectors.toList());
+    /**
+     * Merge rollup groups across assignees, leaving one group per definition and activity.
+     */
+    private static Map<AnalyticsRollupService.GroupKey, AnalyticsRollupService.Stats> mergePerActivity(
+            Map<AnalyticsRollupService.GroupKey, AnalyticsRollupService.Stats> groups) {
+        Map<AnalyticsRollupService.GroupKey, AnalyticsRollupService.Stats> merged = new HashMap<>();
+        groups.forEach((key, stats) -> merged
+                .computeIfAbsent(new AnalyticsRollupService.GroupKey(key.kind(), key.processDefinitionKey(),
+                        key.taskDefinitionKey(), ""), k -> new AnalyticsRollupService.Stats())
+                .merge(stats));
+        return merged;
+    }
+
+    private static long clamp(long value, AnalyticsRollupService.Stats stats) {
+        return Math.max(stats.getMinMs(), Math.min(stats.getMaxMs(), value));
     }
 
     /**
-     * Identify potential bottlenecks (slow tasks)
+     * Get the number of processes finished per hour, day or week over the last N days, with
+     * buckets aligned to the given time zone (the server zone when null). Every bucket in the
+     * window is returned, oldest first, including empty ones.
+     *
+     * The database counts completions per bucket and only those counts are read, so memory stays
+     * proportional to the number of buckets rather than to the number of instances. On PostgreSQL
+     * days and weeks are bucketed in the requested zone directly; elsewhere, and for hours (whose
+     * wall-clock labels repeat when daylight saving ends), hourly counts are folded into buckets.
      */
-    public List<BottleneckMetric> getBottlenecks() {
-        // Fetch last 2000 finished tasks
-        List<HistoricTaskInstance> tasks = historyService.createHistoricTaskInstanceQuery()
-                .finished()
-                .orderByHistoricTaskInstanceEndTime().desc()
-                .listPage(0, 2000);
-
-        // Group by ProcessKey + TaskDefKey
-        Map<String, List<Long>> taskDurations = new HashMap<>();
-        Map<String, String> taskNames = new HashMap<>(); // Key -> Human name
-
-        for (HistoricTaskInstance task : tasks) {
-            if (task.getDurationInMillis() == null) continue;
-            
-            String key = task.getProcessDefinitionId().split(":")[0] + "::" + task.getTaskDefinitionKey();
-            taskDurations.computeIfAbsent(key, k -> new ArrayList<>()).add(task.getDurationInMillis());
-            taskNames.putIfAbsent(key, task.getName());
+    public List<TrendMetric> getProcessCompletionTrend(int days, String granularity, String timeZone) {
+        return singleFlights.execute("analytics-completion-trend", Arrays.asList(days, granularity, timeZone),
+                () -> loadProcessCompletionTrend(days, granularity, timeZone));
+    }
+
+    private List<TrendMetric> loadProcessCompletionTrend(int days, String granularity, String timeZone) {
+        TrendGranularity unit = TrendGranularity.parse(granularity);
+        ZoneId zone = parseZone(timeZone);
+        if (days < 1 || days > unit.maxDays) {
+            throw new IllegalArgumentException("A " + unit.name().toLowerCase() + "ly trend covers 1 to "
+                    + unit.maxDays + " days, not " + days);
         }
 
-        List<BottleneckMetric> bottlenecks = new ArrayList<>();
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        Instant from = unit.truncate(now.minusDays(days).plus(1, unit.step)).toInstant();
+        Instant to = unit.truncate(now).plus(1, unit.step).toInstant();
+        Map<Instant, Long> counts = new LinkedHashMap<>();
+        for (ZonedDateTime bucket = from.atZone(zone); bucket.toInstant().isBefore(to); bucket = bucket.plus(1, unit.step)) {
+            counts.put(bucket.toInstant(), 0L);
+        }
 
-        for (Map.Entry<String, List<Long>> entry : taskDurations.entrySet()) {
-            String key = entry.getKey();
-            List<Long> durations = entry.getValue();
-            
-            double avgMs = durations.stream().mapToLong(v -> v).average().orElse(0);
-            
-            // Count "slow" instances (e.g., > 1.5x average)
-            long slowCount = durations.stream()
-                    .filter(d -> d > (avgMs * 1.5))
-                    .count();
-
-            // Only report if we have enough data and significant slowness
-            if (durations.size() > 5) { // Needs minimum sample size
-                String[] parts = key.split("::");
-                bottlenecks.add(BottleneckMetric.builder()
-                        .processDefinitionKey(parts[0])
-                        .taskDefinitionKey(parts[1])
-                        .taskName(taskNames.get(key))
-                        .avgDurationHours(avgMs / (1000.0 * 60 * 60))
-                        .totalInstances(durations.size())
-                        .slowInstanceCount(slowCount)
-                        .build());
-            }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.from(from))
+                .addValue("to", Timestamp.from(to));
+        ZoneId serverZone = ZoneId.systemDefault();
+        if (unit != TrendGranularity.HOUR && databaseDialect.isPostgres()) {
+            // END_TIME_ holds server-local wall time: read it as an instant in the server zone,
+            // then as wall time in the requested zone; PostgreSQL weeks start on Monday
+            params.addValue("serverZone", DatabaseDialect.postgresZone(serverZone))
+                    .addValue("zone", DatabaseDialect.postgresZone(zone));
+            String bucket = "DATE_TRUNC('" + unit.name().toLowerCase()
+                    + "', (END_TIME_ AT TIME ZONE :serverZone) AT TIME ZONE :zone)";
+            // Grouped by position: repeating the expression would bind the zones again as new
+            // parameters, which PostgreSQL does not accept as the same grouping expression
+            jdbcTemplate.query("SELECT " + bucket + " AS bucket, COUNT(*) AS completed FROM ACT_HI_PROCINST"
+                    + " WHERE END_TIME_ >= :from AND END_TIME_ < :to GROUP BY 1", params, rs -> {
+                Instant bucketStart = rs.getTimestamp("bucket").toLocalDateTime().toLocalDate()
+                        .atStartOfDay(zone).toInstant();
+                long completed = rs.getLong("completed");
+                counts.computeIfPresent(bucketStart, (start, count) -> count + completed);
+            });
+            return toTrend(counts, unit, zone);
+        }
+
+        // END_TIME_ holds server-local wall time; shifting it by the part of the zone offset
+        // difference below an hour makes the hourly slots start on whole hours of the zone
+        int offsetMinutes = (zone.getRules().getOffset(now.toInstant()).getTotalSeconds()
+                - serverZone.getRules().getOffset(now.toInstant()).getTotalSeconds()) / 60;
+        int shiftMinutes = Math.floorMod(offsetMinutes, 60);
+        String slot = shiftMinutes == 0
+                ? "DATE_TRUNC('hour', END_TIME_)"
+                : "DATE_TRUNC('hour', END_TIME_ + INTERVAL '" + shiftMinutes + "' MINUTE)";
+
+        jdbcTemplate.query("SELECT " + slot + " AS slot, COUNT(*) AS completed FROM ACT_HI_PROCINST"
+                + " WHERE END_TIME_ >= :from AND END_TIME_ < :to GROUP BY " + slot, params, rs -> {
+            Instant slotStart = rs.getTimestamp("slot").toLocalDateTime()
+                    .minusMinutes(shiftMinutes).atZone(serverZone).toInstant();
+            long completed = rs.getLong("completed");
+            counts.computeIfPresent(unit.truncate(slotStart.atZone(zone)).toInstant(),
+                    (bucket, count) -> count + completed);
+        });
+        return toTrend(counts, unit, zone);
+    }
+
+    private static List<TrendMetric> toTrend(Map<Instant, Long> counts, TrendGranularity unit, ZoneId zone) {
+        List<TrendMetric> trend = new ArrayList<>(counts.size());
+        counts.forEach((bucket, count) -> trend.add(TrendMetric.builder()
+                .date(unit.label(bucket.atZone(zone)))
+                .count(count)
+                .build()));
+        return trend;
+    }
+
+    private static ZoneId parseZone(String timeZone) {
+        if (timeZone == null || timeZone.isBlank()) {
+            return ZoneId.systemDefault();
+        }
+        try {
+            return ZoneId.of(timeZone);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Unknown time zone: " + timeZone);
         }
-        
-        // Sort by Average Duration Descending
-        bottlenecks.sort(Comparator.comparing(BottleneckMetric::getAvgDurationHours).reversed());
-        return bottlenecks;
     }
 
     /**
-     * Get process completion trend for the last N days
+     * Bucket size of the completion trend. Weeks start on Monday.
      */
-    public List<TrendMetric> getProcessCompletionTrend(int days) {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DAY_OF_YEAR, -days);
-        Date startDate = cal.getTime();
-
-        List<HistoricProcessInstance> instances = historyService.createHistoricProcessInstanceQuery()
-                .finished()
-                .finishedAfter(startDate)
-                .orderByProcessInstanceEndTime().asc()
-                .list();
-
-        Map<String, Long> dailyCounts = new TreeMap<>();
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd");
-
-        // Initialize all days with 0 to ensure continuity
-        Calendar c = Calendar.getInstance();
-        for (int i = 0; i < days; i++) {
-            dailyCounts.put(sdf.format(c.getTime()), 0L);
-            c.add(Calendar.DAY_OF_YEAR, -1);
+    public enum TrendGranularity {
+        HOUR(ChronoUnit.HOURS, 92),
+        DAY(ChronoUnit.DAYS, 3660),
+        WEEK(ChronoUnit.WEEKS, 3660);
+
+        private final ChronoUnit step;
+        private final int maxDays;
+
+        TrendGranularity(ChronoUnit step, int maxDays) {
+            this.step = step;
+            this.maxDays = maxDays;
         }
 
-        for (HistoricProcessInstance instance : instances) {
-            if (instance.getEndTime() != null) {
-                String dateStr = sdf.format(instance.getEndTime());
-                // Only count if it falls within our range (safe guard)
-                if (dailyCounts.containsKey(dateStr)) {
-                    dailyCounts.put(dateStr, dailyCounts.get(dateStr) + 1);
-                }
+        static TrendGranularity parse(String value) {
+            if (value == null || value.isBlank()) {
+                return DAY;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown trend granularity: " + value);
             }
         }
 
-        return dailyCounts.entrySet().stream()
-                .map(e -> TrendMetric.builder()
-                        .date(e.getKey())
-                        .count(e.getValue())
-                        .build())
-                .sorted(Comparator.comparing(TrendMetric::getDate))
-                .collect(Collectors.toList());
+        ZonedDateTime truncate(ZonedDateTime time) {
+            return switch (this) {
+                case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+                case DAY -> time.toLocalDate().atStartOfDay(time.getZone());
+                case WEEK -> time.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                        .atStartOfDay(time.getZone());
+            };
+        }
+
+        String label(ZonedDateTime bucket) {
+            // Hours carry their offset so the repeated hour at the end of daylight saving stays distinct
+            return this == HOUR ? bucket.toOffsetDateTime().toString() : bucket.toLocalDate().toString();
+        }
     }
 }
@@ -0,0 +1,204 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.AuditImportReportDTO;
+import com.demo.bpm.entity.WorkflowAuditEvent;
+import com.demo.bpm.entity.WorkflowAuditEvent.EventType;
+import com.demo.bpm.repository.WorkflowAuditEventRepository;
+import com.demo.bpm.util.WorkflowConstants;
+import com.demo.bpm.util.WorkflowVariableUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.HistoryService;
+import org.flowable.variable.api.history.HistoricVariableInstance;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Imports the JSON history variables (approvalHistory, escalationHistory, handoffHistory) that
+ * predate the audit store into workflow_audit_event.
+ *
+ * The variables are read from history, which covers running and finished instances, one page
+ * per transaction. Records keep their original id, or get one derived from their position, so
+ * the import can be re-run safely; records already in the store are skipped.
+ *
+ * The same mapping is used when an instance gets its first event in the store
+ * (see importInstance) and when history is read before the import ran (see
+ * WorkflowHistoryService), so a record has the same event id wherever it comes from.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditEventMigrationService {
+
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    private static final List<String> LEGACY_VARIABLES = List.of(WorkflowConstants.VAR_APPROVAL_HISTORY,
+            WorkflowConstants.VAR_ESCALATION_HISTORY, WorkflowConstants.VAR_HANDOFF_HISTORY);
+
+    private final HistoryService historyService;
+    private final AuditEventService auditEventService;
+    private final WorkflowAuditEventRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public AuditImportReportDTO importLegacyHistory(int batchSize) {
+        long started = System.currentTimeMillis();
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        AuditImportReportDTO report = new AuditImportReportDTO();
+
+        for (String variableName : LEGACY_VARIABLES) {
+            // New history is no longer written to these variables, so offset paging is stable
+            int offset = 0;
+            List<HistoricVariableInstance> page;
+            do {
+                page = historyService.createHistoricVariableInstanceQuery()
+                        .variableName(variableName)
+                        .excludeTaskVariables()
+                        .orderByProcessInstanceId().asc()
+                        .listPage(offset, size);
+                offset += page.size();
+                report.setVariablesScanned(report.getVariablesScanned() + page.size());
+
+                List<WorkflowAuditEvent> events = new ArrayList<>();
+                for (HistoricVariableInstance variable : page) {
+                    events.addAll(toEvents(variableName, variable));
+                }
+                int imported = importBatch(events);
+                report.setEventsImported(report.getEventsImported() + imported);
+                report.setEventsSkipped(report.getEventsSkipped() + events.size() - imported);
+            } while (page.size() == size);
+        }
+
+        report.setElapsedMs(System.currentTimeMillis() - started);
+        log.info("Imported {} legacy audit events from {} variables ({} already present) in {} ms",
+                report.getEventsImported(), report.getVariablesScanned(), report.getEventsSkipped(), report.getElapsedMs());
+        return report;
+    }
+
+    /**
+     * Import the legacy history of one instance. Called before the first event of an instance
+     * is written to the store, so that in-flight instances keep their earlier approvals and
+     * escalations and step orders continue from them.
+     */
+    public int importInstance(String processInstanceId) {
+        List<WorkflowAuditEvent> events = new ArrayList<>();
+        for (String variableName : LEGACY_VARIABLES) {
+            List<HistoricVariableInstance> variables = historyService.createHistoricVariableInstanceQuery()
+                    .processInstanceId(processInstanceId)
+                    .variableName(variableName)
+                    .excludeTaskVariables()
+                    .list();
+            for (HistoricVariableInstance variable : variables) {
+                events.addAll(toEvents(variableName, variable));
+            }
+        }
+        int imported = importBatch(events);
+        if (imported > 0) {
+            log.debug("Imported {} legacy audit events of process {}", imported, processInstanceId);
+        }
+        return imported;
+    }
+
+    private int importBatch(List<WorkflowAuditEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        Integer imported = transactionTemplate.execute(status -> {
+            Set<String> existing = new HashSet<>(repository.findExistingEventIds(
+                    events.stream().map(WorkflowAuditEvent::getEventId).toList()));
+            List<WorkflowAuditEvent> fresh = events.stream()
+                    .filter(event -> existing.add(event.getEventId()))
+                    .toList();
+            auditEventService.append(fresh);
+            return fresh.size();
+        });
+        return imported != null ? imported : 0;
+    }
+
+    List<WorkflowAuditEvent> toEvents(String variableName, HistoricVariableInstance variable) {
+        Date updated = variable.getLastUpdatedTime() != null ? variable.getLastUpdatedTime() : variable.getCreateTime();
+        return toEvents(variable.getProcessInstanceId(), variableName, variable.getValue(),
+                updated != null ? new java.sql.Timestamp(updated.getTime()).toLocalDateTime() : LocalDateTime.now());
+    }
+
+    /**
+     * Events for the records of one legacy history variable.
+     *
+     * @param value the variable value, a list or its (compressed) JSON
+     * @param fallbackTime when records without a readable timestamp happened
+     */
+    public List<WorkflowAuditEvent> toEvents(String processInstanceId, String variableName, Object value,
+                                             LocalDateTime fallbackTime) {
+        List<Map<String, Object>> records = WorkflowVariableUtils.getListVariable(
+                Collections.singletonMap(variableName, value), variableName, objectMapper);
+
+        List<WorkflowAuditEvent> events = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Map<String, Object> record = records.get(i);
+            WorkflowAuditEvent.WorkflowAuditEventBuilder event = WorkflowAuditEvent.builder()
+                    .eventId(eventId(record, processInstanceId, variableName, i))
+                    .processInstanceId(processInstanceId)
+                    .taskId(string(record, "taskId"))
+                    .taskName(string(record, "taskName"))
+                    .createdAt(timestamp(record, processInstanceId, fallbackTime));
+
+            switch (variableName) {
+                case WorkflowConstants.VAR_APPROVAL_HISTORY -> event
+                        .eventType(EventType.APPROVAL)
+                        .actorId(string(record, "approverId"))
+                        .fromLevel(string(record, "approverLevel"))
+                        .decision(string(record, "decision"))
+                        .comments(string(record, "comments"))
+                        .stepOrder(record.get("stepOrder") instanceof Number n ? n.intValue() : i + 1);
+                case WorkflowConstants.VAR_ESCALATION_HISTORY -> event
+                        .eventType(WorkflowConstants.TYPE_DE_ESCALATE.equals(record.get("type"))
+                                ? EventType.DE_ESCALATE : EventType.ESCALATE)
+                        .actorId(string(record, "fromUserId"))
+                        .fromLevel(string(record, "fromLevel"))
+                        .toLevel(string(record, "toLevel"))
+                        .comments(string(record, "reason"));
+                default -> event
+                        .eventType(EventType.HANDOFF)
+                        .actorId(string(record, "fromUserId"))
+                        .targetUserId(string(record, "toUserId"))
+                        .comments(string(record, "reason"));
+            }
+            events.add(event.build());
+        }
+        return events;
+    }
+
+    private static String eventId(Map<String, Object> record, String processInstanceId, String variableName, int index) {
+        String id = string(record, "id");
+        if (id != null && id.length() <= 36) {
+            return id;
+        }
+        // Stable across runs so a repeated import recognises the record
+        String seed = processInstanceId + "|" + variableName + "|" + index;
+        return UUID.nameUUIDFromBytes(seed.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static LocalDateTime timestamp(Map<String, Object> record, String processInstanceId,
+                                           LocalDateTime fallbackTime) {
+        String value = string(record, "timestamp");
+        if (value != null) {
+            try {
+                return LocalDateTime.parse(value);
+            } catch (DateTimeParseException e) {
+                log.debug("Unparseable timestamp '{}' in legacy history of {}", value, processInstanceId);
+            }
+        }
+        return fallbackTime;
+    }
+
+    private static String string(Map<String, Object> record, String key) {
+        Object value = record.get(key);
+        return value != null ? value.toString() : null;
+    }
+}
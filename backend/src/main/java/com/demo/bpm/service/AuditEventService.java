@@ -0,0 +1,139 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ApprovalDTO;
+import com.demo.bpm.dto.EscalationDTO;
+import com.demo.bpm.entity.WorkflowAuditEvent;
+import com.demo.bpm.entity.WorkflowAuditEvent.EventType;
+import com.demo.bpm.repository.WorkflowAuditEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only store of approvals, escalations and handoffs.
+ *
+ * Recording an event is a single insert, independent of how much history the instance already
+ * has, and the events of all instances can be queried together. Inserts go through JDBC batches
+ * rather than JPA, which cannot batch IDENTITY inserts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditEventService {
+
+    private static final String INSERT =
+            "INSERT INTO workflow_audit_event (event_id, event_type, process_instance_id, task_id, task_name," +
+                    " actor_id, target_user_id, from_level, to_level, decision, comments, step_order, created_at)" +
+                    " VALUES (:eventId, :eventType, :processInstanceId, :taskId, :taskName, :actorId, :targetUserId," +
+                    " :fromLevel, :toLevel, :decision, :comments, :stepOrder, :createdAt)";
+
+    private static final Set<EventType> ESCALATION_TYPES = Set.of(EventType.ESCALATE, EventType.DE_ESCALATE);
+
+    private final WorkflowAuditEventRepository repository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void append(WorkflowAuditEvent event) {
+        append(List.of(event));
+    }
+
+    /**
+     * Insert the events in one JDBC batch, in the caller's transaction.
+     */
+    public void append(Collection<WorkflowAuditEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource[] batch = events.stream()
+                .map(event -> new MapSqlParameterSource()
+                        .addValue("eventId", event.getEventId())
+                        .addValue("eventType", event.getEventType().name())
+                        .addValue("processInstanceId", event.getProcessInstanceId())
+                        .addValue("taskId", event.getTaskId())
+                        .addValue("taskName", event.getTaskName())
+                        .addValue("actorId", event.getActorId())
+                        .addValue("targetUserId", event.getTargetUserId())
+                        .addValue("fromLevel", event.getFromLevel())
+                        .addValue("toLevel", event.getToLevel())
+                        .addValue("decision", event.getDecision())
+                        .addValue("comments", event.getComments())
+                        .addValue("stepOrder", event.getStepOrder())
+                        .addValue("createdAt", Timestamp.valueOf(event.getCreatedAt() != null
+                                ? event.getCreatedAt() : LocalDateTime.now())))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT, batch);
+        log.debug("Appended {} audit events", batch.length);
+    }
+
+    /**
+     * Lock the running process instance until the transaction ends, so events of one instance
+     * are written by one transaction at a time. Finished instances have no row to lock.
+     */
+    public void lockInstance(String processInstanceId) {
+        jdbcTemplate.query("SELECT ID_ FROM ACT_RU_EXECUTION WHERE ID_ = :id FOR UPDATE",
+                new MapSqlParameterSource("id", processInstanceId), rs -> {
+                });
+    }
+
+    public boolean hasEvents(String processInstanceId) {
+        return repository.existsByProcessInstanceId(processInstanceId);
+    }
+
+    /**
+     * Step order for the next approval of the instance; call with the instance locked.
+     */
+    public int nextApprovalStep(String processInstanceId) {
+        return repository.findMaxStepOrder(processInstanceId, EventType.APPROVAL) + 1;
+    }
+
+    public List<ApprovalDTO> getApprovals(String processInstanceId) {
+        return repository.findByProcessInstanceIdAndEventTypeInOrderByCreatedAtAscIdAsc(
+                        processInstanceId, Set.of(EventType.APPROVAL)).stream()
+                .map(AuditEventService::toApproval)
+                .toList();
+    }
+
+    public List<EscalationDTO> getEscalations(String processInstanceId) {
+        return repository.findByProcessInstanceIdAndEventTypeInOrderByCreatedAtAscIdAsc(
+                        processInstanceId, ESCALATION_TYPES).stream()
+                .map(AuditEventService::toEscalation)
+                .toList();
+    }
+
+    public static ApprovalDTO toApproval(WorkflowAuditEvent event) {
+        return ApprovalDTO.builder()
+                .id(event.getEventId())
+                .processInstanceId(event.getProcessInstanceId())
+                .taskId(event.getTaskId())
+                .taskName(event.getTaskName())
+                .approverId(event.getActorId())
+                .approverLevel(event.getFromLevel())
+                .decision(event.getDecision())
+                .comments(event.getComments())
+                .timestamp(event.getCreatedAt())
+                .stepOrder(event.getStepOrder() != null ? event.getStepOrder() : 0)
+                .isRequired(true)
+                .build();
+    }
+
+    public static EscalationDTO toEscalation(WorkflowAuditEvent event) {
+        return EscalationDTO.builder()
+                .id(event.getEventId())
+                .taskId(event.getTaskId())
+                .processInstanceId(event.getProcessInstanceId())
+                .fromUserId(event.getActorId())
+                .fromLevel(event.getFromLevel())
+                .toLevel(event.getToLevel())
+                .reason(event.getComments())
+                .type(event.getEventType().name())
+                .timestamp(event.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,511 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.BulkImportReportDTO;
+import com.demo.bpm.dto.BulkImportReportDTO.RecordError;
+import com.demo.bpm.dto.BulkStartResultDTO;
+import com.demo.bpm.dto.BulkStartResultDTO.StartedInstance;
+import com.demo.bpm.entity.ProcessConfig;
+import com.demo.bpm.exception.ResourceNotFoundException;
+import com.demo.bpm.repository.ProcessConfigRepository;
+import com.demo.bpm.service.BusinessTableService.NewInstanceData;
+import com.demo.bpm.service.helpers.ColumnMappingCache;
+import com.demo.bpm.service.helpers.ImportRecordReader;
+import com.demo.bpm.service.helpers.ImportRecordReader.ImportRecord;
+import com.demo.bpm.util.VariableStorageUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.IdentityService;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams NDJSON, JSON array or CSV uploads into process instances plus their document and
+ * grid data. Serves both the business table import and the bulk process start API.
+ *
+ * Records are read one at a time from the request stream and committed in batches: every
+ * record of a batch shares one transaction and one column mapping cache. When a batch fails,
+ * it is rolled back and replayed record by record so that only the offending records are
+ * reported as failed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkImportService {
+
+    static final int DEFAULT_BATCH_SIZE = 200;
+    static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_TRACKED_IMPORTS = 50;
+    // Started instances kept with a tracked import; the bulk start response returns all of them
+    private static final int MAX_SAMPLED_INSTANCES = 20;
+
+    private final RuntimeService runtimeService;
+    private final RepositoryService repositoryService;
+    private final IdentityService identityService;
+    private final BusinessTableService businessTableService;
+    private final ColumnMappingService columnMappingService;
+    private final ProcessConfigRepository processConfigRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, ImportProgress> imports = new ConcurrentHashMap<>();
+
+    /**
+     * Import all records of the given stream. Blocks until the stream is exhausted; progress
+     * can be polled meanwhile through {@link #getImport(String)}.
+     */
+    public BulkImportReportDTO importRecords(String processKey, InputStream input,
+                                             ImportOptions options, String userId) {
+        return run(processKey, input, options, userId, null).toReport();
+    }
+
+    /**
+     * Start one process instance per record and return the id and business key of every
+     * instance started. Records are read and committed exactly as by
+     * {@link #importRecords(String, InputStream, ImportOptions, String)}.
+     */
+    public BulkStartResultDTO startInstances(String processKey, InputStream input,
+                                             ImportOptions options, String userId) {
+        List<StartedInstance> started = new ArrayList<>();
+        return run(processKey, input, options, userId, started).toStartResult(started);
+    }
+
+    private ImportProgress run(String processKey, InputStream input, ImportOptions options, String userId,
+                               List<StartedInstance> started) {
+        ProcessDefinition definition = repositoryService.createProcessDefinitionQuery()
+                .processDefinitionKey(processKey)
+                .latestVersion()
+                .singleResult();
+        if (definition == null) {
+            throw new ResourceNotFoundException("Process definition not found: " + processKey);
+        }
+
+        String documentType = options.getDocumentType() != null ? options.getDocumentType()
+                : processConfigRepository.findByProcessDefinitionKey(processKey)
+                        .map(ProcessConfig::getDocumentType)
+                        .orElse(null);
+        int batchSize = Math.max(1, Math.min(options.getBatchSize() > 0 ? options.getBatchSize() : DEFAULT_BATCH_SIZE,
+                MAX_BATCH_SIZE));
+        Map<String, FieldMapping> mappings = parseFieldMappings(options.getFieldMappings());
+
+        String importId = options.getImportId() != null ? options.getImportId() : UUID.randomUUID().toString();
+        if (imports.containsKey(importId)) {
+            throw new IllegalArgumentException("Import id already in use: " + importId);
+        }
+        ImportProgress progress = new ImportProgress(importId, processKey, documentType, options.getFormat());
+        register(progress);
+
+        ImportContext context = new ImportContext(definition, documentType, userId, importId,
+                new ColumnMappingCache(columnMappingService), started);
+
+        log.info("Starting bulk import {} into process {} ({} format, batch size {})",
+                importId, processKey, options.getFormat(), batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            ImportRecordReader records = switch (options.getFormat()) {
+                case CSV -> ImportRecordReader.csv(reader, options.getDelimiter());
+                case JSON -> ImportRecordReader.jsonArray(reader, objectMapper);
+                case NDJSON -> ImportRecordReader.ndjson(reader, objectMapper);
+            };
+
+            List<PreparedRecord> batch = new ArrayList<>(batchSize);
+            ImportRecord record;
+            while ((record = records.next()) != null) {
+                progress.recordsRead.incrementAndGet();
+                if (!record.isValid()) {
+                    progress.fail(record.lineNumber(), null, record.error());
+                    continue;
+                }
+
+                PreparedRecord prepared;
+                try {
+                    prepared = prepare(record, mappings, options, processKey, importId);
+                } catch (IllegalArgumentException e) {
+                    progress.fail(record.lineNumber(), null, e.getMessage());
+                    continue;
+                }
+
+                batch.add(prepared);
+                if (batch.size() >= batchSize) {
+                    flush(batch, context, progress);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                flush(batch, context, progress);
+            }
+            progress.finish("COMPLETED", null);
+        } catch (IOException | RuntimeException e) {
+            log.error("Bulk import {} aborted after {} records: {}", importId, progress.recordsRead.get(), e.getMessage());
+            progress.finish("FAILED", e.getMessage());
+        }
+
+        BulkImportReportDTO report = progress.toReport();
+        log.info("Bulk import {} finished: {} imported, {} failed in {} ms ({} records/s)",
+                importId, report.getRecordsImported(), report.getRecordsFailed(),
+                report.getElapsedMs(), String.format("%.1f", report.getRecordsPerSecond()));
+        return progress;
+    }
+
+    /**
+     * Current progress of a running import or the final report of a recent one.
+     */
+    public Optional<BulkImportReportDTO> getImport(String importId) {
+        return Optional.ofNullable(imports.get(importId)).map(ImportProgress::toReport);
+    }
+
+    // ==================== Batching ====================
+
+    private void flush(List<PreparedRecord> batch, ImportContext context, ImportProgress progress) {
+        try {
+            List<NewInstanceData> instances = new ArrayList<>(batch.size());
+            transactionTemplate.executeWithoutResult(status -> instances.addAll(importRecords(batch, context)));
+            for (NewInstanceData instance : instances) {
+                imported(instance, context, progress);
+            }
+            progress.batchesCommitted.incrementAndGet();
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Batch of {} records starting at line {} failed, retrying individually: {}",
+                    batch.size(), batch.get(0).lineNumber(), e.getMessage());
+        }
+
+        // Mappings created inside the rolled back transaction no longer exist
+        context.resetMappingCache(columnMappingService);
+
+        for (PreparedRecord record : batch) {
+            try {
+                List<NewInstanceData> instances = new ArrayList<>(1);
+                transactionTemplate.executeWithoutResult(status -> instances.addAll(importRecords(List.of(record), context)));
+                imported(instances.get(0), context, progress);
+            } catch (RuntimeException e) {
+                context.resetMappingCache(columnMappingService);
+                progress.fail(record.lineNumber(), record.businessKey(), rootMessage(e));
+            }
+        }
+        progress.batchesCommitted.incrementAndGet();
+    }
+
+    private List<NewInstanceData> importRecords(List<PreparedRecord> records, ImportContext context) {
+        List<NewInstanceData> instances = new ArrayList<>(records.size());
+        for (PreparedRecord record : records) {
+            instances.add(startInstance(record, context));
+        }
+
+        // The instances were started just now, so their data can be written without lookups,
+        // all documents of the batch in one insert
+        businessTableService.saveNewInstanceData(
+                instances,
+                context.definition.getKey(),
+                context.definition.getName(),
+                context.documentType,
+                context.userId,
+                context.mappingCache);
+        return instances;
+    }
+
+    private NewInstanceData startInstance(PreparedRecord record, ImportContext context) {
+        Map<String, Object> allVars = new HashMap<>(record.variables());
+        allVars.put("_initiator", context.userId);
+        allVars.put("_startedBy", context.userId);
+        allVars.put("_startedAt", LocalDateTime.now().toString());
+        allVars.put("_importId", context.importId);
+
+        identityService.setAuthenticatedUserId(context.userId);
+        ProcessInstance instance;
+        try {
+            instance = runtimeService.startProcessInstanceById(
+                    context.definition.getId(),
+                    record.businessKey(),
+                    VariableStorageUtil.filterSystemVariables(allVars));
+        } finally {
+            identityService.setAuthenticatedUserId(null);
+        }
+
+        return new NewInstanceData(instance.getId(), record.businessKey(), allVars);
+    }
+
+    private static void imported(NewInstanceData instance, ImportContext context, ImportProgress progress) {
+        StartedInstance started = new StartedInstance(instance.processInstanceId(), instance.businessKey());
+        if (context.started != null) {
+            context.started.add(started);
+        }
+        progress.imported(started);
+    }
+
+    // ==================== Record preparation ====================
+
+    @SuppressWarnings("unchecked")
+    private PreparedRecord prepare(ImportRecord record, Map<String, FieldMapping> mappings,
+                                   ImportOptions options, String processKey, String importId) {
+        Map<String, Object> source = record.values();
+        String businessKey = null;
+
+        // NDJSON envelope: {"businessKey": "...", "variables": {...}}
+        if (source.get("variables") instanceof Map<?, ?> nested) {
+            Object key = source.get("businessKey");
+            businessKey = key != null ? key.toString() : null;
+            source = (Map<String, Object>) nested;
+        }
+
+        Map<String, Object> variables = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            FieldMapping mapping = mappings.get(entry.getKey());
+            if (mapping == null) {
+                if (!options.isMappedOnly()) {
+                    variables.put(entry.getKey(), entry.getValue());
+                }
+                continue;
+            }
+            variables.put(mapping.target(), mapping.convert(entry.getValue()));
+        }
+
+        String businessKeyField = options.getBusinessKeyField();
+        if (businessKey == null && businessKeyField != null && variables.get(businessKeyField) != null) {
+            businessKey = variables.remove(businessKeyField).toString();
+        }
+        if (businessKey == null) {
+            String prefix = importId.length() > 8 ? importId.substring(0, 8) : importId;
+            businessKey = processKey.toUpperCase() + "-IMP-" + prefix + "-" + record.lineNumber();
+        }
+        if (options.getExtraVariables() != null) {
+            variables.putAll(options.getExtraVariables());
+        }
+
+        return new PreparedRecord(record.lineNumber(), businessKey, variables);
+    }
+
+    /**
+     * Parse mapping specs of the form {@code source:target[:type]}, type being one of
+     * string, number, boolean or date.
+     */
+    static Map<String, FieldMapping> parseFieldMappings(List<String> specs) {
+        Map<String, FieldMapping> result = new HashMap<>();
+        if (specs == null) {
+            return result;
+        }
+        for (String spec : specs) {
+            String[] parts = spec.split(":");
+            if (parts.length < 2 || parts.length > 3 || parts[0].isBlank() || parts[1].isBlank()) {
+                throw new IllegalArgumentException("Invalid field mapping '" + spec + "', expected source:target[:type]");
+            }
+            String type = parts.length == 3 ? parts[2].trim().toLowerCase() : "auto";
+            if (!Set.of("auto", "string", "number", "boolean", "date").contains(type)) {
+                throw new IllegalArgumentException("Unknown field type '" + type + "' in mapping '" + spec + "'");
+            }
+            result.put(parts[0].trim(), new FieldMapping(parts[1].trim(), type));
+        }
+        return result;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private void register(ImportProgress progress) {
+        imports.put(progress.importId, progress);
+        if (imports.size() > MAX_TRACKED_IMPORTS) {
+            imports.values().stream()
+                    .filter(p -> p.finishedAt != null)
+                    .min(Comparator.comparing(p -> p.finishedAt))
+                    .ifPresent(oldest -> imports.remove(oldest.importId));
+        }
+    }
+
+    // ==================== Types ====================
+
+    public enum ImportFormat { NDJSON, JSON, CSV }
+
+    @Data
+    @Builder
+    public static class ImportOptions {
+        @Builder.Default
+        private ImportFormat format = ImportFormat.NDJSON;
+        private String importId;
+        private String documentType;
+        private int batchSize;
+        @Builder.Default
+        private char delimiter = ',';
+        @Builder.Default
+        private String businessKeyField = "businessKey";
+        private List<String> fieldMappings;
+        private boolean mappedOnly;
+        // Set on every record, overriding values of the same name
+        private Map<String, Object> extraVariables;
+    }
+
+    record FieldMapping(String target, String type) {
+
+        Object convert(Object value) {
+            if (value == null || !(value instanceof String text)) {
+                return value;
+            }
+            String trimmed = text.trim();
+            try {
+                return switch (type) {
+                    case "number" -> Double.parseDouble(trimmed);
+                    case "boolean" -> Boolean.parseBoolean(trimmed) || "1".equals(trimmed) || "yes".equalsIgnoreCase(trimmed);
+                    case "date" -> trimmed.length() == 10
+                            ? java.time.LocalDate.parse(trimmed)
+                            : LocalDateTime.parse(trimmed);
+                    case "string" -> text;
+                    default -> value;
+                };
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cannot convert '" + text + "' to " + type + " for field " + target);
+            }
+        }
+    }
+
+    private record PreparedRecord(long lineNumber, String businessKey, Map<String, Object> variables) {
+    }
+
+    private static class ImportContext {
+        private final ProcessDefinition definition;
+        private final String documentType;
+        private final String userId;
+        private final String importId;
+        // Every instance started, for bulk starts only; lives as long as the request
+        private final List<StartedInstance> started;
+        private ColumnMappingCache mappingCache;
+
+        ImportContext(ProcessDefinition definition, String documentType, String userId, String importId,
+                      ColumnMappingCache mappingCache, List<StartedInstance> started) {
+            this.definition = definition;
+            this.documentType = documentType;
+            this.userId = userId;
+            this.importId = importId;
+            this.mappingCache = mappingCache;
+            this.started = started;
+        }
+
+        void resetMappingCache(ColumnMappingService columnMappingService) {
+            this.mappingCache = new ColumnMappingCache(columnMappingService);
+        }
+    }
+
+    private static class ImportProgress {
+        private final String importId;
+        private final String processKey;
+        private final String documentType;
+        private final ImportFormat format;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong recordsRead = new AtomicLong();
+        private final AtomicLong recordsImported = new AtomicLong();
+        private final AtomicLong recordsFailed = new AtomicLong();
+        private final AtomicLong batchesCommitted = new AtomicLong();
+        private final List<RecordError> errors = Collections.synchronizedList(new ArrayList<>());
+        // The first few started instances; tracked imports are kept after the response
+        private final List<StartedInstance> sampleInstances = Collections.synchronizedList(new ArrayList<>());
+        private volatile String status = "RUNNING";
+        private volatile String failureReason;
+        private volatile LocalDateTime finishedAt;
+        private volatile long elapsedNanos = -1;
+
+        ImportProgress(String importId, String processKey, String documentType, ImportFormat format) {
+            this.importId = importId;
+            this.processKey = processKey;
+            this.documentType = documentType;
+            this.format = format;
+        }
+
+        void imported(StartedInstance instance) {
+            recordsImported.incrementAndGet();
+            if (sampleInstances.size() < MAX_SAMPLED_INSTANCES) {
+                sampleInstances.add(instance);
+            }
+        }
+
+        void fail(long lineNumber, String businessKey, String message) {
+            recordsFailed.incrementAndGet();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(RecordError.builder()
+                        .lineNumber(lineNumber)
+                        .businessKey(businessKey)
+                        .message(message)
+                        .build());
+            }
+        }
+
+        void finish(String finalStatus, String reason) {
+            elapsedNanos = System.nanoTime() - startNanos;
+            failureReason = reason;
+            finishedAt = LocalDateTime.now();
+            status = finalStatus;
+        }
+
+        BulkImportReportDTO toReport() {
+            long nanos = elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startNanos;
+            long elapsedMs = Duration.ofNanos(nanos).toMillis();
+            long imported = recordsImported.get();
+            List<RecordError> errorSnapshot;
+            synchronized (errors) {
+                errorSnapshot = new ArrayList<>(errors);
+            }
+            List<StartedInstance> sampleSnapshot;
+            synchronized (sampleInstances) {
+                sampleSnapshot = new ArrayList<>(sampleInstances);
+            }
+            return BulkImportReportDTO.builder()
+                    .importId(importId)
+                    .processDefinitionKey(processKey)
+                    .documentType(documentType)
+                    .format(format.name())
+                    .status(status)
+                    .recordsRead(recordsRead.get())
+                    .recordsImported(imported)
+                    .recordsFailed(recordsFailed.get())
+                    .batchesCommitted(batchesCommitted.get())
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .elapsedMs(elapsedMs)
+                    .recordsPerSecond(nanos > 0 ? imported * 1_000_000_000d / nanos : 0)
+                    .failureReason(failureReason)
+                    .errors(errorSnapshot)
+                    .errorsTruncated(recordsFailed.get() > errorSnapshot.size())
+                    .sampleInstances(sampleSnapshot)
+                    .build();
+        }
+
+        BulkStartResultDTO toStartResult(List<StartedInstance> instances) {
+            BulkImportReportDTO report = toReport();
+            return BulkStartResultDTO.builder()
+                    .importId(report.getImportId())
+                    .processDefinitionKey(report.getProcessDefinitionKey())
+                    .status(report.getStatus())
+                    .requested(report.getRecordsRead())
+                    .started(report.getRecordsImported())
+                    .failed(report.getRecordsFailed())
+                    .elapsedMs(report.getElapsedMs())
+                    .instancesPerSecond(report.getRecordsPerSecond())
+                    .failureReason(report.getFailureReason())
+                    .instances(instances)
+                    .errors(report.getErrors())
+                    .errorsTruncated(report.isErrorsTruncated())
+                    .build();
+        }
+    }
+}
@@ -6,8 +6,13 @@ import com.demo.bpm.dto.ProcessConfigDTO;
 import com.demo.bpm.entity.*;
 import com.demo.bpm.entity.ColumnMapping.FieldType;
 import com.demo.bpm.repository.*;
+import com.demo.bpm.service.helpers.ColumnMappingCache;
+import com.demo.bpm.service.helpers.DocumentBatchWriter;
+import com.demo.bpm.service.helpers.DocumentChangeRecorder;
+import com.demo.bpm.util.TextCompression;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -31,9 +36,18 @@ public class BusinessTableService {
     private final GridRowRepository gridRowRepository;
     private final ProcessConfigRepository processConfigRepository;
     private final ColumnMappingService columnMappingService;
+    private final DocumentChangeRecorder documentChanges;
+    private final DocumentBatchWriter documentBatchWriter;
 
     public static final String DEFAULT_DOCUMENT_TYPE = "main";
 
+    // Opt-in: text values of at least min-length characters are stored deflated
+    @Value("${bpm.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${bpm.compression.min-length:1024}")
+    private int compressionMinLength = 1024;
+
     // ==================== Document Operations ====================
 
     /**
@@ -54,18 +68,52 @@ public class BusinessTableService {
     public Document saveDocument(String processInstanceId, String businessKey,
                                   String processDefKey, String processDefName,
                                   String documentType, Map<String, Object> variables, String userId) {
+        return saveDocument(processInstanceId, businessKey, processDefKey, processDefName,
+                documentType, variables, userId, new ColumnMappingCache(columnMappingService));
+    }
+
+    /**
+     * Save or update document data, resolving column mappings through the given cache.
+     */
+    @Transactional
+    public Document saveDocument(String processInstanceId, String businessKey,
+                                  String processDefKey, String processDefName,
+                                  String documentType, Map<String, Object> variables, String userId,
+                                  ColumnMappingCache mappingCache) {
 
         String docType = documentType != null ? documentType : DEFAULT_DOCUMENT_TYPE;
 
         // Get or create document by process instance ID and type
         Document document = documentRepository.findByProcessInstanceIdAndType(processInstanceId, docType)
-                .orElseGet(() -> {
-                    Document newDoc = new Document();
-                    newDoc.setProcessInstanceId(processInstanceId);
-                    newDoc.setType(docType);
-                    newDoc.setCreatedBy(userId);
-                    return newDoc;
-                });
+                .orElseGet(() -> newDocument(processInstanceId, docType, userId));
+
+        return writeDocument(document, businessKey, processDefKey, processDefName, variables, userId, mappingCache);
+    }
+
+    private Document newDocument(String processInstanceId, String docType, String userId) {
+        Document document = new Document();
+        document.setProcessInstanceId(processInstanceId);
+        document.setType(docType);
+        document.setCreatedBy(userId);
+        return document;
+    }
+
+    private Document writeDocument(Document document, String businessKey, String processDefKey,
+                                   String processDefName, Map<String, Object> variables, String userId,
+                                   ColumnMappingCache mappingCache) {
+        populateDocument(document, businessKey, processDefKey, processDefName, variables, userId, mappingCache);
+
+        document = documentRepository.save(document);
+        documentChanges.changed(document);
+        log.info("Saved document type '{}' for process instance: {}", document.getType(), document.getProcessInstanceId());
+
+        return document;
+    }
+
+    private void populateDocument(Document document, String businessKey, String processDefKey,
+                                  String processDefName, Map<String, Object> variables, String userId,
+                                  ColumnMappingCache mappingCache) {
+        String docType = document.getType();
 
         document.setBusinessKey(businessKey);
         document.setProcessDefinitionKey(processDefKey);
@@ -85,7 +133,7 @@ public class BusinessTableService {
 
                 // Determine field type and get/create mapping
                 FieldType fieldType = columnMappingService.determineFieldType(value);
-                ColumnMapping mapping = columnMappingService.getOrCreateDocumentMapping(
+                ColumnMapping mapping = mappingCache.documentMapping(
                         processDefKey, docType, fieldName, fieldType);
 
                 // Set value in appropriate column
@@ -93,17 +141,12 @@ public class BusinessTableService {
                 Object convertedValue = columnMappingService.convertValueForStorage(value, fieldType);
 
                 switch (fieldType) {
-                    case VARCHAR -> document.setVarchar(columnIndex, (String) convertedValue);
+                    case VARCHAR -> document.setVarchar(columnIndex, compressText((String) convertedValue));
                     case FLOAT -> document.setFloat(columnIndex, (Double) convertedValue);
                     case DATETIME -> document.setDatetime(columnIndex, (LocalDateTime) convertedValue);
                 }
             }
         }
-
-        document = documentRepository.save(document);
-        log.info("Saved document type '{}' for process instance: {}", docType, processInstanceId);
-
-        return document;
     }
 
     /**
@@ -174,6 +217,18 @@ public class BusinessTableService {
     public List<GridRow> saveGridRows(String processInstanceId, String processDefKey,
                                        String documentType, String gridName,
                                        List<Map<String, Object>> rows) {
+        return saveGridRows(processInstanceId, processDefKey, documentType, gridName, rows,
+                new ColumnMappingCache(columnMappingService));
+    }
+
+    /**
+     * Save grid rows, resolving column mappings through the given cache.
+     * Replaces existing rows for the specified grid.
+     */
+    @Transactional
+    public List<GridRow> saveGridRows(String processInstanceId, String processDefKey,
+                                       String documentType, String gridName,
+                                       List<Map<String, Object>> rows, ColumnMappingCache mappingCache) {
 
         String docType = documentType != null ? documentType : DEFAULT_DOCUMENT_TYPE;
 
@@ -185,11 +240,32 @@ public class BusinessTableService {
         // Delete existing rows for this grid
         gridRowRepository.deleteByDocumentIdAndGridName(document.getId(), gridName);
 
+        // Rows are replaced wholesale, so the document carries the change for feed consumers
+        document.setUpdatedAt(LocalDateTime.now());
+        documentChanges.changed(document);
+
+        return writeGridRows(document, processDefKey, gridName, rows, mappingCache);
+    }
+
+    private List<GridRow> writeGridRows(Document document, String processDefKey, String gridName,
+                                        List<Map<String, Object>> rows, ColumnMappingCache mappingCache) {
         if (rows == null || rows.isEmpty()) {
             return Collections.emptyList();
         }
 
-        List<GridRow> savedRows = new ArrayList<>();
+        List<GridRow> savedRows = gridRowRepository.saveAll(
+                buildGridRows(document, processDefKey, gridName, rows, mappingCache));
+
+        log.info("Saved {} rows for grid '{}' in document type '{}' for process {}",
+                savedRows.size(), gridName, document.getType(), document.getProcessInstanceId());
+        return savedRows;
+    }
+
+    private List<GridRow> buildGridRows(Document document, String processDefKey, String gridName,
+                                        List<Map<String, Object>> rows, ColumnMappingCache mappingCache) {
+        String processInstanceId = document.getProcessInstanceId();
+        String docType = document.getType();
+        List<GridRow> newRows = new ArrayList<>(rows.size());
 
         for (int i = 0; i < rows.size(); i++) {
             Map<String, Object> rowData = rows.get(i);
@@ -211,7 +287,7 @@ public class BusinessTableService {
 
                 // Determine field type and get/create mapping
                 FieldType fieldType = columnMappingService.determineFieldType(value);
-                ColumnMapping mapping = columnMappingService.getOrCreateGridMapping(
+                ColumnMapping mapping = mappingCache.gridMapping(
                         processDefKey, docType, gridName, fieldName, fieldType);
 
                 // Set value in appropriate column
@@ -219,18 +295,15 @@ public class BusinessTableService {
                 Object convertedValue = columnMappingService.convertValueForStorage(value, fieldType);
 
                 switch (fieldType) {
-                    case VARCHAR -> gridRow.setVarchar(columnIndex, (String) convertedValue);
+                    case VARCHAR -> gridRow.setVarchar(columnIndex, compressText((String) convertedValue));
                     case FLOAT -> gridRow.setFloat(columnIndex, (Double) convertedValue);
                     case DATETIME -> gridRow.setDatetime(columnIndex, (LocalDateTime) convertedValue);
                 }
             }
 
-            savedRows.add(gridRowRepository.save(gridRow));
+            newRows.add(gridRow);
         }
-
-        log.info("Saved {} rows for grid '{}' in document type '{}' for process {}",
-                savedRows.size(), gridName, docType, processInstanceId);
-        return savedRows;
+        return newRows;
     }
 
     /**
@@ -274,11 +347,34 @@ public class BusinessTableService {
                 .orElse(null);
         if (document != null) {
             gridRowRepository.deleteByDocumentIdAndGridName(document.getId(), gridName);
+            document.setUpdatedAt(LocalDateTime.now());
+            documentChanges.changed(document);
             log.info("Deleted grid '{}' rows from document type '{}' for process {}",
                     gridName, docType, processInstanceId);
         }
     }
 
+    /**
+     * Delete a document with all of its grid rows. Change feed consumers receive a tombstone.
+     *
+     * @return whether the document existed
+     */
+    @Transactional
+    public boolean deleteDocument(String processInstanceId, String documentType) {
+        String docType = documentType != null ? documentType : DEFAULT_DOCUMENT_TYPE;
+
+        Document document = documentRepository.findByProcessInstanceIdAndType(processInstanceId, docType)
+                .orElse(null);
+        if (document == null) {
+            return false;
+        }
+        gridRowRepository.deleteByDocumentId(document.getId());
+        documentRepository.delete(document);
+        documentChanges.deleted(document);
+        log.info("Deleted document type '{}' for process {}", docType, processInstanceId);
+        return true;
+    }
+
     // ==================== Process Config Operations ====================
 
     /**
@@ -302,8 +398,21 @@ public class BusinessTableService {
      */
     @Transactional
     public ProcessConfig updateProcessConfig(String processDefKey, Boolean persistOnTask, Boolean persistOnProcess) {
+        return updateProcessConfig(processDefKey, persistOnTask, persistOnProcess, null);
+    }
+
+    /**
+     * Update process configuration; null arguments leave the setting unchanged. A retention of
+     * 0 days or less keeps history forever.
+     */
+    @Transactional
+    public ProcessConfig updateProcessConfig(String processDefKey, Boolean persistOnTask, Boolean persistOnProcess,
+                                             Integer historyRetentionDays) {
         ProcessConfig config = getOrCreateProcessConfig(processDefKey);
 
+        if (historyRetentionDays != null) {
+            config.setHistoryRetentionDays(historyRetentionDays);
+        }
         if (persistOnTask != null) {
             config.setPersistOnTaskComplete(persistOnTask);
         }
@@ -357,48 +466,153 @@ public class BusinessTableService {
     public void saveAllData(String processInstanceId, String businessKey,
                             String processDefKey, String processDefName,
                             String documentType, Map<String, Object> variables, String userId) {
+        saveAllDataInCurrentTransaction(processInstanceId, businessKey, processDefKey, processDefName,
+                documentType, variables, userId, new ColumnMappingCache(columnMappingService));
+    }
+
+    /**
+     * Save all data (document + grids) inside the caller's transaction, e.g. one that may still
+     * roll back the process start the data belongs to.
+     */
+    @Transactional
+    public void saveAllDataInCurrentTransaction(String processInstanceId, String businessKey,
+                                                String processDefKey, String processDefName,
+                                                String documentType, Map<String, Object> variables,
+                                                String userId) {
+        saveAllDataInCurrentTransaction(processInstanceId, businessKey, processDefKey, processDefName,
+                documentType, variables, userId, new ColumnMappingCache(columnMappingService));
+    }
+
+    /**
+     * Save all data (document + grids) inside the caller's transaction.
+     * Intended for batch writers that commit many records at once and share one
+     * mapping cache across them.
+     */
+    @Transactional
+    public void saveAllDataInCurrentTransaction(String processInstanceId, String businessKey,
+                                                String processDefKey, String processDefName,
+                                                String documentType, Map<String, Object> variables,
+                                                String userId, ColumnMappingCache mappingCache) {
 
         String docType = documentType != null ? documentType : DEFAULT_DOCUMENT_TYPE;
 
         // Extract grid data from variables
         Map<String, List<Map<String, Object>>> grids = new HashMap<>();
         Map<String, Object> documentVars = new HashMap<>();
+        splitGridData(variables, documentVars, grids);
 
-        if (variables != null) {
-            for (Map.Entry<String, Object> entry : variables.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
+        // Save document first
+        saveDocument(processInstanceId, businessKey, processDefKey, processDefName, docType, documentVars, userId,
+                mappingCache);
 
-                if (value instanceof List<?> listValue && !listValue.isEmpty()) {
-                    Object firstItem = listValue.get(0);
-                    if (firstItem instanceof Map) {
-                        // This is grid data
-                        @SuppressWarnings("unchecked")
-                        List<Map<String, Object>> gridData = (List<Map<String, Object>>) listValue;
-                        grids.put(key, gridData);
-                        continue;
-                    }
-                }
+        // Save grid data
+        for (Map.Entry<String, List<Map<String, Object>>> entry : grids.entrySet()) {
+            saveGridRows(processInstanceId, processDefKey, docType, entry.getKey(), entry.getValue(), mappingCache);
+        }
+    }
+
+    /**
+     * Save all data (documents + grids) of process instances started in the caller's transaction.
+     * Nothing can be stored for them yet, so the document and grid lookups and the removal of old
+     * grid rows are skipped: the writes are inserts only, one JDBC batch for all documents and one
+     * for all grid rows.
+     */
+    @Transactional
+    public void saveNewInstanceData(List<NewInstanceData> instances, String processDefKey,
+                                    String processDefName, String documentType, String userId,
+                                    ColumnMappingCache mappingCache) {
 
-                documentVars.put(key, value);
+        String docType = documentType != null ? documentType : DEFAULT_DOCUMENT_TYPE;
+
+        List<Document> documents = new ArrayList<>(instances.size());
+        List<Map<String, List<Map<String, Object>>>> gridsByDocument = new ArrayList<>(instances.size());
+        for (NewInstanceData instance : instances) {
+            Map<String, List<Map<String, Object>>> grids = new HashMap<>();
+            Map<String, Object> documentVars = new HashMap<>();
+            splitGridData(instance.variables(), documentVars, grids);
+
+            Document document = newDocument(instance.processInstanceId(), docType, userId);
+            populateDocument(document, instance.businessKey(), processDefKey, processDefName, documentVars,
+                    userId, mappingCache);
+            documents.add(document);
+            gridsByDocument.add(grids);
+        }
+        documentBatchWriter.insertDocuments(documents);
+
+        List<GridRow> rows = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            for (Map.Entry<String, List<Map<String, Object>>> entry : gridsByDocument.get(i).entrySet()) {
+                rows.addAll(buildGridRows(documents.get(i), processDefKey, entry.getKey(), entry.getValue(),
+                        mappingCache));
             }
         }
+        documentBatchWriter.insertGridRows(rows);
 
-        // Save document first
-        saveDocument(processInstanceId, businessKey, processDefKey, processDefName, docType, documentVars, userId);
+        documents.forEach(documentChanges::changed);
+        log.info("Saved {} new '{}' documents with {} grid rows for process {}",
+                documents.size(), docType, rows.size(), processDefKey);
+    }
 
-        // Save grid data
-        for (Map.Entry<String, List<Map<String, Object>>> entry : grids.entrySet()) {
-            saveGridRows(processInstanceId, processDefKey, docType, entry.getKey(), entry.getValue());
+    private void splitGridData(Map<String, Object> variables, Map<String, Object> documentVars,
+                               Map<String, List<Map<String, Object>>> grids) {
+        if (variables == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : variables.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (value instanceof List<?> listValue && !listValue.isEmpty()) {
+                Object firstItem = listValue.get(0);
+                if (firstItem instanceof Map) {
+                    // This is grid data
+                    @SuppressWarnings("unchecked")
+                    List<Map<String, Object>> gridData = (List<Map<String, Object>>) listValue;
+                    grids.put(key, gridData);
+                    continue;
+                }
+            }
+
+            documentVars.put(key, value);
         }
     }
 
     // ==================== Conversion Methods ====================
 
     private DocumentDTO convertToDTO(Document document) {
+        return convertToDTO(document,
+                gridRowRepository.findByDocumentIdOrderByGridNameAscRowIndexAsc(document.getId()),
+                new HashMap<>());
+    }
+
+    /**
+     * Convert a batch of documents to DTOs. Grid rows of all documents are loaded with a
+     * single query and each mapping set is resolved once for the whole batch.
+     */
+    @Transactional(readOnly = true)
+    public List<DocumentDTO> convertToDTOs(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> documentIds = documents.stream().map(Document::getId).toList();
+        Map<Long, List<GridRow>> rowsByDocument = gridRowRepository
+                .findByDocumentIdInOrderByDocumentIdAscGridNameAscRowIndexAsc(documentIds).stream()
+                .collect(Collectors.groupingBy(row -> row.getDocument().getId()));
+
+        Map<String, Map<String, ColumnMapping>> mappingSets = new HashMap<>();
+        return documents.stream()
+                .map(document -> convertToDTO(document,
+                        rowsByDocument.getOrDefault(document.getId(), List.of()), mappingSets))
+                .collect(Collectors.toList());
+    }
+
+    private DocumentDTO convertToDTO(Document document, List<GridRow> allRows,
+                                     Map<String, Map<String, ColumnMapping>> mappingSets) {
         String processDefKey = document.getProcessDefinitionKey();
         String docType = document.getType() != null ? document.getType() : DEFAULT_DOCUMENT_TYPE;
-        Map<String, ColumnMapping> mappings = columnMappingService.getDocumentMappings(processDefKey, docType);
+        Map<String, ColumnMapping> mappings = mappingSets.computeIfAbsent("D|" + processDefKey + "|" + docType,
+                k -> columnMappingService.getDocumentMappings(processDefKey, docType));
 
         // Convert column values back to field names
         Map<String, Object> fields = new HashMap<>();
@@ -407,7 +621,7 @@ public class BusinessTableService {
             Object value;
 
             switch (mapping.getFieldType()) {
-                case VARCHAR -> value = document.getVarchar(columnIndex);
+                case VARCHAR -> value = TextCompression.decompress(document.getVarchar(columnIndex));
                 case FLOAT -> value = document.getFloat(columnIndex);
                 case DATETIME -> {
                     LocalDateTime dt = document.getDatetime(columnIndex);
@@ -424,7 +638,6 @@ public class BusinessTableService {
 
         // Get grid data
         Map<String, List<Map<String, Object>>> grids = new HashMap<>();
-        List<GridRow> allRows = gridRowRepository.findByDocumentIdOrderByGridNameAscRowIndexAsc(document.getId());
 
         // Group by grid name
         Map<String, List<GridRow>> groupedRows = allRows.stream()
@@ -432,7 +645,9 @@ public class BusinessTableService {
 
         for (Map.Entry<String, List<GridRow>> entry : groupedRows.entrySet()) {
             String gridName = entry.getKey();
-            Map<String, ColumnMapping> gridMappings = columnMappingService.getGridMappings(processDefKey, docType, gridName);
+            Map<String, ColumnMapping> gridMappings = mappingSets.computeIfAbsent(
+                    "G|" + processDefKey + "|" + docType + "|" + gridName,
+                    k -> columnMappingService.getGridMappings(processDefKey, docType, gridName));
 
             List<Map<String, Object>> rowData = entry.getValue().stream()
                     .map(row -> convertGridRowToMap(row, gridMappings))
@@ -457,7 +672,11 @@ public class BusinessTableService {
                 .build();
     }
 
-    private GridRowDTO convertGridRowToDTO(GridRow row, Map<String, ColumnMapping> mappings) {
+    private String compressText(String value) {
+        return compressionEnabled ? TextCompression.compress(value, compressionMinLength) : value;
+    }
+
+    static GridRowDTO convertGridRowToDTO(GridRow row, Map<String, ColumnMapping> mappings) {
         Map<String, Object> fields = convertGridRowToMap(row, mappings);
 
         return GridRowDTO.builder()
@@ -470,7 +689,7 @@ public class BusinessTableService {
                 .build();
     }
 
-    private Map<String, Object> convertGridRowToMap(GridRow row, Map<String, ColumnMapping> mappings) {
+    static Map<String, Object> convertGridRowToMap(GridRow row, Map<String, ColumnMapping> mappings) {
         Map<String, Object> fields = new HashMap<>();
 
         for (ColumnMapping mapping : mappings.values()) {
@@ -478,7 +697,7 @@ public class BusinessTableService {
             Object value;
 
             switch (mapping.getFieldType()) {
-                case VARCHAR -> value = row.getVarchar(columnIndex);
+                case VARCHAR -> value = TextCompression.decompress(row.getVarchar(columnIndex));
                 case FLOAT -> value = row.getFloat(columnIndex);
                 case DATETIME -> {
                     LocalDateTime dt = row.getDatetime(columnIndex);
@@ -495,4 +714,10 @@ public class BusinessTableService {
 
         return fields;
     }
+
+    /**
+     * Data of one newly started instance for {@link #saveNewInstanceData}.
+     */
+    public record NewInstanceData(String processInstanceId, String businessKey, Map<String, Object> variables) {
+    }
 }
@@ -0,0 +1,127 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.DocumentChangeDTO;
+import com.demo.bpm.dto.DocumentDTO;
+import com.demo.bpm.entity.DocumentChange;
+import com.demo.bpm.repository.DocumentChangeRepository;
+import com.demo.bpm.repository.DocumentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental change feed over business documents.
+ *
+ * Consumers pass back the opaque token of the last change they processed and receive the changes
+ * logged after it in document_change. The log is numbered in commit order (DocumentChangeRecorder),
+ * so nothing can commit below a position already handed out, however long its transaction ran.
+ * Grid rows are replaced wholesale on save, so every change carries the document's complete
+ * current grids rather than row deltas; a deleted document comes as a tombstone without content.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChangeFeedService {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String TOKEN_VERSION = "v2";
+
+    private final DocumentChangeRepository documentChangeRepository;
+    private final DocumentRepository documentRepository;
+    private final BusinessTableService businessTableService;
+
+    @Transactional(readOnly = true)
+    public DocumentChangeDTO.Page getChanges(String token, String processDefinitionKey,
+                                             String documentType, int limit) {
+        int pageSize = Math.max(1, Math.min(limit > 0 ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+        long afterSeq = resumeAfter(token);
+
+        // Fetch one extra change to learn whether another page follows
+        List<DocumentChange> logged = documentChangeRepository.findAfter(
+                afterSeq, processDefinitionKey, documentType, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = logged.size() > pageSize;
+        if (hasMore) {
+            logged = logged.subList(0, pageSize);
+        }
+
+        // A document changed several times within the page is delivered once, at its last change
+        Map<Long, DocumentChange> lastChange = new LinkedHashMap<>();
+        for (DocumentChange change : logged) {
+            lastChange.remove(change.getDocumentId());
+            lastChange.put(change.getDocumentId(), change);
+        }
+        List<Long> liveIds = lastChange.values().stream()
+                .filter(change -> !change.isDeleted())
+                .map(DocumentChange::getDocumentId)
+                .toList();
+        Map<Long, DocumentDTO> current = new HashMap<>();
+        if (!liveIds.isEmpty()) {
+            for (DocumentDTO dto : businessTableService.convertToDTOs(documentRepository.findAllById(liveIds))) {
+                current.put(dto.getId(), dto);
+            }
+        }
+
+        List<DocumentChangeDTO> changes = new ArrayList<>(lastChange.size());
+        for (DocumentChange change : lastChange.values()) {
+            DocumentDTO document = current.get(change.getDocumentId());
+            if (!change.isDeleted() && document == null) {
+                // Deleted after this change; its tombstone follows
+                continue;
+            }
+            changes.add(DocumentChangeDTO.builder()
+                    .token(encode(change.getSeq()))
+                    .documentId(change.getDocumentId())
+                    .processInstanceId(change.getProcessInstanceId())
+                    .documentType(change.getDocumentType())
+                    .deleted(change.isDeleted())
+                    .document(change.isDeleted() ? null : document)
+                    .build());
+        }
+
+        // Resume after everything read, including changes folded into later ones
+        String nextToken = logged.isEmpty() ? encode(afterSeq) : encode(logged.get(logged.size() - 1).getSeq());
+        log.debug("Change feed served {} changes after seq {} (hasMore={})", changes.size(), afterSeq, hasMore);
+
+        return DocumentChangeDTO.Page.builder()
+                .changes(changes)
+                .nextToken(nextToken)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    static String encode(long seq) {
+        String raw = TOKEN_VERSION + "|" + seq;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sequence number to resume after.
+     */
+    long resumeAfter(String token) {
+        if (token == null || token.isBlank()) {
+            return 0L;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length == 2 && TOKEN_VERSION.equals(parts[0])) {
+                return Long.parseLong(parts[1]);
+            }
+            throw new IllegalArgumentException("Unsupported change feed token");
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid change feed token");
+        }
+    }
+}
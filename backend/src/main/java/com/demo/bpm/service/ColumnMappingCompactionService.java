@@ -0,0 +1,327 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ColumnMappingCompactionReportDTO;
+import com.demo.bpm.dto.FormDefinitionDTO;
+import com.demo.bpm.dto.FormFieldDTO;
+import com.demo.bpm.dto.FormGridDTO;
+import com.demo.bpm.dto.ProcessFieldLibraryDTO;
+import com.demo.bpm.entity.ColumnMapping;
+import com.demo.bpm.entity.ColumnMapping.ScopeType;
+import com.demo.bpm.repository.ColumnMappingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reclaims column-mapping slots that no form references any more.
+ *
+ * A mapping is only removed when no deployed version of the process mentions the field, it is
+ * older than the configured minimum age and its slot holds no data. Optionally the remaining
+ * mappings are packed towards the low slots, one field per transaction, so a run can stop at
+ * any point and the next run picks up where it left off.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ColumnMappingCompactionService {
+
+    public static final int DEFAULT_MAX_STEPS = 100;
+
+    private final ColumnMappingRepository columnMappingRepository;
+    private final FormDefinitionService formDefinitionService;
+    private final RepositoryService repositoryService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${bpm.column-mapping.compaction.min-age-hours:24}")
+    private long minAgeHours = 24;
+
+    /**
+     * Compact the mappings of one process definition, or of all of them when the key is null.
+     *
+     * @param relocate also move live fields down into freed slots
+     * @param dryRun   only report what would change
+     * @param maxSteps upper bound on field relocations in this run
+     */
+    public ColumnMappingCompactionReportDTO compact(String processDefinitionKey, boolean relocate,
+                                                    boolean dryRun, int maxSteps) {
+        long started = System.currentTimeMillis();
+        ColumnMappingCompactionReportDTO report = ColumnMappingCompactionReportDTO.builder()
+                .dryRun(dryRun)
+                .relocate(relocate)
+                .build();
+
+        List<String> keys = processDefinitionKey != null
+                ? List.of(processDefinitionKey)
+                : columnMappingRepository.findDistinctProcessDefinitionKeys();
+
+        int stepsLeft = Math.max(0, maxSteps);
+        for (String key : keys) {
+            report.setProcessDefinitionsScanned(report.getProcessDefinitionsScanned() + 1);
+            List<ColumnMapping> mappings = new ArrayList<>(columnMappingRepository.findByProcessDefinitionKey(key));
+            report.setMappingsScanned(report.getMappingsScanned() + mappings.size());
+
+            LiveFields live = collectLiveFields(key);
+            if (live.isEmpty()) {
+                // No form information (unknown key or unparseable model): never guess, leave it alone
+                log.debug("Skipping column mapping compaction for {}: no form fields found", key);
+                continue;
+            }
+
+            mappings.removeIf(mapping -> removeIfUnused(mapping, live, dryRun, report));
+            if (relocate) {
+                stepsLeft = relocate(mappings, dryRun, stepsLeft, report);
+            }
+        }
+
+        report.setElapsedMs(System.currentTimeMillis() - started);
+        log.info("Column mapping compaction (dryRun={}, relocate={}): {} removed, {} relocated, {} pending in {} ms",
+                dryRun, relocate, report.getMappingsRemoved(), report.getFieldsRelocated(),
+                report.getRelocationsPending(), report.getElapsedMs());
+        return report;
+    }
+
+    // ==================== Removal ====================
+
+    private boolean removeIfUnused(ColumnMapping mapping, LiveFields live, boolean dryRun,
+                                   ColumnMappingCompactionReportDTO report) {
+        if (live.references(mapping)) {
+            return false;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(minAgeHours);
+        if (mapping.getCreatedAt() != null && mapping.getCreatedAt().isAfter(cutoff)) {
+            return false;
+        }
+        if (hasData(mapping, mapping.getColumnName())) {
+            return false;
+        }
+
+        if (!dryRun) {
+            Boolean deleted = transactionTemplate.execute(status -> {
+                // Re-check inside the transaction; a writer may have used the slot since the scan
+                if (hasData(mapping, mapping.getColumnName())) {
+                    return false;
+                }
+                columnMappingRepository.deleteById(mapping.getId());
+                return true;
+            });
+            if (!Boolean.TRUE.equals(deleted)) {
+                return false;
+            }
+        }
+        report.setMappingsRemoved(report.getMappingsRemoved() + 1);
+        report.getRemoved().add(describe(mapping) + " (" + mapping.getColumnName() + ")");
+        return true;
+    }
+
+    // ==================== Relocation ====================
+
+    private int relocate(List<ColumnMapping> mappings, boolean dryRun, int stepsLeft,
+                         ColumnMappingCompactionReportDTO report) {
+        Map<String, List<ColumnMapping>> groups = mappings.stream()
+                .collect(Collectors.groupingBy(mapping -> mapping.getScopeType() + "|"
+                        + Objects.toString(mapping.getGridName(), "") + "|" + mapping.getFieldType(),
+                        LinkedHashMap::new, Collectors.toList()));
+
+        for (List<ColumnMapping> group : groups.values()) {
+            List<ColumnMapping> highestFirst = new ArrayList<>(group);
+            highestFirst.sort(Comparator.comparingInt(ColumnMapping::getColumnIndex).reversed());
+
+            for (ColumnMapping mapping : highestFirst) {
+                if (isSharedLegacySlot(mapping, group)) {
+                    continue;
+                }
+                Integer target = findLowerFreeSlot(mapping, group);
+                if (target == null) {
+                    continue;
+                }
+                if (stepsLeft == 0) {
+                    report.setRelocationsPending(report.getRelocationsPending() + 1);
+                    continue;
+                }
+
+                String from = mapping.getColumnName();
+                String to = ColumnMappingService.getColumnPrefix(mapping.getFieldType()) + target;
+                if (!dryRun && !moveField(mapping, from, to)) {
+                    continue;
+                }
+                mapping.setColumnName(to);
+                stepsLeft--;
+                report.setFieldsRelocated(report.getFieldsRelocated() + 1);
+                report.getRelocated().add(describe(mapping) + " (" + from + " -> " + to + ")");
+            }
+        }
+        return stepsLeft;
+    }
+
+    /**
+     * Slots a mapping must not move into: those used by mappings that resolve against the same
+     * rows. Legacy (untyped) mappings share rows with every document type.
+     */
+    private Set<Integer> conflictingSlots(ColumnMapping mapping, List<ColumnMapping> group) {
+        return group.stream()
+                .filter(other -> other != mapping)
+                .filter(other -> mapping.getDocumentType() == null
+                        || other.getDocumentType() == null
+                        || mapping.getDocumentType().equals(other.getDocumentType()))
+                .map(ColumnMapping::getColumnIndex)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * A legacy mapping whose slot a typed mapping also uses would drag the typed data along with
+     * it, so it stays put.
+     */
+    private boolean isSharedLegacySlot(ColumnMapping mapping, List<ColumnMapping> group) {
+        return mapping.getDocumentType() == null && group.stream()
+                .anyMatch(other -> other != mapping
+                        && other.getDocumentType() != null
+                        && other.getColumnIndex() == mapping.getColumnIndex());
+    }
+
+    private Integer findLowerFreeSlot(ColumnMapping mapping, List<ColumnMapping> group) {
+        Set<Integer> taken = conflictingSlots(mapping, group);
+        String prefix = ColumnMappingService.getColumnPrefix(mapping.getFieldType());
+        for (int index = 1; index < mapping.getColumnIndex(); index++) {
+            // Stale values can linger in a slot whose mapping was removed earlier; skip those
+            if (!taken.contains(index) && !hasData(mapping, prefix + index)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private boolean moveField(ColumnMapping mapping, String from, String to) {
+        String fromColumn = ColumnMappingService.requireSlotColumn(from);
+        String toColumn = ColumnMappingService.requireSlotColumn(to);
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                ColumnMapping current = columnMappingRepository.findById(mapping.getId()).orElse(null);
+                if (current == null || !from.equals(current.getColumnName())) {
+                    return false;
+                }
+                MapSqlParameterSource params = scopeParams(mapping);
+                String sql = mapping.getScopeType() == ScopeType.DOCUMENT
+                        ? "UPDATE document SET " + toColumn + " = " + fromColumn + ", " + fromColumn + " = NULL" +
+                          " WHERE process_definition_key = :key" + typeFilter(mapping, "") +
+                          " AND " + fromColumn + " IS NOT NULL"
+                        : "UPDATE grid_rows SET " + toColumn + " = " + fromColumn + ", " + fromColumn + " = NULL" +
+                          " WHERE grid_name = :grid AND " + fromColumn + " IS NOT NULL" +
+                          " AND document_id IN (SELECT id FROM document WHERE process_definition_key = :key" +
+                          typeFilter(mapping, "") + ")";
+                int rows = jdbcTemplate.update(sql, params);
+                current.setColumnName(to);
+                columnMappingRepository.save(current);
+                log.info("Relocated {} from {} to {} ({} rows)", describe(mapping), from, to, rows);
+                return true;
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Failed to relocate {} from {} to {}: {}", describe(mapping), from, to, e.getMessage());
+            return false;
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    private boolean hasData(ColumnMapping mapping, String columnName) {
+        String column = ColumnMappingService.requireSlotColumn(columnName);
+        String sql = mapping.getScopeType() == ScopeType.DOCUMENT
+                ? "SELECT COUNT(*) FROM (SELECT 1 FROM document d WHERE d.process_definition_key = :key" +
+                  typeFilter(mapping, "d.") + " AND d." + column + " IS NOT NULL LIMIT 1) x"
+                : "SELECT COUNT(*) FROM (SELECT 1 FROM grid_rows g JOIN document d ON d.id = g.document_id" +
+                  " WHERE d.process_definition_key = :key" + typeFilter(mapping, "d.") +
+                  " AND g.grid_name = :grid AND g." + column + " IS NOT NULL LIMIT 1) x";
+        Long count = jdbcTemplate.queryForObject(sql, scopeParams(mapping), Long.class);
+        return count != null && count > 0;
+    }
+
+    private MapSqlParameterSource scopeParams(ColumnMapping mapping) {
+        return new MapSqlParameterSource()
+                .addValue("key", mapping.getProcessDefinitionKey())
+                .addValue("type", mapping.getDocumentType())
+                .addValue("grid", mapping.getGridName());
+    }
+
+    private String typeFilter(ColumnMapping mapping, String alias) {
+        // Legacy mappings apply to every document type of the process
+        return mapping.getDocumentType() != null ? " AND " + alias + "type = :type" : "";
+    }
+
+    private String describe(ColumnMapping mapping) {
+        StringBuilder sb = new StringBuilder(mapping.getProcessDefinitionKey());
+        if (mapping.getDocumentType() != null) {
+            sb.append('/').append(mapping.getDocumentType());
+        }
+        if (mapping.getGridName() != null) {
+            sb.append('/').append(mapping.getGridName());
+        }
+        return sb.append('.').append(mapping.getFieldName()).toString();
+    }
+
+    /**
+     * Field and grid column names referenced by any deployed version of the process.
+     */
+    private LiveFields collectLiveFields(String processDefinitionKey) {
+        LiveFields live = new LiveFields();
+        List<ProcessDefinition> definitions = repositoryService.createProcessDefinitionQuery()
+                .processDefinitionKey(processDefinitionKey)
+                .list();
+        for (ProcessDefinition definition : definitions) {
+            for (FormDefinitionDTO form : formDefinitionService.getAllFormDefinitions(definition.getId()).values()) {
+                live.addFields(form.getFields());
+                live.addGrids(form.getGrids());
+            }
+            ProcessFieldLibraryDTO library = formDefinitionService.getProcessFormConfig(definition.getId()).getFieldLibrary();
+            if (library != null) {
+                live.addFields(library.getFields());
+                live.addGrids(library.getGrids());
+            }
+        }
+        return live;
+    }
+
+    private static class LiveFields {
+        private final Set<String> fields = new HashSet<>();
+        private final Map<String, Set<String>> gridColumns = new HashMap<>();
+
+        void addFields(List<FormFieldDTO> formFields) {
+            if (formFields != null) {
+                formFields.stream().map(FormFieldDTO::getName).filter(Objects::nonNull).forEach(fields::add);
+            }
+        }
+
+        void addGrids(List<FormGridDTO> grids) {
+            if (grids == null) {
+                return;
+            }
+            for (FormGridDTO grid : grids) {
+                Set<String> columns = gridColumns.computeIfAbsent(grid.getName(), name -> new HashSet<>());
+                if (grid.getColumns() != null) {
+                    grid.getColumns().stream().map(FormGridDTO.GridColumnDTO::getName)
+                            .filter(Objects::nonNull).forEach(columns::add);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return fields.isEmpty() && gridColumns.isEmpty();
+        }
+
+        boolean references(ColumnMapping mapping) {
+            if (mapping.getScopeType() == ScopeType.DOCUMENT) {
+                return fields.contains(mapping.getFieldName());
+            }
+            return gridColumns.getOrDefault(mapping.getGridName(), Set.of()).contains(mapping.getFieldName());
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAccessor;
 import java.util.*;
+import java.util.regex.Pattern;
 
 /**
  * Service for managing field-to-column mappings using hash-based assignment
@@ -24,7 +25,9 @@ import java.util.*;
 @Slf4j
 public class ColumnMappingService {
 
-    private static final int MAX_COLUMNS = 30;
+    static final int MAX_COLUMNS = 30;
+
+    private static final Pattern SLOT_COLUMN = Pattern.compile("^(varchar|float|datetime)_([1-9]|[12][0-9]|30)$");
 
     private final ColumnMappingRepository columnMappingRepository;
 
@@ -253,10 +256,21 @@ public class ColumnMappingService {
         return false;
     }
 
+    /**
+     * Validate that a mapped column name is one of the generic slot columns before it is
+     * used in hand-written SQL.
+     */
+    public static String requireSlotColumn(String columnName) {
+        if (columnName == null || !SLOT_COLUMN.matcher(columnName).matches()) {
+            throw new IllegalStateException("Invalid mapped column: " + columnName);
+        }
+        return columnName;
+    }
+
     /**
      * Get the column prefix for a field type.
      */
-    private String getColumnPrefix(FieldType fieldType) {
+    public static String getColumnPrefix(FieldType fieldType) {
         return switch (fieldType) {
             case VARCHAR -> "varchar_";
             case FLOAT -> "float_";
@@ -0,0 +1,286 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.DashboardCountersDTO;
+import com.demo.bpm.util.RecountEpoch;
+import com.demo.bpm.util.WorkflowConstants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory dashboard counters kept current by engine events.
+ *
+ * Reads are O(1). Counters start from a rebuild against the engine tables and are then moved
+ * by deltas applied after each engine transaction commits (see DashboardCounterListener). A
+ * rebuild can be triggered at any time to reconcile drift, e.g. after events were missed while
+ * another node did the work. It counts from one repeatable-read snapshot and replays the deltas
+ * committed while it ran over the result (see RecountEpoch), so a rebuild under load neither
+ * loses nor double-counts concurrent work.
+ *
+ * "My tasks" depends on candidate group membership, which the engine does not report as task
+ * events, so it is the one figure that is still queried, behind a short per-user cache.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardCounterService {
+
+    private static final String STARTED_BY = "_startedBy";
+
+    private final RuntimeService runtimeService;
+    private final HistoryService historyService;
+    private final TaskService taskService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${bpm.dashboard.my-tasks-ttl-ms:15000}")
+    private long myTasksTtlMs = 15000;
+
+    private final AtomicLong active = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+    private final Set<String> escalated = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicLong> activeByInitiator = new ConcurrentHashMap<>();
+    private final Map<String, CachedCount> myTasks = new ConcurrentHashMap<>();
+    private final RecountEpoch<Delta> epoch = new RecountEpoch<>();
+
+    private volatile LocalDateTime rebuiltAt;
+    private volatile long rebuildMs;
+
+    public boolean isInitialized() {
+        return rebuiltAt != null;
+    }
+
+    public long getTotalActive() {
+        return active.get();
+    }
+
+    public long getTotalCompleted() {
+        return completed.get();
+    }
+
+    public long getTotalPending() {
+        return pending.get();
+    }
+
+    public long getPendingEscalations() {
+        return escalated.size();
+    }
+
+    public long getMyProcesses(String userId) {
+        AtomicLong count = activeByInitiator.get(userId);
+        // Ends of instances started before a rebuild on another node can briefly push a user below zero
+        return count != null ? Math.max(0, count.get()) : 0;
+    }
+
+    public long getMyTasks(String userId) {
+        long now = System.currentTimeMillis();
+        CachedCount cached = myTasks.get(userId);
+        if (cached != null && now - cached.loadedAt() < myTasksTtlMs) {
+            return cached.count();
+        }
+        long count = taskService.createTaskQuery().taskCandidateOrAssigned(userId).count();
+        myTasks.put(userId, new CachedCount(count, now));
+        return count;
+    }
+
+    public DashboardCountersDTO getCounters() {
+        return DashboardCountersDTO.builder()
+                .totalActive(active.get())
+                .totalCompleted(completed.get())
+                .totalPending(pending.get())
+                .pendingEscalations(escalated.size())
+                .activeInitiators((int) activeByInitiator.values().stream().filter(c -> c.get() > 0).count())
+                .rebuiltAt(rebuiltAt)
+                .rebuildMs(rebuildMs)
+                .build();
+    }
+
+    /**
+     * Recompute every counter from the engine tables.
+     */
+    public synchronized DashboardCountersDTO rebuild() {
+        long started = System.currentTimeMillis();
+
+        TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshot.setReadOnly(true);
+        Counts counts;
+        try {
+            counts = snapshot.execute(status -> {
+                // The first statement fixes the snapshot; every delta applied from here on is replayed
+                jdbcTemplate.queryForObject("SELECT 1", new MapSqlParameterSource(), Integer.class);
+                epoch.open();
+                return count();
+            });
+        } catch (RuntimeException e) {
+            epoch.abandon();
+            throw e;
+        }
+
+        int replayed = epoch.close(() -> install(counts), this::applyUnlocked);
+
+        rebuildMs = System.currentTimeMillis() - started;
+        rebuiltAt = LocalDateTime.now();
+        log.info("Rebuilt dashboard counters in {} ms: {} active, {} completed, {} pending, {} escalated,"
+                        + " {} concurrent changes replayed",
+                rebuildMs, counts.active(), counts.completed(), counts.pending(), counts.escalated().size(), replayed);
+        return getCounters();
+    }
+
+    private Counts count() {
+        long activeCount = runtimeService.createProcessInstanceQuery().count();
+        long completedCount = historyService.createHistoricProcessInstanceQuery().finished().count();
+        long pendingCount = taskService.createTaskQuery().count();
+
+        // Process-scoped runtime variables only exist while the instance is running
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("startedBy", STARTED_BY)
+                .addValue("escalationCount", WorkflowConstants.VAR_ESCALATION_COUNT);
+        Map<String, AtomicLong> initiators = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT TEXT_, COUNT(*) FROM ACT_RU_VARIABLE WHERE NAME_ = :startedBy" +
+                        " AND EXECUTION_ID_ = PROC_INST_ID_ AND TASK_ID_ IS NULL AND TEXT_ IS NOT NULL GROUP BY TEXT_",
+                params, rs -> {
+                    initiators.put(rs.getString(1), new AtomicLong(rs.getLong(2)));
+                });
+        List<String> escalatedIds = jdbcTemplate.queryForList(
+                "SELECT PROC_INST_ID_ FROM ACT_RU_VARIABLE WHERE NAME_ = :escalationCount" +
+                        " AND EXECUTION_ID_ = PROC_INST_ID_ AND TASK_ID_ IS NULL AND LONG_ > 0",
+                params, String.class);
+        return new Counts(activeCount, completedCount, pendingCount, initiators, escalatedIds);
+    }
+
+    private void install(Counts counts) {
+        active.set(counts.active());
+        completed.set(counts.completed());
+        pending.set(counts.pending());
+        activeByInitiator.clear();
+        activeByInitiator.putAll(counts.initiators());
+        escalated.clear();
+        escalated.addAll(counts.escalated());
+        myTasks.clear();
+    }
+
+    /**
+     * Apply the changes of one committed engine transaction.
+     */
+    public void apply(Delta delta) {
+        epoch.apply(delta, this::applyUnlocked);
+    }
+
+    /**
+     * Account for finished instances whose history was deleted (see HistoryRetentionService).
+     */
+    public void historyDeleted(long instances) {
+        Delta delta = new Delta();
+        delta.completed = -instances;
+        apply(delta);
+    }
+
+    private void applyUnlocked(Delta delta) {
+        if (delta.active != 0) {
+            active.addAndGet(delta.active);
+        }
+        if (delta.completed != 0) {
+            completed.addAndGet(delta.completed);
+        }
+        if (delta.pending != 0) {
+            pending.addAndGet(delta.pending);
+        }
+        delta.initiators.forEach((userId, change) ->
+                activeByInitiator.computeIfAbsent(userId, k -> new AtomicLong()).addAndGet(change));
+        delta.escalation.forEach((processInstanceId, isEscalated) -> {
+            if (isEscalated) {
+                escalated.add(processInstanceId);
+            } else {
+                escalated.remove(processInstanceId);
+            }
+        });
+        delta.assignees.forEach(myTasks::remove);
+    }
+
+    /**
+     * Counter changes collected over one engine transaction.
+     */
+    public static class Delta {
+        private long active;
+        private long completed;
+        private long pending;
+        private final Map<String, Long> initiators = new HashMap<>();
+        // Last escalation state per process instance within the transaction
+        private final Map<String, Boolean> escalation = new HashMap<>();
+        private final Set<String> assignees = new HashSet<>();
+        private final Set<String> ended = new HashSet<>();
+
+        public void processStarted(String initiator) {
+            active++;
+            if (initiator != null) {
+                initiators.merge(initiator, 1L, Long::sum);
+            }
+        }
+
+        /**
+         * Record the end of a process instance; repeated end events for the same instance in
+         * one transaction are counted once.
+         */
+        public boolean processEnded(String processInstanceId, String initiator) {
+            if (!ended.add(processInstanceId)) {
+                return false;
+            }
+            active--;
+            completed++;
+            if (initiator != null) {
+                initiators.merge(initiator, -1L, Long::sum);
+            }
+            escalation.put(processInstanceId, false);
+            return true;
+        }
+
+        public void taskCreated(String assignee) {
+            pending++;
+            taskAssigned(assignee);
+        }
+
+        public void taskDeleted(String assignee) {
+            pending--;
+            taskAssigned(assignee);
+        }
+
+        public void taskAssigned(String assignee) {
+            if (assignee != null) {
+                assignees.add(assignee);
+            }
+        }
+
+        public void escalationChanged(String processInstanceId, boolean isEscalated) {
+            if (!ended.contains(processInstanceId)) {
+                escalation.put(processInstanceId, isEscalated);
+            }
+        }
+
+        public boolean isEmpty() {
+            return active == 0 && completed == 0 && pending == 0 && initiators.isEmpty()
+                    && escalation.isEmpty() && assignees.isEmpty();
+        }
+    }
+
+    private record CachedCount(long count, long loadedAt) {}
+
+    private record Counts(long active, long completed, long pending, Map<String, AtomicLong> initiators,
+                          List<String> escalated) {}
+}
@@ -1,7 +1,11 @@
 package com.demo.bpm.service;
 
+import com.demo.bpm.dto.DashboardCountersDTO;
 import com.demo.bpm.dto.DashboardDTO;
-import com.demo.bpm.dto.WorkflowHistoryDTO;
+import com.demo.bpm.dto.WorkflowSummaryDTO;
+import com.demo.bpm.service.helpers.DatabaseDialect;
+import com.demo.bpm.service.helpers.SingleFlightRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.flowable.engine.HistoryService;
@@ -13,11 +17,22 @@ import org.flowable.task.api.Task;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,66 +44,105 @@ public class DashboardService {
     private final HistoryService historyService;
     private final TaskService taskService;
     private final WorkflowHistoryService workflowHistoryService;
+    private final DashboardCounterService dashboardCounterService;
+    private final SingleFlightRegistry singleFlights;
+    private final PlatformTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseDialect databaseDialect;
 
-    public DashboardDTO getDashboard(String userId, Pageable pageable, String status, String type) {
-        // Parallelize or optimize these counts if database load is high, but for now sequential is okay.
-        long totalActive = runtimeService.createProcessInstanceQuery().count();
-        long totalCompleted = historyService.createHistoricProcessInstanceQuery().finished().count();
-        long totalPending = taskService.createTaskQuery().count();
-        long myTasks = taskService.createTaskQuery().taskCandidateOrAssigned(userId).count();
-        long myProcesses = runtimeService.createProcessInstanceQuery().variableValueEquals("startedBy", userId).count();
-        long pendingEscalations = runtimeService.createProcessInstanceQuery().variableValueGreaterThan("escalationCount", 0).count();
-
-        // Optimize: Fetch IDs first or fetch lighter objects if possible.
-        // For dashboard lists, we might not need full history details for every item in the list immediately
-        // but the current DTO structure requires WorkflowHistoryDTO.
-
-        List<ProcessInstance> activeProcessesForDisplay = runtimeService.createProcessInstanceQuery()
-                .orderByStartTime().desc()
-                .listPage((int) pageable.getOffset(), pageable.getPageSize());
+    @Value("${bpm.dashboard.parallel.enabled:true}")
+    private boolean parallel = true;
 
-        List<HistoricProcessInstance> completedProcesses = historyService.createHistoricProcessInstanceQuery()
-                .finished()
-                .orderByProcessInstanceEndTime().desc()
-                .listPage((int) pageable.getOffset(), pageable.getPageSize());
+    @Value("${bpm.dashboard.parallel.threads:8}")
+    private int parallelism = 8;
 
-        long avgCompletionTimeHours = calculateAvgCompletionTime(completedProcesses);
+    @Value("${bpm.dashboard.section-timeout-ms:3000}")
+    private long sectionTimeoutMs = 3000;
 
-        // Active distribution
-        Map<String, Long> activeByType = getActiveByTypeDistribution();
+    private volatile ThreadPoolExecutor sectionExecutor;
 
-        Map<String, Long> byStatus = new HashMap<>();
-        byStatus.put("ACTIVE", totalActive);
-        byStatus.put("COMPLETED", totalCompleted);
-        byStatus.put("PENDING", totalPending);
+    public DashboardDTO getDashboard(String userId, Pageable pageable, String status, String type) {
+        // Counters are maintained from engine events; only the first call after startup pays for a rebuild
+        if (!dashboardCounterService.isInitialized()) {
+            dashboardCounterService.rebuild();
+        }
+        long totalActive = dashboardCounterService.getTotalActive();
+        long totalCompleted = dashboardCounterService.getTotalCompleted();
+        long totalPending = dashboardCounterService.getTotalPending();
+        long myTasks = dashboardCounterService.getMyTasks(userId);
+        long myProcesses = dashboardCounterService.getMyProcesses(userId);
+        long pendingEscalations = dashboardCounterService.getPendingEscalations();
 
-        // Convert to DTOs.
-        // Note: workflowHistoryService.getWorkflowHistory might be expensive (N+1).
-        // If performance becomes an issue, we should batch fetch variables/history.
-        // For now, let's keep it but be aware.
+        // The list sections are independent of each other; in parallel mode they run side by side
+        // and each gets its own deadline, so one slow query only degrades its own section.
+        // Cancelling a late future does not stop its query, so every section also runs under a
+        // statement timeout ending at the deadline (see bounded). That is also what enforces the
+        // deadline when parallel mode is off and the sections run one after another on this thread.
+        long deadline = System.currentTimeMillis() + sectionTimeoutMs;
+        Executor executor = parallel ? sectionExecutor() : Runnable::run;
 
-        List<WorkflowHistoryDTO> recentCompletedList = completedProcesses.stream()
-                .map(hp -> workflowHistoryService.getWorkflowHistory(hp.getId()))
-                .collect(Collectors.toList());
-        Page<WorkflowHistoryDTO> recentCompleted = new PageImpl<>(recentCompletedList, pageable, totalCompleted);
+        CompletableFuture<Page<WorkflowSummaryDTO>> activeFuture = CompletableFuture.supplyAsync(bounded(deadline, () -> {
+            List<String> ids = runtimeService.createProcessInstanceQuery()
+                    .orderByStartTime().desc()
+                    .listPage((int) pageable.getOffset(), pageable.getPageSize()).stream()
+                    .map(ProcessInstance::getId)
+                    .collect(Collectors.toList());
+            return new PageImpl<>(workflowHistoryService.getWorkflowSummaries(ids), pageable, totalActive);
+        }), executor);
 
-        List<WorkflowHistoryDTO> activeWithDetailsList = activeProcessesForDisplay.stream()
-                .map(ap -> workflowHistoryService.getWorkflowHistory(ap.getId()))
-                .collect(Collectors.toList());
-        Page<WorkflowHistoryDTO> activeWithDetails = new PageImpl<>(activeWithDetailsList, pageable, totalActive);
+        CompletableFuture<CompletedSection> completedFuture = CompletableFuture.supplyAsync(bounded(deadline, () -> {
+            List<HistoricProcessInstance> completedProcesses = historyService.createHistoricProcessInstanceQuery()
+                    .finished()
+                    .orderByProcessInstanceEndTime().desc()
+                    .listPage((int) pageable.getOffset(), pageable.getPageSize());
+            List<String> ids = completedProcesses.stream()
+                    .map(HistoricProcessInstance::getId)
+                    .collect(Collectors.toList());
+            return new CompletedSection(new PageImpl<>(workflowHistoryService.getWorkflowSummaries(ids), pageable, totalCompleted),
+                    calculateAvgCompletionTime(completedProcesses));
+        }), executor);
 
-        List<Task> userTasks = taskService.createTaskQuery()
-                .taskCandidateOrAssigned(userId)
-                .orderByTaskCreateTime().desc()
-                .listPage((int) pageable.getOffset(), pageable.getPageSize());
+        CompletableFuture<Page<WorkflowSummaryDTO>> approvalsFuture = CompletableFuture.supplyAsync(bounded(deadline, () -> {
+            List<Task> userTasks = taskService.createTaskQuery()
+                    .taskCandidateOrAssigned(userId)
+                    .orderByTaskCreateTime().desc()
+                    .listPage((int) pageable.getOffset(), pageable.getPageSize());
+            List<String> ids = userTasks.stream()
+                    .map(Task::getProcessInstanceId)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .collect(Collectors.toList());
+            return new PageImpl<>(workflowHistoryService.getWorkflowSummaries(ids), pageable, myTasks);
+        }), executor);
 
-        List<WorkflowHistoryDTO> myPendingApprovalsList = userTasks.stream()
-                .map(t -> workflowHistoryService.getWorkflowHistory(t.getProcessInstanceId()))
-                .distinct()
-                .collect(Collectors.toList());
-        Page<WorkflowHistoryDTO> myPendingApprovals = new PageImpl<>(myPendingApprovalsList, pageable, myTasks);
+        // The same for every user, so concurrent dashboards share one computation of these two
+        CompletableFuture<DashboardDTO.EscalationMetrics> escalationFuture = CompletableFuture.supplyAsync(
+                () -> singleFlights.execute("dashboard-escalations", pendingEscalations,
+                        bounded(deadline, () -> getEscalationMetrics(pendingEscalations))), executor);
 
-        DashboardDTO.EscalationMetrics escalationMetrics = getEscalationMetrics(pendingEscalations);
+        CompletableFuture<Map<String, Long>> activeByTypeFuture = CompletableFuture.supplyAsync(
+                () -> singleFlights.execute("dashboard-active-by-type", "",
+                        bounded(deadline, this::getActiveByTypeDistribution)), executor);
+
+        List<String> degraded = new ArrayList<>();
+        Page<WorkflowSummaryDTO> activeWithDetails = await("activeProcesses", activeFuture, deadline, degraded,
+                () -> new PageImpl<>(List.of(), pageable, totalActive));
+        CompletedSection completed = await("recentCompleted", completedFuture, deadline, degraded,
+                () -> new CompletedSection(new PageImpl<>(List.of(), pageable, totalCompleted), 0));
+        Page<WorkflowSummaryDTO> myPendingApprovals = await("myPendingApprovals", approvalsFuture, deadline, degraded,
+                () -> new PageImpl<>(List.of(), pageable, myTasks));
+        DashboardDTO.EscalationMetrics escalationMetrics = await("escalationMetrics", escalationFuture, deadline, degraded,
+                () -> DashboardDTO.EscalationMetrics.builder()
+                        .totalEscalations(pendingEscalations)
+                        .activeEscalatedProcesses(pendingEscalations)
+                        .escalationsByLevel(new HashMap<>())
+                        .build());
+        Map<String, Long> activeByType = await("activeByType", activeByTypeFuture, deadline, degraded, HashMap::new);
+
+        Map<String, Long> byStatus = new HashMap<>();
+        byStatus.put("ACTIVE", totalActive);
+        byStatus.put("COMPLETED", totalCompleted);
+        byStatus.put("PENDING", totalPending);
 
         DashboardDTO.DashboardStats stats = DashboardDTO.DashboardStats.builder()
                 .totalActive(totalActive)
@@ -97,20 +151,110 @@ public class DashboardService {
                 .myTasks(myTasks)
                 .myProcesses(myProcesses)
                 .pendingEscalations(pendingEscalations)
-                .avgCompletionTimeHours(avgCompletionTimeHours)
+                .avgCompletionTimeHours(completed.avgCompletionTimeHours())
                 .build();
 
         return DashboardDTO.builder()
                 .stats(stats)
                 .activeByType(activeByType)
                 .byStatus(byStatus)
-                .recentCompleted(recentCompleted)
+                .recentCompleted(completed.page())
                 .activeProcesses(activeWithDetails)
                 .myPendingApprovals(myPendingApprovals)
                 .escalationMetrics(escalationMetrics)
+                .degradedSections(degraded)
                 .build();
     }
 
+    /**
+     * Wait for a section until the shared deadline. A section that fails or runs late is replaced
+     * by its fallback and reported as degraded instead of failing the whole dashboard.
+     */
+    private <T> T await(String section, CompletableFuture<T> future, long deadline, List<String> degraded,
+                        Supplier<T> fallback) {
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Dashboard section '{}' missed its {} ms deadline", section, sectionTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof QueryTimeoutException || e.getCause() instanceof TransactionTimedOutException) {
+                log.warn("Dashboard section '{}' missed its {} ms deadline: {}", section, sectionTimeoutMs,
+                        e.getCause().getMessage());
+            } else {
+                log.error("Dashboard section '{}' failed: {}", section, e.getCause().getMessage(), e.getCause());
+            }
+        }
+        degraded.add(section);
+        return fallback.get();
+    }
+
+    /**
+     * Run a section in a read-only transaction that times out at the deadline, so its queries
+     * are stopped by the database instead of running on after the section was given up. Spring
+     * applies the transaction timeout to JDBC and JPA statements; the engine's own queries do not
+     * see it, so on PostgreSQL the remaining time is also set as the statement_timeout of the
+     * transaction.
+     */
+    private <T> Supplier<T> bounded(long deadline, Supplier<T> section) {
+        return () -> {
+            long remainingMs = deadline - System.currentTimeMillis();
+            if (remainingMs <= 0) {
+                throw new QueryTimeoutException("Dashboard deadline passed before the section started");
+            }
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.setTimeout((int) Math.max(1, (remainingMs + 999) / 1000));
+            return transaction.execute(status -> {
+                if (databaseDialect.isPostgres()) {
+                    // SET LOCAL ends with the transaction, so the pooled connection keeps its default
+                    jdbcTemplate.execute("SET LOCAL statement_timeout = " + remainingMs);
+                }
+                return section.get();
+            });
+        };
+    }
+
+    private Executor sectionExecutor() {
+        ThreadPoolExecutor executor = sectionExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (sectionExecutor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    sectionExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(parallelism * 10),
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "dashboard-" + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            },
+                            // When saturated the request thread runs the section itself
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+                    sectionExecutor.allowCoreThreadTimeOut(true);
+                }
+                executor = sectionExecutor;
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sectionExecutor != null) {
+            sectionExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Recompute the dashboard counters from the engine tables.
+     */
+    public DashboardCountersDTO rebuildCounters() {
+        return dashboardCounterService.rebuild();
+    }
+
     private long calculateAvgCompletionTime(List<HistoricProcessInstance> completedProcesses) {
         if (completedProcesses.isEmpty()) return 0;
 
@@ -160,4 +304,6 @@ public class DashboardService {
                 .escalationsByLevel(escalationsByLevel)
                 .build();
     }
+
+    private record CompletedSection(Page<WorkflowSummaryDTO> page, long avgCompletionTimeHours) {}
 }
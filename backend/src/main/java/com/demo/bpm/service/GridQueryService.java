@@ -0,0 +1,276 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.GridAggregateDTO;
+import com.demo.bpm.dto.GridRowDTO;
+import com.demo.bpm.entity.ColumnMapping;
+import com.demo.bpm.entity.ColumnMapping.FieldType;
+import com.demo.bpm.entity.Document;
+import com.demo.bpm.entity.GridRow;
+import com.demo.bpm.repository.DocumentRepository;
+import com.demo.bpm.repository.GridRowRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Filtering, sorting and aggregation of grid rows by logical field name.
+ *
+ * Field names are resolved to their physical slot through the grid's column mappings and the
+ * work is done in SQL on that slot, so large grids never leave the database in full.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GridQueryService {
+
+    private static final Set<String> AGGREGATE_FUNCTIONS = Set.of("sum", "avg", "min", "max", "count");
+
+    private final DocumentRepository documentRepository;
+    private final GridRowRepository gridRowRepository;
+    private final ColumnMappingService columnMappingService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Page through grid rows matching the filters, in the requested order.
+     *
+     * @param filters filter specs of the form {@code field:op[:value]}; op is one of eq, ne, gt,
+     *                gte, lt, lte, contains, startswith, null, notnull
+     * @param sorts   sort specs of the form {@code field[,asc|desc]}; row order breaks ties
+     */
+    @Transactional(readOnly = true)
+    public Page<GridRowDTO> queryGridRows(String processInstanceId, String documentType, String gridName,
+                                          List<String> filters, List<String> sorts, Pageable pageable) {
+        String docType = documentType != null ? documentType : BusinessTableService.DEFAULT_DOCUMENT_TYPE;
+        Document document = documentRepository.findByProcessInstanceIdAndType(processInstanceId, docType)
+                .orElse(null);
+        if (document == null) {
+            return Page.empty(pageable);
+        }
+
+        Map<String, ColumnMapping> mappings = columnMappingService.getGridMappings(
+                document.getProcessDefinitionKey(), docType, gridName);
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String where = buildWhere(document.getId(), gridName, filters, mappings, params);
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM grid_rows WHERE " + where, params, Long.class);
+        if (total == null || total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(List.of(), pageable, total != null ? total : 0);
+        }
+
+        params.addValue("limit", pageable.getPageSize());
+        params.addValue("offset", pageable.getOffset());
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM grid_rows WHERE " + where +
+                        " ORDER BY " + buildOrderBy(sorts, mappings) +
+                        " LIMIT :limit OFFSET :offset",
+                params, Long.class);
+
+        Map<Long, GridRow> rowsById = gridRowRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(GridRow::getId, Function.identity()));
+        List<GridRowDTO> content = ids.stream()
+                .map(rowsById::get)
+                .filter(Objects::nonNull)
+                .map(row -> BusinessTableService.convertGridRowToDTO(row, mappings))
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Compute aggregates over the grid rows matching the filters.
+     *
+     * @param aggregates aggregate specs of the form {@code fn:field} or plain {@code count};
+     *                   sum and avg need a numeric field
+     */
+    @Transactional(readOnly = true)
+    public GridAggregateDTO aggregateGridRows(String processInstanceId, String documentType, String gridName,
+                                              List<String> aggregates, List<String> filters) {
+        String docType = documentType != null ? documentType : BusinessTableService.DEFAULT_DOCUMENT_TYPE;
+        List<String> specs = aggregates != null && !aggregates.isEmpty() ? aggregates : List.of("count");
+
+        Document document = documentRepository.findByProcessInstanceIdAndType(processInstanceId, docType)
+                .orElse(null);
+        Map<String, ColumnMapping> mappings = document != null
+                ? columnMappingService.getGridMappings(document.getProcessDefinitionKey(), docType, gridName)
+                : Map.of();
+
+        // Validate every spec up front so a bad request fails the same way with or without data
+        List<String> labels = new ArrayList<>();
+        List<String> expressions = new ArrayList<>();
+        for (String spec : specs) {
+            String[] parts = spec.split(":", 2);
+            String function = parts[0].trim().toLowerCase();
+            if (!AGGREGATE_FUNCTIONS.contains(function)) {
+                throw new IllegalArgumentException("Unsupported aggregate function: " + parts[0]);
+            }
+            if (parts.length == 1) {
+                if (!"count".equals(function)) {
+                    throw new IllegalArgumentException("Aggregate '" + function + "' needs a field, e.g. " + function + ":amount");
+                }
+                labels.add("count");
+                expressions.add("COUNT(*)");
+                continue;
+            }
+            String field = parts[1].trim();
+            labels.add(function + "(" + field + ")");
+            if (document == null) {
+                continue;
+            }
+            ColumnMapping mapping = resolve(field, mappings);
+            if (("sum".equals(function) || "avg".equals(function)) && mapping.getFieldType() != FieldType.FLOAT) {
+                throw new IllegalArgumentException("Aggregate '" + function + "' requires a numeric field: " + field);
+            }
+            expressions.add(function.toUpperCase() + "(" + slotColumn(mapping) + ")");
+        }
+
+        GridAggregateDTO result = GridAggregateDTO.builder().gridName(gridName).build();
+        if (document == null) {
+            labels.forEach(label -> result.getValues().put(label, label.startsWith("count") ? 0L : null));
+            return result;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String where = buildWhere(document.getId(), gridName, filters, mappings, params);
+        String sql = "SELECT COUNT(*), " + String.join(", ", expressions) + " FROM grid_rows WHERE " + where;
+
+        jdbcTemplate.query(sql, params, rs -> {
+            result.setRowCount(rs.getLong(1));
+            for (int i = 0; i < labels.size(); i++) {
+                Object value = rs.getObject(i + 2);
+                if (value instanceof java.sql.Timestamp timestamp) {
+                    value = timestamp.toLocalDateTime().toString();
+                } else if (value instanceof java.time.OffsetDateTime offsetDateTime) {
+                    value = offsetDateTime.toLocalDateTime().toString();
+                } else if (value instanceof Number number && !labels.get(i).startsWith("count")) {
+                    value = number.doubleValue();
+                } else if (value instanceof Number number) {
+                    value = number.longValue();
+                }
+                result.getValues().put(labels.get(i), value);
+            }
+        });
+        return result;
+    }
+
+    // ==================== SQL building ====================
+
+    private String buildWhere(Long documentId, String gridName, List<String> filters,
+                              Map<String, ColumnMapping> mappings, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder("document_id = :documentId AND grid_name = :gridName");
+        params.addValue("documentId", documentId);
+        params.addValue("gridName", gridName);
+        if (filters == null) {
+            return where.toString();
+        }
+
+        int index = 0;
+        for (String filter : filters) {
+            String[] parts = filter.split(":", 3);
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Invalid filter '" + filter + "', expected field:op[:value]");
+            }
+            ColumnMapping mapping = resolve(parts[0].trim(), mappings);
+            String column = slotColumn(mapping);
+            String op = parts[1].trim().toLowerCase();
+            String param = "f" + index++;
+
+            if ("null".equals(op) || "notnull".equals(op)) {
+                where.append(" AND ").append(column).append("null".equals(op) ? " IS NULL" : " IS NOT NULL");
+                continue;
+            }
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("Filter '" + filter + "' needs a value");
+            }
+            String raw = parts[2];
+
+            switch (op) {
+                case "eq", "ne", "gt", "gte", "lt", "lte" -> {
+                    where.append(" AND ").append(column).append(' ').append(comparator(op)).append(" :").append(param);
+                    params.addValue(param, parseValue(raw, mapping));
+                }
+                case "contains", "startswith" -> {
+                    if (mapping.getFieldType() != FieldType.VARCHAR) {
+                        throw new IllegalArgumentException("Operator '" + op + "' requires a text field: " + parts[0]);
+                    }
+                    String escaped = raw.toLowerCase().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+                    where.append(" AND LOWER(").append(column).append(") LIKE :").append(param).append(" ESCAPE '\\'");
+                    params.addValue(param, ("contains".equals(op) ? "%" : "") + escaped + "%");
+                }
+                default -> throw new IllegalArgumentException("Unsupported filter operator: " + parts[1]);
+            }
+        }
+        return where.toString();
+    }
+
+    private String buildOrderBy(List<String> sorts, Map<String, ColumnMapping> mappings) {
+        List<String> clauses = new ArrayList<>();
+        if (sorts != null) {
+            for (String sort : sorts) {
+                String[] parts = sort.split(",", 2);
+                String column = slotColumn(resolve(parts[0].trim(), mappings));
+                String direction = parts.length > 1 ? parts[1].trim().toUpperCase() : "ASC";
+                if (!"ASC".equals(direction) && !"DESC".equals(direction)) {
+                    throw new IllegalArgumentException("Invalid sort direction: " + parts[1]);
+                }
+                clauses.add(column + " " + direction + ("ASC".equals(direction) ? " NULLS LAST" : " NULLS FIRST"));
+            }
+        }
+        clauses.add("row_index ASC");
+        clauses.add("id ASC");
+        return String.join(", ", clauses);
+    }
+
+    private ColumnMapping resolve(String field, Map<String, ColumnMapping> mappings) {
+        ColumnMapping mapping = mappings.get(field);
+        if (mapping == null) {
+            throw new IllegalArgumentException("Unknown grid field: " + field);
+        }
+        return mapping;
+    }
+
+    /**
+     * Physical column of a mapping. Only slot columns are ever interpolated into SQL.
+     */
+    private String slotColumn(ColumnMapping mapping) {
+        return ColumnMappingService.requireSlotColumn(mapping.getColumnName());
+    }
+
+    private String comparator(String op) {
+        return switch (op) {
+            case "eq" -> "=";
+            case "ne" -> "<>";
+            case "gt" -> ">";
+            case "gte" -> ">=";
+            case "lt" -> "<";
+            default -> "<=";
+        };
+    }
+
+    private Object parseValue(String raw, ColumnMapping mapping) {
+        try {
+            return switch (mapping.getFieldType()) {
+                case FLOAT -> "true".equalsIgnoreCase(raw) ? 1.0
+                        : "false".equalsIgnoreCase(raw) ? 0.0
+                        : Double.parseDouble(raw);
+                case DATETIME -> raw.length() == 10 ? LocalDate.parse(raw).atStartOfDay() : LocalDateTime.parse(raw);
+                case VARCHAR -> raw;
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + mapping.getFieldType().name().toLowerCase()
+                    + " value for " + mapping.getFieldName() + ": " + raw);
+        }
+    }
+}
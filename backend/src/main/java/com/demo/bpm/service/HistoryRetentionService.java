@@ -0,0 +1,382 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.HistoryRetentionReportDTO;
+import com.demo.bpm.dto.HistoryRetentionReportDTO.DefinitionResult;
+import com.demo.bpm.entity.ProcessConfig;
+import com.demo.bpm.repository.ProcessConfigRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.history.HistoricProcessInstance;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.task.api.history.HistoricTaskInstance;
+import org.flowable.variable.api.history.HistoricVariableInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Removes the history of finished process instances once it is older than the retention period
+ * of their process definition (process_config.history_retention_days, falling back to
+ * bpm.history-retention.default-days; 0 keeps history forever).
+ *
+ * Instances are deleted oldest first through the engine's bulk delete, a small batch per engine
+ * transaction with a pause in between, so a run never holds long locks or starves other work of
+ * connections. Optionally each batch is first appended to a gzipped NDJSON file per definition;
+ * a batch whose export fails is not deleted. Running instances are never touched. Business
+ * documents and audit events are kept.
+ *
+ * Sub-process instances started by a call activity belong to the history of their root instance:
+ * they are exported, counted and deleted with it, under the retention period of the root's
+ * definition. A sub-process definition's own retention period only applies to instances it ran
+ * as a root.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HistoryRetentionService {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_BATCHES = 100;
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    // Tables cleared along with ACT_HI_PROCINST, all keyed by PROC_INST_ID_
+    private static final List<String> RELATED_TABLES = List.of("ACT_HI_ACTINST", "ACT_HI_TASKINST",
+            "ACT_HI_VARINST", "ACT_HI_DETAIL", "ACT_HI_IDENTITYLINK", "ACT_HI_COMMENT");
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final HistoryService historyService;
+    private final RepositoryService repositoryService;
+    private final ProcessConfigRepository processConfigRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final DashboardCounterService dashboardCounterService;
+
+    @Value("${bpm.history-retention.default-days:0}")
+    private int defaultRetentionDays = 0;
+
+    @Value("${bpm.history-retention.pause-ms:200}")
+    private long pauseMs = 200;
+
+    @Value("${bpm.history-retention.export.enabled:false}")
+    private boolean exportEnabled;
+
+    @Value("${bpm.history-retention.export.directory:./data/history-archive}")
+    private String exportDirectory = "./data/history-archive";
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Apply the retention periods.
+     *
+     * @param processDefinitionKey only this definition, or all deployed definitions when null
+     * @param maxBatches           batch budget of the whole run; the rest is left for the next one
+     * @param dryRun               only count the expired instances
+     */
+    public HistoryRetentionReportDTO purge(String processDefinitionKey, int batchSize, int maxBatches, boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A history retention run is already in progress");
+        }
+        try {
+            return run(processDefinitionKey,
+                    Math.max(1, Math.min(batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE, MAX_BATCH_SIZE)),
+                    maxBatches > 0 ? maxBatches : DEFAULT_MAX_BATCHES, dryRun);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private HistoryRetentionReportDTO run(String processDefinitionKey, int batchSize, int maxBatches, boolean dryRun) {
+        long started = System.currentTimeMillis();
+        HistoryRetentionReportDTO report = HistoryRetentionReportDTO.builder().dryRun(dryRun).complete(true).build();
+
+        Map<String, Integer> overrides = processConfigRepository.findAll().stream()
+                .filter(config -> config.getHistoryRetentionDays() != null)
+                .collect(Collectors.toMap(ProcessConfig::getProcessDefinitionKey, ProcessConfig::getHistoryRetentionDays));
+
+        for (String key : definitionKeys(processDefinitionKey)) {
+            int retentionDays = overrides.getOrDefault(key, defaultRetentionDays);
+            if (retentionDays <= 0) {
+                continue;
+            }
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+            DefinitionResult result = DefinitionResult.builder()
+                    .processDefinitionKey(key)
+                    .retentionDays(retentionDays)
+                    .cutoff(cutoff)
+                    .instancesEligible(expiredQuery(key, cutoff).count())
+                    .build();
+            report.getDefinitions().add(result);
+            if (dryRun || result.getInstancesEligible() == 0) {
+                continue;
+            }
+
+            try (HistoryArchive archive = exportEnabled ? new HistoryArchive(key) : null) {
+                while (result.getInstancesDeleted() < result.getInstancesEligible()) {
+                    if (report.getBatches() >= maxBatches) {
+                        report.setComplete(false);
+                        break;
+                    }
+                    if (!deleteBatch(key, cutoff, batchSize, result, archive)) {
+                        break;
+                    }
+                    report.setBatches(report.getBatches() + 1);
+                    pause();
+                }
+                if (archive != null && result.getInstancesDeleted() > 0) {
+                    result.setExportFile(archive.path.toString());
+                }
+            } catch (IOException | UncheckedIOException e) {
+                log.error("History export of {} failed, stopping its cleanup: {}", key, e.getMessage());
+                report.setComplete(false);
+            }
+            report.setInstancesDeleted(report.getInstancesDeleted() + result.getInstancesDeleted());
+            report.setSubProcessInstancesDeleted(report.getSubProcessInstancesDeleted()
+                    + result.getSubProcessInstancesDeleted());
+            report.setRowsRemoved(report.getRowsRemoved() + result.getRowsRemoved());
+            log.info("History retention removed {} instances, {} sub-process instances ({} rows) of {} finished before {}",
+                    result.getInstancesDeleted(), result.getSubProcessInstancesDeleted(), result.getRowsRemoved(),
+                    key, cutoff);
+        }
+
+        report.setElapsedMs(System.currentTimeMillis() - started);
+        log.info("History retention {}: {} instances, {} rows in {} batches, {} ms",
+                dryRun ? "dry run" : "finished", report.getInstancesDeleted(), report.getRowsRemoved(),
+                report.getBatches(), report.getElapsedMs());
+        return report;
+    }
+
+    /**
+     * Export and delete the oldest expired instances with their sub-process instances. Returns
+     * false when none are left.
+     */
+    private boolean deleteBatch(String key, LocalDateTime cutoff, int batchSize, DefinitionResult result,
+                                HistoryArchive archive) throws IOException {
+        List<HistoricProcessInstance> roots = expiredQuery(key, cutoff)
+                .orderByProcessInstanceEndTime().asc()
+                .listPage(0, batchSize);
+        if (roots.isEmpty()) {
+            return false;
+        }
+        Set<String> subProcessIds = subProcessInstanceIds(roots.stream().map(HistoricProcessInstance::getId).toList());
+        List<HistoricProcessInstance> instances = new ArrayList<>(roots);
+        if (!subProcessIds.isEmpty()) {
+            instances.addAll(historyService.createHistoricProcessInstanceQuery()
+                    .processInstanceIds(subProcessIds)
+                    .list());
+        }
+        List<String> ids = instances.stream().map(HistoricProcessInstance::getId).toList();
+        if (archive != null) {
+            archive.write(instances);
+        }
+        long rows = ids.size() + countRelatedRows(ids);
+        // The engine would remove the sub-process instances along with their roots anyway
+        historyService.bulkDeleteHistoricProcessInstances(ids);
+        // Bulk deletes fire no engine events, so the dashboard's completed count is moved here
+        dashboardCounterService.historyDeleted(ids.size());
+
+        result.setInstancesDeleted(result.getInstancesDeleted() + roots.size());
+        result.setSubProcessInstancesDeleted(result.getSubProcessInstancesDeleted() + ids.size() - roots.size());
+        result.setRowsRemoved(result.getRowsRemoved() + rows);
+        return true;
+    }
+
+    /**
+     * Ids of all sub-process instances below the given instances, at any depth.
+     */
+    private Set<String> subProcessInstanceIds(List<String> instanceIds) {
+        Set<String> found = new LinkedHashSet<>();
+        List<String> level = instanceIds;
+        while (!level.isEmpty()) {
+            level = jdbcTemplate.queryForList(
+                    "SELECT ID_ FROM ACT_HI_PROCINST WHERE SUPER_PROCESS_INSTANCE_ID_ IN (:ids)",
+                    new MapSqlParameterSource("ids", level), String.class).stream()
+                    .filter(found::add)
+                    .toList();
+        }
+        return found;
+    }
+
+    private org.flowable.engine.history.HistoricProcessInstanceQuery expiredQuery(String key, LocalDateTime cutoff) {
+        // Sub-process instances are removed with their root
+        return historyService.createHistoricProcessInstanceQuery()
+                .processDefinitionKey(key)
+                .excludeSubprocesses(true)
+                .finished()
+                .finishedBefore(Date.from(cutoff.atZone(ZoneId.systemDefault()).toInstant()));
+    }
+
+    private List<String> definitionKeys(String processDefinitionKey) {
+        if (processDefinitionKey != null && !processDefinitionKey.isBlank()) {
+            return List.of(processDefinitionKey);
+        }
+        return repositoryService.createProcessDefinitionQuery().latestVersion().list().stream()
+                .map(ProcessDefinition::getKey)
+                .distinct()
+                .sorted()
+                .toList();
+    }
+
+    private long countRelatedRows(List<String> ids) {
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        long total = 0;
+        for (String table : RELATED_TABLES) {
+            Long count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM " + table + " WHERE PROC_INST_ID_ IN (:ids)", params, Long.class);
+            total += count != null ? count : 0;
+        }
+        return total;
+    }
+
+    private void pause() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("History retention interrupted");
+        }
+    }
+
+    /**
+     * Gzipped NDJSON file receiving one line per instance: the instance with its activities,
+     * tasks and variables. Sub-process instances get their own line, linked to their parent by
+     * superProcessInstanceId.
+     */
+    private class HistoryArchive implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final BufferedWriter writer;
+
+        HistoryArchive(String processDefinitionKey) throws IOException {
+            Path directory = Paths.get(exportDirectory);
+            Files.createDirectories(directory);
+            String safeKey = processDefinitionKey.replaceAll("[^A-Za-z0-9._-]", "_");
+            this.path = directory.resolve("history-" + safeKey + "-" + LocalDateTime.now().format(FILE_TIMESTAMP)
+                    + ".ndjson.gz").toAbsolutePath();
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            // Sync flushes end each batch on a complete deflate block, readable without the trailer
+            this.writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Channels.newOutputStream(channel), true), StandardCharsets.UTF_8));
+        }
+
+        void write(List<HistoricProcessInstance> instances) throws IOException {
+            Set<String> ids = instances.stream().map(HistoricProcessInstance::getId)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+
+            Map<String, List<Map<String, Object>>> activities = new HashMap<>();
+            jdbcTemplate.query("SELECT PROC_INST_ID_, ACT_ID_, ACT_NAME_, ACT_TYPE_, ASSIGNEE_, START_TIME_," +
+                            " END_TIME_, DURATION_ FROM ACT_HI_ACTINST WHERE PROC_INST_ID_ IN (:ids)" +
+                            " ORDER BY START_TIME_, ID_",
+                    new MapSqlParameterSource("ids", ids), rs -> {
+                        Map<String, Object> activity = new LinkedHashMap<>();
+                        activity.put("activityId", rs.getString("ACT_ID_"));
+                        activity.put("activityName", rs.getString("ACT_NAME_"));
+                        activity.put("activityType", rs.getString("ACT_TYPE_"));
+                        activity.put("assignee", rs.getString("ASSIGNEE_"));
+                        activity.put("startTime", rs.getTimestamp("START_TIME_"));
+                        activity.put("endTime", rs.getTimestamp("END_TIME_"));
+                        activity.put("durationInMillis", rs.getObject("DURATION_"));
+                        activities.computeIfAbsent(rs.getString("PROC_INST_ID_"), k -> new ArrayList<>()).add(activity);
+                    });
+
+            List<HistoricTaskInstance> tasks = historyService.createHistoricTaskInstanceQuery()
+                    .processInstanceIdIn(ids)
+                    .list();
+            Map<String, List<Map<String, Object>>> tasksByInstance = new HashMap<>();
+            for (HistoricTaskInstance task : tasks) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("id", task.getId());
+                entry.put("taskDefinitionKey", task.getTaskDefinitionKey());
+                entry.put("name", task.getName());
+                entry.put("assignee", task.getAssignee());
+                entry.put("createTime", task.getCreateTime());
+                entry.put("endTime", task.getEndTime());
+                entry.put("durationInMillis", task.getDurationInMillis());
+                entry.put("deleteReason", task.getDeleteReason());
+                tasksByInstance.computeIfAbsent(task.getProcessInstanceId(), k -> new ArrayList<>()).add(entry);
+            }
+
+            // Process-level variables live on the instance execution, task-local ones on their task
+            List<HistoricVariableInstance> variables = new ArrayList<>(
+                    historyService.createHistoricVariableInstanceQuery().executionIds(ids).list());
+            Set<String> taskIds = tasks.stream().map(HistoricTaskInstance::getId).collect(Collectors.toSet());
+            if (!taskIds.isEmpty()) {
+                variables.addAll(historyService.createHistoricVariableInstanceQuery().taskIds(taskIds).list());
+            }
+            Map<String, List<Map<String, Object>>> variablesByInstance = new HashMap<>();
+            for (HistoricVariableInstance variable : variables) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("name", variable.getVariableName());
+                entry.put("type", variable.getVariableTypeName());
+                entry.put("value", exportable(variable.getValue()));
+                entry.put("taskId", variable.getTaskId());
+                variablesByInstance.computeIfAbsent(variable.getProcessInstanceId(), k -> new ArrayList<>()).add(entry);
+            }
+
+            for (HistoricProcessInstance instance : instances) {
+                Map<String, Object> processInstance = new LinkedHashMap<>();
+                processInstance.put("id", instance.getId());
+                processInstance.put("businessKey", instance.getBusinessKey());
+                processInstance.put("processDefinitionId", instance.getProcessDefinitionId());
+                processInstance.put("processDefinitionKey", instance.getProcessDefinitionKey());
+                processInstance.put("superProcessInstanceId", instance.getSuperProcessInstanceId());
+                processInstance.put("startUserId", instance.getStartUserId());
+                processInstance.put("startTime", instance.getStartTime());
+                processInstance.put("endTime", instance.getEndTime());
+                processInstance.put("durationInMillis", instance.getDurationInMillis());
+                processInstance.put("deleteReason", instance.getDeleteReason());
+
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("processInstance", processInstance);
+                line.put("activities", activities.getOrDefault(instance.getId(), List.of()));
+                line.put("tasks", tasksByInstance.getOrDefault(instance.getId(), List.of()));
+                line.put("variables", variablesByInstance.getOrDefault(instance.getId(), List.of()));
+                writer.write(objectMapper.writeValueAsString(line));
+                writer.newLine();
+            }
+            // Everything exported must be on disk before its history is deleted
+            writer.flush();
+            channel.force(true);
+        }
+
+        private Object exportable(Object value) {
+            if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                    || value instanceof Date || value instanceof Map || value instanceof Collection) {
+                return value;
+            }
+            return value.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
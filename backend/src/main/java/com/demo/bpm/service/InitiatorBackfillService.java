@@ -0,0 +1,129 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.InitiatorBackfillReportDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills the engine's START_USER_ID_ for process instances started before the initiator was
+ * passed to the engine, from their _startedBy variable.
+ *
+ * Runtime (ACT_RU_EXECUTION) and history (ACT_HI_PROCINST) rows are updated in batches of their
+ * own transaction. The engine never rewrites START_USER_ID_ after insert, so updating the column
+ * directly does not race with engine work on the same instances.
+ *
+ * "My processes" only matches START_USER_ID_, so the backfill runs to completion once after
+ * startup, in the background so that other ready listeners and requests do not wait for it; after
+ * that it costs two empty queries. The cron job remains for instances written by older
+ * nodes during a rolling upgrade.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InitiatorBackfillService {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_MAX_BATCHES = 100;
+
+    private static final String STARTED_BY = "_startedBy";
+
+    private static final String SELECT_RUNTIME =
+            "SELECT E.ID_ AS ID_, V.TEXT_ AS TEXT_ FROM ACT_RU_EXECUTION E" +
+                    " JOIN ACT_RU_VARIABLE V ON V.PROC_INST_ID_ = E.ID_ AND V.EXECUTION_ID_ = E.ID_" +
+                    " AND V.TASK_ID_ IS NULL AND V.NAME_ = :startedBy AND V.TEXT_ IS NOT NULL" +
+                    " WHERE E.ID_ = E.PROC_INST_ID_ AND E.START_USER_ID_ IS NULL" +
+                    " ORDER BY E.ID_ LIMIT :limit";
+    private static final String UPDATE_RUNTIME =
+            "UPDATE ACT_RU_EXECUTION SET START_USER_ID_ = :userId WHERE ID_ = :id AND START_USER_ID_ IS NULL";
+
+    private static final String SELECT_HISTORY =
+            "SELECT P.ID_ AS ID_, V.TEXT_ AS TEXT_ FROM ACT_HI_PROCINST P" +
+                    " JOIN ACT_HI_VARINST V ON V.PROC_INST_ID_ = P.ID_ AND V.EXECUTION_ID_ = P.ID_" +
+                    " AND V.TASK_ID_ IS NULL AND V.NAME_ = :startedBy AND V.TEXT_ IS NOT NULL" +
+                    " WHERE P.START_USER_ID_ IS NULL" +
+                    " ORDER BY P.ID_ LIMIT :limit";
+    private static final String UPDATE_HISTORY =
+            "UPDATE ACT_HI_PROCINST SET START_USER_ID_ = :userId WHERE ID_ = :id AND START_USER_ID_ IS NULL";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${bpm.initiator-backfill.on-startup:true}")
+    private boolean onStartup = true;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!onStartup) {
+            return;
+        }
+        try {
+            InitiatorBackfillReportDTO report;
+            do {
+                report = backfill(DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCHES);
+            } while (!report.isComplete() && report.getRuntimeUpdated() + report.getHistoryUpdated() > 0);
+        } catch (RuntimeException e) {
+            log.error("Initiator backfill on startup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public InitiatorBackfillReportDTO backfill(int batchSize, int maxBatches) {
+        long started = System.currentTimeMillis();
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        int budget = maxBatches > 0 ? maxBatches : DEFAULT_MAX_BATCHES;
+
+        InitiatorBackfillReportDTO report = new InitiatorBackfillReportDTO();
+        boolean runtimeDone = false;
+        boolean historyDone = false;
+        while (report.getBatches() < budget && !(runtimeDone && historyDone)) {
+            if (!runtimeDone) {
+                int updated = runBatch(SELECT_RUNTIME, UPDATE_RUNTIME, size);
+                report.setRuntimeUpdated(report.getRuntimeUpdated() + updated);
+                runtimeDone = updated < size;
+            }
+            if (!historyDone) {
+                int updated = runBatch(SELECT_HISTORY, UPDATE_HISTORY, size);
+                report.setHistoryUpdated(report.getHistoryUpdated() + updated);
+                historyDone = updated < size;
+            }
+            report.setBatches(report.getBatches() + 1);
+        }
+
+        report.setComplete(runtimeDone && historyDone);
+        report.setElapsedMs(System.currentTimeMillis() - started);
+        log.info("Initiator backfill updated {} runtime and {} history instances in {} batches ({} ms, complete={})",
+                report.getRuntimeUpdated(), report.getHistoryUpdated(), report.getBatches(),
+                report.getElapsedMs(), report.isComplete());
+        return report;
+    }
+
+    private int runBatch(String select, String update, int size) {
+        Integer updated = transactionTemplate.execute(status -> {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(select, new MapSqlParameterSource()
+                    .addValue("startedBy", STARTED_BY)
+                    .addValue("limit", size));
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            MapSqlParameterSource[] batch = rows.stream()
+                    .map(row -> new MapSqlParameterSource()
+                            .addValue("id", row.get("ID_"))
+                            .addValue("userId", row.get("TEXT_")))
+                    .toArray(MapSqlParameterSource[]::new);
+            jdbcTemplate.batchUpdate(update, batch);
+            return rows.size();
+        });
+        return updated != null ? updated : 0;
+    }
+}
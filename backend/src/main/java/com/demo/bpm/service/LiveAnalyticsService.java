@@ -0,0 +1,415 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.LiveAnalyticsDTO;
+import com.demo.bpm.util.RecountEpoch;
+import com.demo.bpm.util.SlidingWindowCounter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.RepositoryService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live throughput and work in progress, kept in memory from engine events.
+ *
+ * Per process definition: instances in progress, starts and completions since this node started,
+ * and start and completion rates over a sliding window. Per user task definition: open tasks and
+ * the oldest waiting one. Changes are applied after each engine transaction commits (see
+ * LiveAnalyticsListener), so reads never touch the database.
+ *
+ * On startup, and on every resync, work in progress is recounted from ACT_RU_EXECUTION and
+ * ACT_RU_TASK and the rate windows are refilled from the history of the last window, so a
+ * restart does not zero the figures. Like a dashboard counter rebuild, a resync reads from one
+ * snapshot and replays the changes committed while it ran (see RecountEpoch). Events handled by
+ * other nodes only show up after a resync.
+ *
+ * The same figures are published as meters: bpm.live.processes.in_progress, .started and
+ * .completed per definition, bpm.live.tasks.open and bpm.live.tasks.oldest_age per task.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LiveAnalyticsService {
+
+    private static final int WINDOW_SLOTS = 30;
+    private static final double MS_PER_MINUTE = 60_000.0;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final RepositoryService repositoryService;
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${bpm.analytics.live.window-seconds:300}")
+    private long windowSeconds = 300;
+
+    private final Map<String, DefinitionCounters> definitions = new ConcurrentHashMap<>();
+    private final Map<String, String> definitionKeys = new ConcurrentHashMap<>();
+    private final RecountEpoch<Delta> epoch = new RecountEpoch<>();
+
+    private volatile LocalDateTime resyncedAt;
+
+    /**
+     * Key of a process definition id, cached; definitions never change key.
+     */
+    public String definitionKey(String processDefinitionId) {
+        if (processDefinitionId == null) {
+            return null;
+        }
+        return definitionKeys.computeIfAbsent(processDefinitionId,
+                id -> repositoryService.getProcessDefinition(id).getKey());
+    }
+
+    public LiveAnalyticsDTO getLive() {
+        long now = System.currentTimeMillis();
+        double windowMinutes = windowSeconds * 1000 / MS_PER_MINUTE;
+        List<LiveAnalyticsDTO.DefinitionLive> result = new ArrayList<>();
+        long inProgress = 0;
+        long openTasks = 0;
+        long starts = 0;
+        long completions = 0;
+        OpenTask oldest = null;
+
+        for (DefinitionCounters counters : definitions.values()) {
+            List<LiveAnalyticsDTO.ActivityLive> activities = new ArrayList<>();
+            for (ActivityCounters activity : counters.activities.values()) {
+                OpenTask first = activity.oldest();
+                // Tasks created before a resync on another node and ended here can dip below zero
+                long open = Math.max(0, activity.open.sum());
+                if (open == 0 && first == null) {
+                    continue;
+                }
+                activities.add(LiveAnalyticsDTO.ActivityLive.builder()
+                        .taskDefinitionKey(activity.taskDefinitionKey)
+                        .taskName(activity.taskName)
+                        .openTasks(open)
+                        .oldestTask(waitingTask(first, now))
+                        .build());
+                openTasks += open;
+                if (first != null && (oldest == null || OpenTask.ORDER.compare(first, oldest) < 0)) {
+                    oldest = first;
+                }
+            }
+            activities.sort(Comparator.comparing(LiveAnalyticsDTO.ActivityLive::getOpenTasks).reversed());
+
+            long definitionStarts = counters.startWindow.sum(now);
+            long definitionCompletions = counters.completionWindow.sum(now);
+            long definitionInProgress = Math.max(0, counters.inProgress.sum());
+            starts += definitionStarts;
+            completions += definitionCompletions;
+            inProgress += definitionInProgress;
+            result.add(LiveAnalyticsDTO.DefinitionLive.builder()
+                    .processDefinitionKey(counters.processDefinitionKey)
+                    .inProgress(definitionInProgress)
+                    .started(counters.started.sum())
+                    .completed(counters.completed.sum())
+                    .startsPerMinute(definitionStarts / windowMinutes)
+                    .completionsPerMinute(definitionCompletions / windowMinutes)
+                    .activities(activities)
+                    .build());
+        }
+        result.sort(Comparator.comparing(LiveAnalyticsDTO.DefinitionLive::getInProgress).reversed()
+                .thenComparing(LiveAnalyticsDTO.DefinitionLive::getProcessDefinitionKey));
+
+        return LiveAnalyticsDTO.builder()
+                .windowSeconds(windowSeconds)
+                .startsPerMinute(starts / windowMinutes)
+                .completionsPerMinute(completions / windowMinutes)
+                .processesInProgress(inProgress)
+                .openTasks(openTasks)
+                .oldestTask(waitingTask(oldest, now))
+                .definitions(result)
+                .resyncedAt(resyncedAt)
+                .asOf(toLocal(now))
+                .build();
+    }
+
+    /**
+     * Recount work in progress from the runtime tables and refill the rate windows from history.
+     * Totals since startup are kept.
+     */
+    public synchronized LiveAnalyticsDTO resync() {
+        long started = System.currentTimeMillis();
+
+        TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshot.setReadOnly(true);
+        Recount recount;
+        try {
+            recount = snapshot.execute(status -> {
+                // The first statement fixes the snapshot; every delta applied from here on is replayed
+                jdbcTemplate.queryForObject("SELECT 1", new MapSqlParameterSource(), Integer.class);
+                epoch.open();
+                return recount(started - windowSeconds * 1000, started);
+            });
+        } catch (RuntimeException e) {
+            epoch.abandon();
+            throw e;
+        }
+
+        // Totals since startup are not recounted, so the replay leaves them alone
+        int replayed = epoch.close(() -> install(recount), delta -> applyUnlocked(delta, false));
+
+        resyncedAt = LocalDateTime.now();
+        log.info("Resynced live analytics in {} ms: {} processes in progress, {} open tasks, {} concurrent changes replayed",
+                System.currentTimeMillis() - started, recount.running().values().stream().mapToLong(Long::longValue).sum(),
+                recount.tasks().size(), replayed);
+        return getLive();
+    }
+
+    private Recount recount(long since, long now) {
+        Map<String, Long> running = new HashMap<>();
+        jdbcTemplate.query("SELECT D.KEY_, COUNT(*) FROM ACT_RU_EXECUTION E"
+                        + " JOIN ACT_RE_PROCDEF D ON D.ID_ = E.PROC_DEF_ID_ WHERE E.ID_ = E.PROC_INST_ID_ GROUP BY D.KEY_",
+                new MapSqlParameterSource(), rs -> {
+                    running.put(rs.getString(1), rs.getLong(2));
+                });
+
+        List<TaskChange> tasks = new ArrayList<>();
+        jdbcTemplate.query("SELECT T.ID_, T.NAME_, T.TASK_DEF_KEY_, T.CREATE_TIME_, D.KEY_ FROM ACT_RU_TASK T"
+                        + " JOIN ACT_RE_PROCDEF D ON D.ID_ = T.PROC_DEF_ID_",
+                new MapSqlParameterSource(), rs -> {
+                    Timestamp created = rs.getTimestamp("CREATE_TIME_");
+                    tasks.add(new TaskChange(rs.getString("KEY_"), rs.getString("TASK_DEF_KEY_"),
+                            rs.getString("NAME_"), rs.getString("ID_"), created != null ? created.getTime() : now));
+                });
+
+        List<HistoryEvent> starts = new ArrayList<>();
+        List<HistoryEvent> ends = new ArrayList<>();
+        jdbcTemplate.query("SELECT D.KEY_, P.START_TIME_, P.END_TIME_ FROM ACT_HI_PROCINST P"
+                        + " JOIN ACT_RE_PROCDEF D ON D.ID_ = P.PROC_DEF_ID_"
+                        + " WHERE P.START_TIME_ >= :since OR P.END_TIME_ >= :since",
+                new MapSqlParameterSource("since", new Timestamp(since)), rs -> {
+                    String key = rs.getString("KEY_");
+                    Timestamp start = rs.getTimestamp("START_TIME_");
+                    Timestamp end = rs.getTimestamp("END_TIME_");
+                    if (start != null && start.getTime() >= since) {
+                        starts.add(new HistoryEvent(key, start.getTime()));
+                    }
+                    if (end != null && end.getTime() >= since) {
+                        ends.add(new HistoryEvent(key, end.getTime()));
+                    }
+                });
+        return new Recount(running, tasks, starts, ends);
+    }
+
+    private void install(Recount recount) {
+        for (DefinitionCounters counters : definitions.values()) {
+            counters.inProgress.reset();
+            counters.startWindow.reset();
+            counters.completionWindow.reset();
+            for (ActivityCounters activity : counters.activities.values()) {
+                activity.open.reset();
+                activity.waiting.clear();
+            }
+        }
+        recount.running().forEach((key, count) -> counters(key).inProgress.add(count));
+        recount.tasks().forEach(task -> counters(task.processDefinitionKey()).activity(task).opened(task));
+        recount.starts().forEach(event -> counters(event.processDefinitionKey()).startWindow.add(event.time(), 1));
+        recount.ends().forEach(event -> counters(event.processDefinitionKey()).completionWindow.add(event.time(), 1));
+    }
+
+    /**
+     * Apply the changes of one committed engine transaction.
+     */
+    public void apply(Delta delta) {
+        epoch.apply(delta, d -> applyUnlocked(d, true));
+    }
+
+    private void applyUnlocked(Delta delta, boolean totals) {
+        long now = System.currentTimeMillis();
+        delta.starts.forEach((key, count) -> {
+            DefinitionCounters counters = counters(key);
+            counters.inProgress.add(count);
+            counters.startWindow.add(now, count);
+            if (totals) {
+                counters.started.add(count);
+            }
+        });
+        delta.ends.values().forEach(key -> {
+            DefinitionCounters counters = counters(key);
+            counters.inProgress.decrement();
+            counters.completionWindow.add(now, 1);
+            if (totals) {
+                counters.completed.increment();
+            }
+        });
+        delta.opened.forEach(task -> counters(task.processDefinitionKey()).activity(task).opened(task));
+        delta.closed.forEach(task -> counters(task.processDefinitionKey()).activity(task).closed(task));
+    }
+
+    private DefinitionCounters counters(String processDefinitionKey) {
+        return definitions.computeIfAbsent(processDefinitionKey, this::register);
+    }
+
+    private DefinitionCounters register(String processDefinitionKey) {
+        long windowMs = windowSeconds * 1000;
+        DefinitionCounters counters = new DefinitionCounters(processDefinitionKey,
+                new SlidingWindowCounter(windowMs, WINDOW_SLOTS), new SlidingWindowCounter(windowMs, WINDOW_SLOTS));
+        Gauge.builder("bpm.live.processes.in_progress", counters.inProgress, LongAdder::sum)
+                .description("Process instances running")
+                .tag("definition", processDefinitionKey)
+                .register(meterRegistry);
+        FunctionCounter.builder("bpm.live.processes.started", counters.started, LongAdder::sum)
+                .description("Process instances started on this node")
+                .tag("definition", processDefinitionKey)
+                .register(meterRegistry);
+        FunctionCounter.builder("bpm.live.processes.completed", counters.completed, LongAdder::sum)
+                .description("Process instances ended on this node")
+                .tag("definition", processDefinitionKey)
+                .register(meterRegistry);
+        return counters;
+    }
+
+    private ActivityCounters registerActivity(String processDefinitionKey, String taskDefinitionKey, String taskName) {
+        ActivityCounters activity = new ActivityCounters(taskDefinitionKey, taskName);
+        Gauge.builder("bpm.live.tasks.open", activity.open, LongAdder::sum)
+                .description("Open user tasks")
+                .tags("definition", processDefinitionKey, "task", taskDefinitionKey)
+                .register(meterRegistry);
+        Gauge.builder("bpm.live.tasks.oldest_age", activity, a -> {
+                    OpenTask first = a.oldest();
+                    return first != null ? (System.currentTimeMillis() - first.createdAt()) / 1000.0 : 0;
+                })
+                .description("Age of the oldest open user task")
+                .baseUnit("seconds")
+                .tags("definition", processDefinitionKey, "task", taskDefinitionKey)
+                .register(meterRegistry);
+        return activity;
+    }
+
+    private static LiveAnalyticsDTO.WaitingTask waitingTask(OpenTask task, long now) {
+        if (task == null) {
+            return null;
+        }
+        return LiveAnalyticsDTO.WaitingTask.builder()
+                .taskId(task.taskId())
+                .processDefinitionKey(task.processDefinitionKey())
+                .taskDefinitionKey(task.taskDefinitionKey())
+                .createdAt(toLocal(task.createdAt()))
+                .ageSeconds(Math.max(0, (now - task.createdAt()) / 1000))
+                .build();
+    }
+
+    private static LocalDateTime toLocal(long epochMs) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault());
+    }
+
+    /**
+     * A user task that was created or ended.
+     */
+    public record TaskChange(String processDefinitionKey, String taskDefinitionKey, String taskName,
+                             String taskId, long createdAt) {}
+
+    // A process start or end taken from history
+    private record HistoryEvent(String processDefinitionKey, long time) {}
+
+    private record Recount(Map<String, Long> running, List<TaskChange> tasks, List<HistoryEvent> starts,
+                           List<HistoryEvent> ends) {}
+
+    private record OpenTask(long createdAt, String taskId, String processDefinitionKey, String taskDefinitionKey) {
+        static final Comparator<OpenTask> ORDER =
+                Comparator.comparingLong(OpenTask::createdAt).thenComparing(OpenTask::taskId);
+    }
+
+    private final class DefinitionCounters {
+        private final String processDefinitionKey;
+        private final LongAdder inProgress = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final SlidingWindowCounter startWindow;
+        private final SlidingWindowCounter completionWindow;
+        private final Map<String, ActivityCounters> activities = new ConcurrentHashMap<>();
+
+        DefinitionCounters(String processDefinitionKey, SlidingWindowCounter startWindow,
+                           SlidingWindowCounter completionWindow) {
+            this.processDefinitionKey = processDefinitionKey;
+            this.startWindow = startWindow;
+            this.completionWindow = completionWindow;
+        }
+
+        ActivityCounters activity(TaskChange task) {
+            String taskDefinitionKey = task.taskDefinitionKey() != null ? task.taskDefinitionKey() : "";
+            return activities.computeIfAbsent(taskDefinitionKey,
+                    k -> registerActivity(processDefinitionKey, k, task.taskName()));
+        }
+    }
+
+    private static final class ActivityCounters {
+        private final String taskDefinitionKey;
+        private final String taskName;
+        private final LongAdder open = new LongAdder();
+        // Ordered by creation, so the first entry is the oldest waiting task
+        private final ConcurrentSkipListSet<OpenTask> waiting = new ConcurrentSkipListSet<>(OpenTask.ORDER);
+
+        ActivityCounters(String taskDefinitionKey, String taskName) {
+            this.taskDefinitionKey = taskDefinitionKey;
+            this.taskName = taskName;
+        }
+
+        void opened(TaskChange task) {
+            open.increment();
+            waiting.add(new OpenTask(task.createdAt(), task.taskId(), task.processDefinitionKey(), taskDefinitionKey));
+        }
+
+        void closed(TaskChange task) {
+            open.decrement();
+            waiting.remove(new OpenTask(task.createdAt(), task.taskId(), task.processDefinitionKey(), taskDefinitionKey));
+        }
+
+        OpenTask oldest() {
+            try {
+                return waiting.first();
+            } catch (NoSuchElementException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Changes collected over one engine transaction.
+     */
+    public static class Delta {
+        private final Map<String, Long> starts = new HashMap<>();
+        // Definition key per ended process instance; repeated end events count once
+        private final Map<String, String> ends = new HashMap<>();
+        private final List<TaskChange> opened = new ArrayList<>();
+        private final List<TaskChange> closed = new ArrayList<>();
+
+        public void processStarted(String processDefinitionKey) {
+            starts.merge(processDefinitionKey, 1L, Long::sum);
+        }
+
+        public void processEnded(String processInstanceId, String processDefinitionKey) {
+            ends.putIfAbsent(processInstanceId, processDefinitionKey);
+        }
+
+        public void taskCreated(TaskChange task) {
+            opened.add(task);
+        }
+
+        public void taskEnded(TaskChange task) {
+            closed.add(task);
+        }
+
+        public boolean isEmpty() {
+            return starts.isEmpty() && ends.isEmpty() && opened.isEmpty() && closed.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ProcessMiningReportDTO;
+import com.demo.bpm.dto.ProcessVariantsDTO;
+import com.demo.bpm.exception.ResourceNotFoundException;
+import com.demo.bpm.service.helpers.HistoryWatermarks;
+import com.demo.bpm.service.helpers.HistoryWatermarks.Position;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.bpmn.model.BpmnModel;
+import org.flowable.bpmn.model.FlowElement;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Trace variants and directly-follows graphs of finished process instances.
+ *
+ * An incremental job pages through finished instances in (END_TIME_, ID_) order, a keyset that
+ * the watermark row remembers, and reads the activity history of one batch of instances at a
+ * time. Each instance's activities, ordered by completion, form its trace; consecutive activities
+ * form the edges of the directly-follows graph. Only counts and duration sums are stored, per
+ * definition key, so the summary stays small however much history is mined and each batch is
+ * added in the same transaction that moves the keyset.
+ *
+ * An instance can commit its end after the keyset passed its END_TIME_, so each run first mines
+ * the instances of the overlap window below the keyset that were missed. Counts cannot be mined
+ * twice, so the ids of mined instances are kept in process_mining_instance while they are inside
+ * the overlap window, and the re-read skips them.
+ *
+ * Sequence flows and gateways are left out of the traces; they carry no work of their own.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProcessMiningService {
+
+    public static final int DEFAULT_MAX_BATCHES = 50;
+    public static final int DEFAULT_VARIANT_LIMIT = 20;
+    public static final int MAX_VARIANT_LIMIT = 500;
+
+    static final String WATERMARK = "process_mining";
+    private static final double MS_PER_HOUR = 3_600_000.0;
+
+    private static final String INSTANCE_BATCH =
+            "SELECT P.ID_, P.START_TIME_, P.END_TIME_, D.KEY_ FROM ACT_HI_PROCINST P" +
+                    " JOIN ACT_RE_PROCDEF D ON D.ID_ = P.PROC_DEF_ID_" +
+                    " WHERE P.END_TIME_ <= :upTo" +
+                    " AND (P.END_TIME_ > :after OR (P.END_TIME_ = :after AND P.ID_ > :cursor))" +
+                    " ORDER BY P.END_TIME_, P.ID_ LIMIT :limit";
+    private static final String MISSED_INSTANCES =
+            "SELECT P.ID_, P.START_TIME_, P.END_TIME_, D.KEY_ FROM ACT_HI_PROCINST P" +
+                    " JOIN ACT_RE_PROCDEF D ON D.ID_ = P.PROC_DEF_ID_" +
+                    " WHERE P.END_TIME_ >= :from" +
+                    " AND (P.END_TIME_ < :after OR (P.END_TIME_ = :after AND P.ID_ <= :cursor))" +
+                    " AND NOT EXISTS (SELECT 1 FROM process_mining_instance M WHERE M.process_instance_id = P.ID_)" +
+                    " ORDER BY P.END_TIME_, P.ID_";
+    private static final String ACTIVITY_ROWS =
+            "SELECT PROC_INST_ID_, ACT_ID_, START_TIME_, END_TIME_ FROM ACT_HI_ACTINST" +
+                    " WHERE PROC_INST_ID_ IN (:ids) AND ACT_TYPE_ <> 'sequenceFlow' AND ACT_TYPE_ NOT LIKE '%Gateway'" +
+                    " ORDER BY PROC_INST_ID_, COALESCE(END_TIME_, START_TIME_), START_TIME_, TRANSACTION_ORDER_";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RepositoryService repositoryService;
+    private final HistoryWatermarks watermarks;
+
+    // Finished instances per transaction; their activity history is read in one query
+    @Value("${bpm.analytics.mining.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${bpm.analytics.mining.settle-lag-ms:5000}")
+    private long settleLagMs = 5000;
+
+    // Instances below the keyset looked for again on every run, for ends that committed late
+    @Value("${bpm.analytics.mining.overlap-ms:1800000}")
+    private long overlapMs = 1_800_000;
+
+    /**
+     * Mine the instances that finished since the last run.
+     *
+     * @param maxBatches batches of {@code batch-size} instances to mine; the rest is left for the next run
+     */
+    public ProcessMiningReportDTO mine(int maxBatches) {
+        return run(false, maxBatches);
+    }
+
+    /**
+     * Clear the variants and transitions and mine every finished instance again, e.g. after
+     * history was deleted.
+     */
+    public ProcessMiningReportDTO rebuild(int maxBatches) {
+        return run(true, maxBatches);
+    }
+
+    private ProcessMiningReportDTO run(boolean rebuild, int maxBatches) {
+        return watermarks.runExclusively(WATERMARK, "A process mining run", () -> {
+            long started = System.currentTimeMillis();
+            if (rebuild) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    watermarks.lock(WATERMARK);
+                    MapSqlParameterSource params = new MapSqlParameterSource();
+                    jdbcTemplate.update("DELETE FROM process_variant", params);
+                    jdbcTemplate.update("DELETE FROM process_transition", params);
+                    jdbcTemplate.update("DELETE FROM process_mining_instance", params);
+                    watermarks.reset(WATERMARK);
+                });
+            }
+
+            ProcessMiningReportDTO report = ProcessMiningReportDTO.builder().rebuilt(rebuild).build();
+            LocalDateTime upTo = HistoryWatermarks.settledUpTo(settleLagMs);
+            Batch missed = transactionTemplate.execute(status -> mineMissed());
+            if (missed != null) {
+                report.setInstancesMined(missed.instances());
+                report.setActivitiesRead(missed.activities());
+            }
+            int budget = maxBatches > 0 ? maxBatches : DEFAULT_MAX_BATCHES;
+            while (report.getBatches() < budget) {
+                Batch batch = transactionTemplate.execute(status -> mineNextBatch(upTo));
+                if (batch == null) {
+                    report.setComplete(true);
+                    break;
+                }
+                report.setBatches(report.getBatches() + 1);
+                report.setInstancesMined(report.getInstancesMined() + batch.instances());
+                report.setActivitiesRead(report.getActivitiesRead() + batch.activities());
+            }
+            report.setWatermark(watermarks.current(WATERMARK));
+            report.setElapsedMs(System.currentTimeMillis() - started);
+            log.info("Process mining read {} activities of {} instances in {} batches ({} ms, watermark {}, complete={})",
+                    report.getActivitiesRead(), report.getInstancesMined(), report.getBatches(),
+                    report.getElapsedMs(), report.getWatermark(), report.isComplete());
+            return report;
+        });
+    }
+
+    /**
+     * Mine the instances of the overlap window below the keyset that are not in the summary yet,
+     * and forget the mined ids that fell out of the window. The keyset stays where it is.
+     */
+    private Batch mineMissed() {
+        Position position = watermarks.lock(WATERMARK);
+        LocalDateTime from = HistoryWatermarks.overlapStart(position.watermark(), overlapMs);
+        jdbcTemplate.update("DELETE FROM process_mining_instance WHERE end_time < :from",
+                new MapSqlParameterSource("from", Timestamp.valueOf(from)));
+        if (!position.watermark().isAfter(HistoryWatermarks.BEGINNING)) {
+            return null;
+        }
+        List<Instance> instances = jdbcTemplate.query(MISSED_INSTANCES, new MapSqlParameterSource()
+                        .addValue("from", Timestamp.valueOf(from))
+                        .addValue("after", Timestamp.valueOf(position.watermark()))
+                        .addValue("cursor", position.cursorId()),
+                ProcessMiningService::mapInstance);
+        if (!instances.isEmpty()) {
+            log.info("Process mining found {} instances that finished below its keyset", instances.size());
+        }
+        return mineInstances(instances);
+    }
+
+    /**
+     * Add the next batch of finished instances after the keyset to the summary and advance the
+     * keyset. Returns null when no instance finished after it up to {@code upTo}.
+     */
+    private Batch mineNextBatch(LocalDateTime upTo) {
+        Position position = watermarks.lock(WATERMARK);
+        List<Instance> instances = jdbcTemplate.query(INSTANCE_BATCH, new MapSqlParameterSource()
+                        .addValue("upTo", Timestamp.valueOf(upTo))
+                        .addValue("after", Timestamp.valueOf(position.watermark()))
+                        .addValue("cursor", position.cursorId())
+                        .addValue("limit", Math.max(1, batchSize)),
+                ProcessMiningService::mapInstance);
+        if (instances.isEmpty()) {
+            return null;
+        }
+        Batch batch = mineInstances(instances);
+        Instance last = instances.get(instances.size() - 1);
+        watermarks.advance(WATERMARK, last.endTime(), last.id());
+        return batch;
+    }
+
+    /**
+     * Fold the traces of the instances into the summary and remember them as mined.
+     */
+    private Batch mineInstances(List<Instance> instances) {
+        if (instances.isEmpty()) {
+            return new Batch(0, 0);
+        }
+        Map<String, List<Step>> traces = new HashMap<>();
+        long[] activities = new long[1];
+        jdbcTemplate.query(ACTIVITY_ROWS,
+                new MapSqlParameterSource("ids", instances.stream().map(Instance::id).toList()), rs -> {
+                    Timestamp end = rs.getTimestamp("END_TIME_");
+                    Timestamp completed = end != null ? end : rs.getTimestamp("START_TIME_");
+                    traces.computeIfAbsent(rs.getString("PROC_INST_ID_"), id -> new ArrayList<>())
+                            .add(new Step(rs.getString("ACT_ID_"), completed.getTime()));
+                    activities[0]++;
+                });
+
+        Map<VariantKey, VariantStats> variants = new HashMap<>();
+        Map<EdgeKey, EdgeStats> edges = new HashMap<>();
+        for (Instance instance : instances) {
+            List<Step> steps = traces.get(instance.id());
+            if (steps == null) {
+                // Nothing recorded, e.g. history written below activity level
+                continue;
+            }
+            String trace = String.join(",", steps.stream().map(Step::activityId).toList());
+            variants.computeIfAbsent(new VariantKey(instance.definitionKey(), hash(trace)),
+                    key -> new VariantStats(trace, steps.size())).add(instance);
+            for (int i = 1; i < steps.size(); i++) {
+                Step source = steps.get(i - 1);
+                Step target = steps.get(i);
+                edges.computeIfAbsent(new EdgeKey(instance.definitionKey(), source.activityId(), target.activityId()),
+                        key -> new EdgeStats()).add(Math.max(0, target.completedAt() - source.completedAt()));
+            }
+        }
+
+        upsertVariants(variants);
+        upsertTransitions(edges);
+        jdbcTemplate.batchUpdate("INSERT INTO process_mining_instance (process_instance_id, end_time) VALUES (:id, :endTime)",
+                instances.stream()
+                        .map(instance -> new MapSqlParameterSource()
+                                .addValue("id", instance.id())
+                                .addValue("endTime", Timestamp.valueOf(instance.endTime())))
+                        .toArray(MapSqlParameterSource[]::new));
+        return new Batch(instances.size(), activities[0]);
+    }
+
+    private static Instance mapInstance(ResultSet rs, int rowNum) throws SQLException {
+        return new Instance(rs.getString("ID_"), rs.getString("KEY_"),
+                rs.getTimestamp("START_TIME_").toLocalDateTime(), rs.getTimestamp("END_TIME_").toLocalDateTime());
+    }
+
+    private void upsertVariants(Map<VariantKey, VariantStats> variants) {
+        List<MapSqlParameterSource> batch = new ArrayList<>(variants.size());
+        variants.forEach((key, stats) -> batch.add(new MapSqlParameterSource()
+                .addValue("definitionKey", key.processDefinitionKey())
+                .addValue("hash", key.hash())
+                .addValue("trace", stats.trace)
+                .addValue("activityCount", stats.activityCount)
+                .addValue("count", stats.count)
+                .addValue("sum", stats.durationSumMs)
+                .addValue("firstSeen", Timestamp.valueOf(stats.firstSeen))
+                .addValue("lastSeen", Timestamp.valueOf(stats.lastSeen))));
+        watermarks.upsert("UPDATE process_variant SET instance_count = instance_count + :count," +
+                        " duration_sum_ms = duration_sum_ms + :sum, first_seen = LEAST(first_seen, :firstSeen)," +
+                        " last_seen = GREATEST(last_seen, :lastSeen)" +
+                        " WHERE process_definition_key = :definitionKey AND variant_hash = :hash",
+                "INSERT INTO process_variant (process_definition_key, variant_hash, trace, activity_count," +
+                        " instance_count, duration_sum_ms, first_seen, last_seen)" +
+                        " VALUES (:definitionKey, :hash, :trace, :activityCount, :count, :sum, :firstSeen, :lastSeen)",
+                batch);
+    }
+
+    private void upsertTransitions(Map<EdgeKey, EdgeStats> edges) {
+        List<MapSqlParameterSource> batch = new ArrayList<>(edges.size());
+        edges.forEach((key, stats) -> batch.add(new MapSqlParameterSource()
+                .addValue("definitionKey", key.processDefinitionKey())
+                .addValue("source", key.source())
+                .addValue("target", key.target())
+                .addValue("count", stats.count)
+                .addValue("sum", stats.durationSumMs)));
+        watermarks.upsert("UPDATE process_transition SET transition_count = transition_count + :count," +
+                        " duration_sum_ms = duration_sum_ms + :sum WHERE process_definition_key = :definitionKey" +
+                        " AND source_activity = :source AND target_activity = :target",
+                "INSERT INTO process_transition (process_definition_key, source_activity, target_activity," +
+                        " transition_count, duration_sum_ms) VALUES (:definitionKey, :source, :target, :count, :sum)",
+                batch);
+    }
+
+    /**
+     * The most frequent variants and the directly-follows graph of a definition, across all its
+     * versions, as far as the job has mined.
+     */
+    public ProcessVariantsDTO getVariants(String processDefinitionKey, int limit) {
+        if (processDefinitionKey == null || processDefinitionKey.isBlank()) {
+            throw new IllegalArgumentException("processDefinitionKey is required");
+        }
+        int size = Math.max(1, Math.min(limit > 0 ? limit : DEFAULT_VARIANT_LIMIT, MAX_VARIANT_LIMIT));
+        MapSqlParameterSource params = new MapSqlParameterSource("definitionKey", processDefinitionKey)
+                .addValue("limit", size);
+
+        long[] totals = new long[2];
+        jdbcTemplate.query("SELECT COUNT(*) AS variants, COALESCE(SUM(instance_count), 0) AS instances" +
+                " FROM process_variant WHERE process_definition_key = :definitionKey", params, rs -> {
+            totals[0] = rs.getLong("variants");
+            totals[1] = rs.getLong("instances");
+        });
+        ProcessDefinition latest = repositoryService.createProcessDefinitionQuery()
+                .processDefinitionKey(processDefinitionKey)
+                .latestVersion()
+                .singleResult();
+        if (latest == null && totals[0] == 0) {
+            throw new ResourceNotFoundException("Process definition not found: " + processDefinitionKey);
+        }
+
+        List<ProcessVariantsDTO.Variant> variants = jdbcTemplate.query(
+                "SELECT variant_hash, trace, instance_count, duration_sum_ms, first_seen, last_seen FROM process_variant" +
+                        " WHERE process_definition_key = :definitionKey" +
+                        " ORDER BY instance_count DESC, last_seen DESC, variant_hash LIMIT :limit", params,
+                (rs, rowNum) -> {
+                    long count = rs.getLong("instance_count");
+                    return ProcessVariantsDTO.Variant.builder()
+                            .variantHash(rs.getString("variant_hash"))
+                            .activities(List.of(rs.getString("trace").split(",")))
+                            .instances(count)
+                            .share(totals[1] > 0 ? (double) count / totals[1] : 0)
+                            .avgDurationHours(count > 0 ? rs.getLong("duration_sum_ms") / (double) count / MS_PER_HOUR : 0)
+                            .firstSeen(rs.getTimestamp("first_seen").toLocalDateTime())
+                            .lastSeen(rs.getTimestamp("last_seen").toLocalDateTime())
+                            .build();
+                });
+        List<ProcessVariantsDTO.Transition> transitions = jdbcTemplate.query(
+                "SELECT source_activity, target_activity, transition_count, duration_sum_ms FROM process_transition" +
+                        " WHERE process_definition_key = :definitionKey" +
+                        " ORDER BY transition_count DESC, source_activity, target_activity", params,
+                (rs, rowNum) -> {
+                    long count = rs.getLong("transition_count");
+                    return ProcessVariantsDTO.Transition.builder()
+                            .sourceActivity(rs.getString("source_activity"))
+                            .targetActivity(rs.getString("target_activity"))
+                            .count(count)
+                            .avgTransitionHours(count > 0 ? rs.getLong("duration_sum_ms") / (double) count / MS_PER_HOUR : 0)
+                            .build();
+                });
+
+        return ProcessVariantsDTO.builder()
+                .processDefinitionKey(processDefinitionKey)
+                .instances(totals[1])
+                .variantCount(totals[0])
+                .variants(variants)
+                .transitions(transitions)
+                .activityNames(activityNames(latest, variants, transitions))
+                .minedUpTo(watermarks.current(WATERMARK))
+                .build();
+    }
+
+    private Map<String, String> activityNames(ProcessDefinition latest, List<ProcessVariantsDTO.Variant> variants,
+                                              List<ProcessVariantsDTO.Transition> transitions) {
+        Map<String, String> names = new TreeMap<>();
+        BpmnModel model = latest != null ? repositoryService.getBpmnModel(latest.getId()) : null;
+        if (model == null) {
+            return names;
+        }
+        Set<String> ids = new HashSet<>();
+        variants.forEach(v -> ids.addAll(v.getActivities()));
+        transitions.forEach(t -> {
+            ids.add(t.getSourceActivity());
+            ids.add(t.getTargetActivity());
+        });
+        for (String id : ids) {
+            FlowElement element = model.getFlowElement(id);
+            if (element != null && element.getName() != null) {
+                names.put(id, element.getName());
+            }
+        }
+        return names;
+    }
+
+    static String hash(String trace) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(trace.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Instance(String id, String definitionKey, LocalDateTime startTime, LocalDateTime endTime) {}
+
+    private record Step(String activityId, long completedAt) {}
+
+    private record VariantKey(String processDefinitionKey, String hash) {}
+
+    private record EdgeKey(String processDefinitionKey, String source, String target) {}
+
+    private record Batch(long instances, long activities) {}
+
+    private static final class VariantStats {
+        private final String trace;
+        private final int activityCount;
+        private long count;
+        private long durationSumMs;
+        private LocalDateTime firstSeen;
+        private LocalDateTime lastSeen;
+
+        private VariantStats(String trace, int activityCount) {
+            this.trace = trace;
+            this.activityCount = activityCount;
+        }
+
+        private void add(Instance instance) {
+            count++;
+            durationSumMs += Math.max(0, Duration.between(instance.startTime(), instance.endTime()).toMillis());
+            if (firstSeen == null || instance.endTime().isBefore(firstSeen)) {
+                firstSeen = instance.endTime();
+            }
+            if (lastSeen == null || instance.endTime().isAfter(lastSeen)) {
+                lastSeen = instance.endTime();
+            }
+        }
+    }
+
+    private static final class EdgeStats {
+        private long count;
+        private long durationSumMs;
+
+        private void add(long durationMs) {
+            count++;
+            durationSumMs += durationMs;
+        }
+    }
+}
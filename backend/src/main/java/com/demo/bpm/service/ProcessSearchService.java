@@ -0,0 +1,161 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ProcessSearchCriteria;
+import com.demo.bpm.dto.ProcessSearchPageDTO;
+import com.demo.bpm.dto.WorkflowSummaryDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Process search over ACT_HI_PROCINST, which holds running and finished instances alike.
+ *
+ * Results are ordered newest first by (start time, id) and paged by keyset: the token names the
+ * last instance returned and the next page starts strictly after it, so deep pages cost the same
+ * as the first one and instances started in the meantime never shift rows between pages.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProcessSearchService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final String TOKEN_VERSION = "v1";
+    private static final String STARTED_BY = "_startedBy";
+    private static final int SUSPENDED_STATE = 2;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final WorkflowHistoryService workflowHistoryService;
+
+    public ProcessSearchPageDTO search(ProcessSearchCriteria criteria, String token, int limit) {
+        int pageSize = Math.max(1, Math.min(limit > 0 ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+        Cursor after = Cursor.decode(token);
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder("SELECT P.ID_, P.START_TIME_ FROM ACT_HI_PROCINST P");
+        if (hasText(criteria.getProcessDefinitionKey())) {
+            sql.append(" JOIN ACT_RE_PROCDEF D ON D.ID_ = P.PROC_DEF_ID_ AND D.KEY_ = :definitionKey");
+            params.addValue("definitionKey", criteria.getProcessDefinitionKey());
+        }
+        sql.append(" WHERE 1 = 1");
+        appendFilters(sql, params, criteria);
+        if (after != null) {
+            sql.append(" AND (P.START_TIME_ < :afterTime OR (P.START_TIME_ = :afterTime AND P.ID_ < :afterId))");
+            params.addValue("afterTime", Timestamp.valueOf(after.startTime()));
+            params.addValue("afterId", after.id());
+        }
+        // Fetch one extra row to learn whether another page follows
+        sql.append(" ORDER BY P.START_TIME_ DESC, P.ID_ DESC LIMIT :limit");
+        params.addValue("limit", pageSize + 1);
+
+        List<Cursor> rows = jdbcTemplate.query(sql.toString(), params, (rs, rowNum) ->
+                new Cursor(rs.getTimestamp("START_TIME_").toLocalDateTime(), rs.getString("ID_")));
+
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        List<String> ids = new ArrayList<>(rows.size());
+        rows.forEach(row -> ids.add(row.id()));
+        List<WorkflowSummaryDTO> processes = workflowHistoryService.getWorkflowSummaries(ids);
+
+        String nextToken = rows.isEmpty() ? token : rows.get(rows.size() - 1).encode();
+        log.debug("Process search returned {} instances (hasMore={})", processes.size(), hasMore);
+
+        return ProcessSearchPageDTO.builder()
+                .processes(processes)
+                .nextToken(nextToken)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private void appendFilters(StringBuilder sql, MapSqlParameterSource params, ProcessSearchCriteria criteria) {
+        String status = criteria.getStatus();
+        if (hasText(status)) {
+            switch (status.toUpperCase()) {
+                case "ACTIVE" -> sql.append(" AND P.END_TIME_ IS NULL");
+                case "COMPLETED" -> sql.append(" AND P.END_TIME_ IS NOT NULL");
+                case "SUSPENDED" -> {
+                    sql.append(" AND P.END_TIME_ IS NULL AND EXISTS (SELECT 1 FROM ACT_RU_EXECUTION E")
+                            .append(" WHERE E.ID_ = P.ID_ AND E.SUSPENSION_STATE_ = :suspended)");
+                    params.addValue("suspended", SUSPENDED_STATE);
+                }
+                default -> throw new IllegalArgumentException("Unknown process status: " + status);
+            }
+        }
+        if (hasText(criteria.getInitiator())) {
+            // Instances started before the engine recorded the start user only carry the variable
+            sql.append(" AND (P.START_USER_ID_ = :initiator OR EXISTS (SELECT 1 FROM ACT_HI_VARINST V")
+                    .append(" WHERE V.PROC_INST_ID_ = P.ID_ AND V.NAME_ = :startedBy AND V.TEXT_ = :initiator")
+                    .append(" AND V.EXECUTION_ID_ = V.PROC_INST_ID_ AND V.TASK_ID_ IS NULL))");
+            params.addValue("initiator", criteria.getInitiator());
+            params.addValue("startedBy", STARTED_BY);
+        }
+        if (hasText(criteria.getBusinessKeyPrefix())) {
+            sql.append(" AND P.BUSINESS_KEY_ LIKE :businessKey ESCAPE '\\'");
+            params.addValue("businessKey", escapeLike(criteria.getBusinessKeyPrefix()) + "%");
+        }
+        appendRange(sql, params, "P.START_TIME_", "started", criteria.getStartedFrom(), criteria.getStartedTo());
+        appendRange(sql, params, "P.END_TIME_", "ended", criteria.getEndedFrom(), criteria.getEndedTo());
+    }
+
+    private void appendRange(StringBuilder sql, MapSqlParameterSource params, String column, String name,
+                             LocalDateTime from, LocalDateTime to) {
+        if (from != null) {
+            sql.append(" AND ").append(column).append(" >= :").append(name).append("From");
+            params.addValue(name + "From", Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND ").append(column).append(" < :").append(name).append("To");
+            params.addValue(name + "To", Timestamp.valueOf(to));
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    /**
+     * Position in the result: the (start time, id) of the last instance delivered.
+     */
+    record Cursor(LocalDateTime startTime, String id) {
+
+        String encode() {
+            String raw = TOKEN_VERSION + "|" + startTime + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            if (token == null || token.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|", 3);
+                if (parts.length != 3 || !TOKEN_VERSION.equals(parts[0])) {
+                    throw new IllegalArgumentException("Unsupported process search token");
+                }
+                return new Cursor(LocalDateTime.parse(parts[1]), parts[2]);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid process search token");
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.flowable.bpmn.model.BpmnModel;
 import org.flowable.bpmn.model.ExtensionAttribute;
 import org.flowable.engine.HistoryService;
+import org.flowable.engine.IdentityService;
 import org.flowable.engine.RepositoryService;
 import org.flowable.engine.RuntimeService;
 import org.flowable.engine.history.HistoricProcessInstance;
@@ -24,7 +25,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -38,6 +41,7 @@ public class ProcessService {
     private final RuntimeService runtimeService;
     private final RepositoryService repositoryService;
     private final HistoryService historyService;
+    private final IdentityService identityService;
     private final ProcessConfigRepository processConfigRepository;
     private final BusinessTableService businessTableService;
 
@@ -74,6 +78,27 @@ public class ProcessService {
     @Transactional
     public ProcessInstanceDTO startProcess(String processKey, String businessKey,
                                            Map<String, Object> variables, String userId) {
+        return getProcessInstance(startInstance(processKey, businessKey, variables, userId).getId());
+    }
+
+    /**
+     * Start a process instance and store its business data, without reading the instance back.
+     */
+    @Transactional
+    public ProcessInstance startInstance(String processKey, String businessKey,
+                                         Map<String, Object> variables, String userId) {
+        return startInstance(processKey, businessKey, variables, userId, false);
+    }
+
+    /**
+     * Start a process instance and store its business data, without reading the instance back.
+     *
+     * @param inCallerTransaction write the business data in the caller's transaction rather than a
+     *                            new one, so it commits or rolls back together with the start
+     */
+    @Transactional
+    public ProcessInstance startInstance(String processKey, String businessKey, Map<String, Object> variables,
+                                         String userId, boolean inCallerTransaction) {
         Map<String, Object> allVars = new HashMap<>(variables != null ? variables : Map.of());
 
         allVars.put("_initiator", userId);
@@ -85,26 +110,39 @@ public class ProcessService {
 
         Map<String, Object> systemVars = VariableStorageUtil.filterSystemVariables(allVars);
 
-        ProcessInstance instance = runtimeService.startProcessInstanceByKey(
-                processKey,
-                finalBusinessKey,
-                systemVars
-        );
+        // Lets the engine record the initiator in START_USER_ID_
+        identityService.setAuthenticatedUserId(userId);
+        ProcessInstance instance;
+        try {
+            instance = runtimeService.startProcessInstanceByKey(
+                    processKey,
+                    finalBusinessKey,
+                    systemVars
+            );
+        } finally {
+            identityService.setAuthenticatedUserId(null);
+        }
 
         log.info("Started process {} with business key {} by user {}. System vars: {}, Total vars: {}",
                 processKey, finalBusinessKey, userId, systemVars.size(), allVars.size());
 
         if (!allVars.isEmpty()) {
-            saveBusinessData(processKey, finalBusinessKey, instance, allVars, userId);
+            saveBusinessData(processKey, finalBusinessKey, instance, allVars, userId, inCallerTransaction);
         }
 
-        return getProcessInstance(instance.getId());
+        return instance;
     }
 
-    private void saveBusinessData(String processKey, String businessKey, ProcessInstance instance, Map<String, Object> allVars, String userId) {
+    private void saveBusinessData(String processKey, String businessKey, ProcessInstance instance, Map<String, Object> allVars,
+                                  String userId, boolean inCallerTransaction) {
         Optional<ProcessConfig> config = processConfigRepository.findByProcessDefinitionKey(processKey);
         String documentType = config.map(ProcessConfig::getDocumentType).orElse(null);
 
+        if (inCallerTransaction) {
+            businessTableService.saveAllDataInCurrentTransaction(instance.getId(), businessKey, processKey,
+                    instance.getProcessDefinitionName(), documentType, allVars, userId);
+            return;
+        }
         businessTableService.saveAllData(
                 instance.getId(),
                 businessKey,
@@ -180,19 +218,56 @@ public class ProcessService {
                 .build();
     }
 
+    /**
+     * Running processes started by the user. Instances are matched on the engine's start user
+     * (instances older than that column being filled are covered by InitiatorBackfillService)
+     * and the page is hydrated, variables included, with one more query.
+     */
     public Page<ProcessInstanceDTO> getActiveProcesses(String userId, Pageable pageable) {
-        List<ProcessInstance> instances = runtimeService.createProcessInstanceQuery()
-                .variableValueEquals("_startedBy", userId)
+        List<String> ids = runtimeService.createProcessInstanceQuery()
+                .startedBy(userId)
                 .orderByStartTime().desc()
-                .listPage((int) pageable.getOffset(), pageable.getPageSize());
+                .listPage((int) pageable.getOffset(), pageable.getPageSize())
+                .stream()
+                .map(ProcessInstance::getId)
+                .toList();
 
         long total = runtimeService.createProcessInstanceQuery()
-                .variableValueEquals("_startedBy", userId)
+                .startedBy(userId)
                 .count();
 
-        List<ProcessInstanceDTO> dtos = instances.stream()
-                .map(instance -> getProcessInstance(instance.getId()))
-                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+
+        Map<String, ProcessInstance> hydrated = runtimeService.createProcessInstanceQuery()
+                .processInstanceIds(new HashSet<>(ids))
+                .includeProcessVariables()
+                .list()
+                .stream()
+                .collect(Collectors.toMap(ProcessInstance::getId, instance -> instance, (a, b) -> a));
+
+        List<ProcessInstanceDTO> dtos = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            ProcessInstance instance = hydrated.get(id);
+            if (instance == null) {
+                // Ended between the two queries
+                continue;
+            }
+            Map<String, Object> variables = instance.getProcessVariables();
+            dtos.add(buildProcessInstanceDTO(
+                    instance.getId(),
+                    instance.getProcessDefinitionId(),
+                    instance.getProcessDefinitionKey(),
+                    instance.getProcessDefinitionName(),
+                    instance.getBusinessKey(),
+                    instance.getStartTime(),
+                    instance.getStartUserId() != null ? instance.getStartUserId() : (String) variables.get("_startedBy"),
+                    variables,
+                    false,
+                    instance.isSuspended()
+            ));
+        }
 
         return new PageImpl<>(dtos, pageable, total);
     }
@@ -0,0 +1,385 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ProcessStartQueueStatsDTO;
+import com.demo.bpm.dto.ProcessStartStatusDTO;
+import com.demo.bpm.entity.ProcessStartRequest;
+import com.demo.bpm.entity.ProcessStartRequest.Status;
+import com.demo.bpm.exception.QueueCapacityExceededException;
+import com.demo.bpm.exception.ResourceNotFoundException;
+import com.demo.bpm.repository.ProcessStartRequestRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous process start with a durable queue.
+ *
+ * Start requests are stored in process_start_request and acknowledged at once; a fixed number of
+ * workers starts them in arrival order, so a burst of requests never holds more than
+ * {@code concurrency} database connections for engine work. Once the queue holds
+ * {@code capacity} requests new ones are rejected instead of accepted.
+ *
+ * Workers claim a request with a conditional update, so several nodes can drain the same queue.
+ * A request whose worker died mid-start is put back in the queue once its claim is older than
+ * {@code stale-after-ms}, or failed after {@code max-attempts} claims. The STARTED status is
+ * written in the transaction that starts the instance, and only while the claim still holds, so
+ * a requeued request is never started twice.
+ *
+ * Request threads only store the request and wake the dispatcher thread, which claims queued
+ * requests for idle workers.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProcessStartQueueService {
+
+    private static final TypeReference<Map<String, Object>> VARIABLES_TYPE = new TypeReference<>() {};
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private static final Set<Status> FINISHED = EnumSet.of(Status.STARTED, Status.FAILED);
+
+    private final ProcessStartRequestRepository repository;
+    private final ProcessService processService;
+    private final RepositoryService repositoryService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${bpm.async-start.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${bpm.async-start.concurrency:2}")
+    private int concurrency = 2;
+
+    @Value("${bpm.async-start.capacity:10000}")
+    private long capacity = 10000;
+
+    @Value("${bpm.async-start.retry-after-seconds:30}")
+    private long retryAfterSeconds = 30;
+
+    @Value("${bpm.async-start.stale-after-ms:600000}")
+    private long staleAfterMs = 600000;
+
+    @Value("${bpm.async-start.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${bpm.async-start.keep-finished-hours:168}")
+    private long keepFinishedHours = 168;
+
+    // Approximate between polls: raised on enqueue, lowered on claim, reset from the table on poll
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+
+    // Set while a wake-up of the dispatcher is pending
+    private final AtomicBoolean wakeUp = new AtomicBoolean();
+
+    private ThreadPoolExecutor workers;
+    private ExecutorService dispatcher;
+    private Counter acceptedCounter;
+    private Counter rejectedCounter;
+    private Counter startedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "process-start-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.allowCoreThreadTimeOut(true);
+        dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "process-start-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("bpm.async_start.queue.depth", queued, AtomicLong::get)
+                .description("Start requests waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("bpm.async_start.in_flight", inFlight, AtomicInteger::get)
+                .description("Start requests being executed on this node")
+                .register(meterRegistry);
+        acceptedCounter = outcomeCounter("accepted");
+        rejectedCounter = outcomeCounter("rejected");
+        startedCounter = outcomeCounter("started");
+        failedCounter = outcomeCounter("failed");
+
+        queued.set(repository.countByStatus(Status.QUEUED));
+    }
+
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("bpm.async_start.requests")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+        if (workers != null) {
+            // Unfinished requests stay RUNNING and are requeued once their claim goes stale
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Store a start request and hand it to the workers.
+     *
+     * @throws ResourceNotFoundException when no process definition has the key
+     * @throws QueueCapacityExceededException when the queue is full
+     */
+    public ProcessStartStatusDTO enqueue(String processKey, String businessKey,
+                                         Map<String, Object> variables, String userId) {
+        if (!enabled) {
+            throw new IllegalStateException("Asynchronous process start is disabled");
+        }
+        if (queued.get() >= capacity) {
+            rejected.incrementAndGet();
+            rejectedCounter.increment();
+            throw new QueueCapacityExceededException(
+                    "Process start queue is full (" + capacity + " requests), retry later", retryAfterSeconds);
+        }
+        if (repositoryService.createProcessDefinitionQuery().processDefinitionKey(processKey).count() == 0) {
+            throw new ResourceNotFoundException("Process definition not found: " + processKey);
+        }
+
+        ProcessStartRequest request = ProcessStartRequest.builder()
+                .id(UUID.randomUUID().toString())
+                .processDefinitionKey(processKey)
+                .businessKey(businessKey)
+                .variables(writeVariables(variables))
+                .requestedBy(userId)
+                .status(Status.QUEUED)
+                .createdAt(LocalDateTime.now())
+                .build();
+        request = repository.save(request);
+        queued.incrementAndGet();
+        accepted.incrementAndGet();
+        acceptedCounter.increment();
+        log.debug("Queued start of {} as {}", processKey, request.getId());
+
+        wake();
+        return toDTO(request);
+    }
+
+    /**
+     * Status of a start request. Only the requester and admins can read it; for anyone else the
+     * request does not exist.
+     */
+    public ProcessStartStatusDTO getStatus(String trackingId, String userId, boolean isAdmin) {
+        return repository.findById(trackingId)
+                .filter(request -> isAdmin || request.getRequestedBy().equals(userId))
+                .map(this::toDTO)
+                .orElseThrow(() -> new ResourceNotFoundException("Start request not found: " + trackingId));
+    }
+
+    public ProcessStartQueueStatsDTO getStats() {
+        return ProcessStartQueueStatsDTO.builder()
+                .enabled(enabled)
+                .concurrency(concurrency)
+                .capacity(capacity)
+                .queued(queued.get())
+                .inFlight(inFlight.get())
+                .accepted(accepted.get())
+                .rejected(rejected.get())
+                .started(started.get())
+                .failed(failed.get())
+                .requeued(requeued.get())
+                .build();
+    }
+
+    /**
+     * Periodic pass: recover stale claims, resync the depth gauge and pick up requests queued by
+     * other nodes or left over from a restart.
+     */
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime claimedBefore = LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000);
+        int exhausted = repository.failExhausted(claimedBefore, maxAttempts, Status.RUNNING, Status.FAILED,
+                "Worker did not finish after " + maxAttempts + " attempts", LocalDateTime.now());
+        if (exhausted > 0) {
+            failed.addAndGet(exhausted);
+            failedCounter.increment(exhausted);
+            log.error("Failed {} process start requests whose worker did not finish in {} attempts",
+                    exhausted, maxAttempts);
+        }
+        int recovered = repository.requeueStale(claimedBefore, Status.RUNNING, Status.QUEUED);
+        if (recovered > 0) {
+            requeued.addAndGet(recovered);
+            log.warn("Requeued {} process start requests whose worker did not finish", recovered);
+        }
+        queued.set(repository.countByStatus(Status.QUEUED));
+        wake();
+    }
+
+    /**
+     * Delete finished requests older than {@code keep-finished-hours}.
+     */
+    public int purgeFinished() {
+        int purged = repository.deleteFinished(FINISHED, LocalDateTime.now().minusHours(keepFinishedHours));
+        if (purged > 0) {
+            log.info("Purged {} finished process start requests", purged);
+        }
+        return purged;
+    }
+
+    /**
+     * Have the dispatcher claim queued requests. Returns at once; at most one wake-up is pending.
+     */
+    private void wake() {
+        if (wakeUp.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                wakeUp.set(false);
+                try {
+                    drain();
+                } catch (RuntimeException e) {
+                    // The next poll tries again
+                    log.error("Claiming queued process starts failed: {}", e.getMessage(), e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Claim as many queued requests as there are idle workers and run them. Runs on the
+     * dispatcher thread only.
+     */
+    private void drain() {
+        int slots = concurrency - inFlight.get();
+        if (slots <= 0) {
+            return;
+        }
+        List<String> candidates = repository.findIdsByStatus(Status.QUEUED, PageRequest.of(0, slots));
+        for (String id : candidates) {
+            if (repository.claim(id, LocalDateTime.now(), Status.QUEUED, Status.RUNNING) == 0) {
+                continue;
+            }
+            queued.updateAndGet(depth -> Math.max(0, depth - 1));
+            inFlight.incrementAndGet();
+            workers.execute(() -> {
+                try {
+                    execute(id);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                // Keep draining without waiting for the next poll
+                wake();
+            });
+        }
+    }
+
+    private void execute(String id) {
+        ProcessStartRequest request = repository.findById(id).orElse(null);
+        if (request == null) {
+            return;
+        }
+        // Claiming incremented the attempts; the outcome is only written while that claim holds
+        int attempt = request.getAttempts();
+        try {
+            Boolean recorded = transactionTemplate.execute(status -> {
+                // Business data joins this transaction, so a lost claim leaves no documents behind
+                ProcessInstance instance = processService.startInstance(request.getProcessDefinitionKey(),
+                        request.getBusinessKey(), readVariables(request.getVariables()), request.getRequestedBy(),
+                        true);
+                if (repository.complete(id, attempt, Status.RUNNING, Status.STARTED, instance.getId(), null,
+                        LocalDateTime.now()) == 0) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+            if (!Boolean.TRUE.equals(recorded)) {
+                log.warn("Queued start {} of {} lost its claim while starting; the start was rolled back",
+                        id, request.getProcessDefinitionKey());
+                return;
+            }
+            started.incrementAndGet();
+            startedCounter.increment();
+        } catch (RuntimeException e) {
+            log.warn("Queued start {} of {} failed: {}", id, request.getProcessDefinitionKey(), e.getMessage());
+            repository.complete(id, attempt, Status.RUNNING, Status.FAILED, null, truncate(e.getMessage()),
+                    LocalDateTime.now());
+            failed.incrementAndGet();
+            failedCounter.increment();
+        }
+    }
+
+    private String writeVariables(Map<String, Object> variables) {
+        try {
+            return objectMapper.writeValueAsString(variables != null ? variables : Map.of());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Start variables cannot be stored: " + e.getOriginalMessage());
+        }
+    }
+
+    private Map<String, Object> readVariables(String json) {
+        try {
+            return json != null ? objectMapper.readValue(json, VARIABLES_TYPE) : Map.of();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored start variables are unreadable: " + e.getOriginalMessage());
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "Process start failed";
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private ProcessStartStatusDTO toDTO(ProcessStartRequest request) {
+        return ProcessStartStatusDTO.builder()
+                .trackingId(request.getId())
+                .processDefinitionKey(request.getProcessDefinitionKey())
+                .businessKey(request.getBusinessKey())
+                .status(request.getStatus().name())
+                .processInstanceId(request.getProcessInstanceId())
+                .errorMessage(request.getErrorMessage())
+                .attempts(request.getAttempts())
+                .requestedBy(request.getRequestedBy())
+                .createdAt(request.getCreatedAt())
+                .completedAt(request.getCompletedAt())
+                .build();
+    }
+}
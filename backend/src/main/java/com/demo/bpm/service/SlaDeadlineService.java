@@ -0,0 +1,460 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.SlaStatsDTO;
+import com.demo.bpm.entity.Notification;
+import com.demo.bpm.entity.SLA;
+import com.demo.bpm.repository.SLARepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deadline-driven SLA tracking.
+ *
+ * When a task or process instance with an SLA starts, its warning and breach instants are written
+ * to sla_deadline in the same transaction; when it ends its rows are marked done and keep the
+ * outcome (met or missed, and by how much). The scheduler only reads rows whose next instant is
+ * due, through the due_at index, and claims each with a conditional update before notifying, so
+ * every warning and breach is sent once however many nodes run the scheduler.
+ *
+ * A warning or breach that falls due while its task has no assignee (group tasks waiting to be
+ * claimed, or processes started by the system) moves the row on without marking it sent; when
+ * the task is assigned, the row is due again and the assignee gets what they missed.
+ *
+ * There is one row per SLA and target, enforced by a unique key. The engine writes a target's
+ * rows in the transaction that creates it, so the backfill, which reads committed tasks and
+ * processes only, never races those inserts; backfills of several nodes may race each other,
+ * and the loser skips the rows the winner added.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SlaDeadlineService {
+
+    public static final int DEFAULT_MAX_BATCHES = 20;
+
+    private static final String DUE_ROWS =
+            "SELECT D.id, D.target_type, D.target_id, D.target_name, D.started_at, D.warn_at, D.breach_at," +
+                    " D.due_at, D.warning_sent_at, COALESCE(T.ASSIGNEE_, E.START_USER_ID_) AS recipient" +
+                    " FROM sla_deadline D" +
+                    " LEFT JOIN ACT_RU_TASK T ON D.target_type = 'TASK' AND T.ID_ = D.target_id" +
+                    " LEFT JOIN ACT_RU_EXECUTION E ON D.target_type = 'PROCESS' AND E.ID_ = D.target_id" +
+                    " WHERE D.due_at <= :now ORDER BY D.due_at, D.id LIMIT :limit";
+    private static final String CLAIM =
+            "UPDATE sla_deadline SET due_at = :next, warning_sent_at = :warningSentAt, breach_sent_at = :breachSentAt" +
+                    " WHERE id = :id AND due_at = :due";
+    // Warnings and breaches that fell due without anyone to tell; the breach supersedes the warning
+    private static final String RE_ARM =
+            "UPDATE sla_deadline SET due_at = :now" +
+                    " WHERE target_type = :targetType AND target_id = :targetId AND completed_at IS NULL" +
+                    " AND breach_sent_at IS NULL AND (breach_at <= :now OR (warn_at <= :now AND warning_sent_at IS NULL))";
+    private static final String INSERT =
+            "INSERT INTO sla_deadline (sla_id, target_type, target_key, target_id, target_name, process_instance_id," +
+                    " started_at, warn_at, breach_at, due_at)" +
+                    " VALUES (:slaId, :targetType, :targetKey, :targetId, :targetName, :processInstanceId," +
+                    " :startedAt, :warnAt, :breachAt, :dueAt)";
+    // EXTRACT(EPOCH) reads the stored wall time as UTC; :nowEpochMs is on the same scale
+    private static final String END_WITH_OUTCOME =
+            "UPDATE sla_deadline SET completed_at = :now, due_at = NULL," +
+                    " met = CASE WHEN breach_at >= :now THEN TRUE ELSE FALSE END," +
+                    " margin_ms = CAST(EXTRACT(EPOCH FROM breach_at) * 1000 AS BIGINT) - :nowEpochMs" +
+                    " WHERE target_type = :targetType AND target_id = :targetId AND completed_at IS NULL";
+    private static final String END_WITHOUT_OUTCOME =
+            "UPDATE sla_deadline SET completed_at = :now, due_at = NULL" +
+                    " WHERE target_type = :targetType AND target_id = :targetId AND completed_at IS NULL";
+    private static final String SUMMARY =
+            "SELECT target_type," +
+                    " SUM(CASE WHEN completed_at IS NULL THEN 1 ELSE 0 END) AS active," +
+                    " SUM(CASE WHEN completed_at IS NULL AND breach_at <= :now THEN 1 ELSE 0 END) AS breached," +
+                    " SUM(CASE WHEN completed_at IS NULL AND breach_at > :now AND warn_at <= :now THEN 1 ELSE 0 END) AS at_risk," +
+                    " AVG(CASE WHEN completed_at IS NULL THEN (:nowEpochSeconds - EXTRACT(EPOCH FROM started_at)) * 100.0" +
+                    " / NULLIF(EXTRACT(EPOCH FROM breach_at) - EXTRACT(EPOCH FROM started_at), 0) END) AS avg_used," +
+                    " SUM(CASE WHEN met = TRUE THEN 1 ELSE 0 END) AS met," +
+                    " SUM(CASE WHEN met = FALSE THEN 1 ELSE 0 END) AS missed," +
+                    " AVG(margin_ms) AS avg_margin_ms" +
+                    // Running and recently ended rows separately, so each branch is a range of the outcome index
+                    " FROM (SELECT target_type, started_at, warn_at, breach_at, completed_at, met, margin_ms" +
+                    " FROM sla_deadline WHERE target_type IN (:targetTypes) AND completed_at IS NULL" +
+                    " UNION ALL SELECT target_type, started_at, warn_at, breach_at, completed_at, met, margin_ms" +
+                    " FROM sla_deadline WHERE target_type IN (:targetTypes) AND completed_at >= :since) D" +
+                    " GROUP BY target_type";
+    private static final String PURGE =
+            "DELETE FROM sla_deadline WHERE id IN (SELECT id FROM sla_deadline" +
+                    " WHERE target_type = :targetType AND completed_at < :before LIMIT :limit)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SLARepository slaRepository;
+    private final NotificationService notificationService;
+    private final RepositoryService repositoryService;
+
+    // Due rows claimed and notified per transaction
+    @Value("${bpm.sla.deadlines.batch-size:200}")
+    private int batchSize = 200;
+
+    /**
+     * Record the deadlines of a new task; tasks without an enabled SLA cost one lookup.
+     */
+    public void taskCreated(Task task) {
+        if (task.getTaskDefinitionKey() == null) {
+            return;
+        }
+        slaRepository.findByTargetKeyAndTargetType(task.getTaskDefinitionKey(), SLA.SLATargetType.TASK)
+                .filter(SLA::isEnabled)
+                .ifPresent(sla -> jdbcTemplate.update(INSERT, deadline(sla, task.getId(), task.getName(),
+                        task.getProcessInstanceId(), toLocal(task.getCreateTime()))));
+    }
+
+    /**
+     * Record the deadlines of a new process instance; instances without an enabled SLA cost one lookup.
+     */
+    public void processStarted(ProcessInstance processInstance) {
+        if (processInstance.getProcessDefinitionId() == null) {
+            return;
+        }
+        // From the deployment cache; the started event may carry the start execution, not the instance
+        ProcessDefinition definition = repositoryService.getProcessDefinition(processInstance.getProcessDefinitionId());
+        String processInstanceId = processInstance.getProcessInstanceId();
+        String name = processInstance.getName() != null ? processInstance.getName()
+                : definition.getName() != null ? definition.getName() : definition.getKey();
+        slaRepository.findByTargetKeyAndTargetType(definition.getKey(), SLA.SLATargetType.PROCESS)
+                .filter(SLA::isEnabled)
+                .ifPresent(sla -> jdbcTemplate.update(INSERT, deadline(sla, processInstanceId, name,
+                        processInstanceId, toLocal(processInstance.getStartTime()))));
+    }
+
+    /**
+     * Make the warnings and breaches of a newly assigned task that fell due while nobody was
+     * assigned due again, for the scheduler to send to the assignee.
+     */
+    public void taskAssigned(String taskId) {
+        jdbcTemplate.update(RE_ARM, new MapSqlParameterSource()
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()))
+                .addValue("targetType", SLA.SLATargetType.TASK.name())
+                .addValue("targetId", taskId));
+    }
+
+    /**
+     * Mark the deadlines of a completed or cancelled task done, with their outcome; nothing fires
+     * for them any more.
+     */
+    public void taskEnded(String taskId) {
+        end(SLA.SLATargetType.TASK, taskId, true);
+    }
+
+    /**
+     * Mark the deadlines of an ended process instance done. Completed instances keep whether they
+     * met the SLA and by how much; cancelled ones have no outcome.
+     */
+    public void processEnded(String processInstanceId, boolean cancelled) {
+        end(SLA.SLATargetType.PROCESS, processInstanceId, !cancelled);
+    }
+
+    private void end(SLA.SLATargetType targetType, String targetId, boolean withOutcome) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(withOutcome ? END_WITH_OUTCOME : END_WITHOUT_OUTCOME, new MapSqlParameterSource()
+                .addValue("now", Timestamp.valueOf(now))
+                .addValue("nowEpochMs", now.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .addValue("targetType", targetType.name())
+                .addValue("targetId", targetId));
+    }
+
+    /**
+     * Add the missing deadlines of running tasks and process instances, e.g. ones started before
+     * their SLA was defined or before deadlines were tracked.
+     *
+     * @return deadlines added
+     */
+    public int backfill() {
+        int added = 0;
+        for (SLA sla : slaRepository.findAll()) {
+            if (sla.isEnabled()) {
+                added += backfill(sla);
+            }
+        }
+        if (added > 0) {
+            log.info("Added {} missing SLA deadlines of running tasks and processes", added);
+        }
+        return added;
+    }
+
+    private int backfill(SLA sla) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("targetKey", sla.getTargetKey())
+                .addValue("targetType", sla.getTargetType().name())
+                .addValue("slaId", sla.getId());
+        List<MapSqlParameterSource> rows = sla.getTargetType() == SLA.SLATargetType.PROCESS
+                ? jdbcTemplate.query(
+                        "SELECT E.ID_, COALESCE(E.NAME_, P.NAME_, P.KEY_) AS NAME_, E.START_TIME_" +
+                                " FROM ACT_RU_EXECUTION E JOIN ACT_RE_PROCDEF P ON P.ID_ = E.PROC_DEF_ID_" +
+                                " WHERE E.ID_ = E.PROC_INST_ID_ AND P.KEY_ = :targetKey" +
+                                " AND NOT EXISTS (SELECT 1 FROM sla_deadline D" +
+                                " WHERE D.target_type = :targetType AND D.target_id = E.ID_ AND D.sla_id = :slaId)",
+                        params,
+                        (rs, rowNum) -> deadline(sla, rs.getString("ID_"), rs.getString("NAME_"), rs.getString("ID_"),
+                                rs.getTimestamp("START_TIME_").toLocalDateTime()))
+                : jdbcTemplate.query(
+                        "SELECT T.ID_, T.NAME_, T.PROC_INST_ID_, T.CREATE_TIME_ FROM ACT_RU_TASK T" +
+                                " WHERE T.TASK_DEF_KEY_ = :targetKey AND NOT EXISTS (SELECT 1 FROM sla_deadline D" +
+                                " WHERE D.target_type = :targetType AND D.target_id = T.ID_ AND D.sla_id = :slaId)",
+                        params,
+                        (rs, rowNum) -> deadline(sla, rs.getString("ID_"), rs.getString("NAME_"),
+                                rs.getString("PROC_INST_ID_"), rs.getTimestamp("CREATE_TIME_").toLocalDateTime()));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT, rows.toArray(MapSqlParameterSource[]::new)));
+            return rows.size();
+        } catch (DataIntegrityViolationException e) {
+            // Another node's backfill added some of them first; add the rest one at a time
+            int added = 0;
+            for (MapSqlParameterSource row : rows) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT, row));
+                    added++;
+                } catch (DataIntegrityViolationException duplicate) {
+                    log.debug("SLA deadline of {} added by another node", row.getValue("targetId"));
+                }
+            }
+            return added;
+        }
+    }
+
+    private static MapSqlParameterSource deadline(SLA sla, String targetId, String targetName,
+                                                  String processInstanceId, LocalDateTime startedAt) {
+        LocalDateTime breachAt = startedAt.plus(sla.getDuration());
+        LocalDateTime warnAt = null;
+        Integer threshold = sla.getWarningThresholdPercentage();
+        if (threshold != null && threshold > 0 && threshold < 100) {
+            warnAt = startedAt.plus(sla.getDuration().multipliedBy(threshold).dividedBy(100));
+        }
+        return new MapSqlParameterSource()
+                .addValue("slaId", sla.getId())
+                .addValue("targetType", sla.getTargetType().name())
+                .addValue("targetKey", sla.getTargetKey())
+                .addValue("targetId", targetId)
+                .addValue("targetName", targetName)
+                .addValue("processInstanceId", processInstanceId)
+                .addValue("startedAt", Timestamp.valueOf(startedAt))
+                .addValue("warnAt", warnAt != null ? Timestamp.valueOf(warnAt) : null, Types.TIMESTAMP)
+                .addValue("breachAt", Timestamp.valueOf(breachAt))
+                .addValue("dueAt", Timestamp.valueOf(warnAt != null ? warnAt : breachAt));
+    }
+
+    /**
+     * SLA statistics per target type from one aggregate over sla_deadline: running targets by status
+     * and the outcomes of targets that ended in the last {@code outcomeWindowDays}, both read through
+     * the outcome index. Types without any rows are missing from the map.
+     */
+    public Map<SLA.SLATargetType, SlaStatsDTO.TargetStats> summarize(int outcomeWindowDays) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = now.minusDays(Math.max(0, outcomeWindowDays));
+        Map<SLA.SLATargetType, SlaStatsDTO.TargetStats> stats = new EnumMap<>(SLA.SLATargetType.class);
+        jdbcTemplate.query(SUMMARY, new MapSqlParameterSource()
+                        .addValue("now", Timestamp.valueOf(now))
+                        .addValue("nowEpochSeconds", now.toEpochSecond(ZoneOffset.UTC))
+                        .addValue("since", Timestamp.valueOf(since))
+                        .addValue("targetTypes", Arrays.stream(SLA.SLATargetType.values()).map(Enum::name).toList()),
+                rs -> {
+                    long active = rs.getLong("active");
+                    long breached = rs.getLong("breached");
+                    long atRisk = rs.getLong("at_risk");
+                    double avgUsed = rs.getDouble("avg_used");
+                    double avgMarginMs = rs.getDouble("avg_margin_ms");
+                    boolean noMargin = rs.wasNull();
+                    stats.put(SLA.SLATargetType.valueOf(rs.getString("target_type")), SlaStatsDTO.TargetStats.builder()
+                            .active(active)
+                            .onTrack(active - breached - atRisk)
+                            .atRisk(atRisk)
+                            .breached(breached)
+                            .avgCompletionPercentage(avgUsed)
+                            .met(rs.getLong("met"))
+                            .missed(rs.getLong("missed"))
+                            .avgMarginMinutes(noMargin ? null : avgMarginMs / 60_000d)
+                            .outcomeWindowDays(outcomeWindowDays)
+                            .build());
+                });
+        return stats;
+    }
+
+    /**
+     * Delete the rows of targets that ended more than {@code keepDays} ago, one batch per
+     * transaction; statistics only count outcomes within their window.
+     *
+     * @return rows deleted
+     */
+    public int purgeCompleted(int keepDays) {
+        Timestamp before = Timestamp.valueOf(LocalDateTime.now().minusDays(Math.max(0, keepDays)));
+        int purged = 0;
+        for (SLA.SLATargetType targetType : SLA.SLATargetType.values()) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("targetType", targetType.name())
+                    .addValue("before", before)
+                    .addValue("limit", Math.max(1, batchSize));
+            int deleted;
+            do {
+                Integer batch = transactionTemplate.execute(status -> jdbcTemplate.update(PURGE, params));
+                deleted = batch != null ? batch : 0;
+                purged += deleted;
+            } while (deleted >= batchSize);
+        }
+        if (purged > 0) {
+            log.info("Purged {} SLA deadlines of targets that ended over {} days ago", purged, keepDays);
+        }
+        return purged;
+    }
+
+    /**
+     * Send the warnings and breaches that are due, one batch per transaction.
+     *
+     * @return notifications sent
+     */
+    public int fireDue(int maxBatches) {
+        LocalDateTime now = LocalDateTime.now();
+        int budget = maxBatches > 0 ? maxBatches : DEFAULT_MAX_BATCHES;
+        int sent = 0;
+        for (int batch = 0; batch < budget; batch++) {
+            FiredBatch fired = transactionTemplate.execute(status -> fireNextBatch(now));
+            if (fired == null) {
+                break;
+            }
+            sent += fired.notified();
+            if (fired.rows() < batchSize) {
+                break;
+            }
+        }
+        if (sent > 0) {
+            log.info("Sent {} SLA warning and breach notifications", sent);
+        }
+        return sent;
+    }
+
+    private FiredBatch fireNextBatch(LocalDateTime now) {
+        List<DueRow> due = jdbcTemplate.query(DUE_ROWS, new MapSqlParameterSource()
+                        .addValue("now", Timestamp.valueOf(now))
+                        .addValue("limit", Math.max(1, batchSize)),
+                (rs, rowNum) -> new DueRow(rs.getLong("id"), SLA.SLATargetType.valueOf(rs.getString("target_type")),
+                        rs.getString("target_id"), rs.getString("target_name"),
+                        rs.getTimestamp("started_at").toLocalDateTime(), toLocal(rs.getTimestamp("warn_at")),
+                        rs.getTimestamp("breach_at").toLocalDateTime(), rs.getTimestamp("due_at"),
+                        toLocal(rs.getTimestamp("warning_sent_at")), rs.getString("recipient")));
+        if (due.isEmpty()) {
+            return null;
+        }
+
+        List<Firing> firings = new ArrayList<>(due.size());
+        for (DueRow row : due) {
+            // A breach that is already due supersedes a warning that never went out
+            boolean breach = !row.breachAt().isAfter(now);
+            firings.add(new Firing(row, breach));
+        }
+        MapSqlParameterSource[] claims = firings.stream().map(firing -> {
+            DueRow row = firing.row();
+            // Without a recipient nothing is marked sent, so assigning the task makes it due again
+            Timestamp sentAt = row.recipient() != null ? Timestamp.valueOf(now) : null;
+            return new MapSqlParameterSource()
+                    .addValue("id", row.id())
+                    .addValue("due", row.dueAt())
+                    .addValue("next", firing.breach() ? null : Timestamp.valueOf(row.breachAt()), Types.TIMESTAMP)
+                    .addValue("warningSentAt", firing.breach()
+                            ? (row.warningSentAt() != null ? Timestamp.valueOf(row.warningSentAt()) : null)
+                            : sentAt, Types.TIMESTAMP)
+                    .addValue("breachSentAt", firing.breach() ? sentAt : null, Types.TIMESTAMP);
+        }).toArray(MapSqlParameterSource[]::new);
+        int[] claimed = jdbcTemplate.batchUpdate(CLAIM, claims);
+
+        int notified = 0;
+        for (int i = 0; i < claimed.length; i++) {
+            // Zero when another node claimed the row first
+            if (claimed[i] > 0 && notify(firings.get(i))) {
+                notified++;
+            }
+        }
+        return new FiredBatch(due.size(), notified);
+    }
+
+    private boolean notify(Firing firing) {
+        DueRow row = firing.row();
+        if (row.recipient() == null) {
+            // Nobody to tell yet; see taskAssigned
+            return false;
+        }
+        Duration limit = Duration.between(row.startedAt(), row.breachAt());
+        if (row.targetType() == SLA.SLATargetType.PROCESS) {
+            // End-to-end commitments go to whoever started the process
+            notificationService.createNotification(
+                    row.recipient(),
+                    (firing.breach() ? "SLA Breach: " : "SLA Warning: ") + row.targetName(),
+                    firing.breach()
+                            ? "Process '" + row.targetName() + "' has breached its SLA of " + formatDuration(limit)
+                            : "Process '" + row.targetName() + "' is approaching its SLA limit (" + used(row, limit) + "% used)",
+                    firing.breach() ? Notification.NotificationType.SLA_BREACH : Notification.NotificationType.SLA_WARNING,
+                    "/process-instances");
+        } else if (firing.breach()) {
+            notificationService.createNotification(
+                    row.recipient(),
+                    "SLA Breach: " + row.targetName(),
+                    "Task '" + row.targetName() + "' has breached its SLA of " + formatDuration(limit),
+                    Notification.NotificationType.TASK_OVERDUE,
+                    "/tasks/" + row.targetId());
+        } else {
+            notificationService.createNotification(
+                    row.recipient(),
+                    "SLA Warning: " + row.targetName(),
+                    "Task is approaching SLA limit (" + used(row, limit) + "% used)",
+                    Notification.NotificationType.TASK_DUE_SOON,
+                    "/tasks/" + row.targetId());
+        }
+        return true;
+    }
+
+    private static long used(DueRow row, Duration limit) {
+        return limit.isZero() ? 100 : Duration.between(row.startedAt(), row.warnAt()).toMillis() * 100 / limit.toMillis();
+    }
+
+    private static String formatDuration(Duration duration) {
+        long hours = duration.toHours();
+        long minutes = duration.toMinutesPart();
+        return String.format("%d hours, %d minutes", hours, minutes);
+    }
+
+    private static LocalDateTime toLocal(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private static LocalDateTime toLocal(Date date) {
+        return date != null ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : LocalDateTime.now();
+    }
+
+    private record DueRow(long id, SLA.SLATargetType targetType, String targetId, String targetName,
+                          LocalDateTime startedAt, LocalDateTime warnAt, LocalDateTime breachAt, Timestamp dueAt,
+                          LocalDateTime warningSentAt, String recipient) {}
+
+    private record Firing(DueRow row, boolean breach) {}
+
+    private record FiredBatch(int rows, int notified) {}
+}
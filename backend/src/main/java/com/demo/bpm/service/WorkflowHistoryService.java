@@ -1,10 +1,10 @@
 package com.demo.bpm.service;
 
 import com.demo.bpm.dto.*;
+import com.demo.bpm.entity.WorkflowAuditEvent;
 import com.demo.bpm.exception.ResourceNotFoundException;
 import com.demo.bpm.util.WorkflowConstants;
 import com.demo.bpm.util.WorkflowVariableUtils;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.flowable.engine.HistoryService;
@@ -17,11 +17,14 @@ import org.flowable.engine.runtime.ProcessInstance;
 import org.flowable.task.api.Task;
 import org.flowable.task.api.history.HistoricTaskInstance;
 import org.flowable.variable.api.history.HistoricVariableInstance;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,11 +32,19 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class WorkflowHistoryService {
 
+    private static final String STARTED_BY = "_startedBy";
+    private static final List<String> SUMMARY_VARIABLES = List.of(STARTED_BY, WorkflowConstants.VAR_STARTED_BY,
+            WorkflowConstants.VAR_EMPLOYEE_NAME, WorkflowConstants.VAR_CURRENT_LEVEL, WorkflowConstants.VAR_ESCALATION_COUNT);
+    // Keeps the task id IN list well below database parameter limits
+    private static final int TASK_VARIABLE_CHUNK = 500;
+
     private final RuntimeService runtimeService;
     private final TaskService taskService;
     private final HistoryService historyService;
     private final RepositoryService repositoryService;
-    private final ObjectMapper objectMapper;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final AuditEventService auditEventService;
+    private final AuditEventMigrationService auditEventMigrationService;
 
     public WorkflowHistoryDTO getWorkflowHistory(String processInstanceId) {
         // First try active process
@@ -121,7 +132,7 @@ public class WorkflowHistoryService {
         List<TaskHistoryDTO> taskHistory = getTaskHistory(processInstanceId);
 
         // Get escalation history
-        List<EscalationDTO> escalationHistory = getEscalationHistory(variables);
+        List<EscalationDTO> escalationHistory = getEscalationHistory(processInstanceId, variables);
 
         // Get approvals
         List<ApprovalDTO> approvals = getApprovalHistory(processInstanceId, variables);
@@ -170,17 +181,47 @@ public class WorkflowHistoryService {
     }
 
     public List<TaskHistoryDTO> getTaskHistory(String processInstanceId) {
-        return historyService.createHistoricTaskInstanceQuery()
-                .processInstanceId(processInstanceId)
+        return getTaskHistories(List.of(processInstanceId)).getOrDefault(processInstanceId, new ArrayList<>());
+    }
+
+    /**
+     * Task history of many process instances, keyed by process instance id. Task-local variables
+     * are loaded for all tasks at once, in chunks, rather than with one query per task.
+     */
+    public Map<String, List<TaskHistoryDTO>> getTaskHistories(Collection<String> processInstanceIds) {
+        if (processInstanceIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<HistoricTaskInstance> tasks = historyService.createHistoricTaskInstanceQuery()
+                .processInstanceIdIn(processInstanceIds)
                 .orderByHistoricTaskInstanceEndTime().asc()
-                .list()
-                .stream()
-                .map(this::convertToTaskHistoryDTO)
-                .collect(Collectors.toList());
+                .list();
+        Map<String, Map<String, Object>> variablesByTask = getTaskVariables(tasks.stream()
+                .map(HistoricTaskInstance::getId)
+                .toList());
+
+        Map<String, List<TaskHistoryDTO>> histories = new HashMap<>();
+        for (HistoricTaskInstance task : tasks) {
+            histories.computeIfAbsent(task.getProcessInstanceId(), k -> new ArrayList<>())
+                    .add(convertToTaskHistoryDTO(task, variablesByTask.getOrDefault(task.getId(), new HashMap<>())));
+        }
+        return histories;
     }
 
-    public List<WorkflowHistoryDTO> getAllProcesses(String status, String processType, int page, int size) {
-        List<WorkflowHistoryDTO> result = new ArrayList<>();
+    private Map<String, Map<String, Object>> getTaskVariables(List<String> taskIds) {
+        Map<String, Map<String, Object>> variablesByTask = new HashMap<>();
+        for (int from = 0; from < taskIds.size(); from += TASK_VARIABLE_CHUNK) {
+            Set<String> chunk = new HashSet<>(taskIds.subList(from, Math.min(from + TASK_VARIABLE_CHUNK, taskIds.size())));
+            for (HistoricVariableInstance var : historyService.createHistoricVariableInstanceQuery().taskIds(chunk).list()) {
+                variablesByTask.computeIfAbsent(var.getTaskId(), k -> new HashMap<>())
+                        .put(var.getVariableName(), var.getValue());
+            }
+        }
+        return variablesByTask;
+    }
+
+    public List<WorkflowSummaryDTO> getAllProcesses(String status, String processType, int page, int size) {
+        List<String> processInstanceIds = new ArrayList<>();
 
         if ("ACTIVE".equals(status) || status == null) {
             var query = runtimeService.createProcessInstanceQuery()
@@ -190,11 +231,7 @@ public class WorkflowHistoryService {
                 query.processDefinitionKey(processType);
             }
 
-            List<ProcessInstance> activeList = query.listPage(page * size, size);
-
-            for (ProcessInstance pi : activeList) {
-                result.add(getWorkflowHistory(pi.getId()));
-            }
+            query.listPage(page * size, size).forEach(pi -> processInstanceIds.add(pi.getId()));
         }
 
         if ("COMPLETED".equals(status) || status == null) {
@@ -206,26 +243,116 @@ public class WorkflowHistoryService {
                 query.processDefinitionKey(processType);
             }
 
-            List<HistoricProcessInstance> historicList = query.listPage(page * size, size);
+            query.listPage(page * size, size).forEach(hpi -> processInstanceIds.add(hpi.getId()));
+        }
+
+        return getWorkflowSummaries(processInstanceIds);
+    }
+
+    /**
+     * List rows for the given process instances, in the given order. The whole batch is loaded
+     * with a fixed number of queries: instances, suspension state, open tasks and the handful of
+     * variables a row shows. Unknown ids are skipped.
+     */
+    public List<WorkflowSummaryDTO> getWorkflowSummaries(List<String> processInstanceIds) {
+        if (processInstanceIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> ids = new LinkedHashSet<>(processInstanceIds);
+
+        Map<String, HistoricProcessInstance> instances = historyService.createHistoricProcessInstanceQuery()
+                .processInstanceIds(ids)
+                .list().stream()
+                .collect(Collectors.toMap(HistoricProcessInstance::getId, hpi -> hpi, (a, b) -> a));
+
+        Set<String> running = instances.values().stream()
+                .filter(hpi -> hpi.getEndTime() == null)
+                .map(HistoricProcessInstance::getId)
+                .collect(Collectors.toSet());
+        Set<String> suspended = running.isEmpty() ? Set.of() : runtimeService.createProcessInstanceQuery()
+                .processInstanceIds(running)
+                .suspended()
+                .list().stream()
+                .map(ProcessInstance::getId)
+                .collect(Collectors.toSet());
+
+        // Oldest open task first, matching the detail view
+        Map<String, Task> currentTasks = new HashMap<>();
+        if (!running.isEmpty()) {
+            taskService.createTaskQuery()
+                    .processInstanceIdIn(running)
+                    .orderByTaskCreateTime().asc()
+                    .list()
+                    .forEach(task -> currentTasks.putIfAbsent(task.getProcessInstanceId(), task));
+        }
+
+        Map<String, Map<String, Object>> variables = getSummaryVariables(ids);
 
-            for (HistoricProcessInstance hpi : historicList) {
-                result.add(getWorkflowHistory(hpi.getId()));
+        List<WorkflowSummaryDTO> summaries = new ArrayList<>();
+        for (String id : ids) {
+            HistoricProcessInstance instance = instances.get(id);
+            if (instance == null) {
+                continue;
             }
+            Map<String, Object> vars = variables.getOrDefault(id, Map.of());
+            Task currentTask = currentTasks.get(id);
+            String status = instance.getEndTime() != null ? "COMPLETED"
+                    : suspended.contains(id) ? "SUSPENDED" : "ACTIVE";
+            String initiatorId = instance.getStartUserId() != null ? instance.getStartUserId()
+                    : (String) vars.getOrDefault(STARTED_BY, vars.get(WorkflowConstants.VAR_STARTED_BY));
+
+            summaries.add(WorkflowSummaryDTO.builder()
+                    .processInstanceId(id)
+                    .processDefinitionId(instance.getProcessDefinitionId())
+                    .processDefinitionKey(instance.getProcessDefinitionKey())
+                    .processDefinitionName(instance.getProcessDefinitionName())
+                    .businessKey(instance.getBusinessKey())
+                    .status(status)
+                    .initiatorId(initiatorId)
+                    .initiatorName((String) vars.get(WorkflowConstants.VAR_EMPLOYEE_NAME))
+                    .startTime(toLocalDateTime(instance.getStartTime()))
+                    .endTime(toLocalDateTime(instance.getEndTime()))
+                    .durationInMillis(instance.getEndTime() != null ? instance.getDurationInMillis() : null)
+                    .currentTaskId(currentTask != null ? currentTask.getId() : null)
+                    .currentTaskName(currentTask != null ? currentTask.getName() : null)
+                    .currentAssignee(currentTask != null ? currentTask.getAssignee() : null)
+                    .currentLevel(WorkflowVariableUtils.getStringVariable(vars, WorkflowConstants.VAR_CURRENT_LEVEL, WorkflowConstants.LEVEL_SUPERVISOR))
+                    .escalationCount(WorkflowVariableUtils.getIntVariable(vars, WorkflowConstants.VAR_ESCALATION_COUNT, 0))
+                    .build());
         }
+        return summaries;
+    }
 
-        return result;
+    /**
+     * The few process-scoped variables a summary row needs, for many instances in one query.
+     */
+    private Map<String, Map<String, Object>> getSummaryVariables(Set<String> processInstanceIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", processInstanceIds)
+                .addValue("names", SUMMARY_VARIABLES);
+        Map<String, Map<String, Object>> variables = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT PROC_INST_ID_, NAME_, TEXT_, LONG_ FROM ACT_HI_VARINST" +
+                        " WHERE PROC_INST_ID_ IN (:ids) AND NAME_ IN (:names)" +
+                        " AND EXECUTION_ID_ = PROC_INST_ID_ AND TASK_ID_ IS NULL",
+                params, rs -> {
+                    String text = rs.getString("TEXT_");
+                    long number = rs.getLong("LONG_");
+                    Object value = text != null ? text : rs.wasNull() ? null : (Object) number;
+                    if (value != null) {
+                        variables.computeIfAbsent(rs.getString("PROC_INST_ID_"), k -> new HashMap<>())
+                                .put(rs.getString("NAME_"), value);
+                    }
+                });
+        return variables;
     }
 
-    // Helper methods
-    private TaskHistoryDTO convertToTaskHistoryDTO(HistoricTaskInstance task) {
-        Map<String, Object> variables = new HashMap<>();
-        List<HistoricVariableInstance> taskVars = historyService.createHistoricVariableInstanceQuery()
-                .taskId(task.getId())
-                .list();
-        for (HistoricVariableInstance var : taskVars) {
-            variables.put(var.getVariableName(), var.getValue());
-        }
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return date != null ? date.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime() : null;
+    }
 
+    // Helper methods
+    private TaskHistoryDTO convertToTaskHistoryDTO(HistoricTaskInstance task, Map<String, Object> variables) {
         return TaskHistoryDTO.builder()
                 .id(task.getId())
                 .taskDefinitionKey(task.getTaskDefinitionKey())
@@ -251,36 +378,44 @@ public class WorkflowHistoryService {
                 .build();
     }
 
-    private List<EscalationDTO> getEscalationHistory(Map<String, Object> variables) {
-        return WorkflowVariableUtils.getListVariable(variables, WorkflowConstants.VAR_ESCALATION_HISTORY, objectMapper).stream()
-                .map(map -> EscalationDTO.builder()
-                        .id((String) map.get("id"))
-                        .taskId((String) map.get("taskId"))
-                        .fromLevel((String) map.get("fromLevel"))
-                        .toLevel((String) map.get("toLevel"))
-                        .fromUserId((String) map.get("fromUserId"))
-                        .reason((String) map.get("reason"))
-                        .type((String) map.get("type"))
-                        .timestamp(LocalDateTime.parse((String) map.get("timestamp")))
-                        .build())
-                .collect(Collectors.toList());
+    /**
+     * Escalations from the audit store, merged with the legacy JSON variable of instances whose
+     * history has not been imported yet (see AuditEventMigrationService). Records are matched on
+     * the event id the import would give them, so imported ones are not shown twice.
+     */
+    private List<EscalationDTO> getEscalationHistory(String processInstanceId, Map<String, Object> variables) {
+        return merge(auditEventService.getEscalations(processInstanceId),
+                legacyEvents(processInstanceId, WorkflowConstants.VAR_ESCALATION_HISTORY, variables),
+                EscalationDTO::getId, AuditEventService::toEscalation, EscalationDTO::getTimestamp);
     }
 
     private List<ApprovalDTO> getApprovalHistory(String processInstanceId, Map<String, Object> variables) {
-        return WorkflowVariableUtils.getListVariable(variables, WorkflowConstants.VAR_APPROVAL_HISTORY, objectMapper).stream()
-                .map(map -> ApprovalDTO.builder()
-                        .id((String) map.get("id"))
-                        .processInstanceId(processInstanceId)
-                        .taskId((String) map.get("taskId"))
-                        .taskName((String) map.get("taskName"))
-                        .approverId((String) map.get("approverId"))
-                        .approverLevel((String) map.get("approverLevel"))
-                        .decision((String) map.get("decision"))
-                        .comments((String) map.get("comments"))
-                        .timestamp(LocalDateTime.parse((String) map.get("timestamp")))
-                        .stepOrder(((Number) map.getOrDefault("stepOrder", 0)).intValue())
-                        .isRequired(true)
-                        .build())
-                .collect(Collectors.toList());
+        return merge(auditEventService.getApprovals(processInstanceId),
+                legacyEvents(processInstanceId, WorkflowConstants.VAR_APPROVAL_HISTORY, variables),
+                ApprovalDTO::getId, AuditEventService::toApproval, ApprovalDTO::getTimestamp);
+    }
+
+    private List<WorkflowAuditEvent> legacyEvents(String processInstanceId, String variableName,
+                                                  Map<String, Object> variables) {
+        Object value = variables.get(variableName);
+        return value != null
+                ? auditEventMigrationService.toEvents(processInstanceId, variableName, value, null)
+                : List.of();
+    }
+
+    private static <T> List<T> merge(List<T> stored, List<WorkflowAuditEvent> legacy, Function<T, String> id,
+                                     Function<WorkflowAuditEvent, T> convert, Function<T, LocalDateTime> time) {
+        if (legacy.isEmpty()) {
+            return stored;
+        }
+        Set<String> ids = stored.stream().map(id).collect(Collectors.toSet());
+        List<T> merged = new ArrayList<>(stored);
+        for (WorkflowAuditEvent event : legacy) {
+            if (ids.add(event.getEventId())) {
+                merged.add(convert.apply(event));
+            }
+        }
+        merged.sort(Comparator.comparing(time, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return merged;
     }
 }
@@ -104,7 +104,7 @@ public class WorkflowService {
 
         String id = historyRecorder.recordEscalationHistory(
             processInstanceId, taskId, userId, currentLevel, targetLevel,
-            request.getReason(), isEscalation, variables
+            request.getReason(), isEscalation
         );
 
         updateVariablesForEscalation(processInstanceId, isEscalation, variables, targetLevel, request.getReason(), userId);
@@ -204,7 +204,7 @@ public class WorkflowService {
         String processInstanceId = task.getProcessInstanceId();
 
         historyRecorder.recordHandoffHistory(processInstanceId, taskId, task.getName(),
-            fromUserId, toUserId, reason, runtimeService.getVariables(processInstanceId));
+            fromUserId, toUserId, reason);
 
         // Unclaim and reassign
         if (task.getAssignee() != null) {
@@ -232,7 +232,7 @@ public class WorkflowService {
         String currentLevel = getCurrentLevel(processInstanceId);
 
         var result = historyRecorder.recordApprovalHistory(processInstanceId, taskId, task.getName(),
-            userId, currentLevel, decision, comments, runtimeService.getVariables(processInstanceId));
+            userId, currentLevel, decision, comments);
 
         // Update variables
         Map<String, Object> updateVars = new HashMap<>();
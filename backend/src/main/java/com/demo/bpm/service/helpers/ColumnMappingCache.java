@@ -0,0 +1,42 @@
+package com.demo.bpm.service.helpers;
+
+import com.demo.bpm.entity.ColumnMapping;
+import com.demo.bpm.entity.ColumnMapping.FieldType;
+import com.demo.bpm.service.ColumnMappingService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memoizes column mapping lookups for the duration of a unit of work.
+ *
+ * Saving a document or a grid resolves the same field names over and over (every grid row
+ * repeats its columns, every imported record repeats its fields). The cache keeps the first
+ * resolution per scope and field so only new fields reach the database.
+ *
+ * Not thread-safe. A cache must be discarded when the transaction that created mappings
+ * through it rolls back, otherwise it would hand out slots that were never persisted.
+ */
+public class ColumnMappingCache {
+
+    private final ColumnMappingService columnMappingService;
+    private final Map<String, ColumnMapping> mappings = new HashMap<>();
+
+    public ColumnMappingCache(ColumnMappingService columnMappingService) {
+        this.columnMappingService = columnMappingService;
+    }
+
+    public ColumnMapping documentMapping(String processDefKey, String documentType,
+                                         String fieldName, FieldType fieldType) {
+        String key = "D|" + processDefKey + "|" + documentType + "|" + fieldName;
+        return mappings.computeIfAbsent(key, k -> columnMappingService.getOrCreateDocumentMapping(
+                processDefKey, documentType, fieldName, fieldType));
+    }
+
+    public ColumnMapping gridMapping(String processDefKey, String documentType, String gridName,
+                                     String fieldName, FieldType fieldType) {
+        String key = "G|" + processDefKey + "|" + documentType + "|" + gridName + "|" + fieldName;
+        return mappings.computeIfAbsent(key, k -> columnMappingService.getOrCreateGridMapping(
+                processDefKey, documentType, gridName, fieldName, fieldType));
+    }
+}
@@ -0,0 +1,176 @@
+package com.demo.bpm.service.helpers;
+
+import com.demo.bpm.service.DashboardCounterService;
+import com.demo.bpm.util.WorkflowConstants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.delegate.event.FlowableProcessStartedEvent;
+import org.flowable.engine.delegate.event.FlowableProcessEngineEvent;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.flowable.variable.api.delegate.VariableScope;
+import org.flowable.variable.api.event.FlowableVariableEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Feeds engine events into the dashboard counters.
+ *
+ * Changes are collected per transaction and only applied once it commits, so rolled-back work
+ * never shows up on the dashboard.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardCounterListener implements FlowableEventListener {
+
+    private static final String STARTED_BY = "_startedBy";
+
+    private final RuntimeService runtimeService;
+    private final DashboardCounterService counterService;
+    private final TransactionDeltas<DashboardCounterService.Delta> deltas = new TransactionDeltas<>(
+            DashboardCounterService.Delta::new, DashboardCounterService.Delta::isEmpty, this::applyCommitted);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void register() {
+        runtimeService.addEventListener(this,
+                FlowableEngineEventType.PROCESS_STARTED,
+                FlowableEngineEventType.PROCESS_COMPLETED,
+                FlowableEngineEventType.PROCESS_COMPLETED_WITH_TERMINATE_END_EVENT,
+                FlowableEngineEventType.PROCESS_COMPLETED_WITH_ERROR_END_EVENT,
+                FlowableEngineEventType.PROCESS_CANCELLED,
+                FlowableEngineEventType.TASK_CREATED,
+                FlowableEngineEventType.TASK_ASSIGNED,
+                FlowableEngineEventType.ENTITY_DELETED,
+                FlowableEngineEventType.VARIABLE_CREATED,
+                FlowableEngineEventType.VARIABLE_UPDATED,
+                FlowableEngineEventType.VARIABLE_DELETED);
+        // Registered first so nothing that happens during the rebuild is missed
+        counterService.rebuild();
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!(event.getType() instanceof FlowableEngineEventType type)) {
+            return;
+        }
+        switch (type) {
+            case PROCESS_STARTED -> onProcessStarted(event);
+            case PROCESS_COMPLETED, PROCESS_COMPLETED_WITH_TERMINATE_END_EVENT,
+                 PROCESS_COMPLETED_WITH_ERROR_END_EVENT, PROCESS_CANCELLED -> onProcessEnded(event);
+            case TASK_CREATED -> {
+                if (event instanceof FlowableEntityEvent entityEvent && entityEvent.getEntity() instanceof Task task) {
+                    record(delta -> delta.taskCreated(task.getAssignee()));
+                }
+            }
+            case TASK_ASSIGNED -> {
+                if (event instanceof FlowableEntityEvent entityEvent && entityEvent.getEntity() instanceof Task task) {
+                    record(delta -> delta.taskAssigned(task.getAssignee()));
+                }
+            }
+            case ENTITY_DELETED -> {
+                // Completed and cancelled tasks both end up here
+                if (event instanceof FlowableEntityEvent entityEvent && entityEvent.getEntity() instanceof Task task) {
+                    record(delta -> delta.taskDeleted(task.getAssignee()));
+                }
+            }
+            case VARIABLE_CREATED, VARIABLE_UPDATED, VARIABLE_DELETED -> onVariableChanged(type, event);
+            default -> {
+            }
+        }
+    }
+
+    private void onProcessStarted(FlowableEvent event) {
+        if (!(event instanceof FlowableEntityEvent entityEvent)
+                || !(entityEvent.getEntity() instanceof ProcessInstance processInstance)) {
+            return;
+        }
+        String initiator = startInitiator(event, processInstance);
+        record(delta -> delta.processStarted(initiator));
+    }
+
+    private String startInitiator(FlowableEvent event, ProcessInstance processInstance) {
+        if (processInstance.getStartUserId() != null) {
+            return processInstance.getStartUserId();
+        }
+        if (event instanceof FlowableProcessStartedEvent startedEvent && startedEvent.getVariables() != null) {
+            Object startedBy = startedEvent.getVariables().get(STARTED_BY);
+            return startedBy != null ? startedBy.toString() : null;
+        }
+        return null;
+    }
+
+    private void onProcessEnded(FlowableEvent event) {
+        if (!(event instanceof FlowableProcessEngineEvent engineEvent) || engineEvent.getProcessInstanceId() == null) {
+            return;
+        }
+        String processInstanceId = engineEvent.getProcessInstanceId();
+        String initiator = resolveInitiator(event, processInstanceId);
+        record(delta -> delta.processEnded(processInstanceId, initiator));
+    }
+
+    private String resolveInitiator(FlowableEvent event, String processInstanceId) {
+        if (event instanceof FlowableEntityEvent entityEvent) {
+            if (entityEvent.getEntity() instanceof ProcessInstance processInstance
+                    && processInstance.getStartUserId() != null) {
+                return processInstance.getStartUserId();
+            }
+            if (entityEvent.getEntity() instanceof VariableScope scope) {
+                Object startedBy = scope.getVariable(STARTED_BY);
+                return startedBy != null ? startedBy.toString() : null;
+            }
+        }
+        try {
+            Object startedBy = runtimeService.getVariable(processInstanceId, STARTED_BY);
+            return startedBy != null ? startedBy.toString() : null;
+        } catch (RuntimeException e) {
+            log.debug("Could not resolve initiator of ended process {}: {}", processInstanceId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void onVariableChanged(FlowableEngineEventType type, FlowableEvent event) {
+        if (!(event instanceof FlowableVariableEvent variableEvent)
+                || !WorkflowConstants.VAR_ESCALATION_COUNT.equals(variableEvent.getVariableName())
+                || variableEvent.getTaskId() != null
+                || variableEvent.getProcessInstanceId() == null) {
+            return;
+        }
+        boolean escalated = type != FlowableEngineEventType.VARIABLE_DELETED
+                && variableEvent.getVariableValue() instanceof Number count
+                && count.longValue() > 0;
+        record(delta -> delta.escalationChanged(variableEvent.getProcessInstanceId(), escalated));
+    }
+
+    private void record(Consumer<DashboardCounterService.Delta> change) {
+        deltas.record(change);
+    }
+
+    private void applyCommitted(DashboardCounterService.Delta delta) {
+        counterService.apply(delta);
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        // Counters are advisory; never fail engine work because of them
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.demo.bpm.service.helpers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * The database behind the application's data source, for the few statements that use
+ * PostgreSQL features the H2 development and test databases lack or treat differently.
+ */
+@Component
+@RequiredArgsConstructor
+public class DatabaseDialect {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    public boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = result;
+        }
+        return result;
+    }
+
+    /**
+     * Name of a time zone for PostgreSQL's AT TIME ZONE. Region ids are passed as they are; fixed
+     * offsets are written POSIX-style, which counts hours west of Greenwich, so the sign flips.
+     */
+    public static String postgresZone(ZoneId zone) {
+        ZoneId normalized = zone.normalized();
+        if (!(normalized instanceof ZoneOffset offset)) {
+            return zone.getId();
+        }
+        return offset.getTotalSeconds() == 0 ? "UTC" : ZoneOffset.ofTotalSeconds(-offset.getTotalSeconds()).getId();
+    }
+}
@@ -0,0 +1,143 @@
+package com.demo.bpm.service.helpers;
+
+import com.demo.bpm.entity.Document;
+import com.demo.bpm.entity.GridRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Inserts new documents and grid rows through JDBC batches, in the caller's transaction.
+ *
+ * JPA cannot batch IDENTITY inserts, so saving a document per started instance costs one round
+ * trip each. Here a whole bulk start batch is written with one batch per table; the generated
+ * document ids are read back with a single query on the (process instance, type) unique key.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentBatchWriter {
+
+    private static final int VALUE_COLUMNS = 30;
+
+    private static final String VALUE_COLUMN_NAMES = IntStream.rangeClosed(1, VALUE_COLUMNS)
+            .mapToObj(i -> "varchar_" + i + ", float_" + i + ", datetime_" + i)
+            .collect(Collectors.joining(", "));
+
+    private static final String VALUE_PARAMS = IntStream.rangeClosed(1, VALUE_COLUMNS)
+            .mapToObj(i -> ":varchar_" + i + ", :float_" + i + ", :datetime_" + i)
+            .collect(Collectors.joining(", "));
+
+    private static final String INSERT_DOCUMENT =
+            "INSERT INTO document (process_instance_id, business_key, process_definition_key," +
+                    " process_definition_name, type, " + VALUE_COLUMN_NAMES + ", created_at, updated_at," +
+                    " created_by, updated_by)" +
+                    " VALUES (:processInstanceId, :businessKey, :processDefinitionKey, :processDefinitionName," +
+                    " :type, " + VALUE_PARAMS + ", :createdAt, :updatedAt, :createdBy, :updatedBy)";
+
+    private static final String INSERT_GRID_ROW =
+            "INSERT INTO grid_rows (document_id, process_instance_id, grid_name, row_index, " + VALUE_COLUMN_NAMES +
+                    ", created_at, updated_at)" +
+                    " VALUES (:documentId, :processInstanceId, :gridName, :rowIndex, " + VALUE_PARAMS +
+                    ", :createdAt, :updatedAt)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert the documents and set their generated ids. None of them may exist yet.
+     */
+    public void insertDocuments(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[documents.size()];
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            document.setCreatedAt(now);
+            document.setUpdatedAt(now);
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("processInstanceId", document.getProcessInstanceId())
+                    .addValue("businessKey", document.getBusinessKey())
+                    .addValue("processDefinitionKey", document.getProcessDefinitionKey())
+                    .addValue("processDefinitionName", document.getProcessDefinitionName())
+                    .addValue("type", document.getType())
+                    .addValue("createdAt", Timestamp.valueOf(now))
+                    .addValue("updatedAt", Timestamp.valueOf(now))
+                    .addValue("createdBy", document.getCreatedBy())
+                    .addValue("updatedBy", document.getUpdatedBy());
+            for (int column = 1; column <= VALUE_COLUMNS; column++) {
+                addValues(params, column, document.getVarchar(column), document.getFloat(column),
+                        document.getDatetime(column));
+            }
+            batch[i] = params;
+        }
+        jdbcTemplate.batchUpdate(INSERT_DOCUMENT, batch);
+
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("SELECT id, process_instance_id, type FROM document WHERE process_instance_id IN (:ids)",
+                new MapSqlParameterSource("ids", documents.stream().map(Document::getProcessInstanceId).distinct().toList()),
+                rs -> {
+                    ids.put(key(rs.getString("process_instance_id"), rs.getString("type")), rs.getLong("id"));
+                });
+        for (Document document : documents) {
+            document.setId(ids.get(key(document.getProcessInstanceId(), document.getType())));
+        }
+        log.debug("Inserted {} documents", documents.size());
+    }
+
+    /**
+     * Insert the grid rows of documents inserted before.
+     */
+    public void insertGridRows(Collection<GridRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        MapSqlParameterSource[] batch = rows.stream()
+                .map(row -> {
+                    row.setCreatedAt(now);
+                    row.setUpdatedAt(now);
+                    MapSqlParameterSource params = new MapSqlParameterSource()
+                            .addValue("documentId", row.getDocument().getId())
+                            .addValue("processInstanceId", row.getProcessInstanceId())
+                            .addValue("gridName", row.getGridName())
+                            .addValue("rowIndex", row.getRowIndex())
+                            .addValue("createdAt", Timestamp.valueOf(now))
+                            .addValue("updatedAt", Timestamp.valueOf(now));
+                    for (int column = 1; column <= VALUE_COLUMNS; column++) {
+                        addValues(params, column, row.getVarchar(column), row.getFloat(column),
+                                row.getDatetime(column));
+                    }
+                    return params;
+                })
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_GRID_ROW, batch);
+        log.debug("Inserted {} grid rows", batch.length);
+    }
+
+    private static void addValues(MapSqlParameterSource params, int column, String text, Double number,
+                                  LocalDateTime datetime) {
+        // Typed so that nulls bind without a driver round trip for the parameter type
+        params.addValue("varchar_" + column, text, Types.VARCHAR)
+                .addValue("float_" + column, number, Types.DOUBLE)
+                .addValue("datetime_" + column, datetime != null ? Timestamp.valueOf(datetime) : null,
+                        Types.TIMESTAMP);
+    }
+
+    private static String key(String processInstanceId, String type) {
+        return processInstanceId + "\u0000" + type;
+    }
+}
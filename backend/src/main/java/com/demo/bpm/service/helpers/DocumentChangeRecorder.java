@@ -0,0 +1,175 @@
+package com.demo.bpm.service.helpers;
+
+import com.demo.bpm.entity.Document;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes the document change log read by ChangeFeedService.
+ *
+ * Changes are collected per transaction and written just before it commits. Their sequence
+ * numbers come from a counter row that is incremented at that point and stays locked until the
+ * commit, so writers commit in sequence order: a reader that sees seq N has already seen every
+ * lower one, however long the transactions ran. The lock is held only from the increment to the
+ * commit; a bulk import batch takes it once for all of its documents.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentChangeRecorder {
+
+    public static final String SEQUENCE = "documents";
+
+    private static final String INSERT_CHANGE =
+            "INSERT INTO document_change (seq, document_id, process_instance_id, process_definition_key," +
+                    " document_type, deleted, changed_at)" +
+                    " VALUES (:seq, :documentId, :processInstanceId, :processDefinitionKey, :documentType, :deleted, :changedAt)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * The document was created or updated, including its grids.
+     */
+    public void changed(Document document) {
+        record(document, false);
+    }
+
+    /**
+     * The document was deleted; the feed delivers a tombstone for it.
+     */
+    public void deleted(Document document) {
+        record(document, true);
+    }
+
+    /**
+     * Start the log with every existing document, once, so consumers reading from the beginning
+     * get the full current state.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Long existing = lastSeq();
+                if (existing == null) {
+                    seed();
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another node created the counter at the same time and seeded the log
+            log.debug("Document change log already initialised by another node");
+        }
+    }
+
+    private void record(Document document, boolean deleted) {
+        Change change = new Change(document.getId(), document.getProcessInstanceId(),
+                document.getProcessDefinitionKey(), document.getType(), deleted);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionTemplate.executeWithoutResult(status -> write(Map.of(change.documentId(), change)));
+            return;
+        }
+        transactionChanges().put(change.documentId(), change);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Change> transactionChanges() {
+        Object existing = TransactionSynchronizationManager.getResource(this);
+        if (existing != null) {
+            return (Map<Long, Change>) existing;
+        }
+        // The last change of a document within a transaction is the one that counts
+        Map<Long, Change> changes = new LinkedHashMap<>();
+        TransactionSynchronizationManager.bindResource(this, changes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                write(changes);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(DocumentChangeRecorder.this);
+            }
+        });
+        return changes;
+    }
+
+    private void write(Map<Long, Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        long first = allocate(changes.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        MapSqlParameterSource[] rows = new MapSqlParameterSource[changes.size()];
+        int i = 0;
+        for (Change change : changes.values()) {
+            rows[i] = new MapSqlParameterSource()
+                    .addValue("seq", first + i)
+                    .addValue("documentId", change.documentId())
+                    .addValue("processInstanceId", change.processInstanceId())
+                    .addValue("processDefinitionKey", change.processDefinitionKey())
+                    .addValue("documentType", change.documentType())
+                    .addValue("deleted", change.deleted())
+                    .addValue("changedAt", now);
+            i++;
+        }
+        jdbcTemplate.batchUpdate(INSERT_CHANGE, rows);
+    }
+
+    /**
+     * Reserve {@code count} sequence numbers and return the first. Locks the counter row until
+     * the surrounding transaction ends.
+     */
+    private long allocate(int count) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("name", SEQUENCE)
+                .addValue("count", count);
+        String increment = "UPDATE change_feed_sequence SET last_seq = last_seq + :count WHERE name = :name";
+        if (jdbcTemplate.update(increment, params) == 0) {
+            // First write before the startup initialisation ran
+            seed();
+            jdbcTemplate.update(increment, params);
+        }
+        return lastSeq() - count + 1;
+    }
+
+    private Long lastSeq() {
+        return jdbcTemplate.query("SELECT last_seq FROM change_feed_sequence WHERE name = :name",
+                new MapSqlParameterSource("name", SEQUENCE),
+                rs -> rs.next() ? rs.getLong(1) : null);
+    }
+
+    private void seed() {
+        MapSqlParameterSource params = new MapSqlParameterSource("name", SEQUENCE);
+        // Creating the counter first makes a concurrent seeder fail on the primary key instead of seeding twice
+        jdbcTemplate.update("INSERT INTO change_feed_sequence (name, last_seq) VALUES (:name, 0)", params);
+        int seeded = jdbcTemplate.update(
+                "INSERT INTO document_change (seq, document_id, process_instance_id, process_definition_key," +
+                        " document_type, deleted, changed_at)" +
+                        " SELECT ROW_NUMBER() OVER (ORDER BY updated_at, id), id, process_instance_id," +
+                        " process_definition_key, type, FALSE, COALESCE(updated_at, CURRENT_TIMESTAMP) FROM document",
+                new MapSqlParameterSource());
+        jdbcTemplate.update("UPDATE change_feed_sequence SET last_seq = :seeded WHERE name = :name",
+                params.addValue("seeded", seeded));
+        if (seeded > 0) {
+            log.info("Started the document change log with {} existing documents", seeded);
+        }
+    }
+
+    private record Change(Long documentId, String processInstanceId, String processDefinitionKey,
+                          String documentType, boolean deleted) {}
+}
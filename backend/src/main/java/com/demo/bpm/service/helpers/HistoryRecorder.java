@@ -1,101 +1,98 @@
 package com.demo.bpm.service.helpers;
 
-import com.demo.bpm.util.WorkflowConstants;
-import com.demo.bpm.util.WorkflowVariableUtils;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.demo.bpm.entity.WorkflowAuditEvent;
+import com.demo.bpm.entity.WorkflowAuditEvent.EventType;
+import com.demo.bpm.service.AuditEventMigrationService;
+import com.demo.bpm.service.AuditEventService;
 import lombok.RequiredArgsConstructor;
-import org.flowable.engine.RuntimeService;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Records approvals, escalations and handoffs as events in the audit store. Each call locks the
+ * process instance and inserts one event; nothing is read back from the process variables.
+ *
+ * The first event of an instance that still has JSON history variables imports them first, so
+ * its earlier approvals and escalations stay visible and step orders continue from them.
+ */
 @Component
 @RequiredArgsConstructor
 public class HistoryRecorder {
 
-    private final ObjectMapper objectMapper;
-    private final RuntimeService runtimeService;
+    private final AuditEventService auditEventService;
+    private final AuditEventMigrationService auditEventMigrationService;
 
     public String recordEscalationHistory(String processInstanceId, String taskId, String userId,
                                           String currentLevel, String targetLevel, String reason,
-                                          boolean isEscalation, Map<String, Object> variables) {
-
-        List<Map<String, Object>> history = WorkflowVariableUtils.getListVariable(
-            variables, WorkflowConstants.VAR_ESCALATION_HISTORY, objectMapper);
-
-        String type = isEscalation ? WorkflowConstants.TYPE_ESCALATE : WorkflowConstants.TYPE_DE_ESCALATE;
-        String now = LocalDateTime.now().toString();
+                                          boolean isEscalation) {
         String id = UUID.randomUUID().toString();
-
-        Map<String, Object> record = new HashMap<>();
-        record.put("id", id);
-        record.put("taskId", taskId);
-        record.put("fromLevel", currentLevel);
-        record.put("toLevel", targetLevel);
-        record.put("fromUserId", userId);
-        record.put("reason", reason);
-        record.put("type", type);
-        record.put("timestamp", now);
-        history.add(record);
-
-        runtimeService.setVariable(processInstanceId, WorkflowConstants.VAR_ESCALATION_HISTORY,
-            WorkflowVariableUtils.serializeList(history, objectMapper));
-
+        prepare(processInstanceId);
+        auditEventService.append(WorkflowAuditEvent.builder()
+                .eventId(id)
+                .eventType(isEscalation ? EventType.ESCALATE : EventType.DE_ESCALATE)
+                .processInstanceId(processInstanceId)
+                .taskId(taskId)
+                .actorId(userId)
+                .fromLevel(currentLevel)
+                .toLevel(targetLevel)
+                .comments(reason)
+                .createdAt(LocalDateTime.now())
+                .build());
         return id;
     }
 
     public void recordHandoffHistory(String processInstanceId, String taskId, String taskName,
-                                     String fromUserId, String toUserId, String reason,
-                                     Map<String, Object> variables) {
-
-        List<Map<String, Object>> history = WorkflowVariableUtils.getListVariable(
-            variables, WorkflowConstants.VAR_HANDOFF_HISTORY, objectMapper);
-
-        Map<String, Object> record = new HashMap<>();
-        record.put("id", UUID.randomUUID().toString());
-        record.put("taskId", taskId);
-        record.put("taskName", taskName);
-        record.put("fromUserId", fromUserId);
-        record.put("toUserId", toUserId);
-        record.put("reason", reason);
-        record.put("timestamp", LocalDateTime.now().toString());
-        history.add(record);
-
-        runtimeService.setVariable(processInstanceId, WorkflowConstants.VAR_HANDOFF_HISTORY,
-            WorkflowVariableUtils.serializeList(history, objectMapper));
+                                     String fromUserId, String toUserId, String reason) {
+        prepare(processInstanceId);
+        auditEventService.append(WorkflowAuditEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(EventType.HANDOFF)
+                .processInstanceId(processInstanceId)
+                .taskId(taskId)
+                .taskName(taskName)
+                .actorId(fromUserId)
+                .targetUserId(toUserId)
+                .comments(reason)
+                .createdAt(LocalDateTime.now())
+                .build());
     }
 
     public ApprovalRecordResult recordApprovalHistory(String processInstanceId, String taskId, String taskName,
-                                      String userId, String currentLevel, String decision, String comments,
-                                      Map<String, Object> variables) {
-
-        List<Map<String, Object>> history = WorkflowVariableUtils.getListVariable(
-            variables, WorkflowConstants.VAR_APPROVAL_HISTORY, objectMapper);
-
+                                                      String userId, String currentLevel, String decision,
+                                                      String comments) {
         String id = UUID.randomUUID().toString();
-        int stepOrder = history.size() + 1;
-
-        Map<String, Object> record = new HashMap<>();
-        record.put("id", id);
-        record.put("taskId", taskId);
-        record.put("taskName", taskName);
-        record.put("approverId", userId);
-        record.put("approverLevel", currentLevel);
-        record.put("decision", decision);
-        record.put("comments", comments);
-        record.put("timestamp", LocalDateTime.now().toString());
-        record.put("stepOrder", stepOrder);
-        history.add(record);
-
-        runtimeService.setVariable(processInstanceId, WorkflowConstants.VAR_APPROVAL_HISTORY,
-            WorkflowVariableUtils.serializeList(history, objectMapper));
+        prepare(processInstanceId);
+        int stepOrder = auditEventService.nextApprovalStep(processInstanceId);
+
+        auditEventService.append(WorkflowAuditEvent.builder()
+                .eventId(id)
+                .eventType(EventType.APPROVAL)
+                .processInstanceId(processInstanceId)
+                .taskId(taskId)
+                .taskName(taskName)
+                .actorId(userId)
+                .fromLevel(currentLevel)
+                .decision(decision)
+                .comments(comments)
+                .stepOrder(stepOrder)
+                .createdAt(LocalDateTime.now())
+                .build());
 
         return new ApprovalRecordResult(id, stepOrder);
     }
 
+    /**
+     * Serialise writers of the instance until commit, so concurrent approvals cannot take the
+     * same step order, and bring in its legacy history before its first event.
+     */
+    private void prepare(String processInstanceId) {
+        auditEventService.lockInstance(processInstanceId);
+        if (!auditEventService.hasEvents(processInstanceId)) {
+            auditEventMigrationService.importInstance(processInstanceId);
+        }
+    }
+
     public record ApprovalRecordResult(String id, int stepOrder) {}
 }
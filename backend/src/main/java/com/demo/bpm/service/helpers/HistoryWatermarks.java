@@ -0,0 +1,163 @@
+package com.demo.bpm.service.helpers;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Watermark rows of the incremental jobs that read finished history, AnalyticsRollupService and
+ * ProcessMiningService, and the plumbing they share.
+ *
+ * A job locks its row at the start of every transaction, so runs on several nodes take turns,
+ * and moves it in the same transaction as the work it covers. History rows get their END_TIME_
+ * before their transaction commits, so a row can appear below a watermark that already passed
+ * it: each job leaves the most recent settle-lag for later and re-reads an overlap window below
+ * its watermark on every run, and must make that re-read idempotent.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HistoryWatermarks {
+
+    public static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Run a job unless a run of it is already in progress on this node, with its watermark row
+     * created first.
+     *
+     * @param description start of the error message, e.g. "An analytics rollup run"
+     */
+    public <T> T runExclusively(String name, String description, Supplier<T> job) {
+        if (!running.add(name)) {
+            throw new IllegalStateException(description + " is already in progress");
+        }
+        try {
+            create(name);
+            return job.get();
+        } finally {
+            running.remove(name);
+        }
+    }
+
+    /**
+     * Lock the watermark row until the surrounding transaction ends and return it.
+     */
+    public Position lock(String name) {
+        return jdbcTemplate.queryForObject(
+                "SELECT watermark, cursor_id FROM analytics_watermark WHERE name = :name FOR UPDATE",
+                new MapSqlParameterSource("name", name),
+                (rs, rowNum) -> new Position(rs.getTimestamp("watermark").toLocalDateTime(),
+                        Objects.requireNonNullElse(rs.getString("cursor_id"), "")));
+    }
+
+    /**
+     * Move the watermark, in the transaction that locked it.
+     */
+    public void advance(String name, LocalDateTime watermark, String cursorId) {
+        jdbcTemplate.update("UPDATE analytics_watermark SET watermark = :watermark, cursor_id = :cursor, updated_at = :now" +
+                        " WHERE name = :name",
+                new MapSqlParameterSource()
+                        .addValue("watermark", Timestamp.valueOf(watermark))
+                        .addValue("cursor", cursorId)
+                        .addValue("now", Timestamp.valueOf(LocalDateTime.now()))
+                        .addValue("name", name));
+    }
+
+    /**
+     * Move the watermark back to the start of history, for a rebuild.
+     */
+    public void reset(String name) {
+        advance(name, BEGINNING, "");
+    }
+
+    /**
+     * The watermark without locking it; null before the job first ran.
+     */
+    public LocalDateTime current(String name) {
+        List<Timestamp> current = jdbcTemplate.queryForList("SELECT watermark FROM analytics_watermark WHERE name = :name",
+                new MapSqlParameterSource("name", name), Timestamp.class);
+        return current.isEmpty() ? null : current.get(0).toLocalDateTime();
+    }
+
+    /**
+     * End of the history a run may read: rows that ended within the settle-lag are left for the next one.
+     */
+    public static LocalDateTime settledUpTo(long settleLagMs) {
+        return LocalDateTime.now().minusNanos(settleLagMs * 1_000_000);
+    }
+
+    /**
+     * Start of the overlap window below a watermark, never before the start of history.
+     */
+    public static LocalDateTime overlapStart(LocalDateTime watermark, long overlapMs) {
+        LocalDateTime start = watermark.minusNanos(overlapMs * 1_000_000);
+        return start.isAfter(BEGINNING) ? start : BEGINNING;
+    }
+
+    /**
+     * Apply each row with {@code update}, and insert the rows that matched nothing with {@code insert}.
+     * Callers hold their watermark lock, so no other run inserts the same keys meanwhile.
+     */
+    public void upsert(String update, String insert, List<MapSqlParameterSource> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource[] rows = batch.toArray(MapSqlParameterSource[]::new);
+        int[] updated = jdbcTemplate.batchUpdate(update, rows);
+        List<MapSqlParameterSource> inserts = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                inserts.add(rows[i]);
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, inserts.toArray(MapSqlParameterSource[]::new));
+        }
+    }
+
+    /**
+     * Create the watermark row at the start of history unless it exists. Nodes starting together
+     * may both try; the insert runs in a transaction of its own, so the one that loses on the
+     * primary key fails alone and goes on with the row the other created.
+     */
+    private void create(String name) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("watermark", Timestamp.valueOf(BEGINNING))
+                .addValue("cursor", "")
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (current(name) == null) {
+                    jdbcTemplate.update("INSERT INTO analytics_watermark (name, watermark, cursor_id, updated_at)" +
+                            " VALUES (:name, :watermark, :cursor, :now)", params);
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Watermark {} created by another node", name);
+        }
+    }
+
+    /**
+     * A watermark and, for jobs that page through ties in end time, the id of the last item at it.
+     */
+    public record Position(LocalDateTime watermark, String cursorId) {}
+}
@@ -0,0 +1,244 @@
+package com.demo.bpm.service.helpers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pull-style reader over a bulk import upload.
+ *
+ * Records are parsed one at a time straight from the request stream, so an upload of any size
+ * only ever holds the current record in memory. A record that cannot be parsed is returned with
+ * an error instead of aborting the import.
+ */
+public abstract class ImportRecordReader {
+
+    protected final BufferedReader reader;
+    protected long lineNumber;
+
+    protected ImportRecordReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next record, or return null once the input is exhausted.
+     */
+    public abstract ImportRecord next() throws IOException;
+
+    public static ImportRecordReader ndjson(BufferedReader reader, ObjectMapper objectMapper) {
+        return new NdjsonReader(reader, objectMapper);
+    }
+
+    public static ImportRecordReader csv(BufferedReader reader, char delimiter) throws IOException {
+        return new CsvReader(reader, delimiter);
+    }
+
+    /**
+     * Reader over a single JSON array of objects. Elements are numbered from 1 in place of line
+     * numbers.
+     */
+    public static ImportRecordReader jsonArray(BufferedReader reader, ObjectMapper objectMapper) throws IOException {
+        return new JsonArrayReader(reader, objectMapper);
+    }
+
+    /**
+     * One parsed input record. {@code lineNumber} is the line the record started on.
+     */
+    public record ImportRecord(long lineNumber, Map<String, Object> values, String error) {
+
+        static ImportRecord ok(long lineNumber, Map<String, Object> values) {
+            return new ImportRecord(lineNumber, values, null);
+        }
+
+        static ImportRecord failed(long lineNumber, String error) {
+            return new ImportRecord(lineNumber, null, error);
+        }
+
+        public boolean isValid() {
+            return error == null;
+        }
+    }
+
+    // ==================== NDJSON ====================
+
+    private static class NdjsonReader extends ImportRecordReader {
+
+        private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+        private final ObjectMapper objectMapper;
+
+        NdjsonReader(BufferedReader reader, ObjectMapper objectMapper) {
+            super(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public ImportRecord next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    return ImportRecord.ok(lineNumber, objectMapper.readValue(line, MAP_TYPE));
+                } catch (JsonProcessingException e) {
+                    return ImportRecord.failed(lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    // ==================== JSON array ====================
+
+    private static class JsonArrayReader extends ImportRecordReader {
+
+        private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+        private final ObjectMapper objectMapper;
+        private final JsonParser parser;
+
+        JsonArrayReader(BufferedReader reader, ObjectMapper objectMapper) throws IOException {
+            super(reader);
+            this.objectMapper = objectMapper;
+            this.parser = objectMapper.getFactory().createParser(reader);
+            JsonToken first = parser.nextToken();
+            if (first != null && first != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of records");
+            }
+        }
+
+        @Override
+        public ImportRecord next() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            lineNumber++;
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return ImportRecord.failed(lineNumber, "Expected a JSON object but found " + token);
+            }
+            // Syntax errors leave the parser at an unknown position, so they end the upload
+            return ImportRecord.ok(lineNumber, objectMapper.readValue(parser, MAP_TYPE));
+        }
+    }
+
+    // ==================== CSV ====================
+
+    /**
+     * RFC 4180 reader: the first row is the header, fields may be quoted, quoted fields may
+     * contain delimiters, doubled quotes and line breaks. Empty cells are omitted from the record.
+     */
+    private static class CsvReader extends ImportRecordReader {
+
+        private final char delimiter;
+        private final List<String> header;
+
+        CsvReader(BufferedReader reader, char delimiter) throws IOException {
+            super(reader);
+            this.delimiter = delimiter;
+            List<String> firstRow = readRow();
+            if (firstRow == null) {
+                this.header = List.of();
+            } else {
+                if (!firstRow.isEmpty() && firstRow.get(0).startsWith("\uFEFF")) {
+                    firstRow.set(0, firstRow.get(0).substring(1));
+                }
+                this.header = firstRow.stream().map(String::trim).toList();
+            }
+        }
+
+        @Override
+        public ImportRecord next() throws IOException {
+            List<String> row;
+            long startLine;
+            do {
+                startLine = lineNumber + 1;
+                try {
+                    row = readRow();
+                } catch (IllegalStateException e) {
+                    return ImportRecord.failed(startLine, e.getMessage());
+                }
+                if (row == null) {
+                    return null;
+                }
+            } while (row.size() == 1 && row.get(0).isEmpty());
+
+            if (row.size() > header.size()) {
+                return ImportRecord.failed(startLine,
+                        "Row has " + row.size() + " cells but the header has " + header.size());
+            }
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i < row.size(); i++) {
+                String cell = row.get(i);
+                if (!cell.isEmpty()) {
+                    values.put(header.get(i), cell);
+                }
+            }
+            return ImportRecord.ok(startLine, values);
+        }
+
+        private List<String> readRow() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+
+            List<String> cells = new ArrayList<>();
+            StringBuilder cell = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i >= line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    // Quoted cell continues on the next physical line
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new IllegalStateException("Unterminated quoted field");
+                    }
+                    lineNumber++;
+                    cell.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            cell.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        cell.append(c);
+                    }
+                } else if (c == '"' && cell.isEmpty()) {
+                    quoted = true;
+                } else if (c == delimiter) {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else {
+                    cell.append(c);
+                }
+            }
+            cells.add(cell.toString());
+            return cells;
+        }
+    }
+}
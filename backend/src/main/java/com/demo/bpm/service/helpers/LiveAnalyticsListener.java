@@ -0,0 +1,128 @@
+package com.demo.bpm.service.helpers;
+
+import com.demo.bpm.service.LiveAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.delegate.event.FlowableProcessEngineEvent;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Feeds engine events into the live analytics counters.
+ *
+ * Like DashboardCounterListener, changes are collected per transaction and only applied once it
+ * commits. Tasks outside a process instance are not counted.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LiveAnalyticsListener implements FlowableEventListener {
+
+    private final RuntimeService runtimeService;
+    private final LiveAnalyticsService liveAnalyticsService;
+    private final TransactionDeltas<LiveAnalyticsService.Delta> deltas = new TransactionDeltas<>(
+            LiveAnalyticsService.Delta::new, LiveAnalyticsService.Delta::isEmpty, this::applyCommitted);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void register() {
+        runtimeService.addEventListener(this,
+                FlowableEngineEventType.PROCESS_STARTED,
+                FlowableEngineEventType.PROCESS_COMPLETED,
+                FlowableEngineEventType.PROCESS_COMPLETED_WITH_TERMINATE_END_EVENT,
+                FlowableEngineEventType.PROCESS_COMPLETED_WITH_ERROR_END_EVENT,
+                FlowableEngineEventType.PROCESS_CANCELLED,
+                FlowableEngineEventType.TASK_CREATED,
+                FlowableEngineEventType.ENTITY_DELETED);
+        // Registered first so nothing that happens during the resync is missed
+        liveAnalyticsService.resync();
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!(event.getType() instanceof FlowableEngineEventType type)) {
+            return;
+        }
+        switch (type) {
+            case PROCESS_STARTED -> {
+                if (event instanceof FlowableEntityEvent entityEvent
+                        && entityEvent.getEntity() instanceof ProcessInstance processInstance) {
+                    String key = processKey(processInstance);
+                    record(delta -> delta.processStarted(key));
+                }
+            }
+            case PROCESS_COMPLETED, PROCESS_COMPLETED_WITH_TERMINATE_END_EVENT,
+                 PROCESS_COMPLETED_WITH_ERROR_END_EVENT, PROCESS_CANCELLED -> {
+                if (event instanceof FlowableProcessEngineEvent engineEvent
+                        && engineEvent.getProcessInstanceId() != null) {
+                    String key = liveAnalyticsService.definitionKey(engineEvent.getProcessDefinitionId());
+                    record(delta -> delta.processEnded(engineEvent.getProcessInstanceId(), key));
+                }
+            }
+            case TASK_CREATED -> {
+                LiveAnalyticsService.TaskChange task = taskChange(event);
+                if (task != null) {
+                    record(delta -> delta.taskCreated(task));
+                }
+            }
+            case ENTITY_DELETED -> {
+                // Completed and cancelled tasks both end up here
+                LiveAnalyticsService.TaskChange task = taskChange(event);
+                if (task != null) {
+                    record(delta -> delta.taskEnded(task));
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private String processKey(ProcessInstance processInstance) {
+        return processInstance.getProcessDefinitionKey() != null
+                ? processInstance.getProcessDefinitionKey()
+                : liveAnalyticsService.definitionKey(processInstance.getProcessDefinitionId());
+    }
+
+    private LiveAnalyticsService.TaskChange taskChange(FlowableEvent event) {
+        if (!(event instanceof FlowableEntityEvent entityEvent) || !(entityEvent.getEntity() instanceof Task task)
+                || task.getProcessDefinitionId() == null) {
+            return null;
+        }
+        return new LiveAnalyticsService.TaskChange(liveAnalyticsService.definitionKey(task.getProcessDefinitionId()),
+                task.getTaskDefinitionKey(), task.getName(), task.getId(),
+                task.getCreateTime() != null ? task.getCreateTime().getTime() : System.currentTimeMillis());
+    }
+
+    private void record(Consumer<LiveAnalyticsService.Delta> change) {
+        deltas.record(change);
+    }
+
+    private void applyCommitted(LiveAnalyticsService.Delta delta) {
+        liveAnalyticsService.apply(delta);
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        // Live figures are advisory; never fail engine work because of them
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+}
@@ -0,0 +1,109 @@
+package com.demo.bpm.service.helpers;
+
+import com.demo.bpm.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Named single flights for expensive idempotent reads, e.g. analytics and SLA statistics, so a
+ * burst of identical requests costs one computation (see SingleFlight).
+ *
+ * Each read has its own stale window: {@code bpm.single-flight.reads.<name>.stale-ms}, falling
+ * back to {@code bpm.single-flight.stale-ms} (0, no stale results), and its own fresh period
+ * within it, {@code fresh-ms} in the same places. Calls are counted per read in
+ * {@code bpm.single_flight.calls} by outcome: computed, coalesced, fresh or stale.
+ */
+@Component
+@RequiredArgsConstructor
+public class SingleFlightRegistry {
+
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+
+    @Value("${bpm.single-flight.stale-ms:0}")
+    private long defaultStaleMs = 0;
+
+    @Value("${bpm.single-flight.fresh-ms:0}")
+    private long defaultFreshMs = 0;
+
+    // Revalidations run here; when threads and queue are full a stale result is not refreshed this time
+    @Value("${bpm.single-flight.revalidation-threads:2}")
+    private int revalidationThreads = 2;
+
+    private final Map<String, SingleFlight<Object, Object>> flights = new ConcurrentHashMap<>();
+    private volatile ThreadPoolExecutor revalidator;
+
+    /**
+     * Compute {@code loader} for the given read and key, or share the result of the identical
+     * call already running.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String read, Object key, Supplier<V> loader) {
+        return (V) flights.computeIfAbsent(read, this::create).get(key, (Supplier<Object>) loader);
+    }
+
+    private SingleFlight<Object, Object> create(String read) {
+        long staleMs = environment.getProperty("bpm.single-flight.reads." + read + ".stale-ms", Long.class, defaultStaleMs);
+        long freshMs = environment.getProperty("bpm.single-flight.reads." + read + ".fresh-ms", Long.class, defaultFreshMs);
+        SingleFlight<Object, Object> flight = staleMs > 0
+                ? new SingleFlight<>(freshMs, staleMs, revalidator())
+                : new SingleFlight<>();
+        register(read, "computed", flight, SingleFlight::getComputed);
+        register(read, "coalesced", flight, SingleFlight::getCoalesced);
+        register(read, "fresh", flight, SingleFlight::getServedFresh);
+        register(read, "stale", flight, SingleFlight::getServedStale);
+        return flight;
+    }
+
+    private void register(String read, String outcome, SingleFlight<Object, Object> flight,
+                          ToLongFunction<SingleFlight<Object, Object>> count) {
+        FunctionCounter.builder("bpm.single_flight.calls", flight, f -> count.applyAsLong(f))
+                .description("Calls of an expensive read by outcome: computed, coalesced into a running call, or served fresh or stale")
+                .tag("read", read)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private ThreadPoolExecutor revalidator() {
+        ThreadPoolExecutor executor = revalidator;
+        if (executor == null) {
+            synchronized (this) {
+                if (revalidator == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    int threads = Math.max(1, revalidationThreads);
+                    revalidator = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(threads * 10),
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "single-flight-" + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    revalidator.allowCoreThreadTimeOut(true);
+                }
+                executor = revalidator;
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (revalidator != null) {
+            revalidator.shutdownNow();
+        }
+    }
+}
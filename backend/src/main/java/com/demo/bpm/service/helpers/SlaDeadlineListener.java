@@ -0,0 +1,105 @@
+package com.demo.bpm.service.helpers;
+
+import com.demo.bpm.service.SlaDeadlineService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.delegate.event.FlowableProcessEngineEvent;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps sla_deadline in step with the tasks and process instances of the engine.
+ *
+ * Unlike the in-memory counters, deadlines are rows in the engine's own database, so they are
+ * written straight away and commit or roll back together with the task or process they belong to.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SlaDeadlineListener implements FlowableEventListener {
+
+    private final RuntimeService runtimeService;
+    private final SlaDeadlineService slaDeadlineService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void register() {
+        runtimeService.addEventListener(this,
+                FlowableEngineEventType.PROCESS_STARTED,
+                FlowableEngineEventType.PROCESS_COMPLETED,
+                FlowableEngineEventType.PROCESS_COMPLETED_WITH_TERMINATE_END_EVENT,
+                FlowableEngineEventType.PROCESS_COMPLETED_WITH_ERROR_END_EVENT,
+                FlowableEngineEventType.PROCESS_CANCELLED,
+                FlowableEngineEventType.TASK_CREATED,
+                FlowableEngineEventType.TASK_ASSIGNED,
+                FlowableEngineEventType.ENTITY_DELETED);
+        // Tasks and processes started before deadlines were tracked, or while this node was down on a single-node setup
+        slaDeadlineService.backfill();
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!(event.getType() instanceof FlowableEngineEventType type)) {
+            return;
+        }
+        switch (type) {
+            case PROCESS_STARTED -> {
+                if (event instanceof FlowableEntityEvent entityEvent
+                        && entityEvent.getEntity() instanceof ProcessInstance processInstance) {
+                    slaDeadlineService.processStarted(processInstance);
+                }
+            }
+            case PROCESS_COMPLETED, PROCESS_COMPLETED_WITH_TERMINATE_END_EVENT,
+                 PROCESS_COMPLETED_WITH_ERROR_END_EVENT, PROCESS_CANCELLED -> {
+                if (event instanceof FlowableProcessEngineEvent engineEvent && engineEvent.getProcessInstanceId() != null) {
+                    slaDeadlineService.processEnded(engineEvent.getProcessInstanceId(),
+                            type == FlowableEngineEventType.PROCESS_CANCELLED);
+                }
+            }
+            case TASK_CREATED -> {
+                if (event instanceof FlowableEntityEvent entityEvent && entityEvent.getEntity() instanceof Task task) {
+                    slaDeadlineService.taskCreated(task);
+                }
+            }
+            case TASK_ASSIGNED -> {
+                if (event instanceof FlowableEntityEvent entityEvent && entityEvent.getEntity() instanceof Task task
+                        && task.getAssignee() != null) {
+                    slaDeadlineService.taskAssigned(task.getId());
+                }
+            }
+            case ENTITY_DELETED -> {
+                // Completed and cancelled tasks both end up here
+                if (event instanceof FlowableEntityEvent entityEvent && entityEvent.getEntity() instanceof Task task) {
+                    slaDeadlineService.taskEnded(task.getId());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        // Exceptions are logged instead of failing the engine call. That does not make a failed statement
+        // harmless: on PostgreSQL it aborts the engine's transaction all the same, so the statements here
+        // are kept from failing in normal operation (the backfill never races these inserts)
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+}
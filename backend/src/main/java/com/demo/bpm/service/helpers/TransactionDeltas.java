@@ -0,0 +1,61 @@
+package com.demo.bpm.service.helpers;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Collects the changes an engine event listener sees into one delta per transaction and hands
+ * it on once the transaction commits, so rolled-back work never reaches in-memory counters.
+ * Without a transaction a change is handed on straight away.
+ *
+ * @param <D> the delta type
+ */
+public final class TransactionDeltas<D> {
+
+    private final Supplier<D> newDelta;
+    private final Predicate<D> isEmpty;
+    private final Consumer<D> onCommit;
+
+    public TransactionDeltas(Supplier<D> newDelta, Predicate<D> isEmpty, Consumer<D> onCommit) {
+        this.newDelta = newDelta;
+        this.isEmpty = isEmpty;
+        this.onCommit = onCommit;
+    }
+
+    /**
+     * Add a change to the delta of the surrounding transaction.
+     */
+    public void record(Consumer<D> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            D delta = newDelta.get();
+            change.accept(delta);
+            onCommit.accept(delta);
+            return;
+        }
+        change.accept(transactionDelta());
+    }
+
+    @SuppressWarnings("unchecked")
+    private D transactionDelta() {
+        Object existing = TransactionSynchronizationManager.getResource(this);
+        if (existing != null) {
+            return (D) existing;
+        }
+        D delta = newDelta.get();
+        TransactionSynchronizationManager.bindResource(this, delta);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TransactionDeltas.this);
+                if (status == STATUS_COMMITTED && !isEmpty.test(delta)) {
+                    onCommit.accept(delta);
+                }
+            }
+        });
+        return delta;
+    }
+}
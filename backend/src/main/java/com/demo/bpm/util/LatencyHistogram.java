@@ -0,0 +1,119 @@
+package com.demo.bpm.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mergeable histogram of durations in milliseconds with log-linear buckets.
+ *
+ * Every power of two is split into 16 equal buckets, so a value is known to within 1/16 (6.25%)
+ * of itself whatever its magnitude, and a histogram covering years of durations stays at a few
+ * hundred buckets at most. Histograms of different time buckets merge by adding counts, which
+ * makes percentiles over any range of buckets as accurate as over a single one.
+ *
+ * Only non-empty buckets are kept; the text form is "index:count,index:count".
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final TreeMap<Integer, Long> counts = new TreeMap<>();
+    private long total;
+
+    public void record(long durationMs) {
+        add(index(Math.max(0, durationMs)), 1);
+    }
+
+    public void merge(LatencyHistogram other) {
+        if (other != null) {
+            other.counts.forEach(this::add);
+        }
+    }
+
+    public long getTotalCount() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /**
+     * Duration at the given quantile (0.5 for the median), as the midpoint of its bucket.
+     * Returns 0 for an empty histogram.
+     */
+    public long valueAt(double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                return midpoint(entry.getKey());
+            }
+        }
+        return midpoint(counts.lastKey());
+    }
+
+    public String serialize() {
+        StringBuilder text = new StringBuilder();
+        counts.forEach((index, count) -> {
+            if (!text.isEmpty()) {
+                text.append(',');
+            }
+            text.append(index).append(':').append(count);
+        });
+        return text.toString();
+    }
+
+    /**
+     * Read a histogram written by {@link #serialize()}; null or blank gives an empty histogram.
+     */
+    public static LatencyHistogram parse(String text) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (text == null || text.isBlank()) {
+            return histogram;
+        }
+        for (String entry : text.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid histogram entry: " + entry);
+            }
+            histogram.add(Integer.parseInt(entry.substring(0, separator).trim()),
+                    Long.parseLong(entry.substring(separator + 1).trim()));
+        }
+        return histogram;
+    }
+
+    private void add(int index, long count) {
+        if (count > 0) {
+            counts.merge(index, count, Long::sum);
+            total += count;
+        }
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int block = index / SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (block - 1);
+    }
+
+    private static long midpoint(int index) {
+        long width = index < SUB_BUCKETS ? 1 : 1L << (index / SUB_BUCKETS - 1);
+        return lowerBound(index) + (width - 1) / 2;
+    }
+}
@@ -0,0 +1,71 @@
+package com.demo.bpm.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keeps in-memory counters moved by committed deltas consistent with a recount from the
+ * database.
+ *
+ * A recount reads the tables from one snapshot and then replaces the counters. Deltas of
+ * transactions that commit while the recount runs are not in that snapshot, so the epoch
+ * remembers every delta applied from {@link #open()} on and replays them over the recounted
+ * values in {@link #close}. Applying a delta and installing a recount share one lock, so no
+ * delta is lost between the two or counted twice. Open the epoch right after the snapshot is
+ * taken (the first statement of a repeatable-read transaction); a transaction that committed just
+ * before it but is only applied afterwards is the one case still counted twice.
+ *
+ * @param <D> the delta type
+ */
+public final class RecountEpoch<D> {
+
+    private final Object lock = new Object();
+    // Deltas applied since the running recount took its snapshot; null when none runs
+    private List<D> pending;
+
+    /**
+     * Apply a committed delta through {@code target}, remembering it if a recount is running.
+     */
+    public void apply(D delta, Consumer<D> target) {
+        synchronized (lock) {
+            target.accept(delta);
+            if (pending != null) {
+                pending.add(delta);
+            }
+        }
+    }
+
+    /**
+     * Start remembering deltas; call once the recount snapshot has been taken.
+     */
+    public void open() {
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Install the recounted values and replay the deltas applied since {@link #open()} on top.
+     *
+     * @return the number of deltas replayed
+     */
+    public int close(Runnable install, Consumer<D> replay) {
+        synchronized (lock) {
+            List<D> deltas = pending != null ? pending : List.of();
+            pending = null;
+            install.run();
+            deltas.forEach(replay);
+            return deltas.size();
+        }
+    }
+
+    /**
+     * Stop remembering deltas without installing anything, e.g. after a failed recount.
+     */
+    public void abandon() {
+        synchronized (lock) {
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.demo.bpm.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical reads share one computation.
+ *
+ * The first caller for a key computes the value on its own thread; callers arriving with the same
+ * key while it runs wait for that result (or its exception) instead of computing it again. Nothing
+ * is kept once the computation finishes, unless a stale window is set: then a result younger than
+ * the window is returned straight away and, if no computation for the key is running, one is
+ * started on the revalidation executor so the next caller sees fresher data. Within the fresh
+ * period at the start of the window a result is returned without starting a revalidation, so
+ * steady traffic costs one computation per fresh period rather than one after another. A key is
+ * never computed more than once at a time.
+ *
+ * Only for idempotent reads whose result does not depend on who asks, and whose results are not
+ * modified by callers: every caller of a flight gets the same instance.
+ */
+@Slf4j
+public final class SingleFlight<K, V> {
+
+    private final long freshMs;
+    private final long staleWindowMs;
+    private final Executor revalidator;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Map<K, Result<V>> recent = new ConcurrentHashMap<>();
+    private final LongAdder computed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder servedStale = new LongAdder();
+    private final LongAdder servedFresh = new LongAdder();
+
+    public SingleFlight() {
+        this(0, 0, null);
+    }
+
+    public SingleFlight(long staleWindowMs, Executor revalidator) {
+        this(0, staleWindowMs, revalidator);
+    }
+
+    /**
+     * @param freshMs       age below which a result is returned without revalidating it; at most
+     *                      the stale window
+     * @param staleWindowMs age below which a result is returned at all
+     */
+    public SingleFlight(long freshMs, long staleWindowMs, Executor revalidator) {
+        if (staleWindowMs > 0 && revalidator == null) {
+            throw new IllegalArgumentException("A stale window needs an executor to revalidate on");
+        }
+        this.staleWindowMs = Math.max(0, staleWindowMs);
+        this.freshMs = Math.min(Math.max(0, freshMs), this.staleWindowMs);
+        this.revalidator = revalidator;
+    }
+
+    public V get(K key, Supplier<V> loader) {
+        if (staleWindowMs > 0) {
+            Result<V> last = recent.get(key);
+            long age = last != null ? System.currentTimeMillis() - last.loadedAt() : Long.MAX_VALUE;
+            if (age < freshMs) {
+                servedFresh.increment();
+                return last.value();
+            }
+            if (age < staleWindowMs) {
+                servedStale.increment();
+                revalidate(key, loader, last.value());
+                return last.value();
+            }
+        }
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        return compute(key, loader, flight);
+    }
+
+    private void revalidate(K key, Supplier<V> loader, V stale) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, flight) != null) {
+            return;
+        }
+        try {
+            revalidator.execute(() -> {
+                try {
+                    compute(key, loader, flight);
+                } catch (RuntimeException | Error e) {
+                    // The stale result stays until the window closes; the next caller then computes in line
+                    log.warn("Revalidation of {} failed, serving the stale result meanwhile", key, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // No refresh this time; anyone who joined the flight meanwhile gets the stale result too
+            inFlight.remove(key, flight);
+            flight.complete(stale);
+        }
+    }
+
+    private V compute(K key, Supplier<V> loader, CompletableFuture<V> flight) {
+        computed.increment();
+        try {
+            V value = loader.get();
+            if (staleWindowMs > 0) {
+                long now = System.currentTimeMillis();
+                recent.put(key, new Result<>(value, now));
+                // Drop results of keys nobody asked for within the window
+                recent.values().removeIf(result -> now - result.loadedAt() >= staleWindowMs);
+            }
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // Waiters see the exception the computing caller got
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Calls that ran the computation, in line or as a revalidation.
+     */
+    public long getComputed() {
+        return computed.sum();
+    }
+
+    /**
+     * Calls that waited for a computation another caller had started.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Calls answered from a result within the fresh period, without revalidating it.
+     */
+    public long getServedFresh() {
+        return servedFresh.sum();
+    }
+
+    /**
+     * Calls answered from a result within the stale window, past its fresh period.
+     */
+    public long getServedStale() {
+        return servedStale.sum();
+    }
+
+    public long getFreshMs() {
+        return freshMs;
+    }
+
+    public long getStaleWindowMs() {
+        return staleWindowMs;
+    }
+
+    private record Result<V>(V value, long loadedAt) {}
+}
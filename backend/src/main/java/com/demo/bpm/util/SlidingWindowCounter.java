@@ -0,0 +1,77 @@
+package com.demo.bpm.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event count over a sliding time window, e.g. process starts in the last five minutes.
+ *
+ * The window is a ring of equal time slots, each a LongAdder stamped with the slot it currently
+ * counts; a slot is reset the first time it is written after the window has moved past it. Adds
+ * never lock, and the sum covers the last {@code window} to within one slot. An add racing the
+ * reset of its slot can be lost, which is acceptable for a rate display.
+ */
+public final class SlidingWindowCounter {
+
+    private final long slotMs;
+    private final LongAdder[] counts;
+    private final AtomicLongArray slots;
+
+    public SlidingWindowCounter(long windowMs, int slotCount) {
+        if (windowMs < slotCount || slotCount < 1) {
+            throw new IllegalArgumentException("A window of " + windowMs + " ms cannot hold " + slotCount + " slots");
+        }
+        this.slotMs = windowMs / slotCount;
+        this.counts = new LongAdder[slotCount];
+        this.slots = new AtomicLongArray(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            counts[i] = new LongAdder();
+            slots.set(i, -1);
+        }
+    }
+
+    public long getWindowMs() {
+        return slotMs * counts.length;
+    }
+
+    /**
+     * Count {@code amount} events at {@code timeMs}; events older than the slot now held by
+     * their position in the ring are dropped.
+     */
+    public void add(long timeMs, long amount) {
+        long slot = timeMs / slotMs;
+        int index = (int) Math.floorMod(slot, (long) counts.length);
+        long current = slots.get(index);
+        if (current != slot) {
+            if (slot < current) {
+                return;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                counts[index].reset();
+            }
+        }
+        counts[index].add(amount);
+    }
+
+    /**
+     * Events counted in the window ending at {@code nowMs}.
+     */
+    public long sum(long nowMs) {
+        long newest = nowMs / slotMs;
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            long slot = slots.get(i);
+            if (slot > newest - counts.length && slot <= newest) {
+                total += counts[i].sum();
+            }
+        }
+        return total;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            slots.set(i, -1);
+            counts[i].reset();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.demo.bpm.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression for large text values stored in plain text columns.
+ *
+ * Compressed values carry a marker prefix followed by base64 so they stay valid text; anything
+ * without the prefix is returned unchanged on read, which keeps existing rows readable.
+ */
+@UtilityClass
+public class TextCompression {
+
+    public static final String MARKER = "~dfl1:";
+
+    /**
+     * Compress a value of at least {@code minLength} characters, if that makes it shorter.
+     * Values that happen to start with the marker are always encoded so they round-trip.
+     */
+    public static String compress(String value, int minLength) {
+        if (value == null) {
+            return null;
+        }
+        boolean looksCompressed = value.startsWith(MARKER);
+        if (value.length() < minLength && !looksCompressed) {
+            return value;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(value.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, value.length() / 4));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            String encoded = MARKER + Base64.getEncoder().encodeToString(out.toByteArray());
+            return encoded.length() < value.length() || looksCompressed ? encoded : value;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Return the original text of a value written by {@link #compress}; other values pass through.
+     */
+    public static String decompress(String value) {
+        if (!isCompressed(value)) {
+            return value;
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(Base64.getDecoder().decode(value.substring(MARKER.length())));
+            ByteArrayOutputStream out = new ByteArrayOutputStream(value.length() * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    // Truncated payload: not something we wrote, treat it as plain text
+                    return value;
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException | DataFormatException e) {
+            return value;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public static boolean isCompressed(String value) {
+        return value != null && value.startsWith(MARKER);
+    }
+}
@@ -22,7 +22,7 @@ public class WorkflowVariableUtils {
             return new ArrayList<>((List<Map<String, Object>>) historyObj);
         }
         try {
-            return objectMapper.readValue((String) historyObj,
+            return objectMapper.readValue(TextCompression.decompress((String) historyObj),
                     new TypeReference<List<Map<String, Object>>>() {});
         } catch (JsonProcessingException e) {
             return new ArrayList<>();
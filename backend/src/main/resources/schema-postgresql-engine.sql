@@ -0,0 +1,34 @@
+-- Supporting indexes on Flowable engine tables for PostgreSQL
+-- The engine creates its own tables on first start, after schema-postgresql.sql has run, so this
+-- file is applied once the application is ready (see EngineIndexConfig). Every statement must
+-- be idempotent, and indexes are built CONCURRENTLY so engine writes go on during the build.
+
+-- ============================================
+-- 1. PROCESS SEARCH - keyset pagination over ACT_HI_PROCINST by (START_TIME_, ID_)
+-- ============================================
+-- One keyset per equality filter; status and time range filters run along the plain keyset
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_hi_procinst_start_id ON act_hi_procinst(start_time_, id_);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_hi_procinst_def_start_id ON act_hi_procinst(proc_def_id_, start_time_, id_);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_hi_procinst_user_start_id ON act_hi_procinst(start_user_id_, start_time_, id_);
+-- text_pattern_ops lets LIKE 'prefix%' use the index regardless of collation
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_hi_procinst_business_key_prefix ON act_hi_procinst(business_key_ text_pattern_ops);
+
+-- ============================================
+-- 2. MY PROCESSES - running process instances by initiator
+-- ============================================
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ru_execution_start_user ON act_ru_execution(start_user_id_, start_time_) WHERE parent_id_ IS NULL;
+
+-- ============================================
+-- 3. ANALYTICS - aggregates over finished tasks and processes by end time and definition
+-- ============================================
+-- INCLUDE columns let the per-assignee and per-task aggregates run as index-only scans
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_hi_taskinst_end_time ON act_hi_taskinst(end_time_)
+    INCLUDE (assignee_, proc_def_id_, task_def_key_, duration_) WHERE end_time_ IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_hi_taskinst_def_end_time ON act_hi_taskinst(proc_def_id_, end_time_)
+    INCLUDE (assignee_, task_def_key_, duration_) WHERE end_time_ IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_hi_procinst_def_end_time ON act_hi_procinst(proc_def_id_, end_time_)
+    INCLUDE (duration_) WHERE end_time_ IS NOT NULL;
+-- Keyset order of the process mining job, and end time ranges of the rollups and the completion
+-- trend; activities are then read by ACT_IDX_HI_ACT_INST_PROCINST
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_hi_procinst_end_time_id ON act_hi_procinst(end_time_, id_)
+    WHERE end_time_ IS NOT NULL;
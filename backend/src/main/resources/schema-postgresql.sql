@@ -128,6 +128,8 @@ CREATE INDEX IF NOT EXISTS idx_document_process_instance ON document(process_ins
 CREATE INDEX IF NOT EXISTS idx_document_type ON document(type);
 CREATE INDEX IF NOT EXISTS idx_document_business_key ON document(business_key);
 CREATE INDEX IF NOT EXISTS idx_document_process_def_key ON document(process_definition_key);
+-- The change feed reads document_change (section 15); this index served its old updated_at watermark
+DROP INDEX IF EXISTS idx_document_updated_at_id;
 
 
 -- ============================================
@@ -299,12 +301,16 @@ CREATE TABLE IF NOT EXISTS process_config (
 
     document_type VARCHAR(100),
 
+    -- Days to keep history of finished instances, NULL = application default
+    history_retention_days INTEGER,
+
     -- Audit columns
     created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
 );
 
 CREATE INDEX IF NOT EXISTS idx_process_config_key ON process_config(process_definition_key);
+ALTER TABLE process_config ADD COLUMN IF NOT EXISTS history_retention_days INTEGER;
 
 
 -- ============================================
@@ -396,3 +402,224 @@ CREATE TABLE IF NOT EXISTS app_role_permissions (
     CONSTRAINT fk_role_permission_role FOREIGN KEY (role_name) REFERENCES app_roles(name) ON DELETE CASCADE,
     CONSTRAINT fk_role_permission_perm FOREIGN KEY (permission_name) REFERENCES app_permissions(name) ON DELETE CASCADE
 );
+
+-- ============================================
+-- 10. WORKFLOW_AUDIT_EVENT TABLE - Approvals, escalations and handoffs (append-only)
+-- ============================================
+CREATE TABLE IF NOT EXISTS workflow_audit_event (
+    id BIGSERIAL PRIMARY KEY,
+    event_id VARCHAR(36) NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    process_instance_id VARCHAR(64) NOT NULL,
+    task_id VARCHAR(64),
+    task_name VARCHAR(255),
+    actor_id VARCHAR(255),
+    target_user_id VARCHAR(255),
+    from_level VARCHAR(50),
+    to_level VARCHAR(50),
+    decision VARCHAR(50),
+    comments TEXT,
+    step_order INTEGER,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_workflow_audit_event_id UNIQUE (event_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_audit_event_process ON workflow_audit_event(process_instance_id, event_type, created_at);
+CREATE INDEX IF NOT EXISTS idx_audit_event_actor ON workflow_audit_event(actor_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_audit_event_type_time ON workflow_audit_event(event_type, created_at);
+
+-- ============================================
+-- 11. PROCESS_START_REQUEST TABLE - Queue of asynchronous process starts
+-- ============================================
+CREATE TABLE IF NOT EXISTS process_start_request (
+    id VARCHAR(36) PRIMARY KEY,
+    process_definition_key VARCHAR(255) NOT NULL,
+    business_key VARCHAR(255),
+    variables TEXT,
+    requested_by VARCHAR(255) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    process_instance_id VARCHAR(64),
+    error_message TEXT,
+    created_at TIMESTAMP NOT NULL,
+    claimed_at TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_start_request_status ON process_start_request(status, created_at);
+CREATE INDEX IF NOT EXISTS idx_start_request_user ON process_start_request(requested_by, created_at);
+
+-- ============================================
+-- 12. ANALYTICS ROLLUPS - Finished tasks and processes per hour and per day
+-- ============================================
+CREATE TABLE IF NOT EXISTS analytics_rollup_hourly (
+    id BIGSERIAL PRIMARY KEY,
+    kind VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    process_definition_key VARCHAR(255) NOT NULL,
+    task_definition_key VARCHAR(255) NOT NULL,
+    assignee VARCHAR(255) NOT NULL,
+    task_name VARCHAR(255),
+    item_count BIGINT NOT NULL,
+    duration_sum_ms BIGINT NOT NULL,
+    duration_min_ms BIGINT NOT NULL,
+    duration_max_ms BIGINT NOT NULL,
+    breach_count BIGINT NOT NULL,
+    bin_under_1h BIGINT NOT NULL,
+    bin_under_4h BIGINT NOT NULL,
+    bin_under_24h BIGINT NOT NULL,
+    bin_under_3d BIGINT NOT NULL,
+    bin_over_3d BIGINT NOT NULL,
+    duration_histogram TEXT,
+    CONSTRAINT uk_analytics_rollup_hourly UNIQUE (kind, bucket_start, process_definition_key, task_definition_key, assignee)
+);
+
+CREATE INDEX IF NOT EXISTS idx_analytics_rollup_hourly_bucket ON analytics_rollup_hourly(kind, bucket_start);
+CREATE INDEX IF NOT EXISTS idx_analytics_rollup_hourly_definition ON analytics_rollup_hourly(process_definition_key, kind, bucket_start);
+
+CREATE TABLE IF NOT EXISTS analytics_rollup_daily (
+    id BIGSERIAL PRIMARY KEY,
+    kind VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    process_definition_key VARCHAR(255) NOT NULL,
+    task_definition_key VARCHAR(255) NOT NULL,
+    assignee VARCHAR(255) NOT NULL,
+    task_name VARCHAR(255),
+    item_count BIGINT NOT NULL,
+    duration_sum_ms BIGINT NOT NULL,
+    duration_min_ms BIGINT NOT NULL,
+    duration_max_ms BIGINT NOT NULL,
+    breach_count BIGINT NOT NULL,
+    bin_under_1h BIGINT NOT NULL,
+    bin_under_4h BIGINT NOT NULL,
+    bin_under_24h BIGINT NOT NULL,
+    bin_under_3d BIGINT NOT NULL,
+    bin_over_3d BIGINT NOT NULL,
+    duration_histogram TEXT,
+    CONSTRAINT uk_analytics_rollup_daily UNIQUE (kind, bucket_start, process_definition_key, task_definition_key, assignee)
+);
+
+CREATE INDEX IF NOT EXISTS idx_analytics_rollup_daily_bucket ON analytics_rollup_daily(kind, bucket_start);
+CREATE INDEX IF NOT EXISTS idx_analytics_rollup_daily_definition ON analytics_rollup_daily(process_definition_key, kind, bucket_start);
+
+ALTER TABLE analytics_rollup_hourly ADD COLUMN IF NOT EXISTS duration_histogram TEXT;
+ALTER TABLE analytics_rollup_daily ADD COLUMN IF NOT EXISTS duration_histogram TEXT;
+
+-- Shortest and longest duration per bin, null while a bin is empty; buckets rolled up before
+-- these existed keep nulls until POST /api/analytics/rollups/backfill?rebuild=true
+ALTER TABLE analytics_rollup_hourly
+    ADD COLUMN IF NOT EXISTS bin_under_1h_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_1h_max_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_4h_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_4h_max_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_24h_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_24h_max_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_3d_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_3d_max_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_over_3d_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_over_3d_max_ms BIGINT;
+
+ALTER TABLE analytics_rollup_daily
+    ADD COLUMN IF NOT EXISTS bin_under_1h_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_1h_max_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_4h_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_4h_max_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_24h_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_24h_max_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_3d_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_under_3d_max_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_over_3d_min_ms BIGINT,
+    ADD COLUMN IF NOT EXISTS bin_over_3d_max_ms BIGINT;
+
+CREATE TABLE IF NOT EXISTS analytics_watermark (
+    name VARCHAR(64) PRIMARY KEY,
+    watermark TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+ALTER TABLE analytics_watermark ADD COLUMN IF NOT EXISTS cursor_id VARCHAR(64);
+
+-- ============================================
+-- 13. PROCESS MINING - Trace variants and directly-follows graph per definition
+-- ============================================
+CREATE TABLE IF NOT EXISTS process_variant (
+    id BIGSERIAL PRIMARY KEY,
+    process_definition_key VARCHAR(255) NOT NULL,
+    variant_hash VARCHAR(64) NOT NULL,
+    trace TEXT NOT NULL,
+    activity_count INTEGER NOT NULL,
+    instance_count BIGINT NOT NULL,
+    duration_sum_ms BIGINT NOT NULL,
+    first_seen TIMESTAMP NOT NULL,
+    last_seen TIMESTAMP NOT NULL,
+    CONSTRAINT uk_process_variant UNIQUE (process_definition_key, variant_hash)
+);
+
+CREATE INDEX IF NOT EXISTS idx_process_variant_definition ON process_variant(process_definition_key, instance_count);
+
+CREATE TABLE IF NOT EXISTS process_transition (
+    id BIGSERIAL PRIMARY KEY,
+    process_definition_key VARCHAR(255) NOT NULL,
+    source_activity VARCHAR(255) NOT NULL,
+    target_activity VARCHAR(255) NOT NULL,
+    transition_count BIGINT NOT NULL,
+    duration_sum_ms BIGINT NOT NULL,
+    CONSTRAINT uk_process_transition UNIQUE (process_definition_key, source_activity, target_activity)
+);
+
+-- Instances already mined, kept while they ended inside the overlap window the job re-reads
+CREATE TABLE IF NOT EXISTS process_mining_instance (
+    process_instance_id VARCHAR(64) PRIMARY KEY,
+    end_time TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_process_mining_instance_end ON process_mining_instance(end_time);
+
+-- ============================================
+-- 14. SLA_DEADLINE TABLE - Warning and breach instants of tasks and process instances
+-- ============================================
+CREATE TABLE IF NOT EXISTS sla_deadline (
+    id BIGSERIAL PRIMARY KEY,
+    sla_id VARCHAR(64) NOT NULL,
+    target_type VARCHAR(10) NOT NULL,
+    target_key VARCHAR(255) NOT NULL,
+    target_id VARCHAR(64) NOT NULL,
+    target_name VARCHAR(255),
+    process_instance_id VARCHAR(64),
+    started_at TIMESTAMP NOT NULL,
+    warn_at TIMESTAMP,
+    breach_at TIMESTAMP NOT NULL,
+    due_at TIMESTAMP,
+    warning_sent_at TIMESTAMP,
+    breach_sent_at TIMESTAMP,
+    completed_at TIMESTAMP,
+    met BOOLEAN,
+    margin_ms BIGINT,
+    CONSTRAINT uk_sla_deadline_target UNIQUE (target_type, target_id, sla_id)
+);
+
+-- Only rows with something left to fire are in the scheduler's index
+CREATE INDEX IF NOT EXISTS idx_sla_deadline_due ON sla_deadline(due_at) WHERE due_at IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_sla_deadline_target ON sla_deadline(target_type, target_id);
+-- SLA statistics: running rows (completed_at IS NULL) and recent outcomes per target type
+CREATE INDEX IF NOT EXISTS idx_sla_deadline_outcome ON sla_deadline(target_type, completed_at);
+
+-- ============================================
+-- 15. DOCUMENT_CHANGE TABLE - Commit-ordered change log behind the business data change feed
+-- ============================================
+CREATE TABLE IF NOT EXISTS document_change (
+    seq BIGINT PRIMARY KEY,
+    document_id BIGINT NOT NULL,
+    process_instance_id VARCHAR(64) NOT NULL,
+    process_definition_key VARCHAR(255),
+    document_type VARCHAR(100) NOT NULL,
+    deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    changed_at TIMESTAMP NOT NULL
+);
+
+-- Last seq handed out; writers lock the row from the increment to their commit. Created, together
+-- with the initial log of existing documents, by DocumentChangeRecorder on first start
+CREATE TABLE IF NOT EXISTS change_feed_sequence (
+    name VARCHAR(64) PRIMARY KEY,
+    last_seq BIGINT NOT NULL
+);
@@ -1,7 +1,11 @@
 package com.demo.bpm.controller;
 
 import com.demo.bpm.exception.GlobalExceptionHandler;
+import com.demo.bpm.service.BulkImportService;
 import com.demo.bpm.service.BusinessTableService;
+import com.demo.bpm.service.ChangeFeedService;
+import com.demo.bpm.service.ColumnMappingCompactionService;
+import com.demo.bpm.service.GridQueryService;
 import com.demo.bpm.service.ProcessService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +35,18 @@ class BusinessTableControllerValidationTest {
     @MockBean
     private ProcessService processService;
 
+    @MockBean
+    private BulkImportService bulkImportService;
+
+    @MockBean
+    private ChangeFeedService changeFeedService;
+
+    @MockBean
+    private GridQueryService gridQueryService;
+
+    @MockBean
+    private ColumnMappingCompactionService columnMappingCompactionService;
+
     @Test
     @WithMockUser
     void saveDraft_requiresProcessDefinitionKey() throws Exception {
@@ -49,6 +49,21 @@ class ProcessControllerTest {
     @MockBean
     private com.demo.bpm.service.ExportService exportService;
 
+    @MockBean
+    private com.demo.bpm.service.InitiatorBackfillService initiatorBackfillService;
+
+    @MockBean
+    private com.demo.bpm.service.BulkImportService bulkImportService;
+
+    @MockBean
+    private com.demo.bpm.service.ProcessStartQueueService processStartQueueService;
+
+    @MockBean
+    private com.demo.bpm.service.HistoryRetentionService historyRetentionService;
+
+    @MockBean
+    private com.demo.bpm.service.ActivityHeatmapService activityHeatmapService;
+
     @Test
     @WithMockUser
     void getProcessById_whenProcessExists_shouldReturnProcess() throws Exception {
@@ -2,7 +2,9 @@ package com.demo.bpm.controller;
 
 import com.demo.bpm.dto.EscalationRequest;
 import com.demo.bpm.exception.GlobalExceptionHandler;
+import com.demo.bpm.service.AuditEventMigrationService;
 import com.demo.bpm.service.DashboardService;
+import com.demo.bpm.service.ProcessSearchService;
 import com.demo.bpm.service.WorkflowHistoryService;
 import com.demo.bpm.service.WorkflowService;
 import org.junit.jupiter.api.Test;
@@ -38,6 +40,12 @@ class WorkflowControllerValidationTest {
     @MockBean
     private DashboardService dashboardService;
 
+    @MockBean
+    private ProcessSearchService processSearchService;
+
+    @MockBean
+    private AuditEventMigrationService auditEventMigrationService;
+
     @Test
     @WithMockUser
     void addComment_requiresMessage() throws Exception {
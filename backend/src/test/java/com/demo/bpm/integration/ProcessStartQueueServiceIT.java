@@ -0,0 +1,66 @@
+package com.demo.bpm.integration;
+
+import com.demo.bpm.entity.ProcessStartRequest.Status;
+import com.demo.bpm.repository.ProcessStartRequestRepository;
+import com.demo.bpm.service.ProcessStartQueueService;
+import org.flowable.engine.HistoryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Not transactional like BaseIntegrationTest: the queue worker commits or rolls back on its own,
+ * so the seed data, which expects a test transaction around it, is left out.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ProcessStartQueueServiceIT {
+
+    @Autowired
+    private ProcessStartQueueService processStartQueueService;
+
+    @Autowired
+    private HistoryService historyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean(name = "seedData")
+    private CommandLineRunner seedData;
+
+    @SpyBean
+    private ProcessStartRequestRepository repository;
+
+    @Test
+    void queuedStart_whenClaimIsLost_shouldLeaveNeitherInstanceNorDocument() {
+        // Another node requeued the request while it was starting: recording STARTED matches no row
+        doReturn(0).when(repository).complete(anyString(), anyInt(), eq(Status.RUNNING), eq(Status.STARTED),
+                anyString(), any(), any());
+
+        processStartQueueService.enqueue("leave-request", "LOST-CLAIM-1",
+                Map.of("leaveType", "annual", "days", 2), "user1");
+
+        verify(repository, timeout(10_000)).complete(anyString(), anyInt(), eq(Status.RUNNING), eq(Status.STARTED),
+                anyString(), any(), any());
+        assertThat(historyService.createHistoricProcessInstanceQuery()
+                .processInstanceBusinessKey("LOST-CLAIM-1").count()).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM document WHERE business_key = ?", Long.class, "LOST-CLAIM-1")).isZero();
+    }
+}
@@ -0,0 +1,108 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ActivityHeatmapDTO;
+import com.demo.bpm.exception.ResourceNotFoundException;
+import com.demo.bpm.service.helpers.SingleFlightRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flowable.bpmn.model.BpmnModel;
+import org.flowable.bpmn.model.Process;
+import org.flowable.bpmn.model.UserTask;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.engine.repository.ProcessDefinitionQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActivityHeatmapServiceTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private RepositoryService repositoryService;
+    @Mock
+    private ProcessDefinitionQuery definitionQuery;
+
+    @Spy
+    private SingleFlightRegistry singleFlights = new SingleFlightRegistry(new SimpleMeterRegistry(), new MockEnvironment());
+
+    @InjectMocks
+    private ActivityHeatmapService heatmapService;
+
+    @Test
+    void getHeatmap_GroupsTokensPerActivityAndCachesWithinTtl() throws Exception {
+        // Arrange
+        ProcessDefinition definition = mock(ProcessDefinition.class);
+        when(definition.getKey()).thenReturn("purchase-request");
+        when(repositoryService.createProcessDefinitionQuery()).thenReturn(definitionQuery);
+        when(definitionQuery.processDefinitionId("pr:1:1")).thenReturn(definitionQuery);
+        when(definitionQuery.singleResult()).thenReturn(definition);
+        when(repositoryService.getBpmnModel("pr:1:1")).thenReturn(model("approve", "Approve"));
+
+        LocalDateTime oldest = LocalDateTime.now().minusHours(2);
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("ACT_ID_")).thenReturn("approve");
+        when(rs.getTimestamp("oldest")).thenReturn(Timestamp.valueOf(oldest));
+        when(rs.getDouble("avg_since")).thenReturn((double) oldest.plusHours(1).toEpochSecond(ZoneOffset.UTC));
+        when(rs.wasNull()).thenReturn(false);
+        when(rs.getLong("tokens")).thenReturn(3L);
+        when(rs.getLong("unassigned")).thenReturn(2L);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+
+        // Act
+        ActivityHeatmapDTO heatmap = heatmapService.getHeatmap("pr:1:1");
+        ActivityHeatmapDTO again = heatmapService.getHeatmap("pr:1:1");
+
+        // Assert
+        assertSame(heatmap, again);
+        verify(jdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        assertEquals(3, heatmap.getTotalTokens());
+        ActivityHeatmapDTO.ActivityHeat approve = heatmap.getActivities().get(0);
+        assertEquals("Approve", approve.getActivityName());
+        assertEquals(2, approve.getUnassignedTasks());
+        assertEquals(7200, approve.getOldestAgeSeconds(), 5);
+        assertEquals(3600, approve.getAvgAgeSeconds(), 5);
+    }
+
+    @Test
+    void getHeatmap_UnknownDefinitionIsNotFound() {
+        when(repositoryService.createProcessDefinitionQuery()).thenReturn(definitionQuery);
+        when(definitionQuery.processDefinitionId("missing:1:1")).thenReturn(definitionQuery);
+        when(definitionQuery.singleResult()).thenReturn(null);
+
+        assertThrows(ResourceNotFoundException.class, () -> heatmapService.getHeatmap("missing:1:1"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static BpmnModel model(String activityId, String name) {
+        UserTask task = new UserTask();
+        task.setId(activityId);
+        task.setName(name);
+        Process process = new Process();
+        process.addFlowElement(task);
+        BpmnModel model = new BpmnModel();
+        model.addProcess(process);
+        return model;
+    }
+}
@@ -0,0 +1,207 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.AnalyticsFilter;
+import com.demo.bpm.dto.AnalyticsRollupReportDTO;
+import com.demo.bpm.entity.AnalyticsRollup.Kind;
+import com.demo.bpm.repository.SLARepository;
+import com.demo.bpm.service.helpers.HistoryWatermarks;
+import com.demo.bpm.service.helpers.HistoryWatermarks.Position;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AnalyticsRollupServiceTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private SLARepository slaRepository;
+
+    private AnalyticsRollupService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new AnalyticsRollupService(jdbcTemplate, transactionTemplate, transactionManager, slaRepository,
+                new HistoryWatermarks(jdbcTemplate, transactionTemplate));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(mock(TransactionStatus.class)));
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(slaRepository.findAll()).thenReturn(List.of());
+    }
+
+    @Test
+    void refresh_StopsWhenNoHistoryEndedAfterWatermark() {
+        // Arrange
+        Timestamp watermark = Timestamp.valueOf(LocalDateTime.of(2024, 5, 1, 12, 0));
+        when(jdbcTemplate.queryForObject(contains("FOR UPDATE"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(new Position(watermark.toLocalDateTime(), ""));
+        when(jdbcTemplate.queryForList(endsWith("WHERE name = :name"), any(SqlParameterSource.class), eq(Timestamp.class)))
+                .thenReturn(List.of(watermark));
+
+        // Act
+        AnalyticsRollupReportDTO report = service.refresh(10);
+
+        // Assert
+        assertTrue(report.isComplete());
+        assertEquals(0, report.getChunks());
+        assertEquals(watermark.toLocalDateTime(), report.getWatermark());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(SqlParameterSource[].class));
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE analytics_watermark"), any(SqlParameterSource.class));
+    }
+
+    @Test
+    void refresh_RecomputesTheOverlapWindowBelowTheWatermark() throws Exception {
+        // Arrange: a process that ended before the watermark but committed after the last run
+        Timestamp watermark = Timestamp.valueOf(LocalDateTime.of(2024, 5, 1, 12, 0));
+        when(jdbcTemplate.queryForObject(contains("FOR UPDATE"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(new Position(watermark.toLocalDateTime(), ""));
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(Timestamp.class)))
+                .thenReturn(List.of(watermark));
+        ResultSet late = mock(ResultSet.class);
+        when(late.getString("DEF_KEY")).thenReturn("purchase-request");
+        when(late.getTimestamp("END_TIME")).thenReturn(Timestamp.valueOf(LocalDateTime.of(2024, 5, 1, 11, 45)));
+        when(late.getLong("DURATION")).thenReturn(90_000L);
+        doAnswer(invocation -> {
+            invocation.getArgument(2, RowCallbackHandler.class).processRow(late);
+            return null;
+        }).when(jdbcTemplate).query(contains("FROM ACT_HI_PROCINST P"), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+
+        // Act
+        AnalyticsRollupReportDTO report = service.refresh(10);
+
+        // Assert: the hours of the overlap are replaced, not added to, and the watermark stays
+        assertEquals(1, report.getHistoryRowsRead());
+        assertEquals(0, report.getChunks());
+        ArgumentCaptor<SqlParameterSource> deleted = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).update(startsWith("DELETE FROM analytics_rollup_hourly WHERE"), deleted.capture());
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 5, 1, 11, 0)), deleted.getValue().getValue("first"));
+        assertEquals(watermark, deleted.getValue().getValue("last"));
+        ArgumentCaptor<SqlParameterSource[]> inserted = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO analytics_rollup_hourly"), inserted.capture());
+        assertEquals(1, inserted.getValue().length);
+        assertEquals(1L, inserted.getValue()[0].getValue("count"));
+        assertEquals(90_000L, inserted.getValue()[0].getValue("binMin0"));
+        assertNull(inserted.getValue()[0].getValue("binMin1"));
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE analytics_watermark"), any(SqlParameterSource.class));
+    }
+
+    @Test
+    void rebuild_ClearsRollupsAndStartsFromTheBeginning() {
+        // Arrange: no watermark row yet and no history
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(Timestamp.class)))
+                .thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(contains("FOR UPDATE"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(new Position(HistoryWatermarks.BEGINNING, ""));
+
+        // Act
+        AnalyticsRollupReportDTO report = service.rebuild(10);
+
+        // Assert
+        assertTrue(report.isRebuilt());
+        assertTrue(report.isComplete());
+        verify(jdbcTemplate).update(eq("DELETE FROM analytics_rollup_hourly"), any(SqlParameterSource.class));
+        verify(jdbcTemplate).update(eq("DELETE FROM analytics_rollup_daily"), any(SqlParameterSource.class));
+        verify(jdbcTemplate).update(startsWith("INSERT INTO analytics_watermark"), any(SqlParameterSource.class));
+        verify(jdbcTemplate, never()).update(startsWith("DELETE FROM analytics_watermark"), any(SqlParameterSource.class));
+    }
+
+    @Test
+    void refresh_GoesOnWhenAnotherNodeCreatedTheWatermark() {
+        // Arrange: both nodes found no row; this one loses the insert
+        Timestamp watermark = Timestamp.valueOf(LocalDateTime.of(2024, 5, 1, 12, 0));
+        doThrow(new DuplicateKeyException("analytics_watermark_pkey"))
+                .doAnswer(invocation -> {
+                    invocation.getArgument(0, Consumer.class).accept(mock(TransactionStatus.class));
+                    return null;
+                }).when(transactionTemplate).executeWithoutResult(any());
+        when(jdbcTemplate.queryForObject(contains("FOR UPDATE"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(new Position(watermark.toLocalDateTime(), ""));
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(Timestamp.class)))
+                .thenReturn(List.of(watermark));
+
+        // Act
+        AnalyticsRollupReportDTO report = service.refresh(10);
+
+        // Assert
+        assertTrue(report.isComplete());
+        assertEquals(watermark.toLocalDateTime(), report.getWatermark());
+    }
+
+    @Test
+    void aggregate_ReadsWatermarkRollupsAndTailFromOneSnapshot() {
+        // Arrange
+        Timestamp watermark = Timestamp.valueOf(LocalDateTime.of(2024, 5, 1, 12, 0));
+        when(jdbcTemplate.queryForList(endsWith("WHERE name = :name"), any(SqlParameterSource.class), eq(Timestamp.class)))
+                .thenReturn(List.of(watermark));
+        AnalyticsFilter filter = AnalyticsFilter.builder().from(LocalDateTime.of(2024, 4, 1, 0, 0)).build();
+
+        // Act
+        service.aggregate(Kind.TASK, filter);
+
+        // Assert
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        InOrder inOrder = inOrder(transactionManager, jdbcTemplate);
+        inOrder.verify(transactionManager).getTransaction(definition.capture());
+        inOrder.verify(jdbcTemplate).queryForList(endsWith("WHERE name = :name"), any(SqlParameterSource.class),
+                eq(Timestamp.class));
+        inOrder.verify(jdbcTemplate).query(contains("FROM analytics_rollup_daily"), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+        inOrder.verify(jdbcTemplate).query(contains("END_TIME_ > :after"), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+        inOrder.verify(transactionManager).commit(any());
+        assertEquals(TransactionDefinition.ISOLATION_REPEATABLE_READ, definition.getValue().getIsolationLevel());
+        assertTrue(definition.getValue().isReadOnly());
+    }
+
+    @Test
+    void stats_MergeAddsCountsAndKeepsExtremes() {
+        AnalyticsRollupService.Stats total = new AnalyticsRollupService.Stats();
+        total.merge(new AnalyticsRollupService.Stats("Approve", 2, 3_000, 1_000, 2_000, 1, new long[]{2, 0, 0, 0, 0}));
+        total.merge(new AnalyticsRollupService.Stats(null, 1, 5_000_000, 5_000_000, 5_000_000, 0, new long[]{0, 1, 0, 0, 0}));
+
+        assertEquals(3, total.getCount());
+        assertEquals(1_000, total.getMinMs());
+        assertEquals(5_000_000, total.getMaxMs());
+        assertEquals(1, total.getBreaches());
+        assertEquals(2, total.getBin(0));
+        assertEquals(1, total.getBin(1));
+        assertEquals("Approve", total.getTaskName());
+    }
+}
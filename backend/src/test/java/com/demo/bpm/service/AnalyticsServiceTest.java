@@ -1,68 +1,243 @@
 package com.demo.bpm.service;
 
-import org.flowable.engine.HistoryService;
-import org.flowable.engine.history.HistoricProcessInstance;
-import org.flowable.engine.history.HistoricProcessInstanceQuery;
-import org.junit.jupiter.api.BeforeEach;
+import com.demo.bpm.dto.AnalyticsFilter;
+import com.demo.bpm.entity.AnalyticsRollup.Kind;
+import com.demo.bpm.service.AnalyticsRollupService.GroupKey;
+import com.demo.bpm.service.helpers.DatabaseDialect;
+import com.demo.bpm.service.helpers.SingleFlightRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.mock.env.MockEnvironment;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
 import java.time.Instant;
-import java.util.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AnalyticsServiceTest {
 
     @Mock
-    private HistoryService historyService;
+    private NamedParameterJdbcTemplate jdbcTemplate;
 
     @Mock
-    private HistoricProcessInstanceQuery historicProcessInstanceQuery;
+    private AnalyticsRollupService rollupService;
+
+    @Mock
+    private DatabaseDialect databaseDialect;
+
+    @Spy
+    private SingleFlightRegistry singleFlights = new SingleFlightRegistry(new SimpleMeterRegistry(), new MockEnvironment());
 
     @InjectMocks
     private AnalyticsService analyticsService;
 
-    @BeforeEach
-    void setUp() {
-        lenient().when(historyService.createHistoricProcessInstanceQuery()).thenReturn(historicProcessInstanceQuery);
+    @Test
+    void getProcessCompletionTrend_shouldFoldHourlyCountsIntoEveryDay() throws Exception {
+        // Arrange
+        Instant now = Instant.now();
+        ResultSet today = slot(now, 3);
+        ResultSet yesterday = slot(now.minus(1, ChronoUnit.DAYS), 2);
+        ResultSet outside = slot(now.minus(30, ChronoUnit.DAYS), 9);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (ResultSet rs : List.of(today, yesterday, outside)) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+
+        // Act
+        List<AnalyticsService.TrendMetric> result = analyticsService.getProcessCompletionTrend(7, "day", "UTC");
+
+        // Assert
+        assertEquals(7, result.size());
+        assertEquals(LocalDate.ofInstant(now, ZoneOffset.UTC).toString(), result.get(6).getDate());
+        assertEquals(3, result.get(6).getCount());
+        assertEquals(2, result.get(5).getCount());
+        assertEquals(5, result.stream().mapToLong(AnalyticsService.TrendMetric::getCount).sum());
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        assertTrue(sql.getValue().contains("GROUP BY DATE_TRUNC('hour', "));
     }
 
     @Test
-    void getProcessCompletionTrend_shouldReturnTrendMetrics() {
+    void getProcessCompletionTrend_shouldCountWeeksInTheDatabaseOnPostgres() throws Exception {
+        // Arrange: PostgreSQL returns one row per week, as wall time in the requested zone
+        ZoneId zone = ZoneOffset.ofHours(5);
+        LocalDate thisWeek = LocalDate.now(zone).with(DayOfWeek.MONDAY);
+        when(databaseDialect.isPostgres()).thenReturn(true);
+        ResultSet current = week(thisWeek, 4);
+        ResultSet previous = week(thisWeek.minusWeeks(1), 6);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(current);
+            handler.processRow(previous);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+
+        // Act
+        List<AnalyticsService.TrendMetric> result = analyticsService.getProcessCompletionTrend(28, "week", "+05:00");
+
+        // Assert
+        assertEquals(4, result.size());
+        assertEquals(thisWeek.toString(), result.get(3).getDate());
+        assertEquals(4, result.get(3).getCount());
+        assertEquals(6, result.get(2).getCount());
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SqlParameterSource> params = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).query(sql.capture(), params.capture(), any(RowCallbackHandler.class));
+        assertTrue(sql.getValue().startsWith(
+                "SELECT DATE_TRUNC('week', (END_TIME_ AT TIME ZONE :serverZone) AT TIME ZONE :zone) AS bucket"));
+        assertTrue(sql.getValue().endsWith("GROUP BY 1"));
+        // PostgreSQL reads fixed offsets POSIX-style, east of Greenwich as negative
+        assertEquals("-05:00", params.getValue().getValue("zone"));
+    }
+
+    @Test
+    void getProcessCompletionTrend_shouldRejectBadParameters() {
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getProcessCompletionTrend(7, "month", null));
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getProcessCompletionTrend(7, "DAY", "Mars/Olympus"));
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getProcessCompletionTrend(365, "HOUR", null));
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getProcessCompletionTrend(0, "WEEK", null));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void getUserPerformanceStats_shouldMergeRollupGroupsPerAssignee() {
         // Arrange
-        when(historicProcessInstanceQuery.finished()).thenReturn(historicProcessInstanceQuery);
-        when(historicProcessInstanceQuery.finishedAfter(any(Date.class))).thenReturn(historicProcessInstanceQuery);
-        when(historicProcessInstanceQuery.orderByProcessInstanceEndTime()).thenReturn(historicProcessInstanceQuery);
-        when(historicProcessInstanceQuery.asc()).thenReturn(historicProcessInstanceQuery);
+        AnalyticsFilter filter = AnalyticsFilter.builder().processDefinitionKey("purchase-request").build();
+        when(rollupService.aggregate(Kind.TASK, filter)).thenReturn(Map.of(
+                new GroupKey(Kind.TASK, "purchase-request", "approve", "alice"), stats(3, 3 * 3_600_000L, 0),
+                new GroupKey(Kind.TASK, "purchase-request", "review", "alice"), stats(1, 7_200_000L, 0),
+                new GroupKey(Kind.TASK, "purchase-request", "review", "bob"), stats(2, 0, 0),
+                new GroupKey(Kind.TASK, "purchase-request", "review", ""), stats(9, 0, 0)));
 
-        HistoricProcessInstance instance1 = mock(HistoricProcessInstance.class);
-        // Today
-        when(instance1.getEndTime()).thenReturn(Date.from(Instant.now()));
+        // Act
+        List<AnalyticsService.UserPerformanceMetric> result = analyticsService.getUserPerformanceStats(filter);
 
-        HistoricProcessInstance instance2 = mock(HistoricProcessInstance.class);
-        // Yesterday
-        when(instance2.getEndTime()).thenReturn(Date.from(Instant.now().minusSeconds(86400)));
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals("alice", result.get(0).getUserId());
+        assertEquals(4, result.get(0).getTasksCompleted());
+        assertEquals(1.25, result.get(0).getAvgDurationHours(), 1e-9);
+        verifyNoInteractions(jdbcTemplate);
+    }
 
-        when(historicProcessInstanceQuery.list()).thenReturn(List.of(instance1, instance2));
+    @Test
+    void getBottlenecks_shouldReportBreachesOfTaskDefinitionsWithEnoughSamples() {
+        // Arrange
+        AnalyticsFilter filter = new AnalyticsFilter();
+        when(rollupService.aggregate(Kind.TASK, filter, true)).thenReturn(Map.of(
+                new GroupKey(Kind.TASK, "purchase-request", "approve", "alice"), stats(4, 4 * 7_200_000L, 2),
+                new GroupKey(Kind.TASK, "purchase-request", "approve", "bob"), stats(4, 4 * 3_600_000L, 1),
+                new GroupKey(Kind.TASK, "purchase-request", "review", "bob"), stats(3, 0, 0)));
 
         // Act
-        List<AnalyticsService.TrendMetric> result = analyticsService.getProcessCompletionTrend(7);
+        List<AnalyticsService.BottleneckMetric> result = analyticsService.getBottlenecks(filter);
 
         // Assert
-        assertFalse(result.isEmpty());
-        assertEquals(7, result.size());
+        assertEquals(1, result.size());
+        assertEquals("approve", result.get(0).getTaskDefinitionKey());
+        assertEquals(8, result.get(0).getTotalInstances());
+        assertEquals(3, result.get(0).getSlowInstanceCount());
+        assertEquals(1.5, result.get(0).getAvgDurationHours(), 1e-9);
+    }
+
+    @Test
+    void getProcessDurationDistribution_shouldReturnEveryBinInOrder() {
+        // Arrange
+        when(rollupService.aggregate(eq(Kind.PROCESS), any())).thenReturn(Map.of());
+
+        // Act
+        List<AnalyticsService.DurationBin> result = analyticsService.getProcessDurationDistribution(new AnalyticsFilter());
+
+        // Assert
+        assertEquals(List.of("< 1h", "1h - 4h", "4h - 24h", "1d - 3d", "> 3d"),
+                result.stream().map(AnalyticsService.DurationBin::getLabel).toList());
+        assertEquals(0, result.stream().mapToLong(AnalyticsService.DurationBin::getCount).sum());
+    }
+
+    @Test
+    void getLatencyPercentiles_shouldMergeHistogramsAcrossAssignees() {
+        // Arrange
+        AnalyticsFilter filter = new AnalyticsFilter();
+        AnalyticsRollupService.Stats alice = timed(100, 200, 300, 400, 500);
+        AnalyticsRollupService.Stats bob = timed(600, 700, 800, 900, 100_000);
+        AnalyticsRollupService.Stats quick = timed(10, 20);
+        when(rollupService.aggregate(Kind.TASK, filter, true)).thenReturn(Map.of(
+                new GroupKey(Kind.TASK, "purchase-request", "approve", "alice"), alice,
+                new GroupKey(Kind.TASK, "purchase-request", "approve", "bob"), bob,
+                new GroupKey(Kind.TASK, "purchase-request", "review", "alice"), quick));
+
+        // Act
+        List<AnalyticsService.LatencyPercentiles> result = analyticsService.getLatencyPercentiles(Kind.TASK, filter);
+
+        // Assert
+        assertEquals(2, result.size());
+        AnalyticsService.LatencyPercentiles approve = result.get(0);
+        assertEquals("approve", approve.getActivityId());
+        assertEquals(10, approve.getCount());
+        assertEquals(100, approve.getMinMs());
+        assertEquals(100_000, approve.getMaxMs());
+        assertEquals(500, approve.getP50Ms(), 500 / 16.0);
+        assertEquals(100_000, approve.getP99Ms(), 100_000 / 16.0);
+        assertEquals("review", result.get(1).getActivityId());
+        assertEquals(20, result.get(1).getP99Ms());
+    }
+
+    private static ResultSet slot(Instant time, long completed) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getTimestamp("slot")).thenReturn(Timestamp.valueOf(
+                LocalDateTime.ofInstant(time, ZoneId.systemDefault()).truncatedTo(ChronoUnit.HOURS)));
+        when(rs.getLong("completed")).thenReturn(completed);
+        return rs;
+    }
+
+    private static ResultSet week(LocalDate monday, long completed) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getTimestamp("bucket")).thenReturn(Timestamp.valueOf(monday.atStartOfDay()));
+        when(rs.getLong("completed")).thenReturn(completed);
+        return rs;
+    }
+
+    private static AnalyticsRollupService.Stats timed(long... durationsMs) {
+        AnalyticsRollupService.Stats stats = new AnalyticsRollupService.Stats(null, durationsMs.length,
+                Arrays.stream(durationsMs).sum(), Arrays.stream(durationsMs).min().orElse(0),
+                Arrays.stream(durationsMs).max().orElse(0), 0, new long[5]);
+        for (long duration : durationsMs) {
+            stats.getHistogram().record(duration);
+        }
+        return stats;
+    }
 
-        // Verify we have at least 2 completions counted (might be in same day or different depending on run time)
-        long totalCount = result.stream().mapToLong(AnalyticsService.TrendMetric::getCount).sum();
-        assertEquals(2, totalCount);
+    private static AnalyticsRollupService.Stats stats(long count, long sumMs, long breaches) {
+        return new AnalyticsRollupService.Stats(null, count, sumMs, 0, 0, breaches, new long[5]);
     }
 }
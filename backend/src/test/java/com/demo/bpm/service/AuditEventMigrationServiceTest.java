@@ -0,0 +1,166 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.AuditImportReportDTO;
+import com.demo.bpm.entity.WorkflowAuditEvent;
+import com.demo.bpm.entity.WorkflowAuditEvent.EventType;
+import com.demo.bpm.repository.WorkflowAuditEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flowable.engine.HistoryService;
+import org.flowable.variable.api.history.HistoricVariableInstance;
+import org.flowable.variable.api.history.HistoricVariableInstanceQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AuditEventMigrationServiceTest {
+
+    private static final LocalDateTime UPDATED = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Mock
+    private HistoryService historyService;
+    @Mock
+    private AuditEventService auditEventService;
+    @Mock
+    private WorkflowAuditEventRepository repository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private AuditEventMigrationService migrationService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        migrationService = new AuditEventMigrationService(historyService, auditEventService, repository,
+                transactionTemplate, new ObjectMapper());
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(mock(TransactionStatus.class)));
+    }
+
+    @Test
+    void toEvents_MapsApprovalRecords() {
+        // Arrange: the second record has no id, step order or timestamp
+        Object value = List.of(
+                Map.of("id", "a-1", "taskId", "t1", "taskName", "Review", "approverId", "sup",
+                        "approverLevel", "SUPERVISOR", "decision", "APPROVED", "comments", "fine",
+                        "stepOrder", 4, "timestamp", "2024-04-30T09:15:00"),
+                Map.of("approverId", "mgr", "decision", "REJECTED"));
+
+        // Act
+        List<WorkflowAuditEvent> events = migrationService.toEvents("pi1", "approvalHistory", value, UPDATED);
+
+        // Assert
+        WorkflowAuditEvent first = events.get(0);
+        assertEquals("a-1", first.getEventId());
+        assertEquals(EventType.APPROVAL, first.getEventType());
+        assertEquals("pi1", first.getProcessInstanceId());
+        assertEquals("sup", first.getActorId());
+        assertEquals("SUPERVISOR", first.getFromLevel());
+        assertEquals("APPROVED", first.getDecision());
+        assertEquals(4, first.getStepOrder());
+        assertEquals(LocalDateTime.of(2024, 4, 30, 9, 15), first.getCreatedAt());
+
+        WorkflowAuditEvent second = events.get(1);
+        assertEquals(2, second.getStepOrder());
+        assertEquals(UPDATED, second.getCreatedAt());
+        // Derived ids are stable, so a repeated import or read recognises the record
+        assertEquals(second.getEventId(),
+                migrationService.toEvents("pi1", "approvalHistory", value, UPDATED).get(1).getEventId());
+        assertNotEquals(second.getEventId(),
+                migrationService.toEvents("pi2", "approvalHistory", value, UPDATED).get(1).getEventId());
+    }
+
+    @Test
+    void toEvents_MapsEscalationsAndHandoffsFromJson() throws Exception {
+        // Arrange: legacy variables may hold the list as JSON
+        String escalations = new ObjectMapper().writeValueAsString(List.of(
+                Map.of("id", "e-1", "type", "DE_ESCALATE", "fromUserId", "mgr", "fromLevel", "MANAGER",
+                        "toLevel", "SUPERVISOR", "reason", "back", "timestamp", "2024-04-30T10:00:00")));
+        Object handoffs = List.of(Map.of("fromUserId", "ann", "toUserId", "bob", "reason", "leave"));
+
+        // Act
+        WorkflowAuditEvent escalation = migrationService.toEvents("pi1", "escalationHistory", escalations, UPDATED).get(0);
+        WorkflowAuditEvent handoff = migrationService.toEvents("pi1", "handoffHistory", handoffs, UPDATED).get(0);
+
+        // Assert
+        assertEquals(EventType.DE_ESCALATE, escalation.getEventType());
+        assertEquals("mgr", escalation.getActorId());
+        assertEquals("SUPERVISOR", escalation.getToLevel());
+        assertEquals("back", escalation.getComments());
+        assertNull(escalation.getStepOrder());
+        assertEquals(EventType.HANDOFF, handoff.getEventType());
+        assertEquals("bob", handoff.getTargetUserId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importLegacyHistory_SkipsRecordsAlreadyInTheStore() {
+        // Arrange: two approvals, the first imported by an earlier run; no other legacy variables
+        HistoricVariableInstanceQuery query = mock(HistoricVariableInstanceQuery.class, RETURNS_SELF);
+        when(historyService.createHistoricVariableInstanceQuery()).thenReturn(query);
+        HistoricVariableInstance approvals = variable("pi1", List.of(
+                Map.of("id", "a-1", "approverId", "sup", "timestamp", "2024-04-30T09:00:00"),
+                Map.of("id", "a-2", "approverId", "mgr", "timestamp", "2024-04-30T10:00:00")));
+        when(query.listPage(anyInt(), anyInt())).thenReturn(List.of(approvals), List.of(), List.of());
+        when(repository.findExistingEventIds(anyCollection())).thenReturn(List.of("a-1"));
+
+        // Act
+        AuditImportReportDTO report = migrationService.importLegacyHistory(10);
+
+        // Assert
+        ArgumentCaptor<Collection<WorkflowAuditEvent>> appended = ArgumentCaptor.forClass(Collection.class);
+        verify(auditEventService).append(appended.capture());
+        assertEquals(List.of("a-2"), appended.getValue().stream().map(WorkflowAuditEvent::getEventId).toList());
+        assertEquals(1, report.getEventsImported());
+        assertEquals(1, report.getEventsSkipped());
+        assertEquals(1, report.getVariablesScanned());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importInstance_ImportsEveryLegacyVariableOfTheInstance() {
+        // Arrange
+        HistoricVariableInstanceQuery query = mock(HistoricVariableInstanceQuery.class, RETURNS_SELF);
+        when(historyService.createHistoricVariableInstanceQuery()).thenReturn(query);
+        HistoricVariableInstance approvals = variable("pi1", List.of(Map.of("id", "a-1", "approverId", "sup")));
+        HistoricVariableInstance escalations = variable("pi1", List.of(Map.of("id", "e-1", "type", "ESCALATE")));
+        when(query.list()).thenReturn(List.of(approvals), List.of(escalations), List.of());
+        when(repository.findExistingEventIds(anyCollection())).thenReturn(List.of());
+
+        // Act
+        int imported = migrationService.importInstance("pi1");
+
+        // Assert
+        assertEquals(2, imported);
+        verify(query, times(3)).processInstanceId("pi1");
+        ArgumentCaptor<Collection<WorkflowAuditEvent>> appended = ArgumentCaptor.forClass(Collection.class);
+        verify(auditEventService).append(appended.capture());
+        assertEquals(List.of(EventType.APPROVAL, EventType.ESCALATE),
+                appended.getValue().stream().map(WorkflowAuditEvent::getEventType).toList());
+    }
+
+    private static HistoricVariableInstance variable(String processInstanceId, Object value) {
+        HistoricVariableInstance variable = mock(HistoricVariableInstance.class);
+        when(variable.getProcessInstanceId()).thenReturn(processInstanceId);
+        when(variable.getValue()).thenReturn(value);
+        return variable;
+    }
+}
@@ -0,0 +1,234 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.BulkImportReportDTO;
+import com.demo.bpm.dto.BulkStartResultDTO;
+import com.demo.bpm.repository.ProcessConfigRepository;
+import com.demo.bpm.service.BusinessTableService.NewInstanceData;
+import com.demo.bpm.service.BulkImportService.ImportFormat;
+import com.demo.bpm.service.BulkImportService.ImportOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flowable.engine.IdentityService;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.engine.repository.ProcessDefinitionQuery;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BulkImportServiceTest {
+
+    @Mock
+    private RuntimeService runtimeService;
+    @Mock
+    private RepositoryService repositoryService;
+    @Mock
+    private IdentityService identityService;
+    @Mock
+    private BusinessTableService businessTableService;
+    @Mock
+    private ColumnMappingService columnMappingService;
+    @Mock
+    private ProcessConfigRepository processConfigRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private BulkImportService bulkImportService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ProcessDefinitionQuery definitionQuery = mock(ProcessDefinitionQuery.class);
+        ProcessDefinition definition = mock(ProcessDefinition.class);
+        when(definition.getId()).thenReturn("purchase-request:1:1");
+        when(definition.getKey()).thenReturn("purchase-request");
+        when(definition.getName()).thenReturn("Purchase Request");
+        when(repositoryService.createProcessDefinitionQuery()).thenReturn(definitionQuery);
+        when(definitionQuery.processDefinitionKey(anyString())).thenReturn(definitionQuery);
+        when(definitionQuery.latestVersion()).thenReturn(definitionQuery);
+        when(definitionQuery.singleResult()).thenReturn(definition);
+        when(processConfigRepository.findByProcessDefinitionKey(anyString())).thenReturn(Optional.empty());
+
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        ProcessInstance instance = mock(ProcessInstance.class);
+        when(instance.getId()).thenReturn("pi-1");
+        when(runtimeService.startProcessInstanceById(anyString(), anyString(), anyMap())).thenReturn(instance);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importRecords_Csv_MapsColumnsAndCommitsInBatches() {
+        // Arrange
+        String csv = "Ref,Amount,Title\n" +
+                "PR-1,1500,\"Laptop, 15\"\"\"\n" +
+                "PR-2,250.5,Mouse\n" +
+                "PR-3,99,Cable\n";
+        ImportOptions options = ImportOptions.builder()
+                .format(ImportFormat.CSV)
+                .batchSize(2)
+                .businessKeyField("ref")
+                .fieldMappings(List.of("Ref:ref", "Amount:amount:number", "Title:title"))
+                .build();
+
+        // Act
+        BulkImportReportDTO report = bulkImportService.importRecords("purchase-request", stream(csv), options, "user1");
+
+        // Assert
+        assertEquals("COMPLETED", report.getStatus());
+        assertEquals(3, report.getRecordsRead());
+        assertEquals(3, report.getRecordsImported());
+        assertEquals(0, report.getRecordsFailed());
+        assertEquals(2, report.getBatchesCommitted());
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+
+        // The data of each batch is written with one call
+        ArgumentCaptor<List<NewInstanceData>> instances = ArgumentCaptor.forClass(List.class);
+        verify(businessTableService, times(2)).saveNewInstanceData(instances.capture(), eq("purchase-request"),
+                eq("Purchase Request"), isNull(), eq("user1"), any());
+        assertEquals(List.of("PR-1", "PR-2"),
+                instances.getAllValues().get(0).stream().map(NewInstanceData::businessKey).toList());
+        assertEquals(List.of("PR-3"),
+                instances.getAllValues().get(1).stream().map(NewInstanceData::businessKey).toList());
+        Map<String, Object> vars = instances.getAllValues().get(0).get(0).variables();
+        assertEquals("pi-1", instances.getAllValues().get(0).get(0).processInstanceId());
+        assertEquals(1500.0, vars.get("amount"));
+        assertEquals("Laptop, 15\"", vars.get("title"));
+        assertEquals("user1", vars.get("_startedBy"));
+        assertFalse(vars.containsKey("ref"));
+    }
+
+    @Test
+    void importRecords_Ndjson_ReportsMalformedLinesAndContinues() {
+        // Arrange
+        String ndjson = "{\"businessKey\":\"A\",\"variables\":{\"amount\":10}}\n" +
+                "{not json}\n" +
+                "\n" +
+                "{\"businessKey\":\"B\",\"amount\":20}\n";
+
+        // Act
+        BulkImportReportDTO report = bulkImportService.importRecords("purchase-request", stream(ndjson),
+                ImportOptions.builder().build(), "user1");
+
+        // Assert
+        assertEquals(2, report.getRecordsImported());
+        assertEquals(1, report.getRecordsFailed());
+        assertEquals(2, report.getErrors().get(0).getLineNumber());
+        verify(runtimeService).startProcessInstanceById(eq("purchase-request:1:1"), eq("A"), anyMap());
+        verify(runtimeService).startProcessInstanceById(eq("purchase-request:1:1"), eq("B"), anyMap());
+    }
+
+    @Test
+    void importRecords_FailedBatch_IsReplayedRecordByRecord() {
+        // Arrange
+        when(runtimeService.startProcessInstanceById(anyString(), eq("BAD"), anyMap()))
+                .thenThrow(new IllegalStateException("boom"));
+        String ndjson = "{\"businessKey\":\"A\"}\n{\"businessKey\":\"BAD\"}\n{\"businessKey\":\"C\"}\n";
+
+        // Act
+        BulkImportReportDTO report = bulkImportService.importRecords("purchase-request", stream(ndjson),
+                ImportOptions.builder().build(), "user1");
+
+        // Assert
+        assertEquals(2, report.getRecordsImported());
+        assertEquals(1, report.getRecordsFailed());
+        assertEquals("BAD", report.getErrors().get(0).getBusinessKey());
+        assertEquals("boom", report.getErrors().get(0).getMessage());
+        // One failed batch attempt plus one transaction per record
+        verify(transactionTemplate, times(4)).executeWithoutResult(any());
+        assertTrue(bulkImportService.getImport(report.getImportId()).isPresent());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void startInstances_JsonArray_ReturnsIdsAndBusinessKeys() {
+        // Arrange
+        ProcessInstance second = mock(ProcessInstance.class);
+        when(second.getId()).thenReturn("pi-2");
+        when(runtimeService.startProcessInstanceById(anyString(), eq("B"), anyMap())).thenReturn(second);
+        String json = "[{\"businessKey\":\"A\",\"variables\":{\"amount\":10}}, 42, {\"businessKey\":\"B\"}]";
+        ImportOptions options = ImportOptions.builder()
+                .format(ImportFormat.JSON)
+                .extraVariables(Map.of("employeeId", "user1"))
+                .build();
+
+        // Act
+        BulkStartResultDTO result = bulkImportService.startInstances("purchase-request", stream(json), options, "user1");
+
+        // Assert
+        assertEquals("COMPLETED", result.getStatus());
+        assertEquals(3, result.getRequested());
+        assertEquals(2, result.getStarted());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getLineNumber());
+        assertEquals(List.of(new BulkStartResultDTO.StartedInstance("pi-1", "A"),
+                new BulkStartResultDTO.StartedInstance("pi-2", "B")), result.getInstances());
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+
+        ArgumentCaptor<List<NewInstanceData>> instances = ArgumentCaptor.forClass(List.class);
+        verify(businessTableService).saveNewInstanceData(instances.capture(), eq("purchase-request"),
+                eq("Purchase Request"), isNull(), eq("user1"), any());
+        Map<String, Object> vars = instances.getValue().get(0).variables();
+        assertEquals(10, vars.get("amount"));
+        assertEquals("user1", vars.get("employeeId"));
+    }
+
+    @Test
+    void startInstances_TrackedProgressKeepsOnlyASampleOfInstances() {
+        // Arrange
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            ndjson.append("{\"businessKey\":\"K").append(i).append("\"}\n");
+        }
+
+        // Act
+        BulkStartResultDTO result = bulkImportService.startInstances("purchase-request", stream(ndjson.toString()),
+                ImportOptions.builder().build(), "user1");
+
+        // Assert: the response has every instance, the report kept for polling only the first ones
+        assertEquals(50, result.getInstances().size());
+        BulkImportReportDTO tracked = bulkImportService.getImport(result.getImportId()).orElseThrow();
+        assertEquals(50, tracked.getRecordsImported());
+        assertEquals(20, tracked.getSampleInstances().size());
+        assertEquals("K0", tracked.getSampleInstances().get(0).getBusinessKey());
+    }
+
+    @Test
+    void parseFieldMappings_RejectsUnknownType() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkImportService.parseFieldMappings(List.of("a:b:money")));
+    }
+
+    private ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,124 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.DocumentChangeDTO;
+import com.demo.bpm.dto.DocumentDTO;
+import com.demo.bpm.entity.Document;
+import com.demo.bpm.entity.DocumentChange;
+import com.demo.bpm.repository.DocumentChangeRepository;
+import com.demo.bpm.repository.DocumentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeFeedServiceTest {
+
+    @Mock
+    private DocumentChangeRepository documentChangeRepository;
+    @Mock
+    private DocumentRepository documentRepository;
+    @Mock
+    private BusinessTableService businessTableService;
+
+    @InjectMocks
+    private ChangeFeedService changeFeedService;
+
+    @Test
+    void getChanges_ReturnsPageAndResumeToken() {
+        // Arrange
+        when(documentChangeRepository.findAfter(eq(0L), isNull(), isNull(), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(change(1L, 10L, false), change(2L, 11L, false), change(3L, 12L, false)));
+        List<Document> documents = List.of(document(10L), document(11L));
+        when(documentRepository.findAllById(List.of(10L, 11L))).thenReturn(documents);
+        when(businessTableService.convertToDTOs(documents))
+                .thenReturn(List.of(DocumentDTO.builder().id(10L).build(), DocumentDTO.builder().id(11L).build()));
+
+        // Act
+        DocumentChangeDTO.Page page = changeFeedService.getChanges(null, null, null, 2);
+
+        // Assert
+        assertTrue(page.isHasMore());
+        assertEquals(2, page.getChanges().size());
+        assertEquals(10L, page.getChanges().get(0).getDocument().getId());
+        assertEquals(page.getChanges().get(1).getToken(), page.getNextToken());
+        assertEquals(2L, changeFeedService.resumeAfter(page.getNextToken()));
+    }
+
+    @Test
+    void getChanges_FoldsRepeatedChangesAndEmitsTombstones() {
+        // Arrange: document 10 changed twice, document 11 changed then deleted
+        when(documentChangeRepository.findAfter(eq(5L), eq("purchase-request"), isNull(), any()))
+                .thenReturn(List.of(change(6L, 10L, false), change(7L, 11L, false),
+                        change(8L, 10L, false), change(9L, 11L, true)));
+        List<Document> documents = List.of(document(10L));
+        when(documentRepository.findAllById(List.of(10L))).thenReturn(documents);
+        when(businessTableService.convertToDTOs(documents))
+                .thenReturn(List.of(DocumentDTO.builder().id(10L).build()));
+
+        // Act
+        DocumentChangeDTO.Page page = changeFeedService.getChanges(
+                ChangeFeedService.encode(5L), "purchase-request", null, 50);
+
+        // Assert
+        assertFalse(page.isHasMore());
+        assertEquals(2, page.getChanges().size());
+        DocumentChangeDTO updated = page.getChanges().get(0);
+        assertEquals(10L, updated.getDocumentId());
+        assertFalse(updated.isDeleted());
+        assertEquals(8L, changeFeedService.resumeAfter(updated.getToken()));
+        DocumentChangeDTO tombstone = page.getChanges().get(1);
+        assertEquals(11L, tombstone.getDocumentId());
+        assertTrue(tombstone.isDeleted());
+        assertNull(tombstone.getDocument());
+        assertEquals(9L, changeFeedService.resumeAfter(page.getNextToken()));
+    }
+
+    @Test
+    void getChanges_EmptyPageKeepsPosition() {
+        // Arrange
+        String token = ChangeFeedService.encode(42L);
+        when(documentChangeRepository.findAfter(eq(42L), isNull(), isNull(), any())).thenReturn(List.of());
+
+        // Act
+        DocumentChangeDTO.Page page = changeFeedService.getChanges(token, null, null, 50);
+
+        // Assert
+        assertFalse(page.isHasMore());
+        assertTrue(page.getChanges().isEmpty());
+        assertEquals(token, page.getNextToken());
+        verifyNoInteractions(documentRepository);
+    }
+
+    @Test
+    void getChanges_RejectsGarbageToken() {
+        assertThrows(IllegalArgumentException.class,
+                () -> changeFeedService.getChanges("not-a-token", null, null, 10));
+    }
+
+    private DocumentChange change(Long seq, Long documentId, boolean deleted) {
+        return DocumentChange.builder()
+                .seq(seq)
+                .documentId(documentId)
+                .processInstanceId("p" + documentId)
+                .documentType("main")
+                .deleted(deleted)
+                .changedAt(LocalDateTime.of(2024, 5, 1, 10, 0))
+                .build();
+    }
+
+    private Document document(Long id) {
+        Document document = new Document();
+        document.setId(id);
+        return document;
+    }
+}
@@ -0,0 +1,168 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ColumnMappingCompactionReportDTO;
+import com.demo.bpm.dto.FormDefinitionDTO;
+import com.demo.bpm.dto.FormFieldDTO;
+import com.demo.bpm.dto.ProcessFieldLibraryDTO;
+import com.demo.bpm.dto.ProcessFormConfigDTO;
+import com.demo.bpm.entity.ColumnMapping;
+import com.demo.bpm.entity.ColumnMapping.FieldType;
+import com.demo.bpm.entity.ColumnMapping.ScopeType;
+import com.demo.bpm.repository.ColumnMappingRepository;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.engine.repository.ProcessDefinitionQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ColumnMappingCompactionServiceTest {
+
+    @Mock
+    private ColumnMappingRepository columnMappingRepository;
+    @Mock
+    private FormDefinitionService formDefinitionService;
+    @Mock
+    private RepositoryService repositoryService;
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private ColumnMappingCompactionService compactionService;
+
+    @BeforeEach
+    void setUp() {
+        ProcessDefinition definition = mock(ProcessDefinition.class);
+        when(definition.getId()).thenReturn("purchase-request:1:1");
+        ProcessDefinitionQuery query = mock(ProcessDefinitionQuery.class);
+        when(repositoryService.createProcessDefinitionQuery()).thenReturn(query);
+        when(query.processDefinitionKey("purchase-request")).thenReturn(query);
+        when(query.list()).thenReturn(List.of(definition));
+
+        FormDefinitionDTO form = FormDefinitionDTO.builder()
+                .fields(List.of(FormFieldDTO.builder().name("amount").build()))
+                .grids(List.of())
+                .build();
+        when(formDefinitionService.getAllFormDefinitions("purchase-request:1:1")).thenReturn(Map.of("start", form));
+        when(formDefinitionService.getProcessFormConfig("purchase-request:1:1")).thenReturn(ProcessFormConfigDTO.builder()
+                .fieldLibrary(ProcessFieldLibraryDTO.builder().fields(List.of()).grids(List.of()).build())
+                .build());
+
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
+    }
+
+    @Test
+    void compact_RemovesOnlyUnreferencedEmptyOldMappings() {
+        // Arrange
+        ColumnMapping live = mapping(1L, "amount", "float_7", 48);
+        ColumnMapping unusedEmpty = mapping(2L, "discount", "float_3", 48);
+        ColumnMapping unusedWithData = mapping(3L, "legacyTotal", "float_4", 48);
+        ColumnMapping unusedButNew = mapping(4L, "draftField", "float_5", 1);
+        when(columnMappingRepository.findByProcessDefinitionKey("purchase-request"))
+                .thenReturn(List.of(live, unusedEmpty, unusedWithData, unusedButNew));
+        stubSlotsWithData("float_4", "float_7");
+
+        // Act
+        ColumnMappingCompactionReportDTO report = compactionService.compact("purchase-request", false, false, 10);
+
+        // Assert
+        assertEquals(1, report.getMappingsRemoved());
+        verify(columnMappingRepository).deleteById(2L);
+        verify(columnMappingRepository, never()).deleteById(1L);
+        verify(columnMappingRepository, never()).deleteById(3L);
+        verify(columnMappingRepository, never()).deleteById(4L);
+    }
+
+    @Test
+    void compact_DryRunChangesNothing() {
+        // Arrange
+        when(columnMappingRepository.findByProcessDefinitionKey("purchase-request"))
+                .thenReturn(List.of(mapping(1L, "amount", "float_7", 48), mapping(2L, "discount", "float_3", 48)));
+        stubSlotsWithData("float_7");
+
+        // Act
+        ColumnMappingCompactionReportDTO report = compactionService.compact("purchase-request", true, true, 10);
+
+        // Assert
+        assertEquals(1, report.getMappingsRemoved());
+        assertEquals(1, report.getFieldsRelocated());
+        assertEquals(List.of("purchase-request.amount (float_7 -> float_1)"), report.getRelocated());
+        verify(columnMappingRepository, never()).deleteById(any());
+        verify(jdbcTemplate, never()).update(anyString(), any(MapSqlParameterSource.class));
+    }
+
+    @Test
+    void compact_RelocationStopsAtStepBudget() {
+        // Arrange
+        ColumnMapping amount = mapping(1L, "amount", "float_7", 48);
+        ColumnMapping tax = mapping(2L, "tax", "float_9", 48);
+        when(columnMappingRepository.findByProcessDefinitionKey("purchase-request"))
+                .thenReturn(new ArrayList<>(List.of(amount, tax)));
+        when(columnMappingRepository.findById(2L)).thenReturn(Optional.of(mapping(2L, "tax", "float_9", 48)));
+        when(formDefinitionService.getAllFormDefinitions("purchase-request:1:1")).thenReturn(Map.of("start",
+                FormDefinitionDTO.builder()
+                        .fields(List.of(FormFieldDTO.builder().name("amount").build(),
+                                FormFieldDTO.builder().name("tax").build()))
+                        .build()));
+        stubSlotsWithData("float_7", "float_9");
+
+        // Act
+        ColumnMappingCompactionReportDTO report = compactionService.compact("purchase-request", true, false, 1);
+
+        // Assert
+        assertEquals(1, report.getFieldsRelocated());
+        assertEquals(1, report.getRelocationsPending());
+        verify(jdbcTemplate).update(contains("UPDATE document SET float_1 = float_9, float_9 = NULL"),
+                any(MapSqlParameterSource.class));
+        verify(columnMappingRepository).save(argThat(saved -> "float_1".equals(saved.getColumnName())));
+    }
+
+    private void stubSlotsWithData(String... columns) {
+        when(jdbcTemplate.queryForObject(anyString(), any(MapSqlParameterSource.class), eq(Long.class)))
+                .thenAnswer(invocation -> {
+                    String sql = invocation.getArgument(0);
+                    for (String column : columns) {
+                        if (sql.contains("d." + column + " IS NOT NULL")) {
+                            return 1L;
+                        }
+                    }
+                    return 0L;
+                });
+    }
+
+    private ColumnMapping mapping(Long id, String field, String column, int ageHours) {
+        return ColumnMapping.builder()
+                .id(id)
+                .scopeType(ScopeType.DOCUMENT)
+                .processDefinitionKey("purchase-request")
+                .fieldName(field)
+                .fieldType(FieldType.FLOAT)
+                .columnName(column)
+                .createdAt(LocalDateTime.now().minusHours(ageHours))
+                .build();
+    }
+}
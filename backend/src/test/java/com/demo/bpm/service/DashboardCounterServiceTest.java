@@ -0,0 +1,124 @@
+package com.demo.bpm.service;
+
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.history.HistoricProcessInstanceQuery;
+import org.flowable.engine.runtime.ProcessInstanceQuery;
+import org.flowable.task.api.TaskQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DashboardCounterServiceTest {
+
+    @Mock
+    private RuntimeService runtimeService;
+    @Mock
+    private HistoryService historyService;
+    @Mock
+    private TaskService taskService;
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private DashboardCounterService counterService;
+
+    @Test
+    void apply_MovesCountersByCommittedDeltas() {
+        // Arrange
+        DashboardCounterService.Delta start = new DashboardCounterService.Delta();
+        start.processStarted("eng.john");
+        start.taskCreated(null);
+        start.escalationChanged("pi-1", true);
+
+        DashboardCounterService.Delta end = new DashboardCounterService.Delta();
+        end.taskDeleted("eng.mike");
+        end.processEnded("pi-1", "eng.john");
+        // Terminate end events can report the same instance twice
+        end.processEnded("pi-1", "eng.john");
+
+        // Act
+        counterService.apply(start);
+        long activeWhileRunning = counterService.getTotalActive();
+        long escalatedWhileRunning = counterService.getPendingEscalations();
+        counterService.apply(end);
+
+        // Assert
+        assertEquals(1, activeWhileRunning);
+        assertEquals(1, escalatedWhileRunning);
+        assertEquals(0, counterService.getTotalActive());
+        assertEquals(1, counterService.getTotalCompleted());
+        assertEquals(0, counterService.getTotalPending());
+        assertEquals(0, counterService.getPendingEscalations());
+        assertEquals(0, counterService.getMyProcesses("eng.john"));
+    }
+
+    @Test
+    void delta_IgnoresEscalationChangesAfterEnd() {
+        DashboardCounterService.Delta delta = new DashboardCounterService.Delta();
+        delta.processEnded("pi-2", null);
+        delta.escalationChanged("pi-2", true);
+
+        counterService.apply(delta);
+
+        assertEquals(0, counterService.getPendingEscalations());
+    }
+
+    @Test
+    void historyDeleted_LowersCompletedCount() {
+        DashboardCounterService.Delta delta = new DashboardCounterService.Delta();
+        delta.processEnded("pi-3", null);
+        delta.processEnded("pi-4", null);
+        counterService.apply(delta);
+
+        counterService.historyDeleted(2);
+
+        assertEquals(0, counterService.getTotalCompleted());
+    }
+
+    @Test
+    void rebuild_ReplaysDeltasCommittedWhileCounting() {
+        // Arrange: 3 running instances in the snapshot; one more starts and commits mid-rebuild
+        ProcessInstanceQuery running = mock(ProcessInstanceQuery.class);
+        when(runtimeService.createProcessInstanceQuery()).thenReturn(running);
+        when(running.count()).thenReturn(3L);
+        HistoricProcessInstanceQuery finished = mock(HistoricProcessInstanceQuery.class);
+        when(historyService.createHistoricProcessInstanceQuery()).thenReturn(finished);
+        when(finished.finished()).thenReturn(finished);
+        when(finished.count()).thenAnswer(invocation -> {
+            DashboardCounterService.Delta concurrent = new DashboardCounterService.Delta();
+            concurrent.processStarted("eng.john");
+            counterService.apply(concurrent);
+            return 7L;
+        });
+        TaskQuery tasks = mock(TaskQuery.class);
+        when(taskService.createTaskQuery()).thenReturn(tasks);
+        when(tasks.count()).thenReturn(2L);
+
+        // Act
+        counterService.rebuild();
+
+        // Assert: the start is neither lost under the recount nor counted twice
+        assertEquals(4, counterService.getTotalActive());
+        assertEquals(7, counterService.getTotalCompleted());
+        assertEquals(1, counterService.getMyProcesses("eng.john"));
+        assertTrue(counterService.isInitialized());
+
+        // A delta after the rebuild is applied once
+        DashboardCounterService.Delta later = new DashboardCounterService.Delta();
+        later.processEnded("pi-9", "eng.john");
+        counterService.apply(later);
+        assertEquals(3, counterService.getTotalActive());
+    }
+}
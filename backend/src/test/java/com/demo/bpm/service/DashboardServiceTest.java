@@ -1,7 +1,10 @@
 package com.demo.bpm.service;
 
 import com.demo.bpm.dto.DashboardDTO;
-import com.demo.bpm.dto.WorkflowHistoryDTO;
+import com.demo.bpm.dto.WorkflowSummaryDTO;
+import com.demo.bpm.service.helpers.DatabaseDialect;
+import com.demo.bpm.service.helpers.SingleFlightRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.flowable.engine.HistoryService;
 import org.flowable.engine.RuntimeService;
 import org.flowable.engine.TaskService;
@@ -16,16 +19,23 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -40,6 +50,14 @@ class DashboardServiceTest {
     private TaskService taskService;
     @Mock
     private WorkflowHistoryService workflowHistoryService;
+    @Mock
+    private DashboardCounterService dashboardCounterService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private DatabaseDialect databaseDialect;
 
     @Mock
     private ProcessInstanceQuery processInstanceQuery;
@@ -48,6 +66,9 @@ class DashboardServiceTest {
     @Mock
     private TaskQuery taskQuery;
 
+    @Spy
+    private SingleFlightRegistry singleFlights = new SingleFlightRegistry(new SimpleMeterRegistry(), new MockEnvironment());
+
     @InjectMocks
     private DashboardService dashboardService;
 
@@ -61,18 +82,16 @@ class DashboardServiceTest {
 
     @Test
     void getDashboard_shouldReturnDashboardData() {
-        // Counts
-        when(processInstanceQuery.count()).thenReturn(10L);
-        when(historicProcessInstanceQuery.finished()).thenReturn(historicProcessInstanceQuery);
-        when(historicProcessInstanceQuery.count()).thenReturn(5L);
-        when(taskQuery.count()).thenReturn(3L);
+        // Counts come from the counter store
+        when(dashboardCounterService.isInitialized()).thenReturn(true);
+        when(dashboardCounterService.getTotalActive()).thenReturn(10L);
+        when(dashboardCounterService.getTotalCompleted()).thenReturn(5L);
+        when(dashboardCounterService.getTotalPending()).thenReturn(3L);
+        when(dashboardCounterService.getMyProcesses("user1")).thenReturn(2L);
         when(taskQuery.taskCandidateOrAssigned(anyString())).thenReturn(taskQuery);
 
-        // Need separate mock calls for different query constraints if they return the same mock object
-        // Mockito handles this by chaining, but here I'm reusing the same mock object 'processInstanceQuery'
-        // which might be problematic if 'variableValueEquals' is called multiple times.
         // For simplicity, we assume the builder methods return 'this' (the mock).
-        when(processInstanceQuery.variableValueEquals(anyString(), anyString())).thenReturn(processInstanceQuery);
+        when(historicProcessInstanceQuery.finished()).thenReturn(historicProcessInstanceQuery);
         when(processInstanceQuery.variableValueGreaterThan(anyString(), anyInt())).thenReturn(processInstanceQuery);
 
         // Active processes list
@@ -100,8 +119,8 @@ class DashboardServiceTest {
         when(taskQuery.listPage(anyInt(), anyInt())).thenReturn(List.of(task));
 
         // WorkflowHistoryService
-        WorkflowHistoryDTO historyDTO = WorkflowHistoryDTO.builder().processInstanceId("proc1").build();
-        when(workflowHistoryService.getWorkflowHistory(anyString())).thenReturn(historyDTO);
+        WorkflowSummaryDTO summary = WorkflowSummaryDTO.builder().processInstanceId("proc1").build();
+        when(workflowHistoryService.getWorkflowSummaries(anyList())).thenReturn(List.of(summary));
 
         Pageable pageable = PageRequest.of(0, 10);
         DashboardDTO dashboard = dashboardService.getDashboard("user1", pageable, null, null);
@@ -110,6 +129,60 @@ class DashboardServiceTest {
         assertEquals(10L, dashboard.getStats().getTotalActive());
         assertEquals(5L, dashboard.getStats().getTotalCompleted());
         assertEquals(3L, dashboard.getStats().getTotalPending());
+        assertEquals(2L, dashboard.getStats().getMyProcesses());
+        assertEquals("proc1", dashboard.getActiveProcesses().getContent().get(0).getProcessInstanceId());
+        verify(workflowHistoryService, never()).getWorkflowHistory(anyString());
         assertEquals(1L, dashboard.getStats().getAvgCompletionTimeHours());
+        assertTrue(dashboard.getDegradedSections().isEmpty());
+        verify(dashboardCounterService, never()).rebuild();
+        verify(processInstanceQuery, never()).count();
+    }
+
+    @Test
+    void getDashboard_failingSectionIsReportedAsDegraded() {
+        // Arrange
+        when(dashboardCounterService.isInitialized()).thenReturn(true);
+        when(dashboardCounterService.getTotalCompleted()).thenReturn(5L);
+        when(processInstanceQuery.orderByStartTime()).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.desc()).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.includeProcessVariables()).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.variableValueGreaterThan(anyString(), anyInt())).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.listPage(anyInt(), anyInt())).thenReturn(Collections.emptyList());
+        when(historicProcessInstanceQuery.finished()).thenThrow(new IllegalStateException("history unavailable"));
+        when(taskQuery.taskCandidateOrAssigned(anyString())).thenReturn(taskQuery);
+        when(taskQuery.orderByTaskCreateTime()).thenReturn(taskQuery);
+        when(taskQuery.desc()).thenReturn(taskQuery);
+        when(taskQuery.listPage(anyInt(), anyInt())).thenReturn(Collections.emptyList());
+
+        // Act
+        DashboardDTO dashboard = dashboardService.getDashboard("user1", PageRequest.of(0, 10), null, null);
+
+        // Assert
+        assertEquals(List.of("recentCompleted"), dashboard.getDegradedSections());
+        assertEquals(5L, dashboard.getRecentCompleted().getTotalElements());
+        assertTrue(dashboard.getRecentCompleted().getContent().isEmpty());
+        assertNotNull(dashboard.getActiveProcesses());
+    }
+
+    @Test
+    void getDashboard_serialModeStopsStartingSectionsOnceTheDeadlinePassed() {
+        // Arrange: sections run one after another and the first one uses up the whole deadline
+        ReflectionTestUtils.setField(dashboardService, "parallel", false);
+        ReflectionTestUtils.setField(dashboardService, "sectionTimeoutMs", 20L);
+        when(dashboardCounterService.isInitialized()).thenReturn(true);
+        when(processInstanceQuery.orderByStartTime()).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.desc()).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.listPage(anyInt(), anyInt())).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return Collections.emptyList();
+        });
+
+        // Act
+        DashboardDTO dashboard = dashboardService.getDashboard("user1", PageRequest.of(0, 10), null, null);
+
+        // Assert: the later sections are degraded without querying anything
+        assertTrue(dashboard.getDegradedSections().containsAll(List.of("recentCompleted", "myPendingApprovals")));
+        verify(historicProcessInstanceQuery, never()).finished();
+        verify(taskQuery, never()).taskCandidateOrAssigned(anyString());
     }
 }
@@ -0,0 +1,131 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.GridRowDTO;
+import com.demo.bpm.entity.ColumnMapping;
+import com.demo.bpm.entity.ColumnMapping.FieldType;
+import com.demo.bpm.entity.Document;
+import com.demo.bpm.entity.GridRow;
+import com.demo.bpm.repository.DocumentRepository;
+import com.demo.bpm.repository.GridRowRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class GridQueryServiceTest {
+
+    @Mock
+    private DocumentRepository documentRepository;
+    @Mock
+    private GridRowRepository gridRowRepository;
+    @Mock
+    private ColumnMappingService columnMappingService;
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private GridQueryService gridQueryService;
+
+    @BeforeEach
+    void setUp() {
+        Document document = new Document();
+        document.setId(7L);
+        document.setProcessDefinitionKey("purchase-request");
+        when(documentRepository.findByProcessInstanceIdAndType("pi-1", "main")).thenReturn(Optional.of(document));
+        when(columnMappingService.getGridMappings("purchase-request", "main", "items")).thenReturn(Map.of(
+                "amount", mapping("amount", FieldType.FLOAT, "float_3"),
+                "description", mapping("description", FieldType.VARCHAR, "varchar_9")));
+    }
+
+    @Test
+    void queryGridRows_FiltersAndSortsOnMappedSlots() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(anyString(), any(MapSqlParameterSource.class), eq(Long.class))).thenReturn(2L);
+        when(jdbcTemplate.queryForList(anyString(), any(MapSqlParameterSource.class), eq(Long.class)))
+                .thenReturn(List.of(12L, 11L));
+        when(gridRowRepository.findAllById(List.of(12L, 11L))).thenReturn(List.of(row(11L, 1, 500.0), row(12L, 0, 900.0)));
+
+        // Act
+        Page<GridRowDTO> page = gridQueryService.queryGridRows("pi-1", "main", "items",
+                List.of("amount:gt:100", "description:contains:50%"), List.of("amount,desc"), PageRequest.of(0, 10));
+
+        // Assert
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).queryForList(sql.capture(), params.capture(), eq(Long.class));
+        assertTrue(sql.getValue().contains("float_3 > :f0"));
+        assertTrue(sql.getValue().contains("LOWER(varchar_9) LIKE :f1"));
+        assertTrue(sql.getValue().contains("ORDER BY float_3 DESC NULLS FIRST, row_index ASC, id ASC"));
+        assertEquals(100.0, params.getValue().getValue("f0"));
+        assertEquals("%50\\%%", params.getValue().getValue("f1"));
+
+        assertEquals(2, page.getTotalElements());
+        assertEquals(12L, page.getContent().get(0).getId());
+        assertEquals(900.0, page.getContent().get(0).getFields().get("amount"));
+    }
+
+    @Test
+    void queryGridRows_RejectsUnknownField() {
+        assertThrows(IllegalArgumentException.class, () -> gridQueryService.queryGridRows("pi-1", "main", "items",
+                List.of("price:gt:1"), null, PageRequest.of(0, 10)));
+    }
+
+    @Test
+    void aggregateGridRows_RejectsSumOnTextField() {
+        assertThrows(IllegalArgumentException.class, () -> gridQueryService.aggregateGridRows("pi-1", "main", "items",
+                List.of("sum:description"), null));
+    }
+
+    @Test
+    void aggregateGridRows_MissingDocumentReturnsEmptyResult() {
+        when(documentRepository.findByProcessInstanceIdAndType("pi-2", "main")).thenReturn(Optional.empty());
+
+        var result = gridQueryService.aggregateGridRows("pi-2", "main", "items", List.of("sum:amount", "count"), null);
+
+        assertEquals(0, result.getRowCount());
+        assertNull(result.getValues().get("sum(amount)"));
+        assertEquals(0L, result.getValues().get("count"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private ColumnMapping mapping(String field, FieldType type, String column) {
+        return ColumnMapping.builder()
+                .scopeType(ColumnMapping.ScopeType.GRID)
+                .gridName("items")
+                .fieldName(field)
+                .fieldType(type)
+                .columnName(column)
+                .build();
+    }
+
+    private GridRow row(Long id, int rowIndex, double amount) {
+        Document document = new Document();
+        document.setId(7L);
+        GridRow row = new GridRow();
+        row.setId(id);
+        row.setDocument(document);
+        row.setGridName("items");
+        row.setRowIndex(rowIndex);
+        row.setFloat(3, amount);
+        return row;
+    }
+}
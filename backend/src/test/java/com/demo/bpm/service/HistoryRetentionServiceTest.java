@@ -0,0 +1,201 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.HistoryRetentionReportDTO;
+import com.demo.bpm.entity.ProcessConfig;
+import com.demo.bpm.repository.ProcessConfigRepository;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.history.HistoricProcessInstance;
+import org.flowable.engine.history.HistoricProcessInstanceQuery;
+import org.flowable.task.api.history.HistoricTaskInstanceQuery;
+import org.flowable.variable.api.history.HistoricVariableInstanceQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class HistoryRetentionServiceTest {
+
+    @Mock
+    private HistoryService historyService;
+    @Mock
+    private RepositoryService repositoryService;
+    @Mock
+    private ProcessConfigRepository processConfigRepository;
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private DashboardCounterService dashboardCounterService;
+    @Mock(answer = Answers.RETURNS_SELF)
+    private HistoricProcessInstanceQuery query;
+
+    private HistoryRetentionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new HistoryRetentionService(historyService, repositoryService, processConfigRepository,
+                jdbcTemplate, new ObjectMapper(), dashboardCounterService);
+        ReflectionTestUtils.setField(service, "pauseMs", 0L);
+        when(historyService.createHistoricProcessInstanceQuery()).thenReturn(query);
+        when(processConfigRepository.findAll()).thenReturn(List.of(
+                ProcessConfig.builder().processDefinitionKey("purchase-request").historyRetentionDays(365).build()));
+    }
+
+    @Test
+    void purge_DeletesExpiredInstancesInBatches() {
+        // Arrange
+        List<HistoricProcessInstance> first = List.of(instance("pi-1"), instance("pi-2"));
+        List<HistoricProcessInstance> second = List.of(instance("pi-3"));
+        when(query.count()).thenReturn(3L);
+        when(query.listPage(0, 2)).thenReturn(first, second, List.of());
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(1L);
+
+        // Act
+        HistoryRetentionReportDTO report = service.purge("purchase-request", 2, 10, false);
+
+        // Assert
+        verify(historyService).bulkDeleteHistoricProcessInstances(List.of("pi-1", "pi-2"));
+        verify(historyService).bulkDeleteHistoricProcessInstances(List.of("pi-3"));
+        verify(dashboardCounterService).historyDeleted(2);
+        verify(dashboardCounterService).historyDeleted(1);
+        verify(query, atLeastOnce()).finishedBefore(any());
+        assertEquals(3, report.getInstancesDeleted());
+        // Each instance row plus one row in each of the six related tables per batch
+        assertEquals(3 + 2 * 6, report.getRowsRemoved());
+        assertEquals(2, report.getBatches());
+        assertTrue(report.isComplete());
+        assertEquals(365, report.getDefinitions().get(0).getRetentionDays());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void purge_DeletesSubProcessInstancesWithTheirRoot() {
+        // Arrange: pi-1 called sub-1, which called sub-2
+        List<HistoricProcessInstance> roots = List.of(instance("pi-1"));
+        List<HistoricProcessInstance> subProcesses = List.of(instance("sub-1"), instance("sub-2"));
+        when(query.count()).thenReturn(1L);
+        when(query.listPage(0, 10)).thenReturn(roots, List.of());
+        when(jdbcTemplate.queryForList(contains("SUPER_PROCESS_INSTANCE_ID_"), any(SqlParameterSource.class), eq(String.class)))
+                .thenReturn(List.of("sub-1"), List.of("sub-2"), List.of());
+        when(query.list()).thenReturn(subProcesses);
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(0L);
+
+        // Act
+        HistoryRetentionReportDTO report = service.purge("purchase-request", 10, 10, false);
+
+        // Assert
+        verify(query, atLeastOnce()).excludeSubprocesses(true);
+        verify(query).processInstanceIds(Set.of("sub-1", "sub-2"));
+        verify(historyService).bulkDeleteHistoricProcessInstances(List.of("pi-1", "sub-1", "sub-2"));
+        // Finished sub-process instances are counted as completed too
+        verify(dashboardCounterService).historyDeleted(3);
+        assertEquals(1, report.getInstancesDeleted());
+        assertEquals(2, report.getSubProcessInstancesDeleted());
+        assertEquals(3, report.getRowsRemoved());
+        assertTrue(report.isComplete());
+    }
+
+    @Test
+    void purge_StopsAtBatchBudget() {
+        // Arrange
+        List<HistoricProcessInstance> batch = List.of(instance("pi-1"), instance("pi-2"));
+        when(query.count()).thenReturn(10L);
+        when(query.listPage(0, 2)).thenReturn(batch);
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(0L);
+
+        // Act
+        HistoryRetentionReportDTO report = service.purge("purchase-request", 2, 1, false);
+
+        // Assert
+        verify(historyService, times(1)).bulkDeleteHistoricProcessInstances(anyCollection());
+        assertEquals(2, report.getInstancesDeleted());
+        assertFalse(report.isComplete());
+    }
+
+    @Test
+    void purge_DryRunAndUnconfiguredDefinitionsDeleteNothing() {
+        // Arrange
+        when(query.count()).thenReturn(5L);
+
+        // Act
+        HistoryRetentionReportDTO dryRun = service.purge("purchase-request", 100, 10, true);
+        HistoryRetentionReportDTO unconfigured = service.purge("leave-request", 100, 10, false);
+
+        // Assert
+        assertEquals(5, dryRun.getDefinitions().get(0).getInstancesEligible());
+        assertEquals(0, dryRun.getInstancesDeleted());
+        assertTrue(unconfigured.getDefinitions().isEmpty());
+        verify(historyService, never()).bulkDeleteHistoricProcessInstances(anyCollection());
+        verify(dashboardCounterService, never()).historyDeleted(anyLong());
+    }
+
+    @Test
+    void purge_KeepsBatchWhoseExportFailed(@TempDir Path directory) throws IOException {
+        // Arrange: the second batch cannot be serialized
+        ObjectMapper objectMapper = spy(new ObjectMapper());
+        doCallRealMethod().doCallRealMethod().doThrow(new JsonMappingException(null, "unserializable variable"))
+                .when(objectMapper).writeValueAsString(any());
+        service = new HistoryRetentionService(historyService, repositoryService, processConfigRepository,
+                jdbcTemplate, objectMapper, dashboardCounterService);
+        ReflectionTestUtils.setField(service, "pauseMs", 0L);
+        ReflectionTestUtils.setField(service, "exportEnabled", true);
+        ReflectionTestUtils.setField(service, "exportDirectory", directory.toString());
+        when(historyService.createHistoricTaskInstanceQuery())
+                .thenReturn(mock(HistoricTaskInstanceQuery.class, Answers.RETURNS_SELF));
+        when(historyService.createHistoricVariableInstanceQuery())
+                .thenReturn(mock(HistoricVariableInstanceQuery.class, Answers.RETURNS_SELF));
+        List<HistoricProcessInstance> exported = List.of(instance("pi-1"), instance("pi-2"));
+        List<HistoricProcessInstance> failed = List.of(instance("pi-3"), instance("pi-4"));
+        when(query.count()).thenReturn(4L);
+        when(query.listPage(0, 2)).thenReturn(exported, failed);
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(0L);
+
+        // Act
+        HistoryRetentionReportDTO report = service.purge("purchase-request", 2, 10, false);
+
+        // Assert
+        verify(historyService).bulkDeleteHistoricProcessInstances(List.of("pi-1", "pi-2"));
+        verify(historyService, never()).bulkDeleteHistoricProcessInstances(List.of("pi-3", "pi-4"));
+        assertEquals(2, report.getInstancesDeleted());
+        assertFalse(report.isComplete());
+        try (var files = Files.list(directory)) {
+            Path archive = files.findFirst().orElseThrow();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(archive)), StandardCharsets.UTF_8))) {
+                assertEquals(2, reader.lines().count());
+            }
+        }
+    }
+
+    private static HistoricProcessInstance instance(String id) {
+        HistoricProcessInstance instance = mock(HistoricProcessInstance.class);
+        when(instance.getId()).thenReturn(id);
+        return instance;
+    }
+}
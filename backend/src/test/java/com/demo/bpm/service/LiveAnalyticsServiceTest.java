@@ -0,0 +1,154 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.LiveAnalyticsDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flowable.engine.RepositoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LiveAnalyticsServiceTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private RepositoryService repositoryService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LiveAnalyticsService liveService;
+
+    @BeforeEach
+    void setUp() {
+        liveService = new LiveAnalyticsService(jdbcTemplate, repositoryService, meterRegistry, transactionManager);
+    }
+
+    @Test
+    void apply_TracksWorkInProgressRatesAndOldestTask() {
+        // Arrange
+        long now = System.currentTimeMillis();
+        LiveAnalyticsService.TaskChange older = task("t-1", now - 60_000);
+        LiveAnalyticsService.TaskChange newer = task("t-2", now - 1_000);
+
+        LiveAnalyticsService.Delta start = new LiveAnalyticsService.Delta();
+        start.processStarted("purchase-request");
+        start.processStarted("purchase-request");
+        start.taskCreated(older);
+        start.taskCreated(newer);
+
+        LiveAnalyticsService.Delta end = new LiveAnalyticsService.Delta();
+        end.taskEnded(older);
+        end.processEnded("pi-1", "purchase-request");
+        // Terminate end events can report the same instance twice
+        end.processEnded("pi-1", "purchase-request");
+
+        // Act
+        liveService.apply(start);
+        LiveAnalyticsDTO whileRunning = liveService.getLive();
+        liveService.apply(end);
+        LiveAnalyticsDTO live = liveService.getLive();
+
+        // Assert
+        assertEquals(2, whileRunning.getProcessesInProgress());
+        assertEquals("t-1", whileRunning.getOldestTask().getTaskId());
+        assertEquals(1, live.getProcessesInProgress());
+        assertEquals(1, live.getOpenTasks());
+        assertEquals("t-2", live.getOldestTask().getTaskId());
+        LiveAnalyticsDTO.DefinitionLive definition = live.getDefinitions().get(0);
+        assertEquals(2, definition.getStarted());
+        assertEquals(1, definition.getCompleted());
+        assertEquals(2 / 5.0, definition.getStartsPerMinute(), 1e-9);
+        assertEquals("approve", definition.getActivities().get(0).getTaskDefinitionKey());
+        assertEquals(1.0, meterRegistry.get("bpm.live.processes.in_progress").tag("definition", "purchase-request")
+                .gauge().value());
+        assertEquals(1.0, meterRegistry.get("bpm.live.tasks.open").tag("task", "approve").gauge().value());
+    }
+
+    @Test
+    void resync_RecountsFromRuntimeTablesAndKeepsTotals() throws Exception {
+        // Arrange
+        long now = System.currentTimeMillis();
+        ResultSet running = mock(ResultSet.class);
+        when(running.getString(1)).thenReturn("purchase-request");
+        when(running.getLong(2)).thenReturn(4L);
+        ResultSet openTask = mock(ResultSet.class);
+        when(openTask.getString("KEY_")).thenReturn("purchase-request");
+        when(openTask.getString("TASK_DEF_KEY_")).thenReturn("approve");
+        when(openTask.getString("ID_")).thenReturn("t-9");
+        when(openTask.getTimestamp("CREATE_TIME_")).thenReturn(new Timestamp(now - 3_600_000));
+        ResultSet recent = mock(ResultSet.class);
+        when(recent.getString("KEY_")).thenReturn("purchase-request");
+        when(recent.getTimestamp("START_TIME_")).thenReturn(new Timestamp(now - 10_000));
+        when(recent.getTimestamp("END_TIME_")).thenReturn(null);
+        when(openTask.getString("NAME_")).thenReturn("Approve");
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(sql.contains("ACT_RU_EXECUTION") ? running
+                    : sql.contains("ACT_RU_TASK") ? openTask : recent);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+
+        LiveAnalyticsService.Delta stale = new LiveAnalyticsService.Delta();
+        stale.processStarted("purchase-request");
+        stale.taskCreated(task("t-gone", now));
+        liveService.apply(stale);
+
+        // Act
+        LiveAnalyticsDTO live = liveService.resync();
+
+        // Assert
+        assertNotNull(live.getResyncedAt());
+        assertEquals(4, live.getProcessesInProgress());
+        assertEquals(1, live.getOpenTasks());
+        assertEquals("t-9", live.getOldestTask().getTaskId());
+        assertTrue(live.getOldestTask().getAgeSeconds() >= 3_600);
+        assertEquals(1, live.getDefinitions().get(0).getStarted());
+        assertEquals(1 / 5.0, live.getStartsPerMinute(), 1e-9);
+    }
+
+    @Test
+    void resync_ReplaysChangesCommittedWhileRecounting() throws Exception {
+        // Arrange: the snapshot holds 4 running instances; one of them ends while the tasks are read
+        ResultSet running = mock(ResultSet.class);
+        when(running.getString(1)).thenReturn("purchase-request");
+        when(running.getLong(2)).thenReturn(4L);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            if (sql.contains("ACT_RU_EXECUTION")) {
+                invocation.getArgument(2, RowCallbackHandler.class).processRow(running);
+            } else if (sql.contains("ACT_RU_TASK")) {
+                LiveAnalyticsService.Delta concurrent = new LiveAnalyticsService.Delta();
+                concurrent.processEnded("pi-1", "purchase-request");
+                liveService.apply(concurrent);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+
+        // Act
+        LiveAnalyticsDTO live = liveService.resync();
+
+        // Assert: the end is applied over the recount instead of being overwritten by it
+        assertEquals(3, live.getProcessesInProgress());
+        assertEquals(1, live.getDefinitions().get(0).getCompleted());
+    }
+
+    private static LiveAnalyticsService.TaskChange task(String id, long createdAt) {
+        return new LiveAnalyticsService.TaskChange("purchase-request", "approve", "Approve", id, createdAt);
+    }
+}
@@ -0,0 +1,192 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ProcessMiningReportDTO;
+import com.demo.bpm.exception.ResourceNotFoundException;
+import com.demo.bpm.service.helpers.HistoryWatermarks;
+import com.demo.bpm.service.helpers.HistoryWatermarks.Position;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinitionQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ProcessMiningServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 9, 0);
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private RepositoryService repositoryService;
+
+    private ProcessMiningService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new ProcessMiningService(jdbcTemplate, transactionTemplate, repositoryService,
+                new HistoryWatermarks(jdbcTemplate, transactionTemplate));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(mock(TransactionStatus.class)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mine_FoldsTracesIntoVariantsAndEdgesAndAdvancesKeyset() throws Exception {
+        // Arrange: nothing mined yet; two instances in the first batch, then nothing
+        when(jdbcTemplate.queryForObject(contains("FOR UPDATE"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(new Position(HistoryWatermarks.BEGINNING, ""));
+        ResultSet first = instanceRow("p1", T0, T0.plusHours(2));
+        ResultSet second = instanceRow("p2", T0, T0.plusHours(4));
+        when(jdbcTemplate.query(contains("FROM ACT_HI_PROCINST"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    RowMapper<Object> mapper = invocation.getArgument(2);
+                    return List.of(mapper.mapRow(first, 0), mapper.mapRow(second, 1));
+                })
+                .thenReturn(List.of());
+        List<ResultSet> activities = List.of(
+                activityRow("p1", "start", T0), activityRow("p1", "approve", T0.plusHours(1)),
+                activityRow("p1", "end", T0.plusHours(2)),
+                activityRow("p2", "start", T0), activityRow("p2", "approve", T0.plusHours(3)),
+                activityRow("p2", "end", T0.plusHours(4)));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (ResultSet rs : activities) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("FROM ACT_HI_ACTINST"), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE"), any(SqlParameterSource[].class)))
+                .thenAnswer(invocation -> new int[invocation.getArgument(1, SqlParameterSource[].class).length]);
+
+        // Act
+        ProcessMiningReportDTO report = service.mine(10);
+
+        // Assert
+        assertTrue(report.isComplete());
+        assertEquals(1, report.getBatches());
+        assertEquals(2, report.getInstancesMined());
+        assertEquals(6, report.getActivitiesRead());
+
+        ArgumentCaptor<SqlParameterSource[]> variants = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO process_variant"), variants.capture());
+        assertEquals(1, variants.getValue().length);
+        assertEquals("start,approve,end", variants.getValue()[0].getValue("trace"));
+        assertEquals(ProcessMiningService.hash("start,approve,end"), variants.getValue()[0].getValue("hash"));
+        assertEquals(2L, variants.getValue()[0].getValue("count"));
+        assertEquals(6 * 3_600_000L, variants.getValue()[0].getValue("sum"));
+
+        ArgumentCaptor<SqlParameterSource[]> edges = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO process_transition"), edges.capture());
+        Map<String, Long> edgeSums = Arrays.stream(edges.getValue()).collect(Collectors.toMap(
+                p -> p.getValue("source") + ">" + p.getValue("target"), p -> (Long) p.getValue("sum")));
+        assertEquals(Map.of("start>approve", 4 * 3_600_000L, "approve>end", 2 * 3_600_000L), edgeSums);
+
+        ArgumentCaptor<SqlParameterSource> keyset = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).update(startsWith("UPDATE analytics_watermark"), keyset.capture());
+        assertEquals(Timestamp.valueOf(T0.plusHours(4)), keyset.getValue().getValue("watermark"));
+        assertEquals("p2", keyset.getValue().getValue("cursor"));
+
+        ArgumentCaptor<SqlParameterSource[]> mined = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO process_mining_instance"), mined.capture());
+        assertEquals(List.of("p1", "p2"), Arrays.stream(mined.getValue()).map(p -> p.getValue("id")).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mine_MinesInstancesMissedBelowTheKeysetWithoutMovingIt() throws Exception {
+        // Arrange: p3 ended before the keyset but committed after it moved on; nothing after the keyset
+        when(jdbcTemplate.queryForObject(contains("FOR UPDATE"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(new Position(T0.plusHours(4), "p2"));
+        ResultSet missed = instanceRow("p3", T0, T0.plusHours(3).plusMinutes(50));
+        when(jdbcTemplate.query(contains("NOT EXISTS"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> List.of(invocation.getArgument(2, RowMapper.class).mapRow(missed, 0)));
+        when(jdbcTemplate.query(contains("LIMIT :limit"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(List.of());
+        List<ResultSet> activities = List.of(activityRow("p3", "start", T0), activityRow("p3", "end", T0.plusHours(3)));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (ResultSet rs : activities) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("FROM ACT_HI_ACTINST"), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE"), any(SqlParameterSource[].class)))
+                .thenAnswer(invocation -> new int[invocation.getArgument(1, SqlParameterSource[].class).length]);
+
+        // Act
+        ProcessMiningReportDTO report = service.mine(10);
+
+        // Assert
+        assertTrue(report.isComplete());
+        assertEquals(0, report.getBatches());
+        assertEquals(1, report.getInstancesMined());
+        ArgumentCaptor<SqlParameterSource> window = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).query(contains("NOT EXISTS"), window.capture(), any(RowMapper.class));
+        assertEquals(Timestamp.valueOf(T0.plusHours(3).plusMinutes(30)), window.getValue().getValue("from"));
+        verify(jdbcTemplate).update(eq("DELETE FROM process_mining_instance WHERE end_time < :from"),
+                any(SqlParameterSource.class));
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO process_variant"), any(SqlParameterSource[].class));
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO process_mining_instance"), any(SqlParameterSource[].class));
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE analytics_watermark"), any(SqlParameterSource.class));
+    }
+
+    @Test
+    void getVariants_ThrowsForUnknownDefinitionWithoutVariants() {
+        // Arrange
+        ProcessDefinitionQuery query = mock(ProcessDefinitionQuery.class);
+        when(repositoryService.createProcessDefinitionQuery()).thenReturn(query);
+        when(query.processDefinitionKey("missing")).thenReturn(query);
+        when(query.latestVersion()).thenReturn(query);
+        when(query.singleResult()).thenReturn(null);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> service.getVariants("missing", 10));
+        assertThrows(IllegalArgumentException.class, () -> service.getVariants(" ", 10));
+    }
+
+    private static ResultSet instanceRow(String id, LocalDateTime start, LocalDateTime end) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("ID_")).thenReturn(id);
+        when(rs.getString("KEY_")).thenReturn("expense");
+        when(rs.getTimestamp("START_TIME_")).thenReturn(Timestamp.valueOf(start));
+        when(rs.getTimestamp("END_TIME_")).thenReturn(Timestamp.valueOf(end));
+        return rs;
+    }
+
+    private static ResultSet activityRow(String instanceId, String activityId, LocalDateTime end) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("PROC_INST_ID_")).thenReturn(instanceId);
+        when(rs.getString("ACT_ID_")).thenReturn(activityId);
+        when(rs.getTimestamp("END_TIME_")).thenReturn(Timestamp.valueOf(end));
+        return rs;
+    }
+}
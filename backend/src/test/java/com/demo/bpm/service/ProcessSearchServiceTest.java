@@ -0,0 +1,103 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ProcessSearchCriteria;
+import com.demo.bpm.dto.ProcessSearchPageDTO;
+import com.demo.bpm.dto.WorkflowSummaryDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessSearchServiceTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private WorkflowHistoryService workflowHistoryService;
+
+    @InjectMocks
+    private ProcessSearchService processSearchService;
+
+    @Test
+    void search_ReturnsPageAndResumeToken() {
+        // Arrange
+        LocalDateTime t1 = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        when(jdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class))).thenReturn(List.of(
+                new ProcessSearchService.Cursor(t1, "pi-3"),
+                new ProcessSearchService.Cursor(t1, "pi-2"),
+                new ProcessSearchService.Cursor(t1.minusSeconds(1), "pi-1")));
+        when(workflowHistoryService.getWorkflowSummaries(List.of("pi-3", "pi-2"))).thenReturn(List.of(
+                WorkflowSummaryDTO.builder().processInstanceId("pi-3").build(),
+                WorkflowSummaryDTO.builder().processInstanceId("pi-2").build()));
+
+        // Act
+        ProcessSearchPageDTO page = processSearchService.search(new ProcessSearchCriteria(), null, 2);
+
+        // Assert
+        assertTrue(page.isHasMore());
+        assertEquals(2, page.getProcesses().size());
+        ProcessSearchService.Cursor resume = ProcessSearchService.Cursor.decode(page.getNextToken());
+        assertEquals(t1, resume.startTime());
+        assertEquals("pi-2", resume.id());
+    }
+
+    @Test
+    void search_AppliesFiltersAndKeyset() {
+        // Arrange
+        LocalDateTime t1 = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        String token = new ProcessSearchService.Cursor(t1, "pi-9").encode();
+        when(jdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class))).thenReturn(List.of());
+        when(workflowHistoryService.getWorkflowSummaries(List.of())).thenReturn(List.of());
+        ProcessSearchCriteria criteria = ProcessSearchCriteria.builder()
+                .status("completed")
+                .processDefinitionKey("purchase-request")
+                .initiator("alice")
+                .businessKeyPrefix("PR_2024%")
+                .startedFrom(t1.minusDays(30))
+                .build();
+
+        // Act
+        ProcessSearchPageDTO page = processSearchService.search(criteria, token, 20);
+
+        // Assert
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(sql.capture(), params.capture(), any(RowMapper.class));
+        assertTrue(sql.getValue().contains("D.KEY_ = :definitionKey"));
+        assertTrue(sql.getValue().contains("P.END_TIME_ IS NOT NULL"));
+        assertTrue(sql.getValue().contains("P.START_TIME_ >= :startedFrom"));
+        assertTrue(sql.getValue().contains("P.START_TIME_ < :afterTime OR (P.START_TIME_ = :afterTime AND P.ID_ < :afterId)"));
+        assertTrue(sql.getValue().endsWith("ORDER BY P.START_TIME_ DESC, P.ID_ DESC LIMIT :limit"));
+        assertEquals("PR\\_2024\\%%", params.getValue().getValue("businessKey"));
+        assertEquals("alice", params.getValue().getValue("initiator"));
+        assertEquals(Timestamp.valueOf(t1), params.getValue().getValue("afterTime"));
+        assertEquals(21, params.getValue().getValue("limit"));
+        assertFalse(page.isHasMore());
+        assertEquals(token, page.getNextToken());
+    }
+
+    @Test
+    void search_RejectsUnknownStatusAndGarbageToken() {
+        ProcessSearchCriteria criteria = ProcessSearchCriteria.builder().status("PAUSED").build();
+
+        assertThrows(IllegalArgumentException.class, () -> processSearchService.search(criteria, null, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> processSearchService.search(new ProcessSearchCriteria(), "not-a-token", 10));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
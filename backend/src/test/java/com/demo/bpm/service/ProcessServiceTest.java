@@ -1,9 +1,11 @@
 package com.demo.bpm.service;
 
+import com.demo.bpm.dto.ProcessInstanceDTO;
 import com.demo.bpm.exception.InvalidOperationException;
 import com.demo.bpm.exception.ResourceNotFoundException;
 import com.demo.bpm.repository.ProcessConfigRepository;
 import org.flowable.engine.HistoryService;
+import org.flowable.engine.IdentityService;
 import org.flowable.engine.RepositoryService;
 import org.flowable.engine.RuntimeService;
 import org.flowable.engine.runtime.ProcessInstance;
@@ -15,8 +17,17 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -29,6 +40,8 @@ class ProcessServiceTest {
     @Mock
     private RepositoryService repositoryService;
     @Mock
+    private IdentityService identityService;
+    @Mock
     private HistoryService historyService;
     @Mock
     private ProcessConfigRepository processConfigRepository;
@@ -171,4 +184,50 @@ class ProcessServiceTest {
         // Verify
         verify(runtimeService).activateProcessInstanceById(processInstanceId);
     }
+
+    @Test
+    void getActiveProcesses_MatchesStartUserAndHydratesPageInOneQuery() {
+        // Setup
+        ProcessInstance first = mock(ProcessInstance.class);
+        when(first.getId()).thenReturn("proc1");
+        ProcessInstance second = mock(ProcessInstance.class);
+        when(second.getId()).thenReturn("proc2");
+
+        ProcessInstanceQuery pageQuery = mock(ProcessInstanceQuery.class);
+        ProcessInstanceQuery countQuery = mock(ProcessInstanceQuery.class);
+        ProcessInstanceQuery hydrateQuery = mock(ProcessInstanceQuery.class);
+        when(runtimeService.createProcessInstanceQuery()).thenReturn(pageQuery, countQuery, hydrateQuery);
+        when(pageQuery.startedBy("user1")).thenReturn(pageQuery);
+        when(pageQuery.orderByStartTime()).thenReturn(pageQuery);
+        when(pageQuery.desc()).thenReturn(pageQuery);
+        when(pageQuery.listPage(0, 10)).thenReturn(List.of(second, first));
+        when(countQuery.startedBy("user1")).thenReturn(countQuery);
+        when(countQuery.count()).thenReturn(12L);
+
+        ProcessInstance hydratedFirst = hydrated("proc1", "user1", Map.of("amount", 10));
+        ProcessInstance hydratedSecond = hydrated("proc2", null, Map.of("_startedBy", "user1"));
+        when(hydrateQuery.processInstanceIds(Set.of("proc1", "proc2"))).thenReturn(hydrateQuery);
+        when(hydrateQuery.includeProcessVariables()).thenReturn(hydrateQuery);
+        when(hydrateQuery.list()).thenReturn(List.of(hydratedFirst, hydratedSecond));
+
+        // Execute
+        Page<ProcessInstanceDTO> page = processService.getActiveProcesses("user1", PageRequest.of(0, 10));
+
+        // Verify
+        assertEquals(12L, page.getTotalElements());
+        assertEquals(List.of("proc2", "proc1"), page.getContent().stream().map(ProcessInstanceDTO::getId).toList());
+        assertEquals("user1", page.getContent().get(0).getStartUserId());
+        assertEquals(10, page.getContent().get(1).getVariables().get("amount"));
+        verify(pageQuery, never()).variableValueEquals(anyString(), any());
+        verify(runtimeService, never()).getVariables(anyString());
+    }
+
+    private ProcessInstance hydrated(String id, String startUserId, Map<String, Object> variables) {
+        ProcessInstance instance = mock(ProcessInstance.class);
+        when(instance.getId()).thenReturn(id);
+        when(instance.getStartUserId()).thenReturn(startUserId);
+        when(instance.getStartTime()).thenReturn(new Date());
+        when(instance.getProcessVariables()).thenReturn(variables);
+        return instance;
+    }
 }
@@ -0,0 +1,205 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.dto.ProcessStartStatusDTO;
+import com.demo.bpm.entity.ProcessStartRequest;
+import com.demo.bpm.entity.ProcessStartRequest.Status;
+import com.demo.bpm.exception.QueueCapacityExceededException;
+import com.demo.bpm.exception.ResourceNotFoundException;
+import com.demo.bpm.repository.ProcessStartRequestRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinitionQuery;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ProcessStartQueueServiceTest {
+
+    @Mock
+    private ProcessStartRequestRepository repository;
+    @Mock
+    private ProcessService processService;
+    @Mock
+    private RepositoryService repositoryService;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProcessStartQueueService queueService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        queueService = new ProcessStartQueueService(repository, processService, repositoryService, transactionTemplate,
+                new ObjectMapper(), meterRegistry);
+        ProcessDefinitionQuery definitionQuery = mock(ProcessDefinitionQuery.class, RETURNS_SELF);
+        when(repositoryService.createProcessDefinitionQuery()).thenReturn(definitionQuery);
+        when(definitionQuery.count()).thenReturn(1L);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(transactionStatus));
+        ReflectionTestUtils.setField(queueService, "capacity", 2L);
+        when(repository.countByStatus(Status.QUEUED)).thenReturn(0L);
+        when(repository.save(any(ProcessStartRequest.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        queueService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        queueService.shutdown();
+    }
+
+    @Test
+    void enqueue_StoresRequestAndWorkerStartsIt() {
+        // Arrange
+        AtomicReference<ProcessStartRequest> saved = new AtomicReference<>();
+        when(repository.save(any(ProcessStartRequest.class))).thenAnswer(invocation -> {
+            saved.set(invocation.getArgument(0));
+            return saved.get();
+        });
+        when(repository.findIdsByStatus(eq(Status.QUEUED), any(Pageable.class))).thenReturn(List.of("req-1"), List.of());
+        when(repository.claim(eq("req-1"), any(), eq(Status.QUEUED), eq(Status.RUNNING))).thenReturn(1);
+        when(repository.findById("req-1")).thenAnswer(invocation -> {
+            // As after the claim
+            saved.get().setAttempts(1);
+            return Optional.of(saved.get());
+        });
+        ProcessInstance instance = mock(ProcessInstance.class);
+        when(instance.getId()).thenReturn("pi-1");
+        when(processService.startInstance(eq("purchase-request"), eq("PR-1"), anyMap(), eq("alice"), eq(true))).thenReturn(instance);
+        when(repository.complete(eq("req-1"), eq(1), eq(Status.RUNNING), eq(Status.STARTED), eq("pi-1"), isNull(), any()))
+                .thenReturn(1);
+
+        // Act
+        ProcessStartStatusDTO status = queueService.enqueue("purchase-request", "PR-1", Map.of("amount", 10), "alice");
+
+        // Assert
+        assertEquals("QUEUED", status.getStatus());
+        assertEquals(saved.get().getId(), status.getTrackingId());
+        verify(repository, timeout(2000)).complete(eq("req-1"), eq(1), eq(Status.RUNNING), eq(Status.STARTED),
+                eq("pi-1"), isNull(), any());
+        verify(processService).startInstance("purchase-request", "PR-1", Map.of("amount", 10), "alice", true);
+        // The start and its STARTED status share one transaction
+        verify(transactionTemplate).execute(any());
+        verify(transactionStatus, never()).setRollbackOnly();
+        assertEquals(1.0, meterRegistry.get("bpm.async_start.requests").tag("outcome", "accepted").counter().count());
+    }
+
+    @Test
+    void enqueue_RejectsWhenQueueIsFull() {
+        // Arrange
+        when(repository.findIdsByStatus(eq(Status.QUEUED), any(Pageable.class))).thenReturn(List.of());
+        queueService.enqueue("purchase-request", null, Map.of(), "alice");
+        queueService.enqueue("purchase-request", null, Map.of(), "alice");
+
+        // Act & Assert
+        QueueCapacityExceededException ex = assertThrows(QueueCapacityExceededException.class,
+                () -> queueService.enqueue("purchase-request", null, Map.of(), "alice"));
+        assertEquals(30, ex.getRetryAfterSeconds());
+        assertEquals(2, queueService.getStats().getQueued());
+        assertEquals(1, queueService.getStats().getRejected());
+        assertEquals(2.0, meterRegistry.get("bpm.async_start.queue.depth").gauge().value());
+    }
+
+    @Test
+    void poll_RequeuesStaleClaimsAndRecordsFailures() {
+        // Arrange
+        ProcessStartRequest request = ProcessStartRequest.builder()
+                .id("req-2").processDefinitionKey("purchase-request").requestedBy("bob")
+                .variables("{}").status(Status.RUNNING).attempts(2).build();
+        when(repository.failExhausted(any(), eq(3), eq(Status.RUNNING), eq(Status.FAILED), anyString(), any()))
+                .thenReturn(1);
+        when(repository.requeueStale(any(), eq(Status.RUNNING), eq(Status.QUEUED))).thenReturn(1);
+        when(repository.countByStatus(Status.QUEUED)).thenReturn(1L);
+        when(repository.findIdsByStatus(eq(Status.QUEUED), any(Pageable.class))).thenReturn(List.of("req-2"), List.of());
+        when(repository.claim(eq("req-2"), any(), eq(Status.QUEUED), eq(Status.RUNNING))).thenReturn(1);
+        when(repository.findById("req-2")).thenReturn(Optional.of(request));
+        when(processService.startInstance(anyString(), any(), anyMap(), anyString(), anyBoolean()))
+                .thenThrow(new IllegalArgumentException("No process definition found for key purchase-request"));
+
+        // Act
+        queueService.poll();
+
+        // Assert
+        verify(repository, timeout(2000)).complete(eq("req-2"), eq(2), eq(Status.RUNNING), eq(Status.FAILED), isNull(),
+                eq("No process definition found for key purchase-request"), any());
+        assertEquals(1, queueService.getStats().getRequeued());
+        assertEquals(0, queueService.getStats().getQueued());
+        // One exhausted by max-attempts, one failed by its worker
+        assertEquals(2, queueService.getStats().getFailed());
+    }
+
+    @Test
+    void execute_RollsBackTheStartWhenTheClaimWasLost() {
+        // Arrange: the request went stale and was requeued while its worker was still starting it
+        ProcessStartRequest request = ProcessStartRequest.builder()
+                .id("req-3").processDefinitionKey("purchase-request").requestedBy("bob")
+                .variables("{}").status(Status.RUNNING).attempts(1).build();
+        when(repository.findIdsByStatus(eq(Status.QUEUED), any(Pageable.class))).thenReturn(List.of("req-3"), List.of());
+        when(repository.claim(eq("req-3"), any(), eq(Status.QUEUED), eq(Status.RUNNING))).thenReturn(1);
+        when(repository.findById("req-3")).thenReturn(Optional.of(request));
+        ProcessInstance instance = mock(ProcessInstance.class);
+        when(instance.getId()).thenReturn("pi-3");
+        when(processService.startInstance(anyString(), any(), anyMap(), anyString(), anyBoolean())).thenReturn(instance);
+        when(repository.complete(anyString(), anyInt(), any(), any(), any(), any(), any())).thenReturn(0);
+
+        // Act
+        queueService.poll();
+
+        // Assert
+        verify(transactionStatus, timeout(2000)).setRollbackOnly();
+        // The business data was written in the transaction that rolled back
+        verify(processService).startInstance(anyString(), any(), anyMap(), anyString(), eq(true));
+        assertEquals(0, queueService.getStats().getStarted());
+        verify(repository, never()).complete(anyString(), anyInt(), any(), eq(Status.FAILED), any(), any(), any());
+    }
+
+    @Test
+    void enqueue_RejectsUnknownProcessDefinition() {
+        // Arrange
+        when(repositoryService.createProcessDefinitionQuery().count()).thenReturn(0L);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class,
+                () -> queueService.enqueue("no-such-process", null, Map.of(), "alice"));
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void getStatus_IsOnlyVisibleToTheRequesterAndAdmins() {
+        // Arrange
+        ProcessStartRequest request = ProcessStartRequest.builder()
+                .id("req-4").processDefinitionKey("purchase-request").requestedBy("alice")
+                .status(Status.FAILED).errorMessage("boom").build();
+        when(repository.findById("req-4")).thenReturn(Optional.of(request));
+
+        // Act & Assert
+        assertEquals("boom", queueService.getStatus("req-4", "alice", false).getErrorMessage());
+        assertEquals("alice", queueService.getStatus("req-4", "admin", true).getRequestedBy());
+        assertThrows(ResourceNotFoundException.class, () -> queueService.getStatus("req-4", "bob", false));
+    }
+}
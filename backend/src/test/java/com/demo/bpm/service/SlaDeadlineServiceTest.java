@@ -0,0 +1,336 @@
+package com.demo.bpm.service;
+
+import com.demo.bpm.entity.Notification;
+import com.demo.bpm.entity.SLA;
+import com.demo.bpm.repository.SLARepository;
+import org.flowable.engine.RepositoryService;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SlaDeadlineServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 9, 0);
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private SLARepository slaRepository;
+    @Mock
+    private NotificationService notificationService;
+    @Mock
+    private RepositoryService repositoryService;
+
+    private SlaDeadlineService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new SlaDeadlineService(jdbcTemplate, transactionTemplate, slaRepository, notificationService,
+                repositoryService);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(mock(TransactionStatus.class)));
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void taskCreated_WritesWarningAndBreachInstants() {
+        // Arrange: a 10 hour SLA warning at 80%
+        SLA sla = sla(80, true);
+        when(slaRepository.findByTargetKeyAndTargetType("approve", SLA.SLATargetType.TASK)).thenReturn(Optional.of(sla));
+        Task task = mock(Task.class);
+        when(task.getId()).thenReturn("t1");
+        when(task.getName()).thenReturn("Approve");
+        when(task.getTaskDefinitionKey()).thenReturn("approve");
+        when(task.getProcessInstanceId()).thenReturn("p1");
+        when(task.getCreateTime()).thenReturn(Date.from(T0.atZone(ZoneId.systemDefault()).toInstant()));
+
+        // Act
+        service.taskCreated(task);
+
+        // Assert: the first instant due is the warning
+        ArgumentCaptor<SqlParameterSource> params = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).update(contains("INSERT INTO sla_deadline"), params.capture());
+        assertEquals(Timestamp.valueOf(T0.plusHours(8)), params.getValue().getValue("warnAt"));
+        assertEquals(Timestamp.valueOf(T0.plusHours(10)), params.getValue().getValue("breachAt"));
+        assertEquals(Timestamp.valueOf(T0.plusHours(8)), params.getValue().getValue("dueAt"));
+    }
+
+    @Test
+    void taskCreated_WithoutEnabledSla_WritesNothing() {
+        // Arrange
+        SLA sla = sla(80, false);
+        when(slaRepository.findByTargetKeyAndTargetType("approve", SLA.SLATargetType.TASK)).thenReturn(Optional.of(sla));
+        Task task = mock(Task.class);
+        when(task.getTaskDefinitionKey()).thenReturn("approve");
+
+        // Act
+        service.taskCreated(task);
+
+        // Assert
+        verify(jdbcTemplate, never()).update(anyString(), any(SqlParameterSource.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fireDue_NotifiesOnlyClaimedRowsAndLetsDueBreachSupersedeWarning() throws Exception {
+        // Arrange: a warning due, a breach due whose warning never went out, and a row another node claimed
+        LocalDateTime now = LocalDateTime.now();
+        ResultSet warning = dueRow(1, "t1", now.minusHours(9), now.minusHours(1), now.plusHours(1), "alice");
+        ResultSet breach = dueRow(2, "t2", now.minusHours(12), now.minusHours(4), now.minusHours(2), "bob");
+        ResultSet taken = dueRow(3, "t3", now.minusHours(12), now.minusHours(4), now.minusHours(2), "carol");
+        when(jdbcTemplate.query(contains("FROM sla_deadline D"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    RowMapper<Object> mapper = invocation.getArgument(2);
+                    return List.of(mapper.mapRow(warning, 0), mapper.mapRow(breach, 1), mapper.mapRow(taken, 2));
+                });
+        when(jdbcTemplate.batchUpdate(contains("UPDATE sla_deadline"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1, 1, 0});
+
+        // Act
+        int sent = service.fireDue(5);
+
+        // Assert
+        assertEquals(2, sent);
+        verify(notificationService).createNotification(eq("alice"), eq("SLA Warning: Task t1"), contains("80% used"),
+                eq(Notification.NotificationType.TASK_DUE_SOON), eq("/tasks/t1"));
+        verify(notificationService).createNotification(eq("bob"), eq("SLA Breach: Task t2"), anyString(),
+                eq(Notification.NotificationType.TASK_OVERDUE), eq("/tasks/t2"));
+        verify(notificationService, never()).createNotification(eq("carol"), anyString(), anyString(), any(), anyString());
+
+        ArgumentCaptor<SqlParameterSource[]> claims = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(contains("UPDATE sla_deadline"), claims.capture());
+        // The warning reschedules the row for its breach; the breach leaves nothing due
+        assertEquals(Timestamp.valueOf(now.plusHours(1).withNano(0)), claims.getValue()[0].getValue("next"));
+        assertNull(claims.getValue()[1].getValue("next"));
+        assertNull(claims.getValue()[1].getValue("warningSentAt"));
+        assertNotNull(claims.getValue()[1].getValue("breachSentAt"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fireDue_WithoutAssignee_MovesOnWithoutMarkingSent() throws Exception {
+        // Arrange: a group task nobody has claimed yet
+        LocalDateTime now = LocalDateTime.now();
+        ResultSet warning = dueRow(1, "t1", now.minusHours(9), now.minusHours(1), now.plusHours(1), null);
+        when(jdbcTemplate.query(contains("FROM sla_deadline D"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> List.of(invocation.getArgument(2, RowMapper.class).mapRow(warning, 0)));
+        when(jdbcTemplate.batchUpdate(contains("UPDATE sla_deadline"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1});
+
+        // Act
+        int sent = service.fireDue(1);
+
+        // Assert: the row waits for its breach, with the warning still unsent
+        assertEquals(0, sent);
+        verifyNoInteractions(notificationService);
+        ArgumentCaptor<SqlParameterSource[]> claims = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(contains("UPDATE sla_deadline"), claims.capture());
+        assertEquals(Timestamp.valueOf(now.plusHours(1).withNano(0)), claims.getValue()[0].getValue("next"));
+        assertNull(claims.getValue()[0].getValue("warningSentAt"));
+    }
+
+    @Test
+    void taskAssigned_MakesUnsentWarningsAndBreachesDueAgain() {
+        // Act
+        service.taskAssigned("t1");
+
+        // Assert
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SqlParameterSource> params = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).update(sql.capture(), params.capture());
+        assertTrue(sql.getValue().startsWith("UPDATE sla_deadline SET due_at = :now"));
+        assertTrue(sql.getValue().contains("breach_sent_at IS NULL"));
+        assertEquals("TASK", params.getValue().getValue("targetType"));
+        assertEquals("t1", params.getValue().getValue("targetId"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void backfill_SkipsRowsAnotherNodeAddedFirst() {
+        // Arrange: two running tasks without deadlines; another node's backfill adds the first meanwhile
+        when(slaRepository.findAll()).thenReturn(List.of(sla(80, true)));
+        MapSqlParameterSource first = new MapSqlParameterSource("targetId", "t1");
+        MapSqlParameterSource second = new MapSqlParameterSource("targetId", "t2");
+        when(jdbcTemplate.query(contains("FROM ACT_RU_TASK T"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(List.of(first, second));
+        when(jdbcTemplate.batchUpdate(contains("INSERT INTO sla_deadline"), any(SqlParameterSource[].class)))
+                .thenThrow(new DuplicateKeyException("uk_sla_deadline_target"));
+        when(jdbcTemplate.update(contains("INSERT INTO sla_deadline"), same(first)))
+                .thenThrow(new DuplicateKeyException("uk_sla_deadline_target"));
+        when(jdbcTemplate.update(contains("INSERT INTO sla_deadline"), same(second))).thenReturn(1);
+
+        // Act
+        int added = service.backfill();
+
+        // Assert
+        assertEquals(1, added);
+        verify(jdbcTemplate).update(contains("INSERT INTO sla_deadline"), same(second));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fireDue_SendsProcessBreachToInitiator() throws Exception {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        ResultSet breach = dueRow(1, "p1", now.minusDays(4), now.minusDays(2), now.minusDays(1), "dave");
+        when(jdbcTemplate.query(contains("FROM sla_deadline D"), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> List.of(invocation.getArgument(2, RowMapper.class).mapRow(breach, 0)));
+        when(jdbcTemplate.batchUpdate(contains("UPDATE sla_deadline"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1});
+
+        // Act
+        service.fireDue(1);
+
+        // Assert
+        verify(notificationService).createNotification(eq("dave"), eq("SLA Breach: Task p1"),
+                eq("Process 'Task p1' has breached its SLA of 72 hours, 0 minutes"),
+                eq(Notification.NotificationType.SLA_BREACH), anyString());
+    }
+
+    @Test
+    void processEnded_RecordsOutcomeOnlyWhenCompleted() {
+        // Act
+        service.processEnded("p1", false);
+        service.processEnded("p2", true);
+
+        // Assert
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SqlParameterSource> params = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate, times(2)).update(sql.capture(), params.capture());
+        assertTrue(sql.getAllValues().get(0).contains("margin_ms"));
+        assertFalse(sql.getAllValues().get(1).contains("margin_ms"));
+        assertEquals("PROCESS", params.getAllValues().get(0).getValue("targetType"));
+        assertEquals("p2", params.getAllValues().get(1).getValue("targetId"));
+    }
+
+    @Test
+    void summarize_SplitsRunningStatusAndOutcomesPerTargetType() throws Exception {
+        // Arrange: 5 running process SLAs, 1 breached and 1 at risk; 3 met and 1 missed recently
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("target_type")).thenReturn("PROCESS");
+        when(rs.getLong("active")).thenReturn(5L);
+        when(rs.getLong("breached")).thenReturn(1L);
+        when(rs.getLong("at_risk")).thenReturn(1L);
+        when(rs.getDouble("avg_used")).thenReturn(42.0);
+        when(rs.getLong("met")).thenReturn(3L);
+        when(rs.getLong("missed")).thenReturn(1L);
+        when(rs.getDouble("avg_margin_ms")).thenReturn(1_800_000d);
+        doAnswer(invocation -> {
+            invocation.getArgument(2, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(contains("GROUP BY target_type"), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+
+        // Act
+        var stats = service.summarize(30);
+
+        // Assert
+        assertFalse(stats.containsKey(SLA.SLATargetType.TASK));
+        var processes = stats.get(SLA.SLATargetType.PROCESS);
+        assertEquals(3, processes.getOnTrack());
+        assertEquals(1, processes.getAtRisk());
+        assertEquals(1, processes.getBreached());
+        assertEquals(3, processes.getMet());
+        assertEquals(1, processes.getMissed());
+        assertEquals(30.0, processes.getAvgMarginMinutes());
+        assertEquals(30, processes.getOutcomeWindowDays());
+    }
+
+    @Test
+    void summarize_ReadsRunningAndRecentRowsPerTargetType() {
+        // Act
+        service.summarize(30);
+
+        // Assert: each branch names the target types, so both are ranges of the outcome index
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SqlParameterSource> params = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).query(sql.capture(), params.capture(), any(RowCallbackHandler.class));
+        assertTrue(sql.getValue().contains("target_type IN (:targetTypes) AND completed_at IS NULL UNION ALL"));
+        assertTrue(sql.getValue().contains("target_type IN (:targetTypes) AND completed_at >= :since"));
+        assertEquals(List.of("PROCESS", "TASK"), params.getValue().getValue("targetTypes"));
+    }
+
+    @Test
+    void purgeCompleted_DeletesInBatchesPerTargetType() {
+        // Arrange: a full batch of processes, then a partial one; a partial batch of tasks
+        when(jdbcTemplate.update(startsWith("DELETE FROM sla_deadline"), any(SqlParameterSource.class)))
+                .thenReturn(200, 15, 3);
+
+        // Act
+        int purged = service.purgeCompleted(30);
+
+        // Assert
+        assertEquals(218, purged);
+        ArgumentCaptor<SqlParameterSource> params = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate, times(3)).update(startsWith("DELETE FROM sla_deadline"), params.capture());
+        assertEquals(List.of("PROCESS", "PROCESS", "TASK"),
+                params.getAllValues().stream().map(p -> p.getValue("targetType")).toList());
+        Timestamp before = (Timestamp) params.getValue().getValue("before");
+        assertTrue(before.toLocalDateTime().isBefore(LocalDateTime.now().minusDays(29)));
+    }
+
+    private static SLA sla(int warningThreshold, boolean enabled) {
+        SLA sla = new SLA();
+        sla.setTargetKey("approve");
+        sla.setTargetType(SLA.SLATargetType.TASK);
+        sla.setDuration(Duration.ofHours(10));
+        sla.setWarningThresholdPercentage(warningThreshold);
+        sla.setEnabled(enabled);
+        return sla;
+    }
+
+    private static ResultSet dueRow(long id, String taskId, LocalDateTime startedAt, LocalDateTime warnAt,
+                                    LocalDateTime breachAt, String assignee) throws Exception {
+        startedAt = startedAt.withNano(0);
+        warnAt = warnAt.withNano(0);
+        breachAt = breachAt.withNano(0);
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getString("target_id")).thenReturn(taskId);
+        when(rs.getString("target_name")).thenReturn("Task " + taskId);
+        when(rs.getTimestamp("started_at")).thenReturn(Timestamp.valueOf(startedAt));
+        when(rs.getTimestamp("warn_at")).thenReturn(Timestamp.valueOf(warnAt));
+        when(rs.getTimestamp("breach_at")).thenReturn(Timestamp.valueOf(breachAt));
+        when(rs.getTimestamp("due_at")).thenReturn(Timestamp.valueOf(breachAt.isAfter(LocalDateTime.now()) ? warnAt : breachAt));
+        when(rs.getString("target_type")).thenReturn(taskId.startsWith("p") ? "PROCESS" : "TASK");
+        when(rs.getString("recipient")).thenReturn(assignee);
+        return rs;
+    }
+}
@@ -1,6 +1,10 @@
 package com.demo.bpm.service;
 
+import com.demo.bpm.dto.ApprovalDTO;
+import com.demo.bpm.dto.EscalationDTO;
+import com.demo.bpm.dto.TaskHistoryDTO;
 import com.demo.bpm.dto.WorkflowHistoryDTO;
+import com.demo.bpm.dto.WorkflowSummaryDTO;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.flowable.engine.HistoryService;
 import org.flowable.engine.RepositoryService;
@@ -17,12 +21,20 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.flowable.task.api.Task;
 import org.flowable.task.api.TaskQuery;
+import org.flowable.task.api.history.HistoricTaskInstance;
+import org.flowable.variable.api.history.HistoricVariableInstance;
+import org.flowable.variable.api.history.HistoricVariableInstanceQuery;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -43,6 +55,14 @@ class WorkflowHistoryServiceTest {
     private RepositoryService repositoryService;
     @Mock
     private ObjectMapper objectMapper;
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    private AuditEventService auditEventService;
+    // Only the legacy record mapping is used, which needs nothing but the object mapper
+    @Spy
+    private AuditEventMigrationService auditEventMigrationService =
+            new AuditEventMigrationService(null, null, null, null, new ObjectMapper());
 
     @Mock
     private ProcessInstanceQuery processInstanceQuery;
@@ -78,32 +98,178 @@ class WorkflowHistoryServiceTest {
 
         ProcessInstance pi = mock(ProcessInstance.class);
         when(pi.getId()).thenReturn("pi1");
-        when(pi.getProcessDefinitionId()).thenReturn("pd1");
-        when(pi.getStartTime()).thenReturn(new Date());
 
         when(processInstanceQuery.listPage(0, 10)).thenReturn(List.of(pi));
 
-        // Mock getWorkflowHistory internals
-        when(runtimeService.createProcessInstanceQuery().processInstanceId("pi1")).thenReturn(processInstanceQuery);
-        when(processInstanceQuery.singleResult()).thenReturn(pi);
-        when(runtimeService.getVariables("pi1")).thenReturn(Map.of("startedBy", "user1"));
+        // Summary hydration
+        HistoricProcessInstance hpi = mock(HistoricProcessInstance.class);
+        when(hpi.getId()).thenReturn("pi1");
+        when(hpi.getProcessDefinitionKey()).thenReturn("myProcess");
+        when(hpi.getStartTime()).thenReturn(new Date());
+        when(historicProcessInstanceQuery.processInstanceIds(Set.of("pi1"))).thenReturn(historicProcessInstanceQuery);
+        when(historicProcessInstanceQuery.list()).thenReturn(List.of(hpi));
+        when(processInstanceQuery.processInstanceIds(Set.of("pi1"))).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.suspended()).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.list()).thenReturn(List.of());
+        when(taskQuery.processInstanceIdIn(Set.of("pi1"))).thenReturn(taskQuery);
+        when(taskQuery.orderByTaskCreateTime()).thenReturn(taskQuery);
+        when(taskQuery.asc()).thenReturn(taskQuery);
+        when(taskQuery.list()).thenReturn(List.of());
+
+        // Execute
+        List<WorkflowSummaryDTO> results = workflowHistoryService.getAllProcesses("ACTIVE", "myProcess", 0, 10);
+
+        // Verify
+        verify(processInstanceQuery).processDefinitionKey("myProcess");
+        assertEquals(1, results.size());
+        assertEquals("ACTIVE", results.get(0).getStatus());
+    }
+
+    @Test
+    void getWorkflowSummaries_loadsPageWithSetBasedQueries() {
+        // Arrange
+        HistoricProcessInstance running = historic("pi1", null);
+        HistoricProcessInstance finished = historic("pi2", new Date());
+        when(historicProcessInstanceQuery.processInstanceIds(Set.of("pi1", "pi2", "missing"))).thenReturn(historicProcessInstanceQuery);
+        when(historicProcessInstanceQuery.list()).thenReturn(List.of(finished, running));
 
-        when(taskQuery.processInstanceId("pi1")).thenReturn(taskQuery);
+        ProcessInstance suspended = mock(ProcessInstance.class);
+        when(suspended.getId()).thenReturn("pi1");
+        when(processInstanceQuery.processInstanceIds(Set.of("pi1"))).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.suspended()).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.list()).thenReturn(List.of(suspended));
 
-        when(historicTaskInstanceQuery.processInstanceId("pi1")).thenReturn(historicTaskInstanceQuery);
+        Task first = mock(Task.class);
+        when(first.getProcessInstanceId()).thenReturn("pi1");
+        when(first.getName()).thenReturn("Manager Approval");
+        when(first.getAssignee()).thenReturn("mgr");
+        Task second = mock(Task.class);
+        when(second.getProcessInstanceId()).thenReturn("pi1");
+        when(taskQuery.processInstanceIdIn(Set.of("pi1"))).thenReturn(taskQuery);
+        when(taskQuery.orderByTaskCreateTime()).thenReturn(taskQuery);
+        when(taskQuery.asc()).thenReturn(taskQuery);
+        when(taskQuery.list()).thenReturn(List.of(first, second));
+
+        // Act
+        List<WorkflowSummaryDTO> summaries = workflowHistoryService.getWorkflowSummaries(List.of("pi1", "pi2", "missing"));
+
+        // Assert
+        assertEquals(2, summaries.size());
+        assertEquals("pi1", summaries.get(0).getProcessInstanceId());
+        assertEquals("SUSPENDED", summaries.get(0).getStatus());
+        assertEquals("Manager Approval", summaries.get(0).getCurrentTaskName());
+        assertEquals("mgr", summaries.get(0).getCurrentAssignee());
+        assertEquals("COMPLETED", summaries.get(1).getStatus());
+        verify(historyService, never()).createHistoricVariableInstanceQuery();
+        verify(historyService, never()).createHistoricTaskInstanceQuery();
+    }
+
+    @Test
+    void getTaskHistory_loadsTaskVariablesInOneQuery() {
+        // Arrange
+        HistoricTaskInstance review = historicTask("t1");
+        HistoricTaskInstance approve = historicTask("t2");
+        when(historicTaskInstanceQuery.processInstanceIdIn(List.of("pi1"))).thenReturn(historicTaskInstanceQuery);
         when(historicTaskInstanceQuery.orderByHistoricTaskInstanceEndTime()).thenReturn(historicTaskInstanceQuery);
         when(historicTaskInstanceQuery.asc()).thenReturn(historicTaskInstanceQuery);
-        when(historicTaskInstanceQuery.list()).thenReturn(List.of());
+        when(historicTaskInstanceQuery.list()).thenReturn(List.of(review, approve));
 
-        ProcessDefinition pd = mock(ProcessDefinition.class);
-        when(processDefinitionQuery.processDefinitionId("pd1")).thenReturn(processDefinitionQuery);
-        when(processDefinitionQuery.singleResult()).thenReturn(pd);
+        HistoricVariableInstanceQuery variableQuery = mock(HistoricVariableInstanceQuery.class);
+        HistoricVariableInstance decision = mock(HistoricVariableInstance.class);
+        when(decision.getTaskId()).thenReturn("t2");
+        when(decision.getVariableName()).thenReturn("decision");
+        when(decision.getValue()).thenReturn("APPROVED");
+        when(historyService.createHistoricVariableInstanceQuery()).thenReturn(variableQuery);
+        when(variableQuery.taskIds(Set.of("t1", "t2"))).thenReturn(variableQuery);
+        when(variableQuery.list()).thenReturn(List.of(decision));
 
-        // Execute
-        List<WorkflowHistoryDTO> results = workflowHistoryService.getAllProcesses("ACTIVE", "myProcess", 0, 10);
+        // Act
+        List<TaskHistoryDTO> history = workflowHistoryService.getTaskHistory("pi1");
 
-        // Verify
-        verify(processInstanceQuery).processDefinitionKey("myProcess");
-        assertEquals(1, results.size());
+        // Assert
+        assertEquals(2, history.size());
+        assertEquals(Map.of(), history.get(0).getVariables());
+        assertEquals(Map.of("decision", "APPROVED"), history.get(1).getVariables());
+        verify(historyService, times(1)).createHistoricVariableInstanceQuery();
+        verify(variableQuery, never()).taskId(anyString());
+    }
+
+    private HistoricTaskInstance historicTask(String id) {
+        HistoricTaskInstance task = mock(HistoricTaskInstance.class);
+        when(task.getId()).thenReturn(id);
+        when(task.getProcessInstanceId()).thenReturn("pi1");
+        when(task.getCreateTime()).thenReturn(new Date());
+        return task;
+    }
+
+    private HistoricProcessInstance historic(String id, Date endTime) {
+        HistoricProcessInstance instance = mock(HistoricProcessInstance.class);
+        when(instance.getId()).thenReturn(id);
+        when(instance.getStartTime()).thenReturn(new Date());
+        when(instance.getEndTime()).thenReturn(endTime);
+        return instance;
+    }
+
+    @Test
+    void getWorkflowHistory_withoutAuditEvents_showsLegacyHistory() {
+        // Arrange: an instance whose JSON history has not been imported
+        runningInstance("pi1", Map.of("approvalHistory", List.of(
+                Map.of("id", "a-1", "approverId", "sup", "decision", "APPROVED", "stepOrder", 1,
+                        "timestamp", "2024-05-01T09:00:00")),
+                "escalationHistory", List.of(
+                Map.of("id", "e-1", "type", "ESCALATE", "fromLevel", "SUPERVISOR", "toLevel", "MANAGER",
+                        "timestamp", "2024-05-01T10:00:00"))));
+        when(auditEventService.getApprovals("pi1")).thenReturn(List.of());
+        when(auditEventService.getEscalations("pi1")).thenReturn(List.of());
+
+        // Act
+        WorkflowHistoryDTO history = workflowHistoryService.getWorkflowHistory("pi1");
+
+        // Assert
+        assertEquals(List.of("a-1"), history.getApprovals().stream().map(ApprovalDTO::getId).toList());
+        assertEquals("sup", history.getApprovals().get(0).getApproverId());
+        assertEquals(1, history.getEscalationHistory().size());
+        assertEquals("MANAGER", history.getEscalationHistory().get(0).getToLevel());
+    }
+
+    @Test
+    void getWorkflowHistory_withLegacyAndAuditEvents_mergesWithoutDuplicates() {
+        // Arrange: the first approval only exists in the legacy variable, the second in both
+        // (imported) and the third only in the audit store
+        runningInstance("pi1", Map.of("approvalHistory", List.of(
+                Map.of("id", "a-1", "approverId", "sup", "stepOrder", 1, "timestamp", "2024-05-01T09:00:00"),
+                Map.of("id", "a-2", "approverId", "mgr", "stepOrder", 2, "timestamp", "2024-05-02T09:00:00"))));
+        when(auditEventService.getApprovals("pi1")).thenReturn(List.of(
+                approval("a-2", "mgr", 2, LocalDateTime.of(2024, 5, 2, 9, 0)),
+                approval("a-3", "dir", 3, LocalDateTime.of(2024, 5, 3, 9, 0))));
+        when(auditEventService.getEscalations("pi1")).thenReturn(List.of(EscalationDTO.builder().id("e-9").build()));
+
+        // Act
+        WorkflowHistoryDTO history = workflowHistoryService.getWorkflowHistory("pi1");
+
+        // Assert: oldest first, each approval once
+        assertEquals(List.of("a-1", "a-2", "a-3"), history.getApprovals().stream().map(ApprovalDTO::getId).toList());
+        assertEquals(List.of(1, 2, 3), history.getApprovals().stream().map(ApprovalDTO::getStepOrder).toList());
+        assertEquals(List.of("e-9"), history.getEscalationHistory().stream().map(EscalationDTO::getId).toList());
+    }
+
+    private void runningInstance(String id, Map<String, Object> variables) {
+        ProcessInstance instance = mock(ProcessInstance.class);
+        when(instance.getStartTime()).thenReturn(new Date());
+        when(instance.getProcessDefinitionId()).thenReturn("def:1");
+        when(processInstanceQuery.processInstanceId(id)).thenReturn(processInstanceQuery);
+        when(processInstanceQuery.singleResult()).thenReturn(instance);
+        when(runtimeService.getVariables(id)).thenReturn(variables);
+        when(processDefinitionQuery.processDefinitionId("def:1")).thenReturn(processDefinitionQuery);
+        when(taskQuery.processInstanceId(id)).thenReturn(taskQuery);
+        when(taskQuery.list()).thenReturn(List.of());
+        when(historicTaskInstanceQuery.processInstanceIdIn(List.of(id))).thenReturn(historicTaskInstanceQuery);
+        when(historicTaskInstanceQuery.orderByHistoricTaskInstanceEndTime()).thenReturn(historicTaskInstanceQuery);
+        when(historicTaskInstanceQuery.asc()).thenReturn(historicTaskInstanceQuery);
+        when(historicTaskInstanceQuery.list()).thenReturn(List.of());
+    }
+
+    private static ApprovalDTO approval(String id, String approverId, int stepOrder, LocalDateTime timestamp) {
+        return ApprovalDTO.builder().id(id).approverId(approverId).stepOrder(stepOrder).timestamp(timestamp).build();
     }
 }
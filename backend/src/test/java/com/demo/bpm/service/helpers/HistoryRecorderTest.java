@@ -1,122 +1,111 @@
 package com.demo.bpm.service.helpers;
 
-import com.demo.bpm.util.WorkflowConstants;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.flowable.engine.RuntimeService;
+import com.demo.bpm.entity.WorkflowAuditEvent;
+import com.demo.bpm.service.AuditEventMigrationService;
+import com.demo.bpm.service.AuditEventService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.mockito.quality.Strictness;
-import org.mockito.junit.jupiter.MockitoSettings;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
-@MockitoSettings(strictness = Strictness.LENIENT)
 class HistoryRecorderTest {
 
     @Mock
-    private ObjectMapper objectMapper;
-
+    private AuditEventService auditEventService;
     @Mock
-    private RuntimeService runtimeService;
+    private AuditEventMigrationService auditEventMigrationService;
 
     private HistoryRecorder historyRecorder;
 
     @BeforeEach
     void setUp() {
-        historyRecorder = new HistoryRecorder(objectMapper, runtimeService);
+        historyRecorder = new HistoryRecorder(auditEventService, auditEventMigrationService);
     }
 
     @Test
-    void recordEscalationHistory_ShouldAddRecordAndSetVariable() throws JsonProcessingException {
-        // Arrange
-        String processInstanceId = "proc-1";
-        String taskId = "task-1";
-        String userId = "user-1";
-        String currentLevel = "SUPERVISOR";
-        String targetLevel = "MANAGER";
-        String reason = "Too complex";
-        boolean isEscalation = true;
-        Map<String, Object> variables = new HashMap<>();
-
-        // Mock ObjectMapper behavior
-        when(objectMapper.convertValue(any(), eq(List.class))).thenReturn(new ArrayList<>());
-        when(objectMapper.writeValueAsString(any())).thenReturn("[]");
-
+    void recordEscalationHistory_ShouldAppendEvent() {
         // Act
         String resultId = historyRecorder.recordEscalationHistory(
-            processInstanceId, taskId, userId, currentLevel, targetLevel,
-            reason, isEscalation, variables
+            "proc-1", "task-1", "user-1", "SUPERVISOR", "MANAGER", "Too complex", true
         );
 
         // Assert
+        WorkflowAuditEvent event = captureAppended();
         assertNotNull(resultId);
-        verify(runtimeService).setVariable(eq(processInstanceId), eq(WorkflowConstants.VAR_ESCALATION_HISTORY), anyString());
+        assertEquals(resultId, event.getEventId());
+        assertEquals(WorkflowAuditEvent.EventType.ESCALATE, event.getEventType());
+        assertEquals("SUPERVISOR", event.getFromLevel());
+        assertEquals("MANAGER", event.getToLevel());
+        assertEquals("Too complex", event.getComments());
     }
 
     @Test
-    void recordHandoffHistory_ShouldAddRecordAndSetVariable() throws JsonProcessingException {
-        // Arrange
-        String processInstanceId = "proc-1";
-        String taskId = "task-1";
-        String taskName = "Task 1";
-        String fromUserId = "user-1";
-        String toUserId = "user-2";
-        String reason = "Vacation";
-        Map<String, Object> variables = new HashMap<>();
-
-        // Mock ObjectMapper behavior
-        when(objectMapper.convertValue(any(), eq(List.class))).thenReturn(new ArrayList<>());
-        when(objectMapper.writeValueAsString(any())).thenReturn("[]");
-
+    void recordHandoffHistory_ShouldAppendEvent() {
         // Act
-        historyRecorder.recordHandoffHistory(
-            processInstanceId, taskId, taskName, fromUserId, toUserId, reason, variables
-        );
+        historyRecorder.recordHandoffHistory("proc-1", "task-1", "Task 1", "user-1", "user-2", "Vacation");
 
         // Assert
-        verify(runtimeService).setVariable(eq(processInstanceId), eq(WorkflowConstants.VAR_HANDOFF_HISTORY), anyString());
+        WorkflowAuditEvent event = captureAppended();
+        assertEquals(WorkflowAuditEvent.EventType.HANDOFF, event.getEventType());
+        assertEquals("user-1", event.getActorId());
+        assertEquals("user-2", event.getTargetUserId());
     }
 
     @Test
-    void recordApprovalHistory_ShouldAddRecordAndSetVariable() throws JsonProcessingException {
+    void recordApprovalHistory_ShouldAppendEventWithNextStepOrder() {
         // Arrange
-        String processInstanceId = "proc-1";
-        String taskId = "task-1";
-        String taskName = "Task 1";
-        String userId = "user-1";
-        String currentLevel = "SUPERVISOR";
-        String decision = "APPROVE";
-        String comments = "Looks good";
-        Map<String, Object> variables = new HashMap<>();
-
-        // Mock ObjectMapper behavior
-        when(objectMapper.convertValue(any(), eq(List.class))).thenReturn(new ArrayList<>());
-        when(objectMapper.writeValueAsString(any())).thenReturn("[]");
+        when(auditEventService.hasEvents("proc-1")).thenReturn(true);
+        when(auditEventService.nextApprovalStep("proc-1")).thenReturn(3);
 
         // Act
         HistoryRecorder.ApprovalRecordResult result = historyRecorder.recordApprovalHistory(
-            processInstanceId, taskId, taskName, userId, currentLevel, decision, comments, variables
+            "proc-1", "task-1", "Task 1", "user-1", "SUPERVISOR", "APPROVE", "Looks good"
         );
 
         // Assert
+        WorkflowAuditEvent event = captureAppended();
         assertNotNull(result.id());
-        assertEquals(1, result.stepOrder());
-        verify(runtimeService).setVariable(eq(processInstanceId), eq(WorkflowConstants.VAR_APPROVAL_HISTORY), anyString());
+        assertEquals(3, result.stepOrder());
+        assertEquals(3, event.getStepOrder());
+        assertEquals("APPROVE", event.getDecision());
+        verify(auditEventMigrationService, never()).importInstance("proc-1");
+    }
+
+    @Test
+    void recordApprovalHistory_FirstEventOfInstance_ImportsLegacyHistoryUnderLockBeforeNumbering() {
+        // Arrange: an in-flight instance that only has JSON history so far
+        when(auditEventService.hasEvents("proc-1")).thenReturn(false);
+        when(auditEventService.nextApprovalStep("proc-1")).thenReturn(3);
+
+        // Act
+        HistoryRecorder.ApprovalRecordResult result = historyRecorder.recordApprovalHistory(
+            "proc-1", "task-1", "Task 1", "user-1", "MANAGER", "APPROVE", null
+        );
+
+        // Assert: the step order continues from the imported approvals
+        InOrder order = inOrder(auditEventService, auditEventMigrationService);
+        order.verify(auditEventService).lockInstance("proc-1");
+        order.verify(auditEventMigrationService).importInstance("proc-1");
+        order.verify(auditEventService).nextApprovalStep("proc-1");
+        order.verify(auditEventService).append(any(WorkflowAuditEvent.class));
+        assertEquals(3, result.stepOrder());
+    }
+
+    private WorkflowAuditEvent captureAppended() {
+        ArgumentCaptor<WorkflowAuditEvent> captor = ArgumentCaptor.forClass(WorkflowAuditEvent.class);
+        verify(auditEventService).append(captor.capture());
+        return captor.getValue();
     }
 }
@@ -0,0 +1,65 @@
+package com.demo.bpm.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    @Test
+    void index_coversEveryValueWithContiguousBuckets() {
+        for (long value = 0; value < 1 << 16; value++) {
+            int index = LatencyHistogram.index(value);
+            assertThat(LatencyHistogram.lowerBound(index)).isLessThanOrEqualTo(value);
+            assertThat(LatencyHistogram.lowerBound(index + 1)).isGreaterThan(value);
+        }
+        long fiveYearsMs = 5L * 365 * 24 * 3_600_000;
+        assertThat(LatencyHistogram.lowerBound(LatencyHistogram.index(fiveYearsMs))).isLessThanOrEqualTo(fiveYearsMs);
+    }
+
+    @Test
+    void valueAt_staysWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        assertThat(histogram.getTotalCount()).isEqualTo(10_000);
+        assertThat(histogram.valueAt(0.50)).isCloseTo(5_000_000L, withinPercentage(6.25));
+        assertThat(histogram.valueAt(0.90)).isCloseTo(9_000_000L, withinPercentage(6.25));
+        assertThat(histogram.valueAt(0.99)).isCloseTo(9_900_000L, withinPercentage(6.25));
+        assertThat(new LatencyHistogram().valueAt(0.5)).isZero();
+    }
+
+    @Test
+    void merge_matchesRecordingEverythingInOne() {
+        LatencyHistogram all = new LatencyHistogram();
+        LatencyHistogram morning = new LatencyHistogram();
+        LatencyHistogram evening = new LatencyHistogram();
+        for (long value = 0; value < 2_000; value++) {
+            all.record(value * 37);
+            (value % 2 == 0 ? morning : evening).record(value * 37);
+        }
+
+        morning.merge(evening);
+
+        assertThat(morning.serialize()).isEqualTo(all.serialize());
+        assertThat(morning.valueAt(0.9)).isEqualTo(all.valueAt(0.9));
+    }
+
+    @Test
+    void parse_roundTripsSerializedForm() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(90_000);
+
+        LatencyHistogram parsed = LatencyHistogram.parse(histogram.serialize());
+
+        assertThat(parsed.serialize()).isEqualTo(histogram.serialize());
+        assertThat(parsed.getTotalCount()).isEqualTo(3);
+        assertThat(LatencyHistogram.parse(null).isEmpty()).isTrue();
+        assertThatThrownBy(() -> LatencyHistogram.parse("12")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,145 @@
+package com.demo.bpm.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+    @Test
+    void get_concurrentCallersShareOneComputation() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> flight.get("bottlenecks", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return 42;
+                })));
+            }
+            // Let every caller reach the flight before the computation finishes
+            while (flight.getComputed() + flight.getCoalesced() < 8) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+            }
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(flight.getCoalesced()).isEqualTo(7);
+            // Nothing is kept once the flight has landed
+            assertThat(flight.get("bottlenecks", () -> 43)).isEqualTo(43);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void get_waitersSeeTheComputationsException() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread computing = new Thread(() -> {
+            try {
+                flight.get("stats", () -> {
+                    started.countDown();
+                    await(release);
+                    throw new IllegalStateException("database down");
+                });
+            } catch (IllegalStateException expected) {
+                // The computing caller fails as well
+            }
+        });
+        computing.start();
+        started.await(5, TimeUnit.SECONDS);
+
+        Thread releaser = new Thread(() -> {
+            while (flight.getCoalesced() == 0) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+        });
+        releaser.start();
+
+        assertThatThrownBy(() -> flight.get("stats", () -> 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("database down");
+        computing.join(5_000);
+    }
+
+    @Test
+    void get_servesRecentResultsAndRevalidatesBehindThem() {
+        List<Runnable> revalidations = new ArrayList<>();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(60_000, revalidations::add);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(flight.get("trend", loads::incrementAndGet)).isEqualTo(1);
+        // Within the window: the stale result comes back and a single refresh is queued
+        assertThat(flight.get("trend", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(flight.get("trend", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(revalidations).hasSize(1);
+
+        revalidations.get(0).run();
+        assertThat(flight.get("trend", loads::incrementAndGet)).isEqualTo(2);
+        assertThat(flight.getComputed()).isEqualTo(2);
+        assertThat(flight.getServedStale()).isEqualTo(3);
+        assertThatThrownBy(() -> new SingleFlight<String, Integer>(1_000, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void get_doesNotRevalidateWithinTheFreshPeriod() throws Exception {
+        List<Runnable> revalidations = new ArrayList<>();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(200, 60_000, revalidations::add);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(flight.get("trend", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(flight.get("trend", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(revalidations).isEmpty();
+        assertThat(flight.getServedFresh()).isEqualTo(1);
+
+        // Past the fresh period the result is still served, and one refresh starts behind it
+        Thread.sleep(250);
+        assertThat(flight.get("trend", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(revalidations).hasSize(1);
+        revalidations.get(0).run();
+        assertThat(flight.get("trend", loads::incrementAndGet)).isEqualTo(2);
+        assertThat(revalidations).hasSize(1);
+    }
+
+    @Test
+    void get_failedRevalidationKeepsTheStaleResult() {
+        List<Runnable> revalidations = new ArrayList<>();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(60_000, revalidations::add);
+        flight.get("trend", () -> 1);
+
+        assertThat(flight.get("trend", () -> {
+            throw new IllegalStateException("database down");
+        })).isEqualTo(1);
+        revalidations.get(0).run();
+
+        assertThat(flight.get("trend", () -> 3)).isEqualTo(1);
+        assertThat(flight.getComputed()).isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
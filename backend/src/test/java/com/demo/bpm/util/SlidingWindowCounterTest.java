@@ -0,0 +1,38 @@
+package com.demo.bpm.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowCounterTest {
+    @Test
+    void sum_coversOnlyTheLastWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 6);
+
+        counter.add(1_000, 2);
+        counter.add(35_000, 3);
+        counter.add(59_999, 1);
+
+        assertThat(counter.sum(59_999)).isEqualTo(6);
+        // The first slot (0-10s) has left the window
+        assertThat(counter.sum(65_000)).isEqualTo(4);
+        assertThat(counter.sum(200_000)).isZero();
+    }
+
+    @Test
+    void add_reusesSlotsAndDropsStaleEvents() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 6);
+        counter.add(5_000, 7);
+
+        // Same ring position one window later resets the slot
+        counter.add(65_000, 1);
+        // Too old for the slot that now holds newer events
+        counter.add(6_000, 5);
+
+        assertThat(counter.sum(65_000)).isEqualTo(1);
+        counter.reset();
+        assertThat(counter.sum(65_000)).isZero();
+        assertThatThrownBy(() -> new SlidingWindowCounter(5, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
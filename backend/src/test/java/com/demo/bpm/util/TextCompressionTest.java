@@ -0,0 +1,39 @@
+package com.demo.bpm.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TextCompressionTest {
+    @Test
+    void compress_roundTripsLargeValues() {
+        String justification = "Replacement laptop needed because the old one fails to boot. ".repeat(40);
+
+        String stored = TextCompression.compress(justification, 1024);
+
+        assertThat(stored).startsWith(TextCompression.MARKER);
+        assertThat(stored.length()).isLessThan(justification.length());
+        assertThat(TextCompression.decompress(stored)).isEqualTo(justification);
+    }
+
+    @Test
+    void compress_leavesShortValuesAlone() {
+        assertThat(TextCompression.compress("short note", 1024)).isEqualTo("short note");
+        assertThat(TextCompression.compress(null, 1024)).isNull();
+    }
+
+    @Test
+    void decompress_passesPlainAndForeignValuesThrough() {
+        assertThat(TextCompression.decompress("[{\"id\":\"1\"}]")).isEqualTo("[{\"id\":\"1\"}]");
+        assertThat(TextCompression.decompress(TextCompression.MARKER + "not base64!")).isEqualTo(TextCompression.MARKER + "not base64!");
+    }
+
+    @Test
+    void compress_encodesValuesThatLookCompressed() {
+        String tricky = TextCompression.MARKER + "user text";
+
+        String stored = TextCompression.compress(tricky, 1024);
+
+        assertThat(TextCompression.decompress(stored)).isEqualTo(tricky);
+    }
+}
@@ -4,57 +4,197 @@ import { createLogger } from '$lib/utils/logger';
 
 const log = createLogger('api.analytics');
 
+export interface AnalyticsFilter {
+  processDefinitionKey?: string;
+  from?: string;
+  to?: string;
+}
+
+export interface WaitingTask {
+  taskId: string;
+  processDefinitionKey: string;
+  taskDefinitionKey: string;
+  createdAt: string;
+  ageSeconds: number;
+}
+
+export interface LiveAnalytics {
+  windowSeconds: number;
+  startsPerMinute: number;
+  completionsPerMinute: number;
+  processesInProgress: number;
+  openTasks: number;
+  oldestTask: WaitingTask | null;
+  definitions: Array<{
+    processDefinitionKey: string;
+    inProgress: number;
+    started: number;
+    completed: number;
+    startsPerMinute: number;
+    completionsPerMinute: number;
+    activities: Array<{
+      taskDefinitionKey: string;
+      taskName: string | null;
+      openTasks: number;
+      oldestTask: WaitingTask | null;
+    }>;
+  }>;
+  resyncedAt: string | null;
+  asOf: string;
+}
+
+export interface ProcessVariants {
+  processDefinitionKey: string;
+  instances: number;
+  variantCount: number;
+  variants: Array<{
+    variantHash: string;
+    activities: string[];
+    instances: number;
+    share: number;
+    avgDurationHours: number;
+    firstSeen: string;
+    lastSeen: string;
+  }>;
+  transitions: Array<{
+    sourceActivity: string;
+    targetActivity: string;
+    count: number;
+    avgTransitionHours: number;
+  }>;
+  activityNames: Record<string, string>;
+  minedUpTo: string | null;
+}
+
+function analyticsQuery(filter: AnalyticsFilter): string {
+  const params = new URLSearchParams();
+  for (const [key, value] of Object.entries(filter)) {
+    if (value) params.append(key, value);
+  }
+  const query = params.toString();
+  return query ? `?${query}` : '';
+}
+
 export const analyticsApi = {
   // Analytics Endpoints
   /**
    * Get process duration analytics.
-   * @param processDefinitionKey - Optional process definition key to filter by.
+   * @param filter - Optional filters: processDefinitionKey, from, to (ISO date-times, by end time).
    * @returns A promise that resolves to an array of duration stats.
    */
   async getProcessDurationAnalytics(
-    processDefinitionKey?: string
-  ): Promise<{ label: string; count: number }[]> {
-    log.debug('getProcessDurationAnalytics called', { processDefinitionKey });
-    const query = processDefinitionKey ? `?processDefinitionKey=${processDefinitionKey}` : '';
-    return fetchApi(`api/analytics/process-duration${query}`);
+    filter: AnalyticsFilter = {}
+  ): Promise<{ label: string; count: number; minDurationMs: number; maxDurationMs: number }[]> {
+    log.debug('getProcessDurationAnalytics called', filter);
+    return fetchApi(`/api/analytics/process-duration${analyticsQuery(filter)}`);
   },
 
   /**
    * Get user performance analytics.
+   * @param filter - Optional filters: processDefinitionKey, from, to (ISO date-times, by end time).
    * @returns A promise that resolves to an array of user performance stats.
    */
-  async getUserPerformanceAnalytics(): Promise<
-    { userId: string; tasksCompleted: number; avgDurationHours: number }[]
-  > {
-    log.debug('getUserPerformanceAnalytics called');
-    return fetchApi('api/analytics/user-performance');
+  async getUserPerformanceAnalytics(
+    filter: AnalyticsFilter = {}
+  ): Promise<{ userId: string; tasksCompleted: number; avgDurationHours: number }[]> {
+    log.debug('getUserPerformanceAnalytics called', filter);
+    return fetchApi(`/api/analytics/user-performance${analyticsQuery(filter)}`);
   },
 
   /**
    * Get bottleneck analytics.
+   * @param filter - Optional filters: processDefinitionKey, from, to (ISO date-times, by end time).
    * @returns A promise that resolves to an array of bottleneck stats.
    */
-  async getBottlenecks(): Promise<
+  async getBottlenecks(filter: AnalyticsFilter = {}): Promise<
     Array<{
       processDefinitionKey: string;
       taskName: string;
       avgDurationHours: number;
+      p90DurationHours: number;
+      p99DurationHours: number;
       slowInstanceCount: number;
       totalInstances: number;
     }>
   > {
-    log.debug('getBottlenecks called');
-    return fetchApi('/api/analytics/bottlenecks');
+    log.debug('getBottlenecks called', filter);
+    return fetchApi(`/api/analytics/bottlenecks${analyticsQuery(filter)}`);
+  },
+
+  /**
+   * Get duration percentiles per task definition, activity or process definition.
+   * @param kind - What to measure: TASK, ACTIVITY or PROCESS (default TASK).
+   * @param filter - Optional filters: processDefinitionKey, from, to (ISO date-times, by end time).
+   * @returns A promise that resolves to an array of percentile stats, slowest p90 first.
+   */
+  async getLatencyPercentiles(
+    kind: 'TASK' | 'ACTIVITY' | 'PROCESS' = 'TASK',
+    filter: AnalyticsFilter = {}
+  ): Promise<
+    Array<{
+      kind: string;
+      processDefinitionKey: string;
+      activityId: string | null;
+      name: string | null;
+      count: number;
+      minMs: number;
+      p50Ms: number;
+      p90Ms: number;
+      p99Ms: number;
+      maxMs: number;
+      avgMs: number;
+    }>
+  > {
+    log.debug('getLatencyPercentiles called', { kind, ...filter });
+    const query = analyticsQuery(filter).replace('?', '&');
+    return fetchApi(`/api/analytics/percentiles?kind=${kind}${query}`);
   },
 
   /**
    * Get process completion trend.
    * @param days - Number of days to look back (default 7).
-   * @returns A promise that resolves to an array of trend metrics.
+   * @param granularity - Bucket size: hour, day or week (default day).
+   * @param zone - IANA time zone the buckets align to (default the browser's zone).
+   * @returns A promise that resolves to an array of trend metrics, oldest bucket first.
+   */
+  async getProcessCompletionTrend(
+    days: number = 7,
+    granularity: 'hour' | 'day' | 'week' = 'day',
+    zone: string = Intl.DateTimeFormat().resolvedOptions().timeZone
+  ): Promise<{ date: string; count: number }[]> {
+    log.debug('getProcessCompletionTrend called', { days, granularity, zone });
+    const params = new URLSearchParams();
+    params.append('days', days.toString());
+    params.append('granularity', granularity);
+    if (zone) params.append('zone', zone);
+    return fetchApi(`/api/analytics/completion-trend?${params.toString()}`);
+  },
+
+  /**
+   * Get live throughput and work in progress, kept in memory from engine events.
+   * @returns A promise that resolves to rates over the live window, running instances and open
+   *   tasks per process definition and user task, and the oldest waiting task.
+   */
+  async getLiveAnalytics(): Promise<LiveAnalytics> {
+    log.debug('getLiveAnalytics called');
+    return fetchApi('/api/analytics/live');
+  },
+
+  /**
+   * Get the paths finished instances of a process definition took, as mined from activity history.
+   * @param processDefinitionKey - The process definition key.
+   * @param limit - Most frequent variants to return (default 20).
+   * @returns A promise that resolves to the trace variants and the directly-follows graph.
    */
-  async getProcessCompletionTrend(days: number = 7): Promise<{ date: string; count: number }[]> {
-    log.debug('getProcessCompletionTrend called', { days });
-    return fetchApi(`/api/analytics/completion-trend?days=${days}`);
+  async getProcessVariants(
+    processDefinitionKey: string,
+    limit: number = 20
+  ): Promise<ProcessVariants> {
+    log.debug('getProcessVariants called', { processDefinitionKey, limit });
+    const params = new URLSearchParams();
+    params.append('processDefinitionKey', processDefinitionKey);
+    params.append('limit', limit.toString());
+    return fetchApi(`/api/analytics/variants?${params.toString()}`);
   },
 
   // Workflow Dashboard
@@ -5,8 +5,11 @@ import type {
   Page,
   User,
   WorkflowHistory,
+  WorkflowSummary,
   Comment,
-  FormDefinition
+  FormDefinition,
+  ProcessSearchPage,
+  ActivityHeatmap
 } from '$lib/types';
 import { createLogger } from '$lib/utils/logger';
 
@@ -145,14 +148,14 @@ export const processesApi = {
    * @param processType - Filter by process definition key.
    * @param page - Page number (default 0).
    * @param size - Page size (default 20).
-   * @returns A promise that resolves to an array of workflow histories.
+   * @returns A promise that resolves to an array of workflow summaries.
    */
   async getAllWorkflowProcesses(
     status?: string,
     processType?: string,
     page: number = 0,
     size: number = 20
-  ): Promise<WorkflowHistory[]> {
+  ): Promise<WorkflowSummary[]> {
     log.debug('getAllWorkflowProcesses called', { status, processType, page, size });
     const params = new URLSearchParams();
     if (status) params.append('status', status);
@@ -162,6 +165,29 @@ export const processesApi = {
     return fetchApi(`/api/workflow/processes?${params.toString()}`);
   },
 
+  /**
+   * Search running and finished processes, newest first.
+   * @param filters - Optional filters: status, processDefinitionKey, initiator, businessKeyPrefix,
+   *   startedFrom, startedTo, endedFrom, endedTo (ISO date-times).
+   * @param token - The nextToken of the previous page; omit for the first page.
+   * @param limit - Page size (default 50).
+   * @returns A promise that resolves to a page of workflow summaries.
+   */
+  async searchWorkflowProcesses(
+    filters: Record<string, string | undefined> = {},
+    token?: string,
+    limit: number = 50
+  ): Promise<ProcessSearchPage> {
+    log.debug('searchWorkflowProcesses called', { filters, token, limit });
+    const params = new URLSearchParams();
+    for (const [key, value] of Object.entries(filters)) {
+      if (value) params.append(key, value);
+    }
+    if (token) params.append('token', token);
+    params.append('limit', limit.toString());
+    return fetchApi(`/api/workflow/processes/search?${params.toString()}`);
+  },
+
   /**
    * Fetch the full history of a specific workflow process.
    * @param processInstanceId - The ID of the process instance.
@@ -217,6 +243,16 @@ export const processesApi = {
     return fetchApi(`/api/processes/${processDefinitionId}/bpmn`);
   },
 
+  /**
+   * Get the tokens waiting at each activity of a process definition, for overlaying on its diagram.
+   * @param processDefinitionId - The ID of the process definition.
+   * @returns A promise that resolves to the count, oldest arrival and average age per activity id.
+   */
+  async getActivityHeatmap(processDefinitionId: string): Promise<ActivityHeatmap> {
+    log.debug('getActivityHeatmap called', { processDefinitionId });
+    return fetchApi(`/api/processes/${processDefinitionId}/heatmap`);
+  },
+
   /**
    * Delete a process definition.
    * @param processDefinitionId - The ID of the process definition.
@@ -295,6 +295,56 @@ export interface WorkflowHistory {
   comments: Comment[];
 }
 
+/**
+ * List-row view of a process instance; fetch WorkflowHistory for the full detail
+ */
+export interface WorkflowSummary {
+  processInstanceId: string;
+  processDefinitionId: string;
+  processDefinitionKey: string;
+  processDefinitionName?: string;
+  businessKey?: string;
+  status: string;
+  initiatorId?: string;
+  initiatorName?: string;
+  startTime: string;
+  endTime?: string;
+  durationInMillis?: number;
+  currentTaskId?: string;
+  currentTaskName?: string;
+  currentAssignee?: string;
+  currentLevel?: string;
+  escalationCount?: number;
+}
+
+/**
+ * One page of a process search; pass nextToken back to continue
+ */
+export interface ProcessSearchPage {
+  processes: WorkflowSummary[];
+  nextToken?: string;
+  hasMore: boolean;
+}
+
+/**
+ * Tokens waiting at each activity of a process definition right now
+ */
+export interface ActivityHeatmap {
+  processDefinitionId: string;
+  processDefinitionKey: string;
+  totalTokens: number;
+  activities: Array<{
+    activityId: string;
+    activityName?: string;
+    tokens: number;
+    unassignedTasks: number;
+    oldestSince?: string;
+    oldestAgeSeconds: number;
+    avgAgeSeconds: number;
+  }>;
+  asOf: string;
+}
+
 // ============================================
 // Dashboard Types
 // ============================================
@@ -329,10 +379,12 @@ export interface Dashboard {
   stats: DashboardStats;
   activeByType: Record<string, number>;
   byStatus: Record<string, number>;
-  recentCompleted: Page<WorkflowHistory>;
-  activeProcesses: Page<WorkflowHistory>;
-  myPendingApprovals: Page<WorkflowHistory>;
+  recentCompleted: Page<WorkflowSummary>;
+  activeProcesses: Page<WorkflowSummary>;
+  myPendingApprovals: Page<WorkflowSummary>;
   escalationMetrics: EscalationMetrics;
+  /** Sections that timed out or failed and hold placeholder data */
+  degradedSections?: string[];
 }
 
 // ============================================
@@ -793,18 +845,36 @@ export interface Notification {
 // SLA Types
 // ============================================
 
+/**
+ * SLAs of one target type: running targets by status, and outcomes within the outcome window
+ */
+export interface SlaTargetStats {
+  active: number;
+  onTrack: number;
+  atRisk: number;
+  breached: number;
+  /** Average share of the SLA used so far by running targets (0-100+) */
+  avgCompletionPercentage: number;
+  met: number;
+  missed: number;
+  /** Average time to spare at the end in minutes, negative when late */
+  avgMarginMinutes: number | null;
+  outcomeWindowDays: number;
+}
+
 /**
  * SLA statistics
  */
 export interface SlaStats {
-  totalActiveSlas: number;
-  breachedSlas: number;
-  atRiskSlas: number;
-  compliantSlas: number;
-  /** Breach rate as percentage (0-100) */
-  breachRate: number;
-  /** Average resolution time in hours */
-  averageResolutionTime: number;
+  /** Running tasks with an SLA (same as tasks.active) */
+  totalProcesses: number;
+  onTrack: number;
+  atRisk: number;
+  breached: number;
+  avgCompletionPercentage: number;
+  processesByStatus: { status: string; count: number }[];
+  tasks: SlaTargetStats;
+  processes: SlaTargetStats;
 }
 
 // ============================================